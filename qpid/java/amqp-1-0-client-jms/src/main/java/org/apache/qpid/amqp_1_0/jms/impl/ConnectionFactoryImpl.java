@@ -60,6 +60,7 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
     private String _topicPrefix;
     private boolean _useBinaryMessageId = Boolean.parseBoolean(System.getProperty("qpid.use_binary_message_id", "true"));
     private Boolean _syncPublish;
+    private boolean _asyncPublish = Boolean.getBoolean("qpid.async_publish");
     private int _maxSessions = Integer.getInteger("qpid.max_sessions", 0);
     private int _maxPrefetch;
     private String _keyStorePath;
@@ -210,6 +211,7 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
         connection.setTopicPrefix(_topicPrefix);
         connection.setUseBinaryMessageId(_useBinaryMessageId);
         connection.setSyncPublish(_syncPublish);
+        connection.setAsyncPublish(_asyncPublish);
         connection.setSslOptions(_sslOptions);
         if(_maxPrefetch != 0)
         {
@@ -267,6 +269,7 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
 
         boolean binaryMessageId = true;
         Boolean syncPublish;
+        boolean asyncPublish = Boolean.getBoolean("qpid.async_publish");
         int maxSessions;
         public boolean ssl;
         public int maxPrefetch;
@@ -367,6 +370,14 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
                     }
                 }
             },
+            new OptionSetter("async-publish", "Send persistent messages without waiting for each to be acknowledged; "
+                                              + "failures are reported by a later send or on close")
+            {
+                public void setOption(ConnectionOptions options, String value)
+                {
+                    options.asyncPublish = Boolean.parseBoolean(value);
+                }
+            },
             new OptionSetter("max-sessions", "set maximum number of sessions allowed")
             {
                 public void setOption(ConnectionOptions options, String value)
@@ -473,7 +484,7 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
                 port = 5671;
                 options.ssl = true;
             }
-            else if("amqp".equals(protocol))
+            else if("amqp".equals(protocol) || "vm".equals(protocol))
             {
                 port = 5672;
             }
@@ -528,6 +539,7 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
                                           options.maxSessions);
         connectionFactory.setUseBinaryMessageId(options.binaryMessageId);
         connectionFactory.setSyncPublish(options.syncPublish);
+        connectionFactory.setAsyncPublish(options.asyncPublish);
         if (options.maxPrefetch != 0)
         {
             connectionFactory.setMaxPrefetch(options.maxPrefetch);
@@ -631,6 +643,11 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
         _syncPublish = syncPublish;
     }
 
+    public void setAsyncPublish(boolean asyncPublish)
+    {
+        _asyncPublish = asyncPublish;
+    }
+
     public String getSslContextProvider()
     {
         return _sslContextProvider;
@@ -681,6 +698,11 @@ public class ConnectionFactoryImpl implements ConnectionFactory, TopicConnection
         return _syncPublish;
     }
 
+    public boolean isAsyncPublish()
+    {
+        return _asyncPublish;
+    }
+
     public boolean isUseBinaryMessageId()
     {
         return _useBinaryMessageId;
@@ -76,6 +76,7 @@ public class ConnectionImpl implements Connection, QueueConnection, TopicConnect
     private String _topicPrefix;
     private boolean _useBinaryMessageId = Boolean.parseBoolean(System.getProperty("qpid.use_binary_message_id", "true"));
     private Boolean _syncPublish;
+    private boolean _asyncPublish = Boolean.getBoolean("qpid.async_publish");
     private int _maxSessions;
     private int _maxPrefetch;
     private SSLOptions _sslOptions;
@@ -672,6 +673,16 @@ public class ConnectionImpl implements Connection, QueueConnection, TopicConnect
         return _syncPublish;
     }
 
+    void setAsyncPublish(boolean asyncPublish)
+    {
+        _asyncPublish = asyncPublish;
+    }
+
+    boolean asyncPublish()
+    {
+        return _asyncPublish;
+    }
+
     public void setMaxPrefetch(final int maxPrefetch)
     {
         _maxPrefetch = maxPrefetch;
@@ -33,7 +33,11 @@ import org.apache.qpid.amqp_1_0.type.UnsignedInteger;
 import javax.jms.*;
 import javax.jms.IllegalStateException;
 import javax.jms.Message;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.qpid.amqp_1_0.type.messaging.Accepted;
@@ -56,6 +60,8 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
     private Sender _sender;
     private boolean _closed;
     private Boolean _syncPublish;
+    private final boolean _asyncPublish;
+    private final Queue<OutcomeFuture> _pendingOutcomes = new ArrayDeque<OutcomeFuture>();
 
     private long _syncPublishTimeout = Long.getLong("qpid.sync_publish_timeout", 30000l);
 
@@ -74,6 +80,7 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
 
         _session = session;
         _syncPublish = session.getConnection().syncPublish();
+        _asyncPublish = session.getConnection().asyncPublish();
 
         if(_destination != null)
         {
@@ -224,11 +231,13 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
                 {
                     _sender.close();
                 }
+                checkPendingOutcomes(true);
             }
 
         }
         catch (Sender.SenderClosingException e)
         {
+            _pendingOutcomes.clear();
             final JMSException jmsException = new JMSException("Error closing producer: " + e.getMessage());
             jmsException.setLinkedException(e);
             throw jmsException;
@@ -250,6 +259,7 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
         {
             throw new IllegalStateException("Destination is deleted");
         }
+        checkPendingOutcomes(false);
 
 
         //TODO
@@ -311,14 +321,23 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
                                || (deliveryMode == DeliveryMode.PERSISTENT
                                    && _session.getTxn() == null
                                    && !Boolean.FALSE.equals(_syncPublish));
-        if(doSync)
+        // persistent messages may instead be pipelined, their outcomes being checked by later sends
+        final boolean doAsync = doSync && _asyncPublish && _syncPublish == null;
+        if(doSync && !doAsync)
         {
             action = new DispositionAction(_sender);
         }
 
         try
         {
-            _sender.send(clientMessage, _session.getTxn(), action);
+            if(doAsync)
+            {
+                _pendingOutcomes.add(_sender.sendAsync(clientMessage));
+            }
+            else
+            {
+                _sender.send(clientMessage, _session.getTxn(), action);
+            }
         }
         catch (LinkDetachedException e)
         {
@@ -333,29 +352,71 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
             throw jmsException;
         }
 
-        if(doSync && !action.wasAccepted(_syncPublishTimeout))
+        if(action != null && !action.wasAccepted(_syncPublishTimeout))
         {
-            if (action.getOutcome() instanceof Rejected)
+            throw createRejectedException(action.getOutcome());
+        }
+
+        if(getDestination() != null)
+        {
+            message.setJMSDestination(getDestination());
+        }
+    }
+
+    private MessageRejectedException createRejectedException(final Outcome outcome)
+    {
+        if (outcome instanceof Rejected)
+        {
+            Error err = ((Rejected) outcome).getError();
+            if(err != null)
             {
-                Error err = ((Rejected) action.getOutcome()).getError();
-                if(err != null)
-                {
-                    throw new MessageRejectedException(err.getDescription(), err.getCondition().toString());
-                }
-                else
-                {
-                    throw new MessageRejectedException("Message was rejected: " + action.getOutcome());
-                }
+                return new MessageRejectedException(err.getDescription(), err.getCondition().toString());
             }
             else
             {
-                throw new MessageRejectedException("Message was not accepted.  Outcome was: " + action.getOutcome());
+                return new MessageRejectedException("Message was rejected: " + outcome);
             }
         }
+        else
+        {
+            return new MessageRejectedException("Message was not accepted.  Outcome was: " + outcome);
+        }
+    }
 
-        if(getDestination() != null)
+    /**
+     * Reports the first failure among the outcomes of messages sent asynchronously, in the order the messages were
+     * sent.  Unless waiting, only the outcomes already received are checked.
+     */
+    private void checkPendingOutcomes(final boolean wait) throws JMSException
+    {
+        OutcomeFuture future;
+        while((future = _pendingOutcomes.peek()) != null && (wait || future.isDone()))
         {
-            message.setJMSDestination(getDestination());
+            _pendingOutcomes.remove();
+            final Outcome outcome;
+            try
+            {
+                outcome = future.get(_syncPublishTimeout, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new JMSException("Interrupted while waiting for message acceptance");
+            }
+            catch (ExecutionException e)
+            {
+                JMSException jmsException = new InvalidDestinationException("Sender has been closed");
+                jmsException.setLinkedException((Exception) e.getCause());
+                throw jmsException;
+            }
+            catch (TimeoutException e)
+            {
+                throw new JMSException("Timed out waiting for message acceptance");
+            }
+            if(!(outcome instanceof Accepted))
+            {
+                throw createRejectedException(outcome);
+            }
         }
     }
 
@@ -413,6 +474,7 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
                 send(message, deliveryMode, priority, ttl);
 
                 _sender.close();
+                checkPendingOutcomes(true);
 
 
 
@@ -427,6 +489,7 @@ public class MessageProducerImpl implements MessageProducer, QueueSender, TopicP
             }
             catch (Sender.SenderClosingException e)
             {
+                _pendingOutcomes.clear();
                 JMSException jmsEx = new JMSException(e.getMessage());
                 jmsEx.initCause(e);
                 jmsEx.setLinkedException(e);
@@ -0,0 +1,140 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.amqp_1_0.client;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.qpid.amqp_1_0.type.Binary;
+import org.apache.qpid.amqp_1_0.type.Outcome;
+
+/**
+ * The outcome of a message sent with {@link Sender#sendAsync(Message, Transaction, Sender.OutcomeAction)}.
+ * <p>
+ * The future completes with the outcome given by the peer, or fails with a {@link LinkDetachedException} if the
+ * link is detached before the outcome is known.  The future of a pre-settled message, for which the peer gives no
+ * outcome, is complete with the default outcome of the link as soon as it is sent, without calling the action.  It is completed while the sender's endpoint lock is held, and any
+ * waiters are woken when the endpoint notifies the lock once the disposition has been handled.
+ */
+public class OutcomeFuture implements Future<Outcome>
+{
+    private final Binary _deliveryTag;
+    private final Object _lock;
+    private final Sender.OutcomeAction _action;
+
+    private boolean _done;
+    private Outcome _outcome;
+    private LinkDetachedException _failure;
+
+    OutcomeFuture(final Binary deliveryTag, final Object lock, final Sender.OutcomeAction action)
+    {
+        _deliveryTag = deliveryTag;
+        _lock = lock;
+        _action = action;
+    }
+
+    public Binary getDeliveryTag()
+    {
+        return _deliveryTag;
+    }
+
+    void complete(final Outcome outcome)
+    {
+        _outcome = outcome;
+        _done = true;
+        if(_action != null)
+        {
+            _action.onOutcome(_deliveryTag, outcome);
+        }
+    }
+
+    void fail(final LinkDetachedException failure)
+    {
+        _failure = failure;
+        _done = true;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        synchronized (_lock)
+        {
+            return _done;
+        }
+    }
+
+    @Override
+    public Outcome get() throws InterruptedException, ExecutionException
+    {
+        synchronized (_lock)
+        {
+            while(!_done)
+            {
+                _lock.wait();
+            }
+            return getResult();
+        }
+    }
+
+    @Override
+    public Outcome get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException
+    {
+        final long endTime = System.currentTimeMillis() + unit.toMillis(timeout);
+        synchronized (_lock)
+        {
+            long remaining;
+            while(!_done)
+            {
+                remaining = endTime - System.currentTimeMillis();
+                if(remaining <= 0l)
+                {
+                    throw new TimeoutException("Timed out waiting for the outcome of delivery " + _deliveryTag);
+                }
+                _lock.wait(remaining);
+            }
+            return getResult();
+        }
+    }
+
+    private Outcome getResult() throws ExecutionException
+    {
+        if(_failure != null)
+        {
+            throw new ExecutionException(_failure);
+        }
+        return _outcome;
+    }
+}
@@ -21,15 +21,16 @@
 package org.apache.qpid.amqp_1_0.client;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.qpid.amqp_1_0.codec.DescribedTypeConstructor;
 import org.apache.qpid.amqp_1_0.messaging.SectionEncoder;
-import org.apache.qpid.amqp_1_0.transport.DeliveryStateHandler;
+import org.apache.qpid.amqp_1_0.transport.BatchedDeliveryStateHandler;
 import org.apache.qpid.amqp_1_0.transport.LinkEndpoint;
 import org.apache.qpid.amqp_1_0.transport.Predicate;
 import org.apache.qpid.amqp_1_0.transport.SendingLinkEndpoint;
@@ -50,16 +51,22 @@ import org.apache.qpid.amqp_1_0.type.transport.Error;
 import org.apache.qpid.amqp_1_0.type.transport.SenderSettleMode;
 import org.apache.qpid.amqp_1_0.type.transport.Transfer;
 
-public class Sender implements DeliveryStateHandler
+public class Sender implements BatchedDeliveryStateHandler
 {
     private static final long UNSETTLED_MESSAGE_TIMEOUT_MULTIPLIER = 1000l;
     private static final long DEFAULT_CREDIT_TIMEOUT = 30000l;
+    private static final int DEFAULT_MAX_IN_FLIGHT = Integer.getInteger("qpid.max_in_flight_sends", 1000);
 
     private SendingLinkEndpoint _endpoint;
     private int _id;
     private Session _session;
     private int _windowSize;
-    private Map<Binary, OutcomeAction> _outcomeActions = Collections.synchronizedMap(new HashMap<Binary, OutcomeAction>());
+    private int _maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    // guarded by the endpoint lock
+    private final Map<Binary, OutcomeFuture> _inFlight = new LinkedHashMap<Binary, OutcomeFuture>();
+    private final List<Binary> _pendingSettlement = new ArrayList<Binary>();
+    private DeliveryState _pendingSettlementState;
     private boolean _closed;
     private Error _error;
     private Runnable _remoteErrorTask;
@@ -199,6 +206,7 @@ public class Sender implements DeliveryStateHandler
             public void remoteDetached(final LinkEndpoint endpoint, final Detach detach)
             {
                 _error = detach.getError();
+                failInFlight();
                 if(_error != null)
                 {
                     remoteError();
@@ -263,7 +271,72 @@ public class Sender implements DeliveryStateHandler
 
     public void send(Message message, final Transaction txn, OutcomeAction action) throws LinkDetachedException, TimeoutException
     {
+        final Transfer xfr = createTransfer(message, txn);
+
+        synchronized(_endpoint.getLock())
+        {
+            waitForCredit(false);
+            if(action != null)
+            {
+                track(xfr, action);
+            }
+            _endpoint.transfer(xfr);
+        }
 
+        if(_windowSize != 0)
+        {
+            try
+            {
+                _endpoint.waitUntil(new Predicate()
+                                    {
+                                        @Override
+                                        public boolean isSatisfied()
+                                        {
+                                            return _endpoint.getUnsettledCount() < _windowSize;
+                                        }
+                                    }, getUnsettledTimeout());
+            }
+            catch (InterruptedException e)
+            {
+                throw new TimeoutException("Interrupted while waiting for the window to expand to allow sending");
+            }
+
+        }
+
+
+    }
+
+    public OutcomeFuture sendAsync(Message message) throws LinkDetachedException, TimeoutException
+    {
+        return sendAsync(message, null, null);
+    }
+
+    /**
+     * Sends the message without waiting for its outcome.  The call only blocks while the link has no credit or the
+     * number of messages awaiting their outcome has reached the {@link #setMaxInFlight(int) in-flight limit}.
+     *
+     * @param action if not null, called with the outcome on the thread which received it; it must not block.  As
+     *               with {@link #send(Message, Transaction, OutcomeAction)}, it is not called for a pre-settled
+     *               message, for which the peer sends no outcome
+     * @return a future for the outcome of the message; for a pre-settled message the future is already complete
+     *         with the default outcome of the link
+     */
+    public OutcomeFuture sendAsync(Message message, final Transaction txn, OutcomeAction action)
+            throws LinkDetachedException, TimeoutException
+    {
+        final Transfer xfr = createTransfer(message, txn);
+
+        synchronized(_endpoint.getLock())
+        {
+            waitForCredit(true);
+            final OutcomeFuture future = track(xfr, action);
+            _endpoint.transfer(xfr);
+            return future;
+        }
+    }
+
+    private Transfer createTransfer(final Message message, final Transaction txn)
+    {
         List<Section> sections = message.getPayload();
 
         Transfer xfr = new Transfer();
@@ -310,59 +383,88 @@ public class Sender implements DeliveryStateHandler
         {
             xfr.setSettled(message.getSettled() || _endpoint.getSendingSettlementMode() == SenderSettleMode.SETTLED);
         }
-        final Object lock = _endpoint.getLock();
+        return xfr;
+    }
 
-        synchronized(lock)
+    private void waitForCredit(final boolean limitInFlight) throws LinkDetachedException, TimeoutException
+    {
+        try
         {
-
-            try
-            {
-                _endpoint.waitUntil(new Predicate()
+            _endpoint.waitUntil(new Predicate()
+                                {
+                                    @Override
+                                    public boolean isSatisfied()
                                     {
-                                        @Override
-                                        public boolean isSatisfied()
-                                        {
-                                            return _endpoint.hasCreditToSend() || _endpoint.isDetached();
-                                        }
-                                    }, getCreditTimeout());
-            }
-            catch (InterruptedException e)
-            {
-                throw new TimeoutException("Interrupted while waiting for credit");
-            }
+                                        return (_endpoint.hasCreditToSend()
+                                                && (!limitInFlight || _inFlight.size() < _maxInFlight))
+                                               || _endpoint.isDetached();
+                                    }
+                                }, getCreditTimeout());
+        }
+        catch (InterruptedException e)
+        {
+            throw new TimeoutException("Interrupted while waiting for credit");
+        }
 
-            if(_endpoint.isDetached())
-            {
-                throw new LinkDetachedException(_error);
-            }
-            if(action != null)
-            {
-                _outcomeActions.put(message.getDeliveryTag(), action);
-            }
-            _endpoint.transfer(xfr);
+        if(_endpoint.isDetached())
+        {
+            throw new LinkDetachedException(_error);
         }
+    }
 
-        if(_windowSize != 0)
+    private OutcomeFuture track(final Transfer xfr, final OutcomeAction action)
+    {
+        final OutcomeFuture future;
+        if(Boolean.TRUE.equals(xfr.getSettled()))
         {
-            try
-            {
-                _endpoint.waitUntil(new Predicate()
-                                    {
-                                        @Override
-                                        public boolean isSatisfied()
-                                        {
-                                            return _endpoint.getUnsettledCount() < _windowSize;
-                                        }
-                                    }, getUnsettledTimeout());
-            }
-            catch (InterruptedException e)
+            // the peer will send no disposition for a pre-settled message, so there is no outcome for the action
+            future = new OutcomeFuture(xfr.getDeliveryTag(), _endpoint.getLock(), null);
+            future.complete(_defaultOutcome);
+        }
+        else
+        {
+            future = new OutcomeFuture(xfr.getDeliveryTag(), _endpoint.getLock(), action);
+            _inFlight.put(xfr.getDeliveryTag(), future);
+        }
+        return future;
+    }
+
+    private void failInFlight()
+    {
+        synchronized(_endpoint.getLock())
+        {
+            if(!_inFlight.isEmpty())
             {
-                throw new TimeoutException("Interrupted while waiting for the window to expand to allow sending");
+                for(OutcomeFuture future : _inFlight.values())
+                {
+                    future.fail(new LinkDetachedException(_error));
+                }
+                _inFlight.clear();
+                _endpoint.getLock().notifyAll();
             }
-
         }
+    }
 
+    /**
+     * Sets the maximum number of messages sent with {@link #sendAsync(Message, Transaction, OutcomeAction)} which may
+     * await their outcome before further asynchronous sends block.
+     */
+    public void setMaxInFlight(final int maxInFlight)
+    {
+        _maxInFlight = maxInFlight;
+    }
 
+    public int getMaxInFlight()
+    {
+        return _maxInFlight;
+    }
+
+    public int getInFlightCount()
+    {
+        synchronized(_endpoint.getLock())
+        {
+            return _inFlight.size();
+        }
     }
 
     private long getCreditTimeout()
@@ -374,7 +476,7 @@ public class Sender implements DeliveryStateHandler
     {
         boolean unsettledDeliveries = false;
 
-        if(_windowSize != 0)
+        if(_windowSize != 0 || getInFlightCount() != 0)
         {
             long timeout = getUnsettledTimeout();
 
@@ -385,7 +487,7 @@ public class Sender implements DeliveryStateHandler
                     @Override
                     public boolean isSatisfied()
                     {
-                        return _endpoint.getUnsettledCount() == 0;
+                        return _endpoint.getUnsettledCount() == 0 && _inFlight.isEmpty();
                     }
                 }, timeout);
             }
@@ -423,6 +525,10 @@ public class Sender implements DeliveryStateHandler
         {
             throw new SenderClosingException("Interrupted while attempting to detach link", e);
         }
+        finally
+        {
+            failInFlight();
+        }
         if(unsettledDeliveries && _endpoint.getUnsettledCount() > 0)
         {
             throw new SenderClosingException("Some messages may not have been received by the recipient");
@@ -448,33 +554,55 @@ public class Sender implements DeliveryStateHandler
 
     public void handle(Binary deliveryTag, DeliveryState state, Boolean settled)
     {
-        OutcomeAction action;
+        OutcomeFuture future;
         if(state instanceof Outcome)
         {
-            if((action = _outcomeActions.remove(deliveryTag)) != null)
+            if((future = _inFlight.remove(deliveryTag)) != null)
             {
 
                 final Outcome outcome = (Outcome) state;
-                action.onOutcome(deliveryTag, (outcome == null && settled) ? _defaultOutcome : outcome);
+                future.complete((outcome == null && settled) ? _defaultOutcome : outcome);
             }
             if(!Boolean.TRUE.equals(settled))
             {
-                _endpoint.updateDisposition(deliveryTag, state, true);
+                // settled once the whole disposition has been handled, see deliveryStatesProcessed()
+                if(_pendingSettlementState != state)
+                {
+                    settlePending();
+                    _pendingSettlementState = state;
+                }
+                _pendingSettlement.add(deliveryTag);
             }
         }
         else if(state instanceof TransactionalState)
         {
-            if((action = _outcomeActions.remove(deliveryTag)) != null)
+            if((future = _inFlight.remove(deliveryTag)) != null)
             {
                 final Outcome outcome = ((TransactionalState) state).getOutcome();
-                action.onOutcome(deliveryTag, outcome == null ? _defaultOutcome : outcome);
+                future.complete(outcome == null ? _defaultOutcome : outcome);
             }
 
         }
-        else if(state == null && settled && (action = _outcomeActions.remove(deliveryTag)) != null)
+        else if(state == null && settled && (future = _inFlight.remove(deliveryTag)) != null)
+        {
+            future.complete(_defaultOutcome);
+        }
+    }
+
+    @Override
+    public void deliveryStatesProcessed()
+    {
+        settlePending();
+    }
+
+    private void settlePending()
+    {
+        if(!_pendingSettlement.isEmpty())
         {
-            action.onOutcome(deliveryTag, _defaultOutcome);
+            _endpoint.updateDispositions(_pendingSettlement, _pendingSettlementState, true);
+            _pendingSettlement.clear();
         }
+        _pendingSettlementState = null;
     }
 
     public SendingLinkEndpoint getEndpoint()
@@ -118,48 +118,7 @@ class TCPTransportProvider implements TransportProvider
 
             ConnectionHandler.FrameOutput<FrameBody> out = new ConnectionHandler.FrameOutput<FrameBody>(conn);
 
-            ConnectionHandler.BytesSource src;
-
-            if(conn.requiresSASL())
-            {
-                ConnectionHandler.FrameOutput<SaslFrameBody> saslOut = new ConnectionHandler.FrameOutput<SaslFrameBody>(conn);
-
-                src =  new ConnectionHandler.SequentialBytesSource(new ConnectionHandler.HeaderBytesSource(conn, (byte)'A',
-                                                                                                           (byte)'M',
-                                                                                                           (byte)'Q',
-                                                                                                           (byte)'P',
-                                                                                                           (byte)3,
-                                                                                                           (byte)1,
-                                                                                                           (byte)0,
-                                                                                                           (byte)0),
-                                                                   new ConnectionHandler.FrameToBytesSourceAdapter(saslOut.asFrameSource(),conn.getDescribedTypeRegistry()),
-                                                                   new ConnectionHandler.HeaderBytesSource(conn, (byte)'A',
-                                                                                                           (byte)'M',
-                                                                                                           (byte)'Q',
-                                                                                                           (byte)'P',
-                                                                                                           (byte)0,
-                                                                                                           (byte)1,
-                                                                                                           (byte)0,
-                                                                                                           (byte)0),
-                                                                   new ConnectionHandler.FrameToBytesSourceAdapter(out.asFrameSource(),conn.getDescribedTypeRegistry())
-                );
-
-                conn.setSaslFrameOutput(saslOut);
-            }
-            else
-            {
-                src =  new ConnectionHandler.SequentialBytesSource(new ConnectionHandler.HeaderBytesSource(conn,(byte)'A',
-                                                                                                           (byte)'M',
-                                                                                                           (byte)'Q',
-                                                                                                           (byte)'P',
-                                                                                                           (byte)0,
-                                                                                                           (byte)1,
-                                                                                                           (byte)0,
-                                                                                                           (byte)0),
-                                                                   new ConnectionHandler.FrameToBytesSourceAdapter(out.asFrameSource(),conn.getDescribedTypeRegistry())
-                );
-            }
-
+            ConnectionHandler.BytesSource src = createBytesSource(conn, out);
 
             final OutputStream outputStream = _socket.getOutputStream();
             ConnectionHandler.BytesOutputHandler outputHandler =
@@ -217,6 +176,58 @@ class TCPTransportProvider implements TransportProvider
         }
     }
 
+    /**
+     * @return the source of the bytes to write for the connection: the protocol headers, followed by the SASL frames
+     * if the connection requires SASL, and then the frames of the connection itself
+     */
+    static ConnectionHandler.BytesSource createBytesSource(final ConnectionEndpoint conn,
+                                                          final ConnectionHandler.FrameOutput<FrameBody> out)
+    {
+        ConnectionHandler.BytesSource src;
+
+        if(conn.requiresSASL())
+        {
+            ConnectionHandler.FrameOutput<SaslFrameBody> saslOut = new ConnectionHandler.FrameOutput<SaslFrameBody>(conn);
+
+            src =  new ConnectionHandler.SequentialBytesSource(new ConnectionHandler.HeaderBytesSource(conn, (byte)'A',
+                                                                                                       (byte)'M',
+                                                                                                       (byte)'Q',
+                                                                                                       (byte)'P',
+                                                                                                       (byte)3,
+                                                                                                       (byte)1,
+                                                                                                       (byte)0,
+                                                                                                       (byte)0),
+                                                               new ConnectionHandler.FrameToBytesSourceAdapter(saslOut.asFrameSource(),conn.getDescribedTypeRegistry()),
+                                                               new ConnectionHandler.HeaderBytesSource(conn, (byte)'A',
+                                                                                                       (byte)'M',
+                                                                                                       (byte)'Q',
+                                                                                                       (byte)'P',
+                                                                                                       (byte)0,
+                                                                                                       (byte)1,
+                                                                                                       (byte)0,
+                                                                                                       (byte)0),
+                                                               new ConnectionHandler.FrameToBytesSourceAdapter(out.asFrameSource(),conn.getDescribedTypeRegistry())
+            );
+
+            conn.setSaslFrameOutput(saslOut);
+        }
+        else
+        {
+            src =  new ConnectionHandler.SequentialBytesSource(new ConnectionHandler.HeaderBytesSource(conn,(byte)'A',
+                                                                                                       (byte)'M',
+                                                                                                       (byte)'Q',
+                                                                                                       (byte)'P',
+                                                                                                       (byte)0,
+                                                                                                       (byte)1,
+                                                                                                       (byte)0,
+                                                                                                       (byte)0),
+                                                               new ConnectionHandler.FrameToBytesSourceAdapter(out.asFrameSource(),conn.getDescribedTypeRegistry())
+            );
+        }
+
+        return src;
+    }
+
     private void doRead(final ConnectionEndpoint conn, final ConnectionHandler handler, final InputStream inputStream)
     {
         byte[] buf = new byte[2<<15];
@@ -0,0 +1,179 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.amqp_1_0.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.qpid.amqp_1_0.framing.ConnectionHandler;
+import org.apache.qpid.amqp_1_0.framing.ExceptionHandler;
+import org.apache.qpid.amqp_1_0.transport.ConnectionEndpoint;
+import org.apache.qpid.amqp_1_0.type.FrameBody;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.Sender;
+import org.apache.qpid.transport.SenderException;
+import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.vm.VmNetworkTransport;
+
+/**
+ * Connects to a broker in the same JVM which accepts in-VM connections on the given port.  The frames of the
+ * connection are written by an output thread, as for TCP, but are handed to the broker through an in-memory pipe
+ * rather than a socket; the bytes from the broker are parsed by the reader thread of the pipe.
+ */
+class VmTransportProvider implements TransportProvider
+{
+    private static final AtomicLong THREAD_NAME_INDEX = new AtomicLong();
+
+    private final VmNetworkTransport _transport = new VmNetworkTransport();
+
+    @Override
+    public void connect(final ConnectionEndpoint conn,
+                        final String address,
+                        final int port,
+                        final SSLContext sslContext,
+                        final SSLOptions sslOptions,
+                        final ExceptionHandler exceptionHandler) throws ConnectionException
+    {
+        if(sslContext != null)
+        {
+            throw new ConnectionException(new IllegalArgumentException("SSL is not supported by the in-VM transport"));
+        }
+
+        final ConnectionSettings settings = new ConnectionSettings();
+        settings.setProtocol("vm");
+        settings.setHost(address);
+        settings.setPort(port);
+
+        final ConnectionHandler handler = new ConnectionHandler(conn);
+        final NetworkConnection connection;
+        try
+        {
+            connection = _transport.connect(settings, new ConnectionReceiver(conn, handler), null);
+        }
+        catch (TransportException e)
+        {
+            throw new ConnectionException(e);
+        }
+
+        conn.setRemoteAddress(connection.getRemoteAddress());
+
+        ConnectionHandler.FrameOutput<FrameBody> out = new ConnectionHandler.FrameOutput<FrameBody>(conn);
+        ConnectionHandler.BytesSource src = TCPTransportProvider.createBytesSource(conn, out);
+
+        ConnectionHandler.BytesOutputHandler outputHandler =
+                new ConnectionHandler.BytesOutputHandler(new SenderOutputStream(connection.getSender()),
+                                                         src,
+                                                         conn,
+                                                         exceptionHandler);
+        Thread outputThread = new Thread(outputHandler, "QpidVmConnectionOutputThread-"
+                                                        + THREAD_NAME_INDEX.getAndIncrement());
+
+        outputThread.setDaemon(true);
+        outputThread.start();
+        conn.setFrameOutputHandler(out);
+    }
+
+    @Override
+    public void close()
+    {
+        _transport.close();
+    }
+
+    private static final class ConnectionReceiver implements Receiver<ByteBuffer>
+    {
+        private final ConnectionEndpoint _conn;
+        private final ConnectionHandler _handler;
+
+        private ConnectionReceiver(final ConnectionEndpoint conn, final ConnectionHandler handler)
+        {
+            _conn = conn;
+            _handler = handler;
+        }
+
+        @Override
+        public void received(final ByteBuffer buf)
+        {
+            while(buf.hasRemaining() && !_handler.isDone())
+            {
+                _handler.parse(buf);
+            }
+        }
+
+        @Override
+        public void exception(final Throwable t)
+        {
+            // the pipe is closed after a failure, so closed() follows
+        }
+
+        @Override
+        public void closed()
+        {
+            if(!_handler.isDone())
+            {
+                _conn.inputClosed();
+                if(_conn.getConnectionEventListener() != null)
+                {
+                    _conn.getConnectionEventListener().closeReceived();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes each block of bytes through the sender of the in-VM connection, flushing it so that the bytes are
+     * delivered to the broker without waiting for more to follow.
+     */
+    private static final class SenderOutputStream extends OutputStream
+    {
+        private final Sender<ByteBuffer> _sender;
+
+        private SenderOutputStream(final Sender<ByteBuffer> sender)
+        {
+            _sender = sender;
+        }
+
+        @Override
+        public void write(final int b) throws IOException
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException
+        {
+            try
+            {
+                _sender.send(ByteBuffer.wrap(b, off, len));
+                _sender.flush();
+            }
+            catch (SenderException e)
+            {
+                throw new IOException(e);
+            }
+        }
+    }
+}
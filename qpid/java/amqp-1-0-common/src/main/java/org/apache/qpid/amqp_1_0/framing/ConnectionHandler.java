@@ -92,6 +92,8 @@ public class ConnectionHandler
         private static final ByteBuffer EMPTY_BYTEBUFFER = ByteBuffer.wrap(new byte[0]);
         private final BlockingQueue<AMQFrame<T>> _queue = new ArrayBlockingQueue<AMQFrame<T>>(100);
         private ConnectionEndpoint _conn;
+        // guards the frame queue only; frames are handed over from the connection without holding its lock
+        private final Object _lock = new Object();
 
         private final AMQFrame<T> _endOfFrameMarker = new AMQFrame<T>(null)
         {
@@ -141,10 +143,10 @@ public class ConnectionHandler
 
         private void immediateClose()
         {
-            synchronized (_conn.getLock())
+            synchronized (_lock)
             {
                 _closed = true;
-                _conn.getLock().notifyAll();
+                _lock.notifyAll();
             }
         }
 
@@ -160,7 +162,7 @@ public class ConnectionHandler
 
         public void send(final AMQFrame<T> frame, final ByteBuffer payload)
         {
-            synchronized(_conn.getLock())
+            synchronized(_lock)
             {
                 try
                 {
@@ -175,10 +177,10 @@ public class ConnectionHandler
 
                     while(!_queue.offer(frame))
                     {
-                        _conn.getLock().wait(1000L);
+                        _lock.wait(1000L);
 
                     }
-                    _conn.getLock().notifyAll();
+                    _lock.notifyAll();
                 }
                 catch (InterruptedException e)
                 {
@@ -190,74 +192,79 @@ public class ConnectionHandler
 
         public void close()
         {
-            synchronized (_conn.getLock())
+            synchronized (_lock)
             {
                 if(!_queue.offer(_endOfFrameMarker))
                 {
                     _setForClose = true;
                 }
-                _conn.getLock().notifyAll();
+                _lock.notifyAll();
             }
         }
 
         public AMQFrame<T> getNextFrame(final boolean wait)
         {
-            synchronized(_conn.getLock())
+            try
+            {
+                return getNextFrameFromQueue(wait);
+            }
+            catch (InterruptedException e)
+            {
+                _conn.setClosedForOutput(true);
+                e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+                return null;
+            }
+        }
+
+        private AMQFrame<T> getNextFrameFromQueue(final boolean wait) throws InterruptedException
+        {
+            synchronized(_lock)
             {
                 long time = System.currentTimeMillis();
-                try
+                AMQFrame frame = null;
+                while(!closed() && (frame = _queue.poll()) == null && wait)
                 {
-                    AMQFrame frame = null;
-                    while(!closed() && (frame = _queue.poll()) == null && wait)
+                    _lock.wait(_conn.getIdleTimeout()/2);
+
+                    if(_conn.getIdleTimeout()>0)
                     {
-                        _conn.getLock().wait(_conn.getIdleTimeout()/2);
+                        time = System.currentTimeMillis();
 
-                        if(_conn.getIdleTimeout()>0)
+                        if(frame == null && time > _nextHeartbeat)
                         {
-                            time = System.currentTimeMillis();
-
-                            if(frame == null && time > _nextHeartbeat)
-                            {
-                                frame = new TransportFrame((short) 0,null);
-                                break;
-                            }
+                            frame = new TransportFrame((short) 0,null);
+                            break;
                         }
                     }
+                }
 
 
 
 
-                    if(frame != null)
-                    {
-                        _nextHeartbeat = time + _conn.getIdleTimeout()/2;
-
-                    }
-                    if(frame == _endOfFrameMarker)
-                    {
-                        _closed = true;
-                        frame = null;
-                    }
-                    else if(_setForClose && frame != null)
-                    {
-                        _setForClose = !_queue.offer(_endOfFrameMarker);
-                    }
-
+                if(frame != null)
+                {
+                    _nextHeartbeat = time + _conn.getIdleTimeout()/2;
 
-                    if(frame != null && FRAME_LOGGER.isLoggable(Level.FINE))
-                    {
-                        FRAME_LOGGER.fine("SEND[" + _conn.getRemoteAddress() + "|" + frame.getChannel() + "] : " + frame.getFrameBody());
-                    }
+                }
+                if(frame == _endOfFrameMarker)
+                {
+                    _closed = true;
+                    frame = null;
+                }
+                else if(_setForClose && frame != null)
+                {
+                    _setForClose = !_queue.offer(_endOfFrameMarker);
+                }
 
-                    _conn.getLock().notifyAll();
 
-                    return frame;
-                }
-                catch (InterruptedException e)
+                if(frame != null && FRAME_LOGGER.isLoggable(Level.FINE))
                 {
-                    _conn.setClosedForOutput(true);
-                    e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    return null;
+                    FRAME_LOGGER.fine("SEND[" + _conn.getRemoteAddress() + "|" + frame.getChannel() + "] : " + frame.getFrameBody());
                 }
+
+                _lock.notifyAll();
+
+                return frame;
             }
         }
 
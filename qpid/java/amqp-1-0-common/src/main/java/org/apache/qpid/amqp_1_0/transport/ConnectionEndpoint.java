@@ -36,7 +36,11 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -82,6 +86,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
 {
     private static final short CONNECTION_CONTROL_CHANNEL = (short) 0;
     private static final ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.wrap(new byte[0]);
+    private static final AMQFrame<FrameBody> END_OF_OUTPUT = AMQFrame.createAMQFrame(CONNECTION_CONTROL_CHANNEL, null);
     private static final Symbol SASL_PLAIN = Symbol.valueOf("PLAIN");
     private static final Symbol SASL_ANONYMOUS = Symbol.valueOf("ANONYMOUS");
     private static final Symbol SASL_EXTERNAL = Symbol.valueOf("EXTERNAL");
@@ -92,24 +97,29 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     private static final int DEFAULT_CHANNEL_MAX = Math.min(Integer.getInteger("amqp.channel_max", 255), 0xFFFF);
     private static final int DEFAULT_MAX_FRAME = Integer.getInteger("amqp.max_frame_size", 1 << 15);
     private static final long DEFAULT_SYNC_TIMEOUT = Long.getLong("amqp.connection_sync_timeout", 5000l);
+    private static final int OUTPUT_QUEUE_HIGH_WATER_MARK = Integer.getInteger("amqp.output_queue_high_water_mark", 1024);
 
 
-    private ConnectionState _state = ConnectionState.UNOPENED;
+    private volatile ConnectionState _state = ConnectionState.UNOPENED;
     private int _channelMax = DEFAULT_CHANNEL_MAX;
-    private int _maxFrameSize = 4096;
+    private volatile int _maxFrameSize = 4096;
     private String _remoteContainerId;
 
     private SocketAddress _remoteAddress;
 
+    // Connection level state (open/close and the channel maps) is guarded by the connection lock. Session level
+    // frames are dispatched under the lock of the owning session only, so sessions on the same connection do not
+    // contend with each other; the channel maps are therefore readable without holding the connection lock.
+
     // positioned by the *outgoing* channel
-    private SessionEndpoint[] _sendingSessions;
+    private volatile AtomicReferenceArray<SessionEndpoint> _sendingSessions;
 
     // positioned by the *incoming* channel
-    private SessionEndpoint[] _receivingSessions;
-    private boolean _closedForInput;
-    private boolean _closedForOutput;
+    private volatile AtomicReferenceArray<SessionEndpoint> _receivingSessions;
+    private volatile boolean _closedForInput;
+    private volatile boolean _closedForOutput;
 
-    private long _idleTimeout;
+    private volatile long _idleTimeout;
 
     private AMQPDescribedTypeRegistry _describedTypeRegistry = AMQPDescribedTypeRegistry.newInstance()
             .registerTransportLayer()
@@ -119,6 +129,18 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
 
     private FrameOutputHandler<FrameBody> _frameOutputHandler;
 
+    // frames from any session are appended here and written to the frame output handler by whichever thread
+    // currently holds the writer flag, so senders never block on the connection lock
+    private final ConcurrentLinkedQueue<AMQFrame<FrameBody>> _outputQueue =
+            new ConcurrentLinkedQueue<AMQFrame<FrameBody>>();
+    private final AtomicBoolean _outputWriterActive = new AtomicBoolean();
+    private volatile boolean _outputEnded;
+    // senders finding more than the high water mark of frames queued wait for the writer to drain them
+    private final AtomicInteger _queuedFrameCount = new AtomicInteger();
+    private final AtomicInteger _waitingSenderCount = new AtomicInteger();
+    private final Object _outputDrained = new Object();
+    private volatile Thread _outputWriterThread;
+
     private byte _majorVersion;
     private byte _minorVersion;
     private byte _revision;
@@ -229,7 +251,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         if (channel != -1)
         {
             SessionEndpoint endpoint = new SessionEndpoint(this);
-            _sendingSessions[channel] = endpoint;
+            _sendingSessions.set(channel, endpoint);
             endpoint.setSendingChannel(channel);
             Begin begin = new Begin();
             begin.setNextOutgoingId(endpoint.getNextOutgoingId());
@@ -280,8 +302,8 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
 
         if (_receivingSessions == null)
         {
-            _receivingSessions = new SessionEndpoint[channelMax + 1];
-            _sendingSessions = new SessionEndpoint[channelMax + 1];
+            _receivingSessions = new AtomicReferenceArray<SessionEndpoint>(channelMax + 1);
+            _sendingSessions = new AtomicReferenceArray<SessionEndpoint>(channelMax + 1);
         }
         if (channelMax < _channelMax)
         {
@@ -314,7 +336,9 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     private void closeSender()
     {
         setClosedForOutput(true);
-        _frameOutputHandler.close();
+        _queuedFrameCount.incrementAndGet();
+        _outputQueue.add(END_OF_OUTPUT);
+        writeQueuedFrames();
     }
 
 
@@ -322,7 +346,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     {
         for (int i = 0; i <= _channelMax; i++)
         {
-            if (_sendingSessions[i] == null)
+            if (_sendingSessions.get(i) == null)
             {
                 return (short) i;
             }
@@ -332,7 +356,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
 
     private SessionEndpoint getSession(final short channel)
     {
-        SessionEndpoint session = _receivingSessions[channel];
+        SessionEndpoint session = _receivingSessions.get(channel);
         if (session == null)
         {
             Error error = new Error();
@@ -355,8 +379,8 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
 
         if (_receivingSessions == null)
         {
-            _receivingSessions = new SessionEndpoint[_channelMax + 1];
-            _sendingSessions = new SessionEndpoint[_channelMax + 1];
+            _receivingSessions = new AtomicReferenceArray<SessionEndpoint>(_channelMax + 1);
+            _sendingSessions = new AtomicReferenceArray<SessionEndpoint>(_channelMax + 1);
         }
 
         UnsignedInteger remoteDesiredMaxFrameSize =
@@ -420,6 +444,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         _remoteError = close.getError();
 
         notifyAll();
+        notifySessions();
     }
 
     public synchronized void close(Error error)
@@ -469,13 +494,12 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
             }
             if (_receivingSessions != null)
             {
-                for (int i = 0; i < _receivingSessions.length; i++)
+                for (int i = 0; i < _receivingSessions.length(); i++)
                 {
-                    if (_receivingSessions[i] != null)
+                    SessionEndpoint session = _receivingSessions.getAndSet(i, null);
+                    if (session != null)
                     {
-                        _receivingSessions[i].end();
-                        _receivingSessions[i] = null;
-
+                        session.end();
                     }
                 }
             }
@@ -485,6 +509,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
             }
         }
         notifyAll();
+        notifySessions();
     }
 
     private void sendClose(Close closeToSend)
@@ -498,6 +523,26 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         _closedForInput = closed;
 
         notifyAll();
+        notifySessions();
+    }
+
+    private void notifySessions()
+    {
+        final AtomicReferenceArray<SessionEndpoint> sessions = _sendingSessions;
+        if (sessions != null)
+        {
+            for (int i = 0; i < sessions.length(); i++)
+            {
+                SessionEndpoint session = sessions.get(i);
+                if (session != null)
+                {
+                    synchronized (session.getLock())
+                    {
+                        session.getLock().notifyAll();
+                    }
+                }
+            }
+        }
     }
 
     public synchronized void receiveBegin(short channel, Begin begin)
@@ -511,7 +556,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
             SessionEndpoint endpoint;
             try
             {
-                endpoint = _sendingSessions[myChannelId];
+                endpoint = _sendingSessions.get(myChannelId);
             }
             catch (IndexOutOfBoundsException e)
             {
@@ -525,16 +570,20 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
             }
             if (endpoint != null)
             {
-                if (_receivingSessions[channel] == null)
+                if (_receivingSessions.get(channel) == null)
                 {
-                    _receivingSessions[channel] = endpoint;
-                    endpoint.setReceivingChannel(channel);
-                    endpoint.setNextIncomingId(begin.getNextOutgoingId());
-                    endpoint.setOutgoingSessionCredit(begin.getIncomingWindow());
-
-                    if (endpoint.getState() == SessionState.END_SENT)
+                    _receivingSessions.set(channel, endpoint);
+                    synchronized (endpoint.getLock())
                     {
-                        _sendingSessions[myChannelId] = null;
+                        endpoint.setReceivingChannel(channel);
+                        endpoint.setNextIncomingId(begin.getNextOutgoingId());
+                        endpoint.setOutgoingSessionCredit(begin.getIncomingWindow());
+
+                        if (endpoint.getState() == SessionState.END_SENT)
+                        {
+                            _sendingSessions.set(myChannelId, null);
+                        }
+                        endpoint.getLock().notifyAll();
                     }
                 }
                 else
@@ -567,12 +616,12 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
 
             }
 
-            if (_receivingSessions[channel] == null)
+            if (_receivingSessions.get(channel) == null)
             {
                 SessionEndpoint endpoint = new SessionEndpoint(this, begin);
 
-                _receivingSessions[channel] = endpoint;
-                _sendingSessions[myChannelId] = endpoint;
+                _receivingSessions.set(channel, endpoint);
+                _sendingSessions.set(myChannelId, endpoint);
 
                 Begin beginToSend = new Begin();
 
@@ -602,11 +651,9 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
 
     public synchronized void receiveEnd(short channel, End end)
     {
-        SessionEndpoint endpoint = _receivingSessions[channel];
+        SessionEndpoint endpoint = _receivingSessions.getAndSet(channel, null);
         if (endpoint != null)
         {
-            _receivingSessions[channel] = null;
-
             endpoint.receiveEnd(end);
         }
         else
@@ -617,16 +664,16 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     }
 
 
-    public synchronized void sendEnd(short channel, End end, boolean remove)
+    public void sendEnd(short channel, End end, boolean remove)
     {
         send(channel, end);
         if (remove)
         {
-            _sendingSessions[channel] = null;
+            _sendingSessions.set(channel, null);
         }
     }
 
-    public synchronized void receiveAttach(short channel, Attach attach)
+    public void receiveAttach(short channel, Attach attach)
     {
         SessionEndpoint endPoint = getSession(channel);
         if (endPoint != null)
@@ -636,7 +683,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     }
 
 
-    public synchronized void receiveDetach(short channel, Detach detach)
+    public void receiveDetach(short channel, Detach detach)
     {
         SessionEndpoint endPoint = getSession(channel);
         if (endPoint != null)
@@ -645,7 +692,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         }
     }
 
-    public synchronized void receiveTransfer(short channel, Transfer transfer)
+    public void receiveTransfer(short channel, Transfer transfer)
     {
         SessionEndpoint endPoint = getSession(channel);
         if (endPoint != null)
@@ -654,7 +701,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         }
     }
 
-    public synchronized void receiveDisposition(short channel, Disposition disposition)
+    public void receiveDisposition(short channel, Disposition disposition)
     {
         SessionEndpoint endPoint = getSession(channel);
         if (endPoint != null)
@@ -663,7 +710,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         }
     }
 
-    public synchronized void receiveFlow(short channel, Flow flow)
+    public void receiveFlow(short channel, Flow flow)
     {
         SessionEndpoint endPoint = getSession(channel);
         if (endPoint != null)
@@ -673,13 +720,13 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     }
 
 
-    public synchronized void send(short channel, FrameBody body)
+    public void send(short channel, FrameBody body)
     {
         send(channel, body, null);
     }
 
 
-    public synchronized int send(short channel, FrameBody body, ByteBuffer payload)
+    public int send(short channel, FrameBody body, ByteBuffer payload)
     {
         if (!_closedForOutput)
         {
@@ -712,7 +759,10 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
             {
                 payloadSent = payload == null ? 0 : payload.remaining();
             }
-            _frameOutputHandler.send(AMQFrame.createAMQFrame(channel, body, payloadDup));
+            _queuedFrameCount.incrementAndGet();
+            _outputQueue.add(AMQFrame.createAMQFrame(channel, body, payloadDup));
+            writeQueuedFrames();
+            waitForQueuedFrames();
             return payloadSent;
         }
         else
@@ -721,12 +771,88 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         }
     }
 
+    private void writeQueuedFrames()
+    {
+        // re-check after releasing the writer flag so that a frame queued by another thread while we were
+        // finishing up is not left behind
+        while (!_outputQueue.isEmpty() && _outputWriterActive.compareAndSet(false, true))
+        {
+            _outputWriterThread = Thread.currentThread();
+            try
+            {
+                AMQFrame<FrameBody> frame;
+                while ((frame = _outputQueue.poll()) != null)
+                {
+                    _queuedFrameCount.decrementAndGet();
+                    if (frame == END_OF_OUTPUT)
+                    {
+                        if (!_outputEnded)
+                        {
+                            _outputEnded = true;
+                            _frameOutputHandler.close();
+                        }
+                    }
+                    else if (!_outputEnded)
+                    {
+                        _frameOutputHandler.send(frame);
+                    }
+                }
+            }
+            finally
+            {
+                _outputWriterThread = null;
+                _outputWriterActive.set(false);
+                if (_waitingSenderCount.get() != 0)
+                {
+                    synchronized (_outputDrained)
+                    {
+                        _outputDrained.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks a sender while more than the high water mark of frames are queued and another thread is writing them,
+     * restoring the back pressure of writing the frame directly.  The writing thread itself is never blocked.
+     */
+    private void waitForQueuedFrames()
+    {
+        while (_queuedFrameCount.get() > OUTPUT_QUEUE_HIGH_WATER_MARK
+               && !_outputEnded
+               && _outputWriterThread != Thread.currentThread())
+        {
+            synchronized (_outputDrained)
+            {
+                _waitingSenderCount.incrementAndGet();
+                try
+                {
+                    if (_outputWriterActive.get() && _queuedFrameCount.get() > OUTPUT_QUEUE_HIGH_WATER_MARK)
+                    {
+                        _outputDrained.wait();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                finally
+                {
+                    _waitingSenderCount.decrementAndGet();
+                }
+            }
+            writeQueuedFrames();
+        }
+    }
+
     public void invalidHeaderReceived()
     {
         setClosedForInput(true);
     }
 
-    public synchronized boolean closedForInput()
+    public boolean closedForInput()
     {
         return _closedForInput;
     }
@@ -792,7 +918,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         _logger = logger;
     }
 
-    public synchronized void receive(final short channel, final Object frame)
+    public void receive(final short channel, final Object frame)
     {
         if (_logger.isEnabled())
         {
@@ -817,9 +943,10 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     {
         _closedForOutput = closed;
         notifyAll();
+        notifySessions();
     }
 
-    public synchronized boolean closedForOutput()
+    public boolean closedForOutput()
     {
         return _closedForOutput;
     }
@@ -830,7 +957,7 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
         return this;
     }
 
-    public synchronized long getIdleTimeout()
+    public long getIdleTimeout()
     {
         return _idleTimeout;
     }
@@ -1198,14 +1325,19 @@ public class ConnectionEndpoint implements DescribedTypeConstructorRegistry.Sour
     }
 
     public void waitUntil(Predicate predicate, long timeout) throws InterruptedException, TimeoutException
+    {
+        waitUntil(getLock(), predicate, timeout);
+    }
+
+    static void waitUntil(Object lock, Predicate predicate, long timeout) throws InterruptedException, TimeoutException
     {
         long endTime = System.currentTimeMillis() + timeout;
 
-        synchronized (getLock())
+        synchronized (lock)
         {
             while (!predicate.isSatisfied())
             {
-                getLock().wait(timeout);
+                lock.wait(timeout);
 
                 if (!predicate.isSatisfied())
                 {
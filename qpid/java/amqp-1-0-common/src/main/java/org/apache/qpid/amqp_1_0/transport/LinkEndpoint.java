@@ -239,6 +239,14 @@ public abstract class LinkEndpoint<T extends LinkEventListener>
 
     }
 
+    public void deliveryStatesProcessed()
+    {
+        if(_deliveryStateHandler instanceof BatchedDeliveryStateHandler)
+        {
+            ((BatchedDeliveryStateHandler) _deliveryStateHandler).deliveryStatesProcessed();
+        }
+    }
+
     public void settle(final Binary deliveryTag)
     {
         Delivery delivery = _unsettledTransfers.remove(deliveryTag);
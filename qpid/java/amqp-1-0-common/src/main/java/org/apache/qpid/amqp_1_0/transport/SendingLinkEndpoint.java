@@ -28,6 +28,7 @@ import org.apache.qpid.amqp_1_0.type.transport.Role;
 import org.apache.qpid.amqp_1_0.type.transport.Transfer;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class SendingLinkEndpoint extends LinkEndpoint<SendingLinkListener>
@@ -214,6 +215,41 @@ public class SendingLinkEndpoint extends LinkEndpoint<SendingLinkListener>
         }
     }
 
+    /**
+     * Updates the disposition of a number of deliveries to the same state, sending a single disposition for each
+     * run of consecutive delivery ids rather than one per delivery.
+     */
+    public void updateDispositions(final List<Binary> deliveryTags, DeliveryState state, boolean settled)
+    {
+        synchronized(getLock())
+        {
+            UnsignedInteger first = null;
+            UnsignedInteger last = null;
+            for(Binary deliveryTag : deliveryTags)
+            {
+                UnsignedInteger deliveryId;
+                if(settled && (deliveryId = _unsettledMap.remove(deliveryTag))!=null)
+                {
+                    settle(deliveryTag);
+                    if(first == null)
+                    {
+                        first = deliveryId;
+                    }
+                    else if(!deliveryId.equals(last.add(UnsignedInteger.ONE)))
+                    {
+                        getSession().updateDisposition(getRole(), first, last, state, settled);
+                        first = deliveryId;
+                    }
+                    last = deliveryId;
+                }
+            }
+            if(first != null)
+            {
+                getSession().updateDisposition(getRole(), first, last, state, settled);
+            }
+        }
+    }
+
     public Binary getTransactionId()
     {
         return _transactionId;
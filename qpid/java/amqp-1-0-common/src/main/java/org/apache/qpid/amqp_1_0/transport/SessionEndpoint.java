@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
@@ -56,7 +57,11 @@ import org.apache.qpid.amqp_1_0.type.transport.Transfer;
 
 public class SessionEndpoint
 {
-    private SessionState _state = SessionState.INACTIVE;
+    // guards all session and link state; independent of the connection lock so that sessions sharing a
+    // connection can make progress concurrently
+    private final Object _lock = new Object();
+
+    private volatile SessionState _state = SessionState.INACTIVE;
 
     private final Map<String, LinkEndpoint> _linkMap = new HashMap<String, LinkEndpoint>();
     private final Map<LinkEndpoint, UnsignedInteger> _localLinkEndpoints = new HashMap<LinkEndpoint, UnsignedInteger>();
@@ -269,50 +274,58 @@ public class SessionEndpoint
 
     public void receiveAttach(final Attach attach)
     {
-        if(_state == SessionState.ACTIVE)
+        synchronized(getLock())
         {
-            UnsignedInteger handle = attach.getHandle();
-            if(_remoteLinkEndpoints.containsKey(handle))
+            if(_state == SessionState.ACTIVE)
             {
-                // TODO - Error - handle busy?
+                receiveAttachWhenActive(attach);
             }
-            else
+        }
+    }
+
+    private void receiveAttachWhenActive(final Attach attach)
+    {
+        UnsignedInteger handle = attach.getHandle();
+        if(_remoteLinkEndpoints.containsKey(handle))
+        {
+            // TODO - Error - handle busy?
+        }
+        else
+        {
+            LinkEndpoint endpoint = getLinkMap().get(attach.getName());
+            if(endpoint == null)
             {
-                LinkEndpoint endpoint = getLinkMap().get(attach.getName());
-                if(endpoint == null)
-                {
-                    endpoint = attach.getRole() == Role.RECEIVER
-                               ? new SendingLinkEndpoint(this, attach)
-                               : new ReceivingLinkEndpoint(this, attach);
+                endpoint = attach.getRole() == Role.RECEIVER
+                           ? new SendingLinkEndpoint(this, attach)
+                           : new ReceivingLinkEndpoint(this, attach);
 
-                    // TODO : fix below - distinguish between local and remote owned
-                    endpoint.setSource(attach.getSource());
-                    endpoint.setTarget(attach.getTarget());
+                // TODO : fix below - distinguish between local and remote owned
+                endpoint.setSource(attach.getSource());
+                endpoint.setTarget(attach.getTarget());
 
 
-                }
+            }
 
-                if(attach.getRole() == Role.SENDER)
-                {
-                    endpoint.setDeliveryCount(attach.getInitialDeliveryCount());
-                }
+            if(attach.getRole() == Role.SENDER)
+            {
+                endpoint.setDeliveryCount(attach.getInitialDeliveryCount());
+            }
 
-                _remoteLinkEndpoints.put(handle, endpoint);
+            _remoteLinkEndpoints.put(handle, endpoint);
 
-                if(!_localLinkEndpoints.containsKey(endpoint))
-                {
-                    UnsignedInteger localHandle = findNextAvailableHandle();
-                    endpoint.setLocalHandle(localHandle);
-                    _localLinkEndpoints.put(endpoint, localHandle);
+            if(!_localLinkEndpoints.containsKey(endpoint))
+            {
+                UnsignedInteger localHandle = findNextAvailableHandle();
+                endpoint.setLocalHandle(localHandle);
+                _localLinkEndpoints.put(endpoint, localHandle);
 
-                    _sessionEventListener.remoteLinkCreation(endpoint);
+                _sessionEventListener.remoteLinkCreation(endpoint);
 
 
-                }
-                else
-                {
-                    endpoint.receiveAttach(attach);
-                }
+            }
+            else
+            {
+                endpoint.receiveAttach(attach);
             }
         }
     }
@@ -345,8 +358,11 @@ public class SessionEndpoint
 
     public void receiveDetach(final Detach detach)
     {
-        UnsignedInteger handle = detach.getHandle();
-        detach(handle, detach);
+        synchronized(getLock())
+        {
+            UnsignedInteger handle = detach.getHandle();
+            detach(handle, detach);
+        }
     }
 
     private void detach(UnsignedInteger handle, Detach detach)
@@ -485,6 +501,14 @@ public class SessionEndpoint
     }
 
     public void receiveDisposition(final Disposition disposition)
+    {
+        synchronized(getLock())
+        {
+            processDisposition(disposition);
+        }
+    }
+
+    private void processDisposition(final Disposition disposition)
     {
         Role dispositionRole = disposition.getRole();
 
@@ -508,18 +532,28 @@ public class SessionEndpoint
         }
 
 
+                List<LinkEndpoint> endpoints = new ArrayList<LinkEndpoint>(1);
                 while(deliveryId.compareTo(last)<=0)
                 {
 
                     Delivery delivery = unsettledTransfers.get(deliveryId);
                     if(delivery != null)
                     {
-                        delivery.getLinkEndpoint().receiveDeliveryState(delivery,
-                                                                   disposition.getState(),
-                                                                   disposition.getSettled());
+                        final LinkEndpoint endpoint = delivery.getLinkEndpoint();
+                        endpoint.receiveDeliveryState(delivery,
+                                                      disposition.getState(),
+                                                      disposition.getSettled());
+                        if(!endpoints.contains(endpoint))
+                        {
+                            endpoints.add(endpoint);
+                        }
                     }
                     deliveryId = deliveryId.add(UnsignedInteger.ONE);
                 }
+                for(LinkEndpoint endpoint : endpoints)
+                {
+                    endpoint.deliveryStatesProcessed();
+                }
                 if(disposition.getSettled())
                 {
                     checkSendFlow();
@@ -657,7 +691,7 @@ public class SessionEndpoint
 
     public Object getLock()
     {
-        return _connection.getLock();
+        return _lock;
     }
 
 
@@ -668,12 +702,12 @@ public class SessionEndpoint
 
     public void waitUntil(Predicate predicate) throws TimeoutException, InterruptedException
     {
-        _connection.waitUntil(predicate);
+        waitUntil(predicate, getSyncTimeout());
     }
 
     public void waitUntil(Predicate predicate, long timeout) throws TimeoutException, InterruptedException
     {
-        _connection.waitUntil(predicate, timeout);
+        ConnectionEndpoint.waitUntil(getLock(), predicate, timeout);
     }
 
 
@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.qpid.amqp_1_0.codec.*;
 import org.apache.qpid.amqp_1_0.type.RestrictedType;
@@ -295,7 +296,7 @@ public class AMQPDescribedTypeRegistry implements DescribedTypeConstructorRegist
     }
 
 
-    private final Map<Class, ValueWriter.Factory> _writerMap = new HashMap<Class, ValueWriter.Factory>();
+    private final Map<Class, ValueWriter.Factory> _writerMap = new ConcurrentHashMap<Class, ValueWriter.Factory>();
 
     public <V extends Object> ValueWriter<V> getValueWriter(V value, Map<Class, ValueWriter> localCache)
     {
@@ -46,6 +46,7 @@ import org.apache.qpid.server.model.VirtualHostNode;
 import org.apache.qpid.server.protocol.AMQConnectionModel;
 import org.apache.qpid.server.protocol.LinkRegistry;
 import org.apache.qpid.server.queue.AMQQueue;
+import org.apache.qpid.server.queue.QueueRunnerScheduler;
 import org.apache.qpid.server.stats.StatisticsCounter;
 import org.apache.qpid.server.store.DurableConfigurationStore;
 import org.apache.qpid.server.store.MessageStore;
@@ -254,6 +255,24 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         return 0;
     }
 
+    @Override
+    public long getQueueRunnerRunQueueLength()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getDirectContentReservedBytes()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getDirectContentAllocatedBytes()
+    {
+        return 0;
+    }
+
     @Override
     public Collection<VirtualHostAlias> getAliases()
     {
@@ -385,6 +404,12 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         return 0;
     }
 
+    @Override
+    public QueueRunnerScheduler getQueueRunnerScheduler()
+    {
+        return null;
+    }
+
     @Override
     public DtxRegistry getDtxRegistry()
     {
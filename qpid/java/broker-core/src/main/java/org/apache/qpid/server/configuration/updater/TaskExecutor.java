@@ -43,4 +43,9 @@ public interface TaskExecutor
 
     <T> Future<T> submit(Task<T> task) throws CancellationException;
 
+    /**
+     * @return true if tasks submitted from the calling thread are executed immediately rather than queued
+     */
+    boolean isTaskExecutorThread();
+
 }
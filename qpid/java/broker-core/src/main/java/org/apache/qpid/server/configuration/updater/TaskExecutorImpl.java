@@ -277,7 +277,8 @@ public class TaskExecutorImpl implements TaskExecutor
         }
     }
 
-    private boolean isTaskExecutorThread()
+    @Override
+    public boolean isTaskExecutorThread()
     {
         return Thread.currentThread() == _taskThread;
     }
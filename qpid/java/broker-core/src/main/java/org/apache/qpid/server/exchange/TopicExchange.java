@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
@@ -60,6 +61,10 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
 
     private final Map<BindingImpl, Map<String,Object>> _bindings = new HashMap<BindingImpl, Map<String,Object>>();
 
+    private final Map<AMQQueue, Set<BindingImpl>> _queueBindings = new HashMap<AMQQueue, Set<BindingImpl>>();
+    private final Map<AMQQueue, TopicExchangeResult> _topicLogSubscriptions =
+            new HashMap<AMQQueue, TopicExchangeResult>();
+
     @ManagedObjectFactoryConstructor
     public TopicExchange(final Map<String,Object> attributes, final VirtualHostImpl vhost)
     {
@@ -120,6 +125,7 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
                     }
                 }
 
+                updateTopicLogSubscription(queue);
             }
         }
         catch (AMQInvalidArgumentException e)
@@ -188,7 +194,7 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
             TopicExchangeResult result = _topicExchangeResults.get(routingKey);
             if(result == null)
             {
-                result = new TopicExchangeResult();
+                result = new TopicExchangeResult(getName() + "/" + routingKey);
                 if(FilterSupport.argumentsContainFilter(args))
                 {
                     result.addFilteredQueue(queue, FilterSupport.createMessageFilter(args, queue));
@@ -214,8 +220,49 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
 
             result.addBinding(binding);
             _bindings.put(binding, args);
+
+            Set<BindingImpl> queueBindings = _queueBindings.get(queue);
+            if(queueBindings == null)
+            {
+                queueBindings = new HashSet<BindingImpl>();
+                _queueBindings.put(queue, queueBindings);
+            }
+            queueBindings.add(binding);
         }
 
+        updateTopicLogSubscription(queue);
+    }
+
+    /**
+     * Moves a queue onto the topic log of its binding key when it has a single, unfiltered, binding to this
+     * exchange, and off it again otherwise.
+     */
+    private void updateTopicLogSubscription(final AMQQueue queue)
+    {
+        TopicExchangeResult target = null;
+        Set<BindingImpl> queueBindings = _queueBindings.get(queue);
+        if(queueBindings != null && queueBindings.size() == 1)
+        {
+            BindingImpl binding = queueBindings.iterator().next();
+            if(!FilterSupport.argumentsContainFilter(_bindings.get(binding)))
+            {
+                target = _topicExchangeResults.get(TopicNormalizer.normalize(binding.getBindingKey()));
+            }
+        }
+
+        TopicExchangeResult current = _topicLogSubscriptions.get(queue);
+        if(current != target)
+        {
+            if(current != null)
+            {
+                _topicLogSubscriptions.remove(queue);
+                current.unsubscribeFromTopicLog(queue);
+            }
+            if(target != null && target.subscribeToTopicLog(queue))
+            {
+                _topicLogSubscriptions.put(queue, target);
+            }
+        }
     }
 
     @Override
@@ -228,7 +275,7 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
                                           ? ""
                                           : routingAddress;
 
-        final Collection<AMQQueue> matchedQueues =
+        final Collection<BaseQueue> matchedQueues =
                 getMatchedQueues(Filterable.Factory.newInstance(payload,instanceProperties), routingKey);
 
         ArrayList<BaseQueue> queues;
@@ -268,6 +315,18 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
 
             result.removeBinding(binding);
 
+            AMQQueue queue = binding.getAMQQueue();
+            Set<BindingImpl> queueBindings = _queueBindings.get(queue);
+            if(queueBindings != null)
+            {
+                queueBindings.remove(binding);
+                if(queueBindings.isEmpty())
+                {
+                    _queueBindings.remove(queue);
+                }
+            }
+            updateTopicLogSubscription(queue);
+
             if(FilterSupport.argumentsContainFilter(bindingArgs))
             {
                 try
@@ -292,7 +351,7 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
         }
     }
 
-    private Collection<AMQQueue> getMatchedQueues(Filterable message, String routingKey)
+    private Collection<BaseQueue> getMatchedQueues(Filterable message, String routingKey)
     {
 
         Collection<TopicMatcherResult> results = _parser.parse(routingKey);
@@ -305,7 +364,7 @@ public class TopicExchange extends AbstractExchange<TopicExchange>
                 results.toArray(resultQueues);
                 return ((TopicExchangeResult)resultQueues[0]).processMessage(message, null);
             default:
-                Collection<AMQQueue> queues = new HashSet<AMQQueue>();
+                Collection<BaseQueue> queues = new HashSet<BaseQueue>();
                 for(TopicMatcherResult result : results)
                 {
                     TopicExchangeResult res = (TopicExchangeResult)result;
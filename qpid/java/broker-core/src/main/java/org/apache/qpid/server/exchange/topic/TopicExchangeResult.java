@@ -34,13 +34,24 @@ import org.apache.qpid.server.binding.BindingImpl;
 import org.apache.qpid.server.filter.Filterable;
 import org.apache.qpid.server.filter.MessageFilter;
 import org.apache.qpid.server.queue.AMQQueue;
+import org.apache.qpid.server.queue.BaseQueue;
+import org.apache.qpid.server.queue.TopicLog;
 
 public final class TopicExchangeResult implements TopicMatcherResult
 {
     private final List<BindingImpl> _bindings = new CopyOnWriteArrayList<BindingImpl>();
     private final Map<AMQQueue, Integer> _unfilteredQueues = new ConcurrentHashMap<AMQQueue, Integer>();
     private final ConcurrentMap<AMQQueue, Map<MessageFilter,Integer>> _filteredQueues = new ConcurrentHashMap<AMQQueue, Map<MessageFilter, Integer>>();
-    private volatile ArrayList<AMQQueue> _unfilteredQueueList = new ArrayList<AMQQueue>(0);
+    private volatile ArrayList<BaseQueue> _unfilteredQueueList = new ArrayList<BaseQueue>(0);
+
+    private final String _name;
+    private final Set<AMQQueue> _topicLogQueues = new HashSet<AMQQueue>();
+    private TopicLog _topicLog;
+
+    public TopicExchangeResult(final String name)
+    {
+        _name = name;
+    }
 
     public void addUnfilteredQueue(AMQQueue queue)
     {
@@ -48,7 +59,7 @@ public final class TopicExchangeResult implements TopicMatcherResult
         if(instances == null)
         {
             _unfilteredQueues.put(queue, 1);
-            ArrayList<AMQQueue> newList = new ArrayList<AMQQueue>(_unfilteredQueueList);
+            ArrayList<BaseQueue> newList = new ArrayList<BaseQueue>(_unfilteredQueueList);
             newList.add(queue);
             _unfilteredQueueList = newList;
         }
@@ -63,8 +74,9 @@ public final class TopicExchangeResult implements TopicMatcherResult
         Integer instances = _unfilteredQueues.get(queue);
         if(instances == 1)
         {
+            unsubscribeFromTopicLog(queue);
             _unfilteredQueues.remove(queue);
-            ArrayList<AMQQueue> newList = new ArrayList<AMQQueue>(_unfilteredQueueList);
+            ArrayList<BaseQueue> newList = new ArrayList<BaseQueue>(_unfilteredQueueList);
             newList.remove(queue);
             _unfilteredQueueList = newList;
 
@@ -81,6 +93,60 @@ public final class TopicExchangeResult implements TopicMatcherResult
         return _unfilteredQueues.keySet();
     }
 
+    /**
+     * Moves an unfiltered queue onto the topic log for this binding key, so that messages are appended to the log
+     * once rather than enqueued on each subscribed queue.
+     *
+     * @return true if the queue now takes its messages from the topic log
+     */
+    public boolean subscribeToTopicLog(AMQQueue queue)
+    {
+        if(_topicLogQueues.contains(queue))
+        {
+            return true;
+        }
+        else if(_unfilteredQueues.containsKey(queue))
+        {
+            if(_topicLog == null)
+            {
+                _topicLog = new TopicLog(_name);
+            }
+            if(queue.subscribeToTopicLog(_topicLog))
+            {
+                _topicLogQueues.add(queue);
+                updateUnfilteredQueueList();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void unsubscribeFromTopicLog(AMQQueue queue)
+    {
+        if(_topicLogQueues.remove(queue))
+        {
+            queue.unsubscribeFromTopicLog(_topicLog);
+            updateUnfilteredQueueList();
+        }
+    }
+
+    private void updateUnfilteredQueueList()
+    {
+        ArrayList<BaseQueue> newList = new ArrayList<BaseQueue>(_unfilteredQueues.size());
+        for(AMQQueue queue : _unfilteredQueues.keySet())
+        {
+            if(!_topicLogQueues.contains(queue))
+            {
+                newList.add(queue);
+            }
+        }
+        if(_topicLog != null && _topicLog.hasSubscribers())
+        {
+            newList.add(_topicLog.getRoute());
+        }
+        _unfilteredQueueList = newList;
+    }
+
     public void addBinding(BindingImpl binding)
     {
         _bindings.add(binding);
@@ -169,7 +235,7 @@ public final class TopicExchangeResult implements TopicMatcherResult
         _filteredQueues.put(queue,newFilters);
     }
 
-    public Collection<AMQQueue> processMessage(Filterable msg, Collection<AMQQueue> queues)
+    public Collection<BaseQueue> processMessage(Filterable msg, Collection<BaseQueue> queues)
     {
         if(queues == null)
         {
@@ -179,15 +245,15 @@ public final class TopicExchangeResult implements TopicMatcherResult
             }
             else
             {
-                queues = new HashSet<AMQQueue>();
+                queues = new HashSet<BaseQueue>();
             }
         }
         else if(!(queues instanceof Set))
         {
-            queues = new HashSet<AMQQueue>(queues);
+            queues = new HashSet<BaseQueue>(queues);
         }
 
-        queues.addAll(_unfilteredQueues.keySet());
+        queues.addAll(_unfilteredQueueList);
         if(!_filteredQueues.isEmpty())
         {
             for(Map.Entry<AMQQueue, Map<MessageFilter, Integer>> entry : _filteredQueues.entrySet())
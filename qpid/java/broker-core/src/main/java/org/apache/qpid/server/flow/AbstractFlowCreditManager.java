@@ -22,6 +22,7 @@ package org.apache.qpid.server.flow;
 
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class AbstractFlowCreditManager implements FlowCreditManager
 {
@@ -61,9 +62,33 @@ public abstract class AbstractFlowCreditManager implements FlowCreditManager
 
     protected final void setSuspended(final boolean suspended)
     {
-        if(_suspended.compareAndSet(!suspended, suspended))
+        if(_suspended.get() != suspended)
         {
-            notifyListeners(suspended);
+            // the change and its notification are made together so that listeners see changes in order
+            synchronized (_listeners)
+            {
+                if(_suspended.compareAndSet(!suspended, suspended))
+                {
+                    notifyListeners(suspended);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the suspended state decided from an observed credit state.  Credit may be changed by other threads
+     * between the decision and the notification, so if the credit state has moved on the suspended state is
+     * recalculated from the current credit, ensuring that the last notification given reflects the credit held.
+     */
+    protected final <T> void setSuspended(final boolean suspended, final AtomicReference<T> credit, final T observed)
+    {
+        setSuspended(suspended);
+        T previous = observed;
+        T current;
+        while((current = credit.get()) != previous)
+        {
+            previous = current;
+            setSuspended(!hasCredit());
         }
     }
 
@@ -21,70 +21,97 @@
 package org.apache.qpid.server.flow;
 
 
+import java.util.concurrent.atomic.AtomicReference;
+
 public class MessageAndBytesCreditManager extends AbstractFlowCreditManager implements FlowCreditManager
 {
-    private long _messageCredit;
-    private long _bytesCredit;
+    private final AtomicReference<Credit> _credit;
 
     public MessageAndBytesCreditManager(final long messageCredit, final long bytesCredit)
     {
-        _messageCredit = messageCredit;
-        _bytesCredit = bytesCredit;
+        _credit = new AtomicReference<Credit>(new Credit(messageCredit, bytesCredit));
     }
 
-    public synchronized long getMessageCredit()
+    public long getMessageCredit()
     {
-        return _messageCredit;
+        return _credit.get()._messageCredit;
     }
 
-    public synchronized long getBytesCredit()
+    public long getBytesCredit()
     {
-        return _bytesCredit;
+        return _credit.get()._bytesCredit;
     }
 
-    public synchronized void restoreCredit(long messageCredit, long bytesCredit)
-    {        
-        _messageCredit += messageCredit;
-        _bytesCredit += bytesCredit;
-        setSuspended(hasCredit());
+    public void restoreCredit(long messageCredit, long bytesCredit)
+    {
+        Credit current;
+        Credit updated;
+        do
+        {
+            current = _credit.get();
+            updated = new Credit(current._messageCredit + messageCredit, current._bytesCredit + bytesCredit);
+        }
+        while(!_credit.compareAndSet(current, updated));
+
+        setSuspended(!updated.hasCredit(), _credit, updated);
     }
 
-    public synchronized void removeAllCredit()
+    public void removeAllCredit()
     {
-        _messageCredit = 0L;
-        _bytesCredit = 0L;
-        setSuspended(true);
+        final Credit updated = new Credit(0L, 0L);
+        _credit.set(updated);
+        setSuspended(true, _credit, updated);
     }
 
-    public synchronized boolean hasCredit()
+    public boolean hasCredit()
     {
-        return (_messageCredit > 0L) && ( _bytesCredit > 0L );
+        return _credit.get().hasCredit();
     }
 
-    public synchronized boolean useCreditForMessage(final long msgSize)
+    public boolean useCreditForMessage(final long msgSize)
     {
-        if(_messageCredit == 0L)
+        while(true)
         {
-            setSuspended(true);
-            return false;
-        }
-        else
-        {
-            if(msgSize > _bytesCredit)
+            final Credit current = _credit.get();
+            if(current._messageCredit == 0L || msgSize > current._bytesCredit)
             {
-                setSuspended(true);
+                setSuspended(true, _credit, current);
                 return false;
             }
-            _messageCredit--;
-            _bytesCredit -= msgSize;
-            setSuspended(false);
-            return true;
+
+            final Credit updated = new Credit(current._messageCredit - 1, current._bytesCredit - msgSize);
+            if(_credit.compareAndSet(current, updated))
+            {
+                setSuspended(false, _credit, updated);
+                return true;
+            }
         }
-        
     }
 
-    public synchronized void setBytesCredit(long bytesCredit)
+    public void setBytesCredit(long bytesCredit)
     {
-        _bytesCredit = bytesCredit;
+        Credit current;
+        do
+        {
+            current = _credit.get();
+        }
+        while(!_credit.compareAndSet(current, new Credit(current._messageCredit, bytesCredit)));
+    }
+
+    private static final class Credit
+    {
+        private final long _messageCredit;
+        private final long _bytesCredit;
+
+        private Credit(final long messageCredit, final long bytesCredit)
+        {
+            _messageCredit = messageCredit;
+            _bytesCredit = bytesCredit;
+        }
+
+        private boolean hasCredit()
+        {
+            return (_messageCredit > 0L) && ( _bytesCredit > 0L );
+        }
     }
 }
@@ -21,172 +21,230 @@
 package org.apache.qpid.server.flow;
 
 
+import java.util.concurrent.atomic.AtomicReference;
+
 public class Pre0_10CreditManager extends AbstractFlowCreditManager implements FlowCreditManager
 {
 
-    private volatile long _bytesCreditLimit;
-    private volatile long _messageCreditLimit;
-
-    private volatile long _bytesCredit;
-    private volatile long _messageCredit;
+    private final AtomicReference<Credit> _credit;
 
     public Pre0_10CreditManager(long bytesCreditLimit, long messageCreditLimit)
     {
-        _bytesCreditLimit = bytesCreditLimit;
-        _messageCreditLimit = messageCreditLimit;
-        _bytesCredit = bytesCreditLimit;
-        _messageCredit = messageCreditLimit;
+        _credit = new AtomicReference<Credit>(new Credit(bytesCreditLimit,
+                                                         messageCreditLimit,
+                                                         bytesCreditLimit,
+                                                         messageCreditLimit));
     }
 
 
-    public synchronized void setCreditLimits(final long bytesCreditLimit, final long messageCreditLimit)
+    public void setCreditLimits(final long bytesCreditLimit, final long messageCreditLimit)
     {
-        long bytesCreditChange = bytesCreditLimit - _bytesCreditLimit;
-        long messageCreditChange = messageCreditLimit - _messageCreditLimit;
-
+        Credit current;
+        Credit updated;
+        do
+        {
+            current = _credit.get();
 
+            long bytesCredit = current._bytesCredit;
+            long messageCredit = current._messageCredit;
+            long bytesCreditChange = bytesCreditLimit - current._bytesCreditLimit;
+            long messageCreditChange = messageCreditLimit - current._messageCreditLimit;
 
-        if(bytesCreditChange != 0L)
-        {
-            if(bytesCreditLimit == 0L)
+            if(bytesCreditChange != 0L)
             {
-                _bytesCredit = 0;
-            }
-            else
-            {
-                _bytesCredit += bytesCreditChange;
+                if(bytesCreditLimit == 0L)
+                {
+                    bytesCredit = 0;
+                }
+                else
+                {
+                    bytesCredit += bytesCreditChange;
+                }
             }
-        }
 
 
-        if(messageCreditChange != 0L)
-        {
-            if(messageCreditLimit == 0L)
+            if(messageCreditChange != 0L)
             {
-                _messageCredit = 0;
-            }
-            else
-            {
-                _messageCredit += messageCreditChange;
+                if(messageCreditLimit == 0L)
+                {
+                    messageCredit = 0;
+                }
+                else
+                {
+                    messageCredit += messageCreditChange;
+                }
             }
-        }
 
+            updated = new Credit(bytesCreditLimit, messageCreditLimit, bytesCredit, messageCredit);
+        }
+        while(!_credit.compareAndSet(current, updated));
 
-        _bytesCreditLimit = bytesCreditLimit;
-        _messageCreditLimit = messageCreditLimit;
-
-        setSuspended(!hasCredit());
+        setSuspended(!updated.hasCredit(), _credit, updated);
 
     }
 
 
     public long getMessageCredit()
     {
-        return _messageCredit;
+        return _credit.get()._messageCredit;
     }
 
     public long getBytesCredit()
     {
-        return _bytesCredit;
+        return _credit.get()._bytesCredit;
     }
 
-    public synchronized void restoreCredit(final long messageCredit, final long bytesCredit)
+    public void restoreCredit(final long messageCredit, final long bytesCredit)
     {
-        final long messageCreditLimit = _messageCreditLimit;
-        boolean notifyIncrease = true;
-        if(messageCreditLimit != 0L)
+        Credit current;
+        Credit updated;
+        boolean notifyIncrease;
+        do
         {
-            notifyIncrease = (_messageCredit != 0);
-            long newCredit = _messageCredit + messageCredit;
-            _messageCredit = newCredit > messageCreditLimit ? messageCreditLimit : newCredit;
-        }
+            current = _credit.get();
+            notifyIncrease = true;
 
+            long newMessageCredit = current._messageCredit;
+            final long messageCreditLimit = current._messageCreditLimit;
+            if(messageCreditLimit != 0L)
+            {
+                notifyIncrease = (current._messageCredit != 0);
+                long newCredit = current._messageCredit + messageCredit;
+                newMessageCredit = newCredit > messageCreditLimit ? messageCreditLimit : newCredit;
+            }
 
-        final long bytesCreditLimit = _bytesCreditLimit;
-        if(bytesCreditLimit != 0L)
-        {
-            long newCredit = _bytesCredit + bytesCredit;
-            _bytesCredit = newCredit > bytesCreditLimit ? bytesCreditLimit : newCredit;
-            if(notifyIncrease && bytesCredit>0)
+            long newBytesCredit = current._bytesCredit;
+            final long bytesCreditLimit = current._bytesCreditLimit;
+            if(bytesCreditLimit != 0L)
             {
-                notifyIncreaseBytesCredit();
+                long newCredit = current._bytesCredit + bytesCredit;
+                newBytesCredit = newCredit > bytesCreditLimit ? bytesCreditLimit : newCredit;
+                notifyIncrease = notifyIncrease && bytesCredit>0;
+            }
+            else
+            {
+                notifyIncrease = false;
             }
-        }
 
+            updated = new Credit(bytesCreditLimit, messageCreditLimit, newBytesCredit, newMessageCredit);
+        }
+        while(!_credit.compareAndSet(current, updated));
 
+        if(notifyIncrease)
+        {
+            notifyIncreaseBytesCredit();
+        }
 
-        setSuspended(!hasCredit());
+        setSuspended(!updated.hasCredit(), _credit, updated);
 
     }
 
-    public synchronized void removeAllCredit()
+    public void removeAllCredit()
     {
-        _bytesCredit = 0L;
-        _messageCredit = 0L;
-        setSuspended(!hasCredit());
+        Credit current;
+        Credit updated;
+        do
+        {
+            current = _credit.get();
+            updated = new Credit(current._bytesCreditLimit, current._messageCreditLimit, 0L, 0L);
+        }
+        while(!_credit.compareAndSet(current, updated));
+
+        setSuspended(!updated.hasCredit(), _credit, updated);
     }
 
-    public synchronized boolean hasCredit()
+    public boolean hasCredit()
     {
-        return (_bytesCreditLimit == 0L || _bytesCredit > 0)
-                && (_messageCreditLimit == 0L || _messageCredit > 0);
+        return _credit.get().hasCredit();
     }
 
-    public synchronized boolean useCreditForMessage(final long msgSize)
+    public boolean useCreditForMessage(final long msgSize)
     {
-        if(_messageCreditLimit != 0L)
+        while(true)
         {
-            if(_messageCredit != 0L)
+            final Credit current = _credit.get();
+            final Credit updated;
+            if(current._messageCreditLimit != 0L)
             {
-                if(_bytesCreditLimit == 0L)
-                {
-                    _messageCredit--;
-
-                    return true;
-                }
-                else
+                if(current._messageCredit != 0L)
                 {
-                    if((_bytesCredit >= msgSize) || (_bytesCredit == _bytesCreditLimit))
+                    if(current._bytesCreditLimit == 0L)
                     {
-                        _messageCredit--;
-                        _bytesCredit -= msgSize;
-
-                        return true;
+                        updated = new Credit(current._bytesCreditLimit,
+                                             current._messageCreditLimit,
+                                             current._bytesCredit,
+                                             current._messageCredit - 1);
+                    }
+                    else if((current._bytesCredit >= msgSize) || (current._bytesCredit == current._bytesCreditLimit))
+                    {
+                        updated = new Credit(current._bytesCreditLimit,
+                                             current._messageCreditLimit,
+                                             current._bytesCredit - msgSize,
+                                             current._messageCredit - 1);
                     }
                     else
                     {
                         return false;
                     }
                 }
+                else
+                {
+                    setSuspended(true, _credit, current);
+                    return false;
+                }
             }
             else
             {
-                setSuspended(true);
-                return false;
-            }
-        }
-        else
-        {
-            if(_bytesCreditLimit == 0L)
-            {
-
-                return true;
-            }
-            else
-            {
-                if((_bytesCredit >= msgSize) || (_bytesCredit == _bytesCreditLimit))
+                if(current._bytesCreditLimit == 0L)
                 {
-                    _bytesCredit -= msgSize;
-
                     return true;
                 }
+                else if((current._bytesCredit >= msgSize) || (current._bytesCredit == current._bytesCreditLimit))
+                {
+                    updated = new Credit(current._bytesCreditLimit,
+                                         current._messageCreditLimit,
+                                         current._bytesCredit - msgSize,
+                                         current._messageCredit);
+                }
                 else
                 {
                     return false;
                 }
             }
 
+            if(_credit.compareAndSet(current, updated))
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of the credit limits and the credit remaining, replaced as a whole so that the
+     * message and bytes credit are always updated together.
+     */
+    private static final class Credit
+    {
+        private final long _bytesCreditLimit;
+        private final long _messageCreditLimit;
+        private final long _bytesCredit;
+        private final long _messageCredit;
+
+        private Credit(final long bytesCreditLimit,
+                       final long messageCreditLimit,
+                       final long bytesCredit,
+                       final long messageCredit)
+        {
+            _bytesCreditLimit = bytesCreditLimit;
+            _messageCreditLimit = messageCreditLimit;
+            _bytesCredit = bytesCredit;
+            _messageCredit = messageCredit;
         }
 
+        private boolean hasCredit()
+        {
+            return (_bytesCreditLimit == 0L || _bytesCredit > 0)
+                    && (_messageCreditLimit == 0L || _messageCredit > 0);
+        }
     }
 }
@@ -60,6 +60,7 @@ public class BrokerMessages
     public static final String STARTUP_LOG_HIERARCHY = DEFAULT_LOG_HIERARCHY_PREFIX + "broker.startup";
     public static final String FATAL_ERROR_LOG_HIERARCHY = DEFAULT_LOG_HIERARCHY_PREFIX + "broker.fatal_error";
     public static final String READY_LOG_HIERARCHY = DEFAULT_LOG_HIERARCHY_PREFIX + "broker.ready";
+    public static final String STARTUP_PHASE_LOG_HIERARCHY = DEFAULT_LOG_HIERARCHY_PREFIX + "broker.startup_phase";
 
     static
     {
@@ -80,6 +81,7 @@ public class BrokerMessages
         Logger.getLogger(STARTUP_LOG_HIERARCHY);
         Logger.getLogger(FATAL_ERROR_LOG_HIERARCHY);
         Logger.getLogger(READY_LOG_HIERARCHY);
+        Logger.getLogger(STARTUP_PHASE_LOG_HIERARCHY);
 
         _messages = ResourceBundle.getBundle("org.apache.qpid.server.logging.messages.Broker_logmessages", _currentLocale);
     }
@@ -586,6 +588,38 @@ public class BrokerMessages
         };
     }
 
+    /**
+     * Log a Broker message of the Format:
+     * <pre>BRK-1018 : Startup phase : {0} : {1,number,#} ms</pre>
+     * Optional values are contained in [square brackets] and are numbered
+     * sequentially in the method call.
+     *
+     */
+    public static LogMessage STARTUP_PHASE(String param1, Number param2)
+    {
+        String rawMessage = _messages.getString("STARTUP_PHASE");
+
+        final Object[] messageArguments = {param1, param2};
+        // Create a new MessageFormat to ensure thread safety.
+        // Sharing a MessageFormat and using applyPattern is not thread safe
+        MessageFormat formatter = new MessageFormat(rawMessage, _currentLocale);
+
+        final String message = formatter.format(messageArguments);
+
+        return new LogMessage()
+        {
+            public String toString()
+            {
+                return message;
+            }
+
+            public String getLogHierarchy()
+            {
+                return STARTUP_PHASE_LOG_HIERARCHY;
+            }
+        };
+    }
+
 
     private BrokerMessages()
     {
@@ -28,6 +28,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.security.AccessControlException;
+import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -43,6 +44,11 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.security.auth.Subject;
@@ -57,6 +63,7 @@ import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.SerializerProvider;
 import org.codehaus.jackson.map.module.SimpleModule;
 
+import org.apache.qpid.pool.SuppressingInheritedAccessControlContextThreadFactory;
 import org.apache.qpid.server.configuration.IllegalConfigurationException;
 import org.apache.qpid.server.configuration.updater.Task;
 import org.apache.qpid.server.configuration.updater.TaskExecutor;
@@ -168,6 +175,10 @@ public abstract class AbstractConfiguredObject<X extends ConfiguredObject<X>> im
     private boolean _openFailed;
     private volatile State _state = State.UNINITIALIZED;
 
+    private static final long CHILD_ACTIVATION_THREAD_KEEP_ALIVE_SECONDS = 60L;
+    private final Object _childActivationExecutorLock = new Object();
+    private ThreadPoolExecutor _childActivationExecutor;
+
     protected static Map<Class<? extends ConfiguredObject>, ConfiguredObject<?>> parentsMap(ConfiguredObject<?>... parents)
     {
         final Map<Class<? extends ConfiguredObject>, ConfiguredObject<?>> parentsMap =
@@ -505,6 +516,7 @@ public abstract class AbstractConfiguredObject<X extends ConfiguredObject<X>> im
             closeChildren();
             onClose();
             unregister(false);
+            shutdownChildActivationExecutor();
 
         }
     }
@@ -612,7 +624,7 @@ public abstract class AbstractConfiguredObject<X extends ConfiguredObject<X>> im
 
     private void doAttainState(final AbstractConfiguredObjectExceptionHandler exceptionHandler)
     {
-        applyToChildren(new Action<ConfiguredObject<?>>()
+        applyToChildrenConcurrently(new Action<ConfiguredObject<?>>()
         {
             @Override
             public void performAction(final ConfiguredObject<?> child)
@@ -643,7 +655,7 @@ public abstract class AbstractConfiguredObject<X extends ConfiguredObject<X>> im
         {
             onOpen();
             notifyStateChanged(State.UNINITIALIZED, getState());
-            applyToChildren(new Action<ConfiguredObject<?>>()
+            applyToChildrenConcurrently(new Action<ConfiguredObject<?>>()
             {
                 @Override
                 public void performAction(final ConfiguredObject<?> child)
@@ -767,6 +779,154 @@ public abstract class AbstractConfiguredObject<X extends ConfiguredObject<X>> im
         }
     }
 
+    /**
+     * Returns the number of threads on which the children of the given category may be opened and brought to their
+     * desired state concurrently.  Every child of one category is handled before any child of the next, so children
+     * may still depend on those of the categories preceding their own.
+     */
+    protected int getChildActivationThreadCount(Class<? extends ConfiguredObject> childClass)
+    {
+        return 1;
+    }
+
+    private void applyToChildrenConcurrently(final Action<ConfiguredObject<?>> action)
+    {
+        for (Class<? extends ConfiguredObject> childClass : getModel().getChildTypes(getCategoryClass()))
+        {
+            Collection<? extends ConfiguredObject> children = getChildren(childClass);
+            if (children != null)
+            {
+                final List<ConfiguredObject<?>> childList = new ArrayList<>(children.size());
+                for (ConfiguredObject<?> child : children)
+                {
+                    childList.add(child);
+                }
+                int threadCount = Math.min(getChildActivationThreadCount(childClass), childList.size());
+
+                // tasks run by the children on the configuration thread would deadlock were it to wait for them
+                if (threadCount > 1 && !_taskExecutor.isTaskExecutorThread())
+                {
+                    applyConcurrently(childList, action, threadCount);
+                }
+                else
+                {
+                    for (ConfiguredObject<?> child : childList)
+                    {
+                        action.performAction(child);
+                    }
+                }
+            }
+        }
+    }
+
+    private void applyConcurrently(final List<ConfiguredObject<?>> children,
+                                   final Action<ConfiguredObject<?>> action,
+                                   final int threadCount)
+    {
+        final Subject subject = Subject.getSubject(AccessController.getContext());
+        final ThreadPoolExecutor executor = getChildActivationExecutor(threadCount);
+        final List<Future<?>> futures = new ArrayList<>(children.size());
+        for (final ConfiguredObject<?> child : children)
+        {
+            futures.add(executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    Subject.doAs(subject, new PrivilegedAction<Void>()
+                    {
+                        @Override
+                        public Void run()
+                        {
+                            action.performAction(child);
+                            return null;
+                        }
+                    });
+                }
+            }));
+        }
+
+        // wait for every child, then report the first failure in child order as a sequential pass would have
+        Throwable failure = null;
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                if (failure == null)
+                {
+                    failure = e.getCause();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new ServerScopedRuntimeException("Interrupted whilst activating the children of " + this, e);
+            }
+        }
+
+        if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException) failure;
+        }
+        else if (failure instanceof Error)
+        {
+            throw (Error) failure;
+        }
+        else if (failure != null)
+        {
+            throw new ServerScopedRuntimeException("Failed to activate the children of " + this, failure);
+        }
+    }
+
+    /**
+     * Returns the pool on which children are activated, sized to the given thread count.  The pool is kept for the
+     * life of this object, although its threads exit when idle, so that activating again does not create a new one.
+     */
+    private ThreadPoolExecutor getChildActivationExecutor(final int threadCount)
+    {
+        synchronized (_childActivationExecutorLock)
+        {
+            if (_childActivationExecutor == null)
+            {
+                _childActivationExecutor =
+                        new ThreadPoolExecutor(threadCount,
+                                               threadCount,
+                                               CHILD_ACTIVATION_THREAD_KEEP_ALIVE_SECONDS,
+                                               TimeUnit.SECONDS,
+                                               new LinkedBlockingQueue<Runnable>(),
+                                               new SuppressingInheritedAccessControlContextThreadFactory());
+                _childActivationExecutor.allowCoreThreadTimeOut(true);
+            }
+            else if (threadCount > _childActivationExecutor.getMaximumPoolSize())
+            {
+                _childActivationExecutor.setMaximumPoolSize(threadCount);
+                _childActivationExecutor.setCorePoolSize(threadCount);
+            }
+            else if (threadCount < _childActivationExecutor.getMaximumPoolSize())
+            {
+                _childActivationExecutor.setCorePoolSize(threadCount);
+                _childActivationExecutor.setMaximumPoolSize(threadCount);
+            }
+            return _childActivationExecutor;
+        }
+    }
+
+    private void shutdownChildActivationExecutor()
+    {
+        synchronized (_childActivationExecutorLock)
+        {
+            if (_childActivationExecutor != null)
+            {
+                _childActivationExecutor.shutdown();
+                _childActivationExecutor = null;
+            }
+        }
+    }
+
     public void onValidate()
     {
         for(ConfiguredObjectAttribute<?,?> attr : _attributeTypes.values())
@@ -1449,6 +1609,7 @@ public abstract class AbstractConfiguredObject<X extends ConfiguredObject<X>> im
     protected void deleted()
     {
         unregister(true);
+        shutdownChildActivationExecutor();
     }
 
     private void unregister(boolean removed)
@@ -229,13 +229,18 @@ public abstract class AbstractSystemConfig<X extends SystemConfig<X>>
             startupLogger.message(BrokerMessages.PROCESS(SystemUtils.getProcessPid()));
         }
 
+        long startTime = System.currentTimeMillis();
         BrokerStoreUpgraderAndRecoverer upgrader = new BrokerStoreUpgraderAndRecoverer(this);
         upgrader.perform();
+        startupLogger.message(BrokerMessages.STARTUP_PHASE("Configuration recovery",
+                                                           System.currentTimeMillis() - startTime));
 
         Broker broker = getBroker();
 
         broker.setEventLogger(startupLogger);
+        startTime = System.currentTimeMillis();
         broker.open();
+        startupLogger.message(BrokerMessages.STARTUP_PHASE("Activation", System.currentTimeMillis() - startTime));
 
         if (broker.getState() == State.ACTIVE)
         {
@@ -33,6 +33,23 @@ import org.apache.qpid.server.security.auth.AuthenticationResult;
 @ManagedObject( creatable = false )
 public interface AuthenticationProvider<X extends AuthenticationProvider<X>> extends ConfiguredObject<X>
 {
+    String AUTHENTICATION_THREAD_COUNT = "qpid.auth.threadCount";
+
+    /** Number of threads on which connection authentication is performed, or zero to authenticate on the I/O thread */
+    @ManagedContextDefault(name = AUTHENTICATION_THREAD_COUNT)
+    int DEFAULT_AUTHENTICATION_THREAD_COUNT = 4;
+
+    String AUTHENTICATION_CACHE_EXPIRATION_TIME = "qpid.auth.cache.expirationTime";
+
+    /** Time in seconds for which successful credential verifications and group lookups are cached, zero disables */
+    @ManagedContextDefault(name = AUTHENTICATION_CACHE_EXPIRATION_TIME)
+    long DEFAULT_AUTHENTICATION_CACHE_EXPIRATION_TIME = 0l;
+
+    String AUTHENTICATION_CACHE_MAXIMUM_SIZE = "qpid.auth.cache.maximumSize";
+
+    @ManagedContextDefault(name = AUTHENTICATION_CACHE_MAXIMUM_SIZE)
+    int DEFAULT_AUTHENTICATION_CACHE_MAXIMUM_SIZE = 1000;
+
     //children
     Collection<VirtualHostAlias> getVirtualHostPortBindings();
 
@@ -91,6 +91,10 @@ public interface Broker<X extends Broker<X>> extends ConfiguredObject<X>, EventL
     @ManagedContextDefault(name = BROKER_FAIL_STARTUP_WITH_ERRORED_CHILD)
     boolean DEFAULT_BROKER_FAIL_STARTUP_WITH_ERRORED_CHILD = false;
 
+    String VIRTUALHOSTNODE_ACTIVATION_THREAD_COUNT = "broker.virtualHostNodeActivationThreadCount";
+    @ManagedContextDefault(name = VIRTUALHOSTNODE_ACTIVATION_THREAD_COUNT)
+    int DEFAULT_VIRTUALHOSTNODE_ACTIVATION_THREAD_COUNT = 1;
+
     @DerivedAttribute
     String getBuildVersion();
 
@@ -65,6 +65,22 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>
     @ManagedContextDefault(name = MAX_ASYNCHRONOUS_DELIVERIES )
     int DEFAULT_MAX_ASYNCHRONOUS_DELIVERIES = 80;
 
+    String QUEUE_RUNNER_WEIGHT = "queue.queueRunnerWeight";
+    @ManagedContextDefault(name = QUEUE_RUNNER_WEIGHT )
+    int DEFAULT_QUEUE_RUNNER_WEIGHT = 1;
+
+    String DELIVERY_BATCH_FLUSH_BYTES = "queue.deliveryBatchFlushBytes";
+    @ManagedContextDefault(name = DELIVERY_BATCH_FLUSH_BYTES )
+    long DEFAULT_DELIVERY_BATCH_FLUSH_BYTES = 65536L;
+
+    String DELIVERY_BATCH_FLUSH_TIMEOUT = "queue.deliveryBatchFlushTimeout";
+    @ManagedContextDefault(name = DELIVERY_BATCH_FLUSH_TIMEOUT )
+    long DEFAULT_DELIVERY_BATCH_FLUSH_TIMEOUT = 10L;
+
+    String TOPIC_LOG = "queue.topicLog";
+    @ManagedContextDefault(name = TOPIC_LOG )
+    boolean DEFAULT_TOPIC_LOG = false;
+
     @ManagedAttribute
     Exchange getAlternateExchange();
 
@@ -227,5 +243,14 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>
     @ManagedStatistic
     long getOldestMessageAge();
 
+    @ManagedStatistic
+    long getQueueRunnerLatency();
+
+    @ManagedStatistic
+    long getDeliveryBatchFlushCount();
+
+    @ManagedStatistic
+    long getAverageDeliveryBatchSize();
+
 
 }
@@ -24,6 +24,7 @@ import org.apache.qpid.server.configuration.BrokerProperties;
 import org.apache.qpid.server.logging.EventLogger;
 import org.apache.qpid.server.logging.LogRecorder;
 import org.apache.qpid.server.store.DurableConfigurationStore;
+import org.apache.qpid.server.store.JsonFileConfigStore;
 
 @ManagedObject (creatable = false)
 public interface SystemConfig<X extends SystemConfig<X>> extends ConfiguredObject<X>
@@ -41,6 +42,12 @@ public interface SystemConfig<X extends SystemConfig<X>> extends ConfiguredObjec
     @ManagedContextDefault(name = BrokerProperties.POSIX_FILE_PERMISSIONS)
     String DEFAULT_POSIX_FILE_PERMISSIONS = "rw-r-----";
 
+    @ManagedContextDefault(name = JsonFileConfigStore.APPEND_LOG)
+    boolean DEFAULT_JSON_CONFIG_STORE_APPEND_LOG = false;
+
+    @ManagedContextDefault(name = JsonFileConfigStore.COMPACTION_THRESHOLD)
+    int DEFAULT_JSON_CONFIG_STORE_COMPACTION_THRESHOLD = JsonFileConfigStore.DEFAULT_COMPACTION_THRESHOLD;
+
     @ManagedAttribute(defaultValue = "false")
     boolean isManagementMode();
 
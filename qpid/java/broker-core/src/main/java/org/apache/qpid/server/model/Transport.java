@@ -29,7 +29,8 @@ public enum Transport
     SSL(true),
     WS,
     WSS(true),
-    SCTP;
+    SCTP,
+    VM;
 
     Transport()
     {
@@ -88,6 +88,22 @@ public interface VirtualHost<X extends VirtualHost<X, Q, E>, Q extends Queue<?>,
     @ManagedAttribute( defaultValue = "${virtualhost.housekeepingThreadCount}")
     int getHousekeepingThreadCount();
 
+    String QUEUE_RUNNER_SCHEDULER = "virtualhost.queueRunnerScheduler";
+    @ManagedContextDefault( name = QUEUE_RUNNER_SCHEDULER)
+    String DEFAULT_QUEUE_RUNNER_SCHEDULER = "SharedPool";
+
+    String QUEUE_RUNNER_THREAD_COUNT = "virtualhost.queueRunnerThreadCount";
+    @ManagedContextDefault( name = QUEUE_RUNNER_THREAD_COUNT)
+    int DEFAULT_QUEUE_RUNNER_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    String QUEUE_RUNNER_STEAL_THRESHOLD = "virtualhost.queueRunnerStealThreshold";
+    @ManagedContextDefault( name = QUEUE_RUNNER_STEAL_THRESHOLD)
+    int DEFAULT_QUEUE_RUNNER_STEAL_THRESHOLD = 2;
+
+    String QUEUE_ACTIVATION_THREAD_COUNT = "virtualhost.queueActivationThreadCount";
+    @ManagedContextDefault( name = QUEUE_ACTIVATION_THREAD_COUNT)
+    int DEFAULT_QUEUE_ACTIVATION_THREAD_COUNT = 1;
+
     @DerivedAttribute( persist = true )
     String getModelVersion();
 
@@ -124,6 +140,15 @@ public interface VirtualHost<X extends VirtualHost<X, Q, E>, Q extends Queue<?>,
     @ManagedStatistic
     long getMessagesOut();
 
+    @ManagedStatistic
+    long getQueueRunnerRunQueueLength();
+
+    @ManagedStatistic
+    long getDirectContentReservedBytes();
+
+    @ManagedStatistic
+    long getDirectContentAllocatedBytes();
+
     //children
     Collection<VirtualHostAlias> getAliases();
     Collection<Connection> getConnections();
@@ -127,6 +127,16 @@ public class BrokerAdapter extends AbstractConfiguredObject<BrokerAdapter> imple
         _dataReceived = new StatisticsCounter("bytes-received");
     }
 
+    @Override
+    protected int getChildActivationThreadCount(final Class<? extends ConfiguredObject> childClass)
+    {
+        if(childClass == VirtualHostNode.class)
+        {
+            return getContextValue(Integer.class, VIRTUALHOSTNODE_ACTIVATION_THREAD_COUNT);
+        }
+        return super.getChildActivationThreadCount(childClass);
+    }
+
     @Override
     protected void postResolve()
     {
@@ -285,7 +285,8 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
     {
         super.validateOnCreate();
         String bindingAddress = getBindingAddress();
-        if (!PortUtil.isPortAvailable(bindingAddress, getPort()))
+        // an in-VM port does not bind a socket
+        if (!getTransports().contains(Transport.VM) && !PortUtil.isPortAvailable(bindingAddress, getPort()))
         {
             throw new IllegalConfigurationException(String.format("Cannot bind to port %d and binding address '%s'. Port is already is use.",
                     getPort(), bindingAddress == null || "".equals(bindingAddress) ? "*" : bindingAddress));
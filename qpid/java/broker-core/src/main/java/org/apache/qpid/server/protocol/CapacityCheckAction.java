@@ -0,0 +1,54 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.protocol;
+
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.server.util.Action;
+
+/**
+ * Post-enqueue action checking the capacity of the queue a message was enqueued on, on behalf of the session which
+ * published it.  As it needs only the queue and not the entry, a queue which takes its messages from a topic log can
+ * perform it without creating the entry first.
+ */
+public final class CapacityCheckAction implements Action<MessageInstance>
+{
+    private final AMQSessionModel _session;
+
+    public CapacityCheckAction(final AMQSessionModel session)
+    {
+        _session = session;
+    }
+
+    @Override
+    public void performAction(final MessageInstance entry)
+    {
+        checkCapacity(entry.getOwningResource());
+    }
+
+    public void checkCapacity(final TransactionLogResource queue)
+    {
+        if(queue instanceof CapacityChecker)
+        {
+            ((CapacityChecker)queue).checkCapacity(_session);
+        }
+    }
+}
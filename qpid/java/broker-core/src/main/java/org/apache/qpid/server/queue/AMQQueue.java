@@ -54,6 +54,11 @@ public interface AMQQueue<X extends AMQQueue<X>>
 
     VirtualHostImpl getVirtualHost();
 
+    /**
+     * @return the weight of the queue's share of the threads of its {@link QueueRunnerScheduler}
+     */
+    int getQueueRunnerWeight();
+
     @Override
     public Collection<QueueConsumer<?>> getConsumers();
 
@@ -117,4 +122,16 @@ public interface AMQQueue<X extends AMQQueue<X>>
     void setTargetSize(long targetSize);
 
     long getPotentialMemoryFootprint();
+
+    /**
+     * Subscribes the queue to a topic log in place of having each message routed to it enqueued directly.
+     *
+     * @return false if the queue cannot take its messages from a topic log
+     */
+    boolean subscribeToTopicLog(TopicLog topicLog);
+
+    /**
+     * Unsubscribes the queue from the topic log, enqueuing any messages it has not yet taken from the log.
+     */
+    void unsubscribeFromTopicLog(TopicLog topicLog);
 }
@@ -35,8 +35,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -45,7 +45,6 @@ import javax.security.auth.Subject;
 
 import org.apache.log4j.Logger;
 
-import org.apache.qpid.pool.ReferenceCountingExecutorService;
 import org.apache.qpid.server.binding.BindingImpl;
 import org.apache.qpid.server.configuration.IllegalConfigurationException;
 import org.apache.qpid.server.connection.SessionPrincipal;
@@ -81,6 +80,7 @@ import org.apache.qpid.server.plugin.MessageFilterFactory;
 import org.apache.qpid.server.plugin.QpidServiceLoader;
 import org.apache.qpid.server.protocol.AMQConnectionModel;
 import org.apache.qpid.server.protocol.AMQSessionModel;
+import org.apache.qpid.server.protocol.CapacityCheckAction;
 import org.apache.qpid.server.security.SecurityManager;
 import org.apache.qpid.server.security.auth.AuthenticatedPrincipal;
 import org.apache.qpid.server.store.MessageDurability;
@@ -200,11 +200,17 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
 
     private int _maxAsyncDeliveries;
+    private int _queueRunnerWeight = Queue.DEFAULT_QUEUE_RUNNER_WEIGHT;
+    private volatile QueueConsumerList.ConsumerNode _runnerResumeNode;
+    private long _deliveryBatchFlushBytes = Queue.DEFAULT_DELIVERY_BATCH_FLUSH_BYTES;
+    private long _deliveryBatchFlushNanos = TimeUnit.MILLISECONDS.toNanos(Queue.DEFAULT_DELIVERY_BATCH_FLUSH_TIMEOUT);
+    private final AtomicLong _deliveryBatchFlushes = new AtomicLong();
+    private final AtomicLong _deliveryBatchMessages = new AtomicLong();
 
 
     private final AtomicLong _stateChangeCount = new AtomicLong(Long.MIN_VALUE);
 
-    private final Executor _asyncDelivery;
+    private final QueueRunnerScheduler _queueRunnerScheduler;
     private AtomicInteger _deliveredMessages = new AtomicInteger();
     private AtomicBoolean _stopped = new AtomicBoolean(false);
 
@@ -229,6 +235,13 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private int _maximumDeliveryAttempts;
 
     private MessageGroupManager _messageGroupManager;
+    private MessageGroupIndex _messageGroupIndex;
+
+    private final QueueExpiryIndex _expiryIndex = new QueueExpiryIndex();
+
+    private final Object _topicLogLock = new Object();
+    private volatile TopicLog.Cursor _topicLogCursor;
+    private final TopicLog.Subscriber _topicLogSubscriber = new TopicLogSubscriber();
 
     private final Collection<ConsumerRegistrationListener<? super MessageSource>> _consumerListeners =
             new ArrayList<ConsumerRegistrationListener<? super MessageSource>>();
@@ -263,7 +276,9 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         super(parentsMap(virtualHost), attributes);
 
         _virtualHost = virtualHost;
-        _asyncDelivery = ReferenceCountingExecutorService.getInstance().acquireExecutorService();
+        QueueRunnerScheduler scheduler = virtualHost.getQueueRunnerScheduler();
+        _queueRunnerScheduler = scheduler == null ? new SharedPoolQueueRunnerScheduler() : scheduler;
+        _queueRunnerScheduler.register(this);
 
     }
 
@@ -453,13 +468,19 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             {
                 _messageGroupManager = new AssignedConsumerMessageGroupManager(getMessageGroupKey(), getMaximumDistinctGroups());
             }
+            _messageGroupIndex = new MessageGroupIndex(_messageGroupManager);
         }
         else
         {
             _messageGroupManager = null;
+            _messageGroupIndex = null;
         }
 
         _maxAsyncDeliveries = getContextValue(Integer.class, Queue.MAX_ASYNCHRONOUS_DELIVERIES);
+        _queueRunnerWeight = Math.max(1, getContextValue(Integer.class, Queue.QUEUE_RUNNER_WEIGHT));
+        _deliveryBatchFlushBytes = getContextValue(Long.class, Queue.DELIVERY_BATCH_FLUSH_BYTES);
+        _deliveryBatchFlushNanos =
+                TimeUnit.MILLISECONDS.toNanos(getContextValue(Long.class, Queue.DELIVERY_BATCH_FLUSH_TIMEOUT));
 
         if(_defaultFilters != null)
         {
@@ -551,7 +572,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
             if (_virtualHost.getState() != State.UNAVAILABLE)
             {
-                _asyncDelivery.execute(runnable);
+                _queueRunnerScheduler.execute(this, runnable);
             }
         }
         catch (RejectedExecutionException ree)
@@ -853,6 +874,11 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         if (removed)
         {
+            final QueueConsumerList.ConsumerNode resumeNode = _runnerResumeNode;
+            if(resumeNode != null && resumeNode.getConsumer() == consumer)
+            {
+                _runnerResumeNode = null;
+            }
             consumer.close();
             // No longer can the queue have an exclusive consumer
             setExclusiveSubscriber(null);
@@ -941,6 +967,20 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public void resetSubPointersForGroups(QueueConsumer<?> consumer, boolean clearAssignments)
     {
+        final MessageGroupIndex messageGroupIndex = _messageGroupIndex;
+        if(messageGroupIndex != null)
+        {
+            // acquiring consumers find their entries through the index, so rather than moving every consumer back
+            // to the earliest entry of the released groups, the groups are simply made available again
+            if(clearAssignments)
+            {
+                _messageGroupManager.clearAssignments(consumer);
+                messageGroupIndex.consumerRemoved(consumer);
+                deliverAsync();
+            }
+            return;
+        }
+
         QueueEntry entry = _messageGroupManager.findEarliestAssignedAvailableEntry(consumer);
         if(clearAssignments)
         {
@@ -967,6 +1007,173 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
     }
 
+    @Override
+    public void groupUnassigned(final Object groupKey)
+    {
+        final MessageGroupIndex messageGroupIndex = _messageGroupIndex;
+        if(messageGroupIndex != null)
+        {
+            messageGroupIndex.groupUnassigned(groupKey);
+            deliverAsync();
+        }
+    }
+
+    @Override
+    public boolean subscribeToTopicLog(final TopicLog topicLog)
+    {
+        if(!isTopicLogSupported()
+           || isDurable()
+           || _messageGroupManager != null
+           || _recovering.get()
+           || !getContextValue(Boolean.class, Queue.TOPIC_LOG))
+        {
+            return false;
+        }
+
+        synchronized (_topicLogLock)
+        {
+            if(_topicLogCursor != null || isDeleted())
+            {
+                return false;
+            }
+            _topicLogCursor = topicLog.subscribe(_topicLogSubscriber);
+            return true;
+        }
+    }
+
+    @Override
+    public void unsubscribeFromTopicLog(final TopicLog topicLog)
+    {
+        synchronized (_topicLogLock)
+        {
+            final TopicLog.Cursor cursor = _topicLogCursor;
+            if(cursor != null && cursor.getLog() == topicLog)
+            {
+                topicLog.unsubscribe(cursor);
+                pullFromTopicLog(Integer.MAX_VALUE);
+                _topicLogCursor = null;
+                cursor.release();
+            }
+        }
+        deliverAsync();
+    }
+
+    /**
+     * Queues which reorder their entries cannot take them from a topic log in log order.
+     */
+    protected boolean isTopicLogSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Creates entries for up to the given number of messages from the topic log the queue is subscribed to.
+     *
+     * @return the number of entries created
+     */
+    private int pullFromTopicLog(final int maximum)
+    {
+        return pullFromTopicLog(maximum, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates entries for up to the given number of messages from the topic log, stopping after the given position.
+     * Post-enqueue actions needing the entry are performed on it once created.
+     *
+     * @return the number of entries created
+     */
+    private int pullFromTopicLog(final int maximum, final long lastPosition)
+    {
+        if(_topicLogCursor == null)
+        {
+            return 0;
+        }
+
+        List<QueueEntry> actionEntries = null;
+        List<Action<? super MessageInstance>> actions = null;
+        int count = 0;
+        synchronized (_topicLogLock)
+        {
+            final TopicLog.Cursor cursor = _topicLogCursor;
+            if(cursor != null)
+            {
+                ServerMessage<?> message;
+                while(count < maximum && (message = cursor.peek()) != null && cursor.getPosition() <= lastPosition)
+                {
+                    final QueueEntry entry = getEntries().add(message);
+                    final Action<? super MessageInstance> action = cursor.getAction();
+                    cursor.advance();
+                    updateExpiration(entry);
+                    count++;
+
+                    // capacity checks were performed when the message was appended
+                    if(action != null && !(action instanceof CapacityCheckAction))
+                    {
+                        if(actions == null)
+                        {
+                            actionEntries = new ArrayList<>();
+                            actions = new ArrayList<>();
+                        }
+                        actionEntries.add(entry);
+                        actions.add(action);
+                    }
+                }
+            }
+        }
+
+        if(actions != null)
+        {
+            for(int i = 0; i < actions.size(); i++)
+            {
+                final QueueEntry entry = actionEntries.get(i);
+                try
+                {
+                    tryDeliverImmediately(entry);
+                    if (entry.isAvailable())
+                    {
+                        checkConsumersNotAheadOfDelivery(entry);
+                    }
+                }
+                finally
+                {
+                    actions.get(i).performAction(entry);
+                }
+            }
+        }
+        return count;
+    }
+
+    private final class TopicLogSubscriber implements TopicLog.Subscriber
+    {
+        @Override
+        public void messageAppended(final ServerMessage<?> message,
+                                    final long position,
+                                    final Action<? super MessageInstance> action)
+        {
+            incrementQueueCount();
+            incrementQueueSize(message);
+            flowToDiskIfAboveTargetSize(message);
+            _totalMessagesReceived.incrementAndGet();
+            checkForNotification(message);
+            if(action instanceof CapacityCheckAction)
+            {
+                ((CapacityCheckAction) action).checkCapacity(AbstractQueue.this);
+            }
+            else if(action != null)
+            {
+                // the action needs this queue's entry for the message, so the log is taken up to it now
+                pullFromTopicLog(Integer.MAX_VALUE, position);
+            }
+            deliverAsync();
+        }
+
+        @Override
+        public void enqueue(final ServerMessage<?> message, final Action<? super MessageInstance> action)
+        {
+            AbstractQueue.this.enqueue(message, action);
+        }
+    }
+
     public void addBinding(final BindingImpl binding)
     {
         _bindings.add(binding);
@@ -1010,10 +1217,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         incrementQueueCount();
         incrementQueueSize(message);
 
-        if((_atomicQueueSize.get() + _atomicQueueCount.get()*1024l) > _targetQueueSize.get() && message.getStoredMessage().isInMemory())
-        {
-            message.getStoredMessage().flowToDisk();
-        }
+        flowToDiskIfAboveTargetSize(message);
 
         _totalMessagesReceived.incrementAndGet();
 
@@ -1035,6 +1239,14 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     }
 
+    private void flowToDiskIfAboveTargetSize(final ServerMessage<?> message)
+    {
+        if((_atomicQueueSize.get() + _atomicQueueCount.get()*1024l) > _targetQueueSize.get() && message.getStoredMessage().isInMemory())
+        {
+            message.getStoredMessage().flowToDisk();
+        }
+    }
+
     public final void recover(ServerMessage message)
     {
         incrementQueueCount();
@@ -1074,24 +1286,24 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     protected void doEnqueue(final ServerMessage message, final Action<? super MessageInstance> action)
     {
         final QueueConsumer<?> exclusiveSub = _exclusiveSubscriber;
+        if(_topicLogCursor != null)
+        {
+            // keep the messages taken from the topic log ahead of those enqueued since
+            pullFromTopicLog(Integer.MAX_VALUE);
+        }
         final QueueEntry entry = getEntries().add(message);
+        final MessageGroupIndex messageGroupIndex = _messageGroupIndex;
+        if(messageGroupIndex != null)
+        {
+            messageGroupIndex.entryAdded(entry);
+        }
         updateExpiration(entry);
 
         try
         {
             if (action != null || (exclusiveSub == null  && _queueRunner.isIdle()))
             {
-                Subject.doAs(SecurityManager.getSystemTaskSubject("Immediate Delivery"),
-                             new PrivilegedAction<Void>()
-                             {
-                                 @Override
-                                 public Void run()
-                                 {
-                                     tryDeliverStraightThrough(entry);
-                                     return null;
-                                 }
-                             }
-                            );
+                tryDeliverImmediately(entry);
             }
 
             if (entry.isAvailable())
@@ -1113,6 +1325,21 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     }
 
+    private void tryDeliverImmediately(final QueueEntry entry)
+    {
+        Subject.doAs(SecurityManager.getSystemTaskSubject("Immediate Delivery"),
+                     new PrivilegedAction<Void>()
+                     {
+                         @Override
+                         public Void run()
+                         {
+                             tryDeliverStraightThrough(entry);
+                             return null;
+                         }
+                     }
+                    );
+    }
+
     private void updateExpiration(final QueueEntry entry)
     {
         long expiration = entry.getMessage().getExpiration();
@@ -1145,6 +1372,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                 entry.setExpiration(calculatedExpiration);
             }
         }
+        _expiryIndex.add(entry);
     }
 
     /**
@@ -1365,6 +1593,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public void requeue(QueueEntry entry)
     {
+        final MessageGroupIndex messageGroupIndex = _messageGroupIndex;
+        if(messageGroupIndex != null)
+        {
+            messageGroupIndex.entryReleased(entry);
+        }
+
         QueueConsumerList.ConsumerNodeIterator subscriberIter = _consumerList.iterator();
         // iterate over all the subscribers, and if they are in advance of this queue entry then move them backwards
         while (subscriberIter.advance() && entry.isAvailable())
@@ -1392,6 +1626,13 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             _deliveredMessages.decrementAndGet();
         }
 
+        final MessageGroupIndex messageGroupIndex = _messageGroupIndex;
+        if(messageGroupIndex != null)
+        {
+            messageGroupIndex.entryRemoved(entry);
+        }
+        _expiryIndex.remove(entry);
+
         checkCapacity();
 
     }
@@ -1539,6 +1780,25 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return oldestMessageArrivalTime == 0 ? 0 : System.currentTimeMillis() - oldestMessageArrivalTime;
     }
 
+    @Override
+    public long getQueueRunnerLatency()
+    {
+        return _queueRunner.getLatency();
+    }
+
+    @Override
+    public long getDeliveryBatchFlushCount()
+    {
+        return _deliveryBatchFlushes.get();
+    }
+
+    @Override
+    public long getAverageDeliveryBatchSize()
+    {
+        final long flushes = _deliveryBatchFlushes.get();
+        return flushes == 0L ? 0L : _deliveryBatchMessages.get() / flushes;
+    }
+
     public boolean isDeleted()
     {
         return _deleted.get();
@@ -1546,6 +1806,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public List<QueueEntry> getMessagesOnTheQueue()
     {
+        pullFromTopicLog(Integer.MAX_VALUE);
         ArrayList<QueueEntry> entryList = new ArrayList<QueueEntry>();
         QueueEntryIterator queueListIterator = getEntries().iterator();
         while (queueListIterator.advance())
@@ -1670,6 +1931,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public List<QueueEntry> getMessagesOnTheQueue(QueueEntryFilter filter)
     {
+        pullFromTopicLog(Integer.MAX_VALUE);
         ArrayList<QueueEntry> entryList = new ArrayList<QueueEntry>();
         QueueEntryIterator queueListIterator = getEntries().iterator();
         while (queueListIterator.advance() && !filter.filterComplete())
@@ -1686,6 +1948,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public void visit(final QueueEntryVisitor visitor)
     {
+        pullFromTopicLog(Integer.MAX_VALUE);
         QueueEntryIterator queueListIterator = getEntries().iterator();
 
         while(queueListIterator.advance())
@@ -1743,6 +2006,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         //Perform ACLs
         getVirtualHost().getSecurityManager().authorisePurge(this);
 
+        pullFromTopicLog(Integer.MAX_VALUE);
         QueueEntryIterator queueListIterator = getEntries().iterator();
         long count = 0;
 
@@ -1883,9 +2147,19 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     protected void onClose()
     {
         super.onClose();
+        synchronized (_topicLogLock)
+        {
+            final TopicLog.Cursor cursor = _topicLogCursor;
+            if(cursor != null)
+            {
+                _topicLogCursor = null;
+                cursor.getLog().unsubscribe(cursor);
+                cursor.release();
+            }
+        }
         if (!_stopped.getAndSet(true))
         {
-            ReferenceCountingExecutorService.getInstance().releaseExecutorService();
+            _queueRunnerScheduler.unregister(this);
         }
         _closing = false;
     }
@@ -1961,7 +2235,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     boolean flushConsumer(QueueConsumer<?> sub, long iterations)
     {
         boolean atTail = false;
-        final boolean keepSendLockHeld = iterations <=  getMaxAsyncDeliveries();
+        final boolean keepSendLockHeld = iterations <=  getQueueRunnerIterations();
         boolean queueEmpty = false;
 
         try
@@ -2036,6 +2310,11 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
      * @return true if we have completed all possible deliveries for this sub.
      */
     private boolean attemptDelivery(QueueConsumer<?> sub, boolean batch)
+    {
+        return attemptDelivery(sub, batch, null);
+    }
+
+    private boolean attemptDelivery(QueueConsumer<?> sub, boolean batch, DeliveryBatch deliveryBatch)
     {
         boolean atTail = false;
 
@@ -2072,6 +2351,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                             {
                                 node.unlockAcquisition();
                             }
+                            if(deliveryBatch != null && deliveryBatch.delivered(node.getMessage().getSize(),
+                                                                                _deliveryBatchFlushBytes,
+                                                                                _deliveryBatchFlushNanos))
+                            {
+                                flushDeliveryBatch(sub, deliveryBatch);
+                            }
                         }
 
                     }
@@ -2109,9 +2394,24 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     }
 
     private QueueEntry getNextAvailableEntry(final QueueConsumer sub)
+    {
+        QueueEntry node = findNextAvailableEntry(sub);
+        while(node == null && _topicLogCursor != null && pullFromTopicLog(getQueueRunnerIterations()) != 0)
+        {
+            node = findNextAvailableEntry(sub);
+        }
+        return node;
+    }
+
+    private QueueEntry findNextAvailableEntry(final QueueConsumer sub)
     {
         QueueContext context = sub.getQueueContext();
-        if(context != null)
+        final MessageGroupIndex messageGroupIndex = _messageGroupIndex;
+        if(context != null && messageGroupIndex != null && sub.acquires())
+        {
+            return getNextAvailableGroupEntry(messageGroupIndex, sub);
+        }
+        else if(context != null)
         {
             QueueEntry lastSeen = context.getLastSeenEntry();
             QueueEntry releasedNode = context.getReleasedEntry();
@@ -2150,8 +2450,28 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
     }
 
+    private QueueEntry getNextAvailableGroupEntry(final MessageGroupIndex messageGroupIndex,
+                                                  final QueueConsumer<?> sub)
+    {
+        QueueEntry node = messageGroupIndex.nextEntry(sub);
+        while (node != null && node.expired())
+        {
+            if (node.acquire())
+            {
+                dequeueEntry(node);
+            }
+            node = messageGroupIndex.nextEntry(sub);
+        }
+        return node;
+    }
+
     public boolean isEntryAheadOfConsumer(QueueEntry entry, QueueConsumer<?> sub)
     {
+        final MessageGroupIndex messageGroupIndex = _messageGroupIndex;
+        if(messageGroupIndex != null && sub.acquires())
+        {
+            return messageGroupIndex.hasAvailableEntryBefore(entry);
+        }
         QueueContext context = sub.getQueueContext();
         if(context != null)
         {
@@ -2184,6 +2504,10 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
      * processQueue job stops iterating, resubmits itself to the executor, and
      * ends the current instance
      *
+     * Each pass over the consumers starts after the consumer last served, and
+     * a consumer's batch may only grow into the iterations left over once the
+     * fair share of the consumers still to be visited in the pass is held back.
+     *
      * @param runner the Runner to schedule
      */
     public long processQueue(QueueRunner runner)
@@ -2194,7 +2518,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         boolean deliveryIncomplete = true;
 
         boolean lastLoop = false;
-        int iterations = getMaxAsyncDeliveries();
+        int iterations = getQueueRunnerIterations();
 
         final int numSubs = _consumerList.size();
 
@@ -2223,25 +2547,56 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             boolean allConsumersDone = true;
             boolean consumerDone;
 
-            QueueConsumerList.ConsumerNodeIterator consumerNodeIterator = _consumerList.iterator();
+            // start after the consumer last served so that consumers later in the list are not starved when the
+            // iterations run out part way through a pass
+            QueueConsumerList.ConsumerNode resumeNode = _runnerResumeNode;
+            if(resumeNode != null && resumeNode.isDeleted())
+            {
+                resumeNode = null;
+            }
+            QueueConsumerList.ConsumerNodeIterator consumerNodeIterator = _consumerList.iterator(resumeNode);
+            int visited = 0;
             //iterate over the subscribers and try to advance their pointer
-            while (consumerNodeIterator.advance())
+            while (iterations != 0 && consumerNodeIterator.advance())
             {
-                QueueConsumer<?> sub = consumerNodeIterator.getNode().getConsumer();
+                final QueueConsumerList.ConsumerNode consumerNode = consumerNodeIterator.getNode();
+                QueueConsumer<?> sub = consumerNode.getConsumer();
+                visited++;
+                if(!lastLoop && sub.isSuspended())
+                {
+                    // nothing can be delivered without credit, and the runner is rescheduled when the consumer resumes
+                    continue;
+                }
+                final QueueContext context = sub.getQueueContext();
+                final DeliveryBatch deliveryBatch = context == null ? new DeliveryBatch() : context.getDeliveryBatch();
+
                 sub.getSendLock();
 
                     try
                     {
-                        for(int i = 0 ; i < perSub; i++)
+                        // hold back the fair share of the consumers not yet visited in this pass
+                        final int reserved = Math.max(numSubs - visited, 0) * perSub;
+                        final int limit = deliveryBatch.start(perSub,
+                                                              Math.max(iterations - reserved,
+                                                                       Math.min(perSub, iterations)),
+                                                              _deliveryBatchFlushBytes);
+                        boolean creditLimited = false;
+                        boolean queueEmpty = false;
+                        for(int i = 0 ; i < limit; i++)
                         {
                             //attempt delivery. returns true if no further delivery currently possible to this sub
-                            consumerDone = attemptDelivery(sub, true);
+                            consumerDone = attemptDelivery(sub, true, deliveryBatch);
                             if (consumerDone)
                             {
-                                sub.flushBatched();
+                                creditLimited = sub.isSuspended();
                                 if (lastLoop && getNextAvailableEntry(sub) == null)
                                 {
+                                    if(deliveryBatch.hasUnflushed())
+                                    {
+                                        flushDeliveryBatch(sub, deliveryBatch);
+                                    }
                                     sub.queueEmpty();
+                                    queueEmpty = true;
                                 }
                                 break;
                             }
@@ -2251,20 +2606,36 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                                 //keep going after this (if iteration slicing allows it)
                                 allConsumersDone = false;
                                 lastLoop = false;
-                                if(--iterations == 0)
-                                {
-                                    sub.flushBatched();
-                                    break;
-                                }
+                                iterations--;
+                                _runnerResumeNode = consumerNode;
                             }
 
                         }
 
-                        sub.flushBatched();
+                        deliveryBatch.end(limit, creditLimited);
+                        if(deliveryBatch.hasUnflushed())
+                        {
+                            flushDeliveryBatch(sub, deliveryBatch);
+                        }
+                        else if(queueEmpty)
+                        {
+                            sub.flushBatched();
+                        }
                     }
                     finally
                     {
-                        sub.releaseSendLock();
+                        try
+                        {
+                            if(deliveryBatch.hasUnflushed())
+                            {
+                                // delivery failed part way through the batch
+                                flushDeliveryBatch(sub, deliveryBatch);
+                            }
+                        }
+                        finally
+                        {
+                            sub.releaseSendLock();
+                        }
                     }
             }
 
@@ -2307,12 +2678,61 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     }
 
+    private void flushDeliveryBatch(final QueueConsumer<?> sub, final DeliveryBatch deliveryBatch)
+    {
+        sub.flushBatched();
+        _deliveryBatchFlushes.incrementAndGet();
+        _deliveryBatchMessages.addAndGet(deliveryBatch.flushed());
+    }
+
     public void checkMessageStatus()
     {
-        QueueEntryIterator queueListIterator = getEntries().iterator();
+        // only the entries which have expired are visited, rather than every entry on the queue
+        for(QueueEntry node : _expiryIndex.getExpiredEntries(System.currentTimeMillis()))
+        {
+            boolean acquiredForDequeueing = node.acquire();
+            if(!acquiredForDequeueing && node.getDeliveredToConsumer())
+            {
+                QueueConsumer consumer = (QueueConsumer) node.getDeliveredConsumer();
+                acquiredForDequeueing = node.removeAcquisitionFromConsumer(consumer);
+                if(acquiredForDequeueing)
+                {
+                    consumer.acquisitionRemoved(node);
+                }
+            }
+
+            if(acquiredForDequeueing)
+            {
+                if (_logger.isDebugEnabled())
+                {
+                    _logger.debug("Dequeuing expired node " + node);
+                }
+                // Then dequeue it.
+                dequeueEntry(node);
+            }
+        }
 
-        long totalSize = getContextValue(Long.class, QUEUE_ESTIMATED_MESSAGE_MEMORY_OVERHEAD) * getQueueDepthMessages();
+        // the queue depth is kept as messages are enqueued and dequeued, so the entries need only be walked when
+        // the queue is over its target size and some of its messages must be flowed to disk, or when there are
+        // message specific notifications (such as the message size alert) to check
+        long overhead = getContextValue(Long.class, QUEUE_ESTIMATED_MESSAGE_MEMORY_OVERHEAD);
         long targetSize = _targetQueueSize.get();
+        boolean overTargetSize = getQueueDepthBytes() + overhead * getQueueDepthMessages() > targetSize;
+        boolean checkMessages = hasMessageSpecificNotificationChecks();
+        if(overTargetSize || checkMessages)
+        {
+            checkEntries(overhead * getQueueDepthMessages(), targetSize, overTargetSize, checkMessages);
+        }
+
+        checkForQueueNotifications();
+    }
+
+    private void checkEntries(long totalSize,
+                              final long targetSize,
+                              final boolean flowToDisk,
+                              final boolean checkMessages)
+    {
+        QueueEntryIterator queueListIterator = getEntries().iterator();
 
         while (queueListIterator.advance())
         {
@@ -2320,38 +2740,14 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             // Only process nodes that are not currently deleted and not dequeued
             if (!node.isDeleted())
             {
-                // If the node has expired then acquire it
-                if (node.expired())
-                {
-                    boolean acquiredForDequeueing = node.acquire();
-                    if(!acquiredForDequeueing && node.getDeliveredToConsumer())
-                    {
-                        QueueConsumer consumer = (QueueConsumer) node.getDeliveredConsumer();
-                        acquiredForDequeueing = node.removeAcquisitionFromConsumer(consumer);
-                        if(acquiredForDequeueing)
-                        {
-                            consumer.acquisitionRemoved(node);
-                        }
-                    }
+                // There is a chance that the node could be deleted by
+                // the time the check actually occurs. So verify we
+                // can actually get the message to perform the check.
+                ServerMessage msg = node.getMessage();
 
-                    if(acquiredForDequeueing)
-                    {
-                        if (_logger.isDebugEnabled())
-                        {
-                            _logger.debug("Dequeuing expired node " + node);
-                        }
-                        // Then dequeue it.
-                        dequeueEntry(node);
-                    }
-                }
-                else
+                if (msg != null)
                 {
-                    // There is a chance that the node could be deleted by
-                    // the time the check actually occurs. So verify we
-                    // can actually get the message to perform the check.
-                    ServerMessage msg = node.getMessage();
-
-                    if (msg != null)
+                    if(flowToDisk)
                     {
                         totalSize += msg.getSize();
                         StoredMessage storedMessage = msg.getStoredMessage();
@@ -2359,12 +2755,14 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                         {
                             storedMessage.flowToDisk();
                         }
-                        checkForNotification(msg);
+                    }
+                    if(checkMessages)
+                    {
+                        checkForMessageNotifications(msg);
                     }
                 }
             }
         }
-
     }
 
     @Override
@@ -2489,6 +2887,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public List<Long> getMessagesOnTheQueue(int num, int offset)
     {
+        pullFromTopicLog(Integer.MAX_VALUE);
         ArrayList<Long> ids = new ArrayList<Long>(num);
         QueueEntryIterator it = getEntries().iterator();
         for (int i = 0; i < offset; i++)
@@ -2600,6 +2999,66 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
     }
 
+    private boolean hasMessageSpecificNotificationChecks()
+    {
+        for (NotificationCheck check : getNotificationChecks())
+        {
+            if (check.isMessageSpecific())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the notifications which depend on an individual message for a message already on the queue.
+     */
+    private void checkForMessageNotifications(ServerMessage<?> msg)
+    {
+        QueueNotificationListener listener = _notificationListener;
+        if(listener == null)
+        {
+            listener = NULL_NOTIFICATION_LISTENER;
+        }
+        for (NotificationCheck check : getNotificationChecks())
+        {
+            if (check.isMessageSpecific() && check.notifyIfNecessary(msg, this, listener))
+            {
+                _lastNotificationTimes[check.ordinal()] = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Checks the notifications which depend on the state of the queue rather than on an individual message.
+     */
+    private void checkForQueueNotifications()
+    {
+        final Set<NotificationCheck> notificationChecks = getNotificationChecks();
+        QueueNotificationListener listener = _notificationListener;
+        if(listener == null)
+        {
+            listener = NULL_NOTIFICATION_LISTENER;
+        }
+        if(!notificationChecks.isEmpty())
+        {
+            final long currentTime = System.currentTimeMillis();
+            final long thresholdTime = currentTime - getAlertRepeatGap();
+
+            for (NotificationCheck check : notificationChecks)
+            {
+                if (!check.isMessageSpecific() && _lastNotificationTimes[check.ordinal()] < thresholdTime)
+                {
+                    if (check.notifyIfNecessary(null, this, listener))
+                    {
+                        _lastNotificationTimes[check.ordinal()] = currentTime;
+                    }
+                }
+            }
+        }
+    }
+
     public void setNotificationListener(QueueNotificationListener  listener)
     {
         _notificationListener = listener;
@@ -3029,6 +3488,20 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return _maxAsyncDeliveries;
     }
 
+    /**
+     * The number of deliveries a single run of the queue runner may attempt.
+     */
+    int getQueueRunnerIterations()
+    {
+        return _maxAsyncDeliveries;
+    }
+
+    @Override
+    public int getQueueRunnerWeight()
+    {
+        return _queueRunnerWeight;
+    }
+
 
 
     private static final String[] NON_NEGATIVE_NUMBERS = {
@@ -59,6 +59,17 @@ public class AssignedConsumerMessageGroupManager implements MessageGroupManager
         return groupVal == null ? null : _groupMap.get(groupVal.hashCode() & _groupMask);
     }
 
+    public Object getGroupKey(final QueueEntry entry)
+    {
+        Object groupVal = entry.getMessage().getMessageHeader().getHeader(_groupId);
+        return groupVal == null ? null : groupVal.hashCode() & _groupMask;
+    }
+
+    public QueueConsumer<?> getGroupConsumer(final Object groupKey)
+    {
+        return _groupMap.get(groupKey);
+    }
+
     public boolean acceptMessage(QueueConsumer<?> sub, QueueEntry entry)
     {
         return assignMessage(sub, entry) && entry.acquire(sub);
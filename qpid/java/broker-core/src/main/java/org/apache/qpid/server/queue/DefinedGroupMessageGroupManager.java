@@ -20,7 +20,6 @@
  */
 package org.apache.qpid.server.queue;
 
-import org.apache.qpid.server.consumer.ConsumerImpl;
 import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.util.StateChangeListener;
 import org.slf4j.Logger;
@@ -29,8 +28,9 @@ import org.slf4j.LoggerFactory;
 import org.apache.qpid.server.message.AMQMessageHeader;
 import org.apache.qpid.server.message.ServerMessage;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DefinedGroupMessageGroupManager implements MessageGroupManager
 {
@@ -38,70 +38,90 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
 
     private final String _groupId;
     private final String _defaultGroup;
-    private final Map<Object, Group> _groupMap = new HashMap<Object, Group>();
+    private final ConcurrentMap<Object, Group> _groupMap = new ConcurrentHashMap<Object, Group>();
     private final ConsumerResetHelper _resetHelper;
 
+    /**
+     * The assignment of a group to a consumer.  A group is never reassigned; instead a new Group replaces it in the
+     * map.  The active count is the number of the group's entries acquired by the consumer, plus one for each
+     * assignment in progress.  Once the count drops to zero the group is released by setting it to RELEASED, after
+     * which it can no longer be added to.  Groups are compared by identity so that the map only ever replaces or
+     * removes the instance which was seen.
+     */
     private final class Group
     {
+        private static final int RELEASED = -1;
+
         private final Object _group;
-        private QueueConsumer<?> _consumer;
-        private int _activeCount;
+        private final QueueConsumer<?> _consumer;
+        private final AtomicInteger _activeCount;
 
-        private Group(final Object key, final QueueConsumer<?> consumer)
+        private Group(final Object key, final QueueConsumer<?> consumer, final int activeCount)
         {
             _group = key;
             _consumer = consumer;
+            _activeCount = new AtomicInteger(activeCount);
         }
-        
+
         public boolean add()
         {
-            if(_consumer != null)
+            while(true)
             {
-                _activeCount++;
-                return true;
-            }
-            else
-            {
-                return false;
+                int count = _activeCount.get();
+                if(count == RELEASED)
+                {
+                    return false;
+                }
+                else if(_activeCount.compareAndSet(count, count + 1))
+                {
+                    return true;
+                }
             }
         }
-        
+
         public void subtract()
         {
-            if(--_activeCount == 0)
+            while(true)
             {
-                _resetHelper.resetSubPointersForGroups(_consumer, false);
-                _consumer = null;
-                _groupMap.remove(_group);
+                int count = _activeCount.get();
+                if(count <= 0)
+                {
+                    // the group was released before the entry could be added to it
+                    return;
+                }
+                else if(_activeCount.compareAndSet(count, count - 1))
+                {
+                    if(count == 1 && _activeCount.compareAndSet(0, RELEASED))
+                    {
+                        _groupMap.remove(_group, this);
+                        _resetHelper.resetSubPointersForGroups(_consumer, false);
+                        _resetHelper.groupUnassigned(_group);
+                    }
+                    return;
+                }
             }
         }
 
-        @Override
-        public boolean equals(final Object o)
+        /**
+         * Releases a group which has no active entries so that it can be replaced.
+         *
+         * @return false if the group has active entries
+         */
+        private boolean release()
         {
-            if (this == o)
-            {
-                return true;
-            }
-            if (o == null || getClass() != o.getClass())
-            {
-                return false;
-            }
-
-            Group group = (Group) o;
-
-            return _group.equals(group._group);
+            int count = _activeCount.get();
+            return count == RELEASED || (count == 0 && _activeCount.compareAndSet(0, RELEASED));
         }
 
-        @Override
-        public int hashCode()
+        public boolean isReleased()
         {
-            return _group.hashCode();
+            return _activeCount.get() == RELEASED;
         }
 
         public boolean isValid()
         {
-            return !(_consumer == null || (_activeCount == 0 && _consumer.isClosed()));
+            int count = _activeCount.get();
+            return !(count == RELEASED || (count == 0 && _consumer.isClosed()));
         }
 
         public QueueConsumer<?> getConsumer()
@@ -127,53 +147,100 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
         _resetHelper = resetHelper;
     }
     
-    public synchronized QueueConsumer<?> getAssignedConsumer(final QueueEntry entry)
+    public QueueConsumer<?> getAssignedConsumer(final QueueEntry entry)
     {
-        Object groupId = getKey(entry);
-
-        Group group = _groupMap.get(groupId);
-        return group == null || !group.isValid() ? null : group.getConsumer();
+        return getGroupConsumer(getKey(entry));
     }
 
-    public synchronized boolean acceptMessage(final QueueConsumer<?> sub, final QueueEntry entry)
+    public Object getGroupKey(final QueueEntry entry)
     {
-        return assignMessage(sub, entry) && entry.acquire(sub);
+        return getKey(entry);
     }
 
-    private boolean assignMessage(final QueueConsumer<?> sub, final QueueEntry entry)
+    public QueueConsumer<?> getGroupConsumer(final Object groupKey)
     {
-        Object groupId = getKey(entry);
-        Group group = _groupMap.get(groupId);
+        Group group = _groupMap.get(groupKey);
+        return group == null || !group.isValid() ? null : group.getConsumer();
+    }
 
-        if(group == null || !group.isValid())
+    public boolean acceptMessage(final QueueConsumer<?> sub, final QueueEntry entry)
+    {
+        Group group = assignMessage(sub, entry);
+        if(group == null)
         {
-            group = new Group(groupId, sub);
-
-            _groupMap.put(groupId, group);
+            return false;
+        }
 
-            // there's a small change that the group became empty between the point at which getNextAvailable() was
-            // called on the consumer, and when accept message is called... in that case we want to avoid delivering
-            // out of order
-            if(_resetHelper.isEntryAheadOfConsumer(entry, sub))
+        // the assignment holds the group open until the listener has counted the acquisition
+        try
+        {
+            GroupStateChangeListener listener = new GroupStateChangeListener(group);
+            entry.addStateChangeListener(listener);
+            if(entry.acquire(sub))
             {
+                return true;
+            }
+            else
+            {
+                entry.removeStateChangeListener(listener);
                 return false;
             }
         }
-
-        ConsumerImpl assignedSub = group.getConsumer();
-
-        if(assignedSub == sub)
+        finally
         {
-            entry.addStateChangeListener(new GroupStateChangeListener(group));
-            return true;
+            group.subtract();
         }
-        else
+    }
+
+    /**
+     * @return the group the entry belongs to, with the assignment added to its active count, or null if the group
+     * is assigned to another consumer
+     */
+    private Group assignMessage(final QueueConsumer<?> sub, final QueueEntry entry)
+    {
+        Object groupId = getKey(entry);
+        while(true)
         {
-            return false;            
+            Group group = _groupMap.get(groupId);
+
+            if(group == null || !group.isValid())
+            {
+                if(group != null && !group.release())
+                {
+                    continue;
+                }
+
+                Group newGroup = new Group(groupId, sub, 1);
+                if(group == null
+                   ? _groupMap.putIfAbsent(groupId, newGroup) != null
+                   : !_groupMap.replace(groupId, group, newGroup))
+                {
+                    // lost the race to assign the group to another consumer
+                    continue;
+                }
+
+                // there's a small change that the group became empty between the point at which getNextAvailable() was
+                // called on the consumer, and when accept message is called... in that case we want to avoid delivering
+                // out of order
+                if(_resetHelper.isEntryAheadOfConsumer(entry, sub))
+                {
+                    newGroup.subtract();
+                    return null;
+                }
+                return newGroup;
+            }
+            else if(group.getConsumer() != sub)
+            {
+                return null;
+            }
+            else if(group.add())
+            {
+                return group;
+            }
         }
     }
 
-    public synchronized QueueEntry findEarliestAssignedAvailableEntry(final QueueConsumer<?> sub)
+    public QueueEntry findEarliestAssignedAvailableEntry(final QueueConsumer<?> sub)
     {
         EntryFinder visitor = new EntryFinder(sub);
         sub.getQueue().visit(visitor);
@@ -237,6 +304,7 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
     private class GroupStateChangeListener implements StateChangeListener<MessageInstance, MessageInstance.State>
     {
         private final Group _group;
+        private volatile boolean _counted;
 
         public GroupStateChangeListener(final Group group)
         {
@@ -247,25 +315,21 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
                                  final MessageInstance.State oldState,
                                  final MessageInstance.State newState)
         {
-            synchronized (DefinedGroupMessageGroupManager.this)
+            if(_group.isReleased())
             {
-                if(_group.isValid())
+                entry.removeStateChangeListener(this);
+            }
+            else if(oldState != newState)
+            {
+                if(newState == QueueEntry.State.ACQUIRED)
                 {
-                    if(oldState != newState)
-                    {
-                        if(newState == QueueEntry.State.ACQUIRED)
-                        {
-                            _group.add();
-                        }
-                        else if(oldState == QueueEntry.State.ACQUIRED)
-                        {
-                            _group.subtract();
-                        }
-                    }
+                    _counted = _group.add();
                 }
-                else
+                else if(oldState == QueueEntry.State.ACQUIRED && _counted)
                 {
-                    entry.removeStateChangeListener(this);
+                    // only an acquisition which was added to the group is subtracted from it
+                    _counted = false;
+                    _group.subtract();
                 }
             }
         }
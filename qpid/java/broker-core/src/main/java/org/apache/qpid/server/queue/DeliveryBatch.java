@@ -0,0 +1,117 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+/**
+ * The state of the batches of messages the queue runner delivers to a single consumer before moving on to the next
+ * consumer, and between flushes of the consumer's output.  Only used by the queue runner while holding the
+ * consumer's send lock.
+ * <p>
+ * A batch which fills while the consumer can still accept messages doubles the size of the next batch; a batch cut
+ * short by the consumer running out of credit sizes the next to the deliveries the credit allowed.  Batches never
+ * fall below the consumer's fair share of the runner's iterations, and only grow beyond it while the bytes the batch
+ * is expected to hold, from the average size of the messages delivered, stay within the flush threshold.  The runner
+ * caps every batch by the iterations it can spare without taking the fair share of the consumers it has still to
+ * serve, so a grown batch only uses iterations the other consumers left unused.  Within a batch the output is flushed
+ * whenever the bytes or the time since the last flush reach their thresholds.
+ */
+final class DeliveryBatch
+{
+    private int _size;
+    private long _averageMessageSize;
+
+    private int _delivered;
+    private int _unflushedMessages;
+    private long _unflushedBytes;
+    private long _unflushedSince;
+
+    /**
+     * @param remainingIterations the iterations the runner can spare for this batch
+     * @return the number of messages the batch may hold
+     */
+    int start(final int fairShare, final int remainingIterations, final long flushBytes)
+    {
+        int size = _size;
+        if(size > fairShare && _averageMessageSize > 0L && flushBytes > 0L)
+        {
+            size = (int) Math.min(size, flushBytes / _averageMessageSize);
+        }
+        _delivered = 0;
+        return Math.min(Math.max(size, fairShare), remainingIterations);
+    }
+
+    /**
+     * @return true if the output should be flushed now
+     */
+    boolean delivered(final long messageSize, final long flushBytes, final long flushNanos)
+    {
+        _delivered++;
+        _averageMessageSize = _averageMessageSize == 0L
+                ? messageSize
+                : _averageMessageSize + (messageSize - _averageMessageSize) / 8;
+        if(_unflushedMessages++ == 0 && flushNanos > 0L)
+        {
+            _unflushedSince = System.nanoTime();
+        }
+        _unflushedBytes += messageSize;
+        return (flushBytes > 0L && _unflushedBytes >= flushBytes)
+               || (flushNanos > 0L && System.nanoTime() - _unflushedSince >= flushNanos);
+    }
+
+    boolean hasUnflushed()
+    {
+        return _unflushedMessages != 0;
+    }
+
+    /**
+     * @return the number of messages delivered since the last flush
+     */
+    int flushed()
+    {
+        final int messages = _unflushedMessages;
+        _unflushedMessages = 0;
+        _unflushedBytes = 0L;
+        return messages;
+    }
+
+    /**
+     * Adapts the size of the next batch to the way this batch ended.
+     *
+     * @param limit the number of messages the batch could hold
+     * @param creditLimited true if the batch ended because the consumer ran out of credit
+     */
+    void end(final int limit, final boolean creditLimited)
+    {
+        if(creditLimited)
+        {
+            _size = _delivered;
+        }
+        else if(_delivered == limit)
+        {
+            _size = limit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : limit * 2;
+        }
+    }
+
+    int getSize()
+    {
+        return _size;
+    }
+}
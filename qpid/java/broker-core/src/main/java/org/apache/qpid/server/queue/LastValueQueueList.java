@@ -25,6 +25,8 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
@@ -34,21 +36,29 @@ import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.txn.AutoCommitTransaction;
 import org.apache.qpid.server.txn.ServerTransaction;
 
-public class LastValueQueueList extends OrderedQueueEntryList
+/**
+ * The entry list of a last value queue.
+ * <p>
+ * Each conflation key owns a slot in {@link #_latestValuesMap} referencing the latest entry for the key.  Entries are
+ * held in a change sequence index, ordered by entry id, rather than in a linked list: when an entry is superseded by a
+ * newer value for its key it is removed from the index as soon as it is discarded, so consumers never traverse
+ * superseded entries and the size of the index is bounded by the number of keys (plus any entries without a key and
+ * superseded entries still acquired by consumers).  As the newer entry is given the next id, consumers receive the
+ * latest value of each key in the order in which the keys were updated.
+ */
+public class LastValueQueueList implements QueueEntryList
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(LastValueQueueList.class);
 
-    private static final HeadCreator HEAD_CREATOR = new HeadCreator()
-    {
+    private final LastValueQueueImpl _queue;
+    private final String _conflationKey;
+    private final ConflationQueueEntry _head;
 
-        @Override
-        public ConflationQueueEntry createHead(final QueueEntryList list)
-        {
-            return ((LastValueQueueList)list).createHead();
-        }
-    };
+    private final ConcurrentNavigableMap<Long, ConflationQueueEntry> _entries =
+            new ConcurrentSkipListMap<Long, ConflationQueueEntry>();
+    private final Object _addLock = new Object();
+    private long _lastEntryId;
 
-    private final String _conflationKey;
     private final ConcurrentMap<Object, AtomicReference<ConflationQueueEntry>> _latestValuesMap =
         new ConcurrentHashMap<Object, AtomicReference<ConflationQueueEntry>>();
 
@@ -57,30 +67,31 @@ public class LastValueQueueList extends OrderedQueueEntryList
 
     public LastValueQueueList(LastValueQueueImpl queue)
     {
-        super(queue, HEAD_CREATOR);
+        _queue = queue;
         _conflationKey = queue.getLvqKey();
-    }
-
-    private ConflationQueueEntry createHead()
-    {
-        return new ConflationQueueEntry(this);
+        _head = new ConflationQueueEntry(this);
     }
 
     @Override
-    protected ConflationQueueEntry createQueueEntry(ServerMessage message)
+    public LastValueQueueImpl getQueue()
     {
-        return new ConflationQueueEntry(this, message);
+        return _queue;
     }
 
-
-
     /**
-     * Updates the list using super.add and also updates {@link #_latestValuesMap} and discards entries as necessary.
+     * Adds the entry to the index and also updates {@link #_latestValuesMap} and discards entries as necessary.
      */
     @Override
     public ConflationQueueEntry add(final ServerMessage message)
     {
-        final ConflationQueueEntry addedEntry = (ConflationQueueEntry) super.add(message);
+        final ConflationQueueEntry addedEntry = new ConflationQueueEntry(this, message);
+        // ids are assigned and entries indexed in the same order so that a consumer which has seen an entry has also
+        // seen every entry before it
+        synchronized (_addLock)
+        {
+            addedEntry.setEntryId(++_lastEntryId);
+            _entries.put(addedEntry.getEntryId(), addedEntry);
+        }
 
         final Object keyValue = message.getMessageHeader().getHeader(_conflationKey);
         if (keyValue != null)
@@ -191,7 +202,58 @@ public class LastValueQueueList extends OrderedQueueEntryList
         }
     }
 
-    final class ConflationQueueEntry extends OrderedQueueEntry
+    @Override
+    public ConflationQueueEntry next(final QueueEntry node)
+    {
+        return ((ConflationQueueEntry) node).getNextValidEntry();
+    }
+
+    @Override
+    public QueueEntryIterator iterator()
+    {
+        return new QueueEntryIteratorImpl(_head);
+    }
+
+    @Override
+    public ConflationQueueEntry getHead()
+    {
+        return _head;
+    }
+
+    @Override
+    public QueueEntry getOldestEntry()
+    {
+        return next(_head);
+    }
+
+    @Override
+    public void entryDeleted(final QueueEntry queueEntry)
+    {
+        final ConflationQueueEntry entry = (ConflationQueueEntry) queueEntry;
+        _entries.remove(entry.getEntryId(), entry);
+    }
+
+    @Override
+    public int getPriorities()
+    {
+        return 0;
+    }
+
+    /**
+     * Exposed for the purposes of unit test only.
+     */
+    int getIndexSize()
+    {
+        return _entries.size();
+    }
+
+    private ConflationQueueEntry higherEntry(final long entryId)
+    {
+        final Map.Entry<Long, ConflationQueueEntry> higher = _entries.higherEntry(entryId);
+        return higher == null ? null : higher.getValue();
+    }
+
+    final class ConflationQueueEntry extends QueueEntryImpl
     {
 
         private AtomicReference<ConflationQueueEntry> _latestValueReference;
@@ -206,6 +268,24 @@ public class LastValueQueueList extends OrderedQueueEntryList
             super(queueEntryList, message);
         }
 
+        @Override
+        public ConflationQueueEntry getNextNode()
+        {
+            return higherEntry(getEntryId());
+        }
+
+        @Override
+        public ConflationQueueEntry getNextValidEntry()
+        {
+            // entries are removed from the index once deleted, but may be seen between being deleted and removed
+            ConflationQueueEntry next = getNextNode();
+            while(next != null && next.isDeleted())
+            {
+                next = higherEntry(next.getEntryId());
+            }
+            return next;
+        }
+
         @Override
         public void release()
         {
@@ -243,6 +323,41 @@ public class LastValueQueueList extends OrderedQueueEntryList
 
     }
 
+    private final class QueueEntryIteratorImpl implements QueueEntryIterator
+    {
+        private ConflationQueueEntry _lastNode;
+
+        private QueueEntryIteratorImpl(final ConflationQueueEntry startNode)
+        {
+            _lastNode = startNode;
+        }
+
+        @Override
+        public boolean atTail()
+        {
+            return _lastNode.getNextValidEntry() == null;
+        }
+
+        @Override
+        public ConflationQueueEntry getNode()
+        {
+            return _lastNode;
+        }
+
+        @Override
+        public boolean advance()
+        {
+            ConflationQueueEntry nextValidNode = _lastNode.getNextValidEntry();
+
+            if(nextValidNode != null)
+            {
+                _lastNode = nextValidNode;
+            }
+
+            return nextValidNode != null;
+        }
+    }
+
     /**
      * Exposed purposes of unit test only.
      */
@@ -0,0 +1,391 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Index of the entries of a queue with message groups, used to find the next entry an acquiring consumer may be
+ * given without scanning past the entries of groups assigned to other consumers.
+ * <p>
+ * The entries of each group are kept, in queue order, in a per group sub-list. Groups which are not assigned to a
+ * consumer are kept in a ready map from which any consumer may take the next group; groups assigned to a consumer
+ * are kept in a map of that consumer. Both maps are keyed by the head entry of each group, so the earliest group is
+ * always the first. Assignment itself remains the responsibility of the {@link MessageGroupManager}, so groups are
+ * placed lazily: a consumer coming across a group which has been assigned or released since it was placed, or whose
+ * head has since been acquired, moves it to where it now belongs.
+ * <p>
+ * The key of a group is never later than its head: the head only moves back in the queue when an entry is added to
+ * or released in the group, and the group is placed again whenever that happens. A consumer can therefore stop
+ * looking as soon as it reaches a key at or after the best entry it has found.
+ */
+class MessageGroupIndex
+{
+    private final MessageGroupManager _messageGroupManager;
+    private final ConcurrentMap<Object, GroupEntries> _groups = new ConcurrentHashMap<>();
+    private final GroupEntries _ungrouped = new GroupEntries(null);
+    private final ConcurrentNavigableMap<QueueEntry, GroupEntries> _readyGroups = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<QueueConsumer<?>, ConcurrentNavigableMap<QueueEntry, GroupEntries>> _consumerGroups =
+            new ConcurrentHashMap<>();
+
+    MessageGroupIndex(final MessageGroupManager messageGroupManager)
+    {
+        _messageGroupManager = messageGroupManager;
+    }
+
+    void entryAdded(final QueueEntry entry)
+    {
+        final Object key = _messageGroupManager.getGroupKey(entry);
+        if (key == null)
+        {
+            _ungrouped.add(entry);
+        }
+        else
+        {
+            GroupEntries group;
+            do
+            {
+                group = _groups.get(key);
+                if (group == null)
+                {
+                    final GroupEntries newGroup = new GroupEntries(key);
+                    group = _groups.putIfAbsent(key, newGroup);
+                    if (group == null)
+                    {
+                        group = newGroup;
+                    }
+                }
+            }
+            while (!group.add(entry));
+
+            place(group);
+        }
+    }
+
+    void entryReleased(final QueueEntry entry)
+    {
+        final GroupEntries group = getGroup(entry);
+        if (group != null)
+        {
+            place(group);
+        }
+    }
+
+    void entryRemoved(final QueueEntry entry)
+    {
+        final Object key = _messageGroupManager.getGroupKey(entry);
+        if (key == null)
+        {
+            _ungrouped.remove(entry);
+        }
+        else
+        {
+            final GroupEntries group = _groups.get(key);
+            if (group != null)
+            {
+                group.remove(entry);
+                if (removeIfUnused(group))
+                {
+                    place(group);
+                }
+            }
+        }
+    }
+
+    void groupUnassigned(final Object key)
+    {
+        final GroupEntries group = _groups.get(key);
+        if (group != null)
+        {
+            place(group);
+        }
+    }
+
+    void consumerRemoved(final QueueConsumer<?> consumer)
+    {
+        final Map<QueueEntry, GroupEntries> groups = _consumerGroups.remove(consumer);
+        if (groups != null)
+        {
+            for (GroupEntries group : groups.values())
+            {
+                place(group);
+            }
+        }
+    }
+
+    /**
+     * @return true if the group of the given entry has an available entry which is ahead of it in the queue
+     */
+    boolean hasAvailableEntryBefore(final QueueEntry entry)
+    {
+        final GroupEntries group = getGroup(entry);
+        if (group != null)
+        {
+            final QueueEntry first = group.firstAvailable(null);
+            return first != null && first.compareTo(entry) < 0;
+        }
+        return false;
+    }
+
+    /**
+     * @return the earliest available entry, among the ungrouped entries, the ready groups and the groups assigned to
+     * the consumer, that the consumer has an interest in, or null if there is none
+     */
+    QueueEntry nextEntry(final QueueConsumer<?> consumer)
+    {
+        QueueEntry next = _ungrouped.firstAvailable(consumer);
+        next = nextEntry(_readyGroups, consumer, next);
+
+        // groups found assigned to the consumer in the ready map have been moved to the consumer's map by now
+        final ConcurrentNavigableMap<QueueEntry, GroupEntries> assigned = _consumerGroups.get(consumer);
+        if (assigned != null)
+        {
+            next = nextEntry(assigned, consumer, next);
+        }
+        return next;
+    }
+
+    private QueueEntry nextEntry(final ConcurrentNavigableMap<QueueEntry, GroupEntries> groups,
+                                 final QueueConsumer<?> consumer,
+                                 QueueEntry next)
+    {
+        for (Map.Entry<QueueEntry, GroupEntries> placed : groups.entrySet())
+        {
+            if (next != null && placed.getKey().compareTo(next) >= 0)
+            {
+                // the heads of this and all following groups are no earlier than their keys
+                break;
+            }
+
+            // placing the group again moves it on if it has been assigned, released or its head acquired
+            final GroupEntries group = placed.getValue();
+            if (place(group))
+            {
+                final ConcurrentNavigableMap<QueueEntry, GroupEntries> placedIn = group.getPlacedIn();
+                if (placedIn == _readyGroups || (placedIn != null && placedIn == _consumerGroups.get(consumer)))
+                {
+                    next = earliest(next, group.firstAvailable(consumer));
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Places the group in the ready map, or in the map of the consumer it is assigned to, keyed by its current head.
+     * Groups without an available entry, removed groups and groups assigned to a closed consumer are not placed; an
+     * unassigned group without any entries is removed.
+     * <p>
+     * A consumer is closed before it is removed, so a group being placed with a consumer while it is removed is
+     * either found by {@link #consumerRemoved} or taken out again here; a group still assigned to a closed consumer is
+     * placed again once it is unassigned.
+     *
+     * @return true if the group is placed
+     */
+    private boolean place(final GroupEntries group)
+    {
+        QueueConsumer<?> placedWith = null;
+        boolean placed = false;
+        synchronized (group)
+        {
+            final QueueConsumer<?> owner = _messageGroupManager.getGroupConsumer(group.getKey());
+            final QueueEntry head = group.isRemoved() ? null : group.firstAvailable(null);
+            ConcurrentNavigableMap<QueueEntry, GroupEntries> target = null;
+            if (head != null)
+            {
+                if (owner == null)
+                {
+                    target = _readyGroups;
+                }
+                else if (!owner.isClosed())
+                {
+                    target = getConsumerGroups(owner);
+                    placedWith = owner;
+                }
+            }
+
+            if (target == null)
+            {
+                group.placeAt(null, null);
+                if (owner == null && !group.isRemoved())
+                {
+                    removeIfUnused(group);
+                }
+            }
+            else
+            {
+                group.placeAt(target, head);
+                placed = true;
+            }
+        }
+
+        if (placedWith != null && placedWith.isClosed())
+        {
+            consumerRemoved(placedWith);
+        }
+        return placed;
+    }
+
+    private ConcurrentNavigableMap<QueueEntry, GroupEntries> getConsumerGroups(final QueueConsumer<?> consumer)
+    {
+        ConcurrentNavigableMap<QueueEntry, GroupEntries> groups = _consumerGroups.get(consumer);
+        if (groups == null)
+        {
+            final ConcurrentNavigableMap<QueueEntry, GroupEntries> newGroups = new ConcurrentSkipListMap<>();
+            groups = _consumerGroups.putIfAbsent(consumer, newGroups);
+            if (groups == null)
+            {
+                groups = newGroups;
+            }
+        }
+        return groups;
+    }
+
+    private boolean removeIfUnused(final GroupEntries group)
+    {
+        if (_messageGroupManager.getGroupConsumer(group.getKey()) == null && group.removeIfEmpty())
+        {
+            _groups.remove(group.getKey(), group);
+            return true;
+        }
+        return false;
+    }
+
+    private GroupEntries getGroup(final QueueEntry entry)
+    {
+        final Object key = _messageGroupManager.getGroupKey(entry);
+        return key == null ? null : _groups.get(key);
+    }
+
+    private static QueueEntry earliest(final QueueEntry entry, final QueueEntry other)
+    {
+        if (entry == null)
+        {
+            return other;
+        }
+        else if (other == null)
+        {
+            return entry;
+        }
+        else
+        {
+            return entry.compareTo(other) <= 0 ? entry : other;
+        }
+    }
+
+    private static final class GroupEntries
+    {
+        private final Object _key;
+        private final ConcurrentSkipListSet<QueueEntry> _entries = new ConcurrentSkipListSet<>();
+        private volatile boolean _removed;
+        private ConcurrentNavigableMap<QueueEntry, GroupEntries> _placedIn;
+        private QueueEntry _placedKey;
+
+        private GroupEntries(final Object key)
+        {
+            _key = key;
+        }
+
+        Object getKey()
+        {
+            return _key;
+        }
+
+        synchronized boolean add(final QueueEntry entry)
+        {
+            if (_removed)
+            {
+                return false;
+            }
+            _entries.add(entry);
+            return true;
+        }
+
+        void remove(final QueueEntry entry)
+        {
+            _entries.remove(entry);
+        }
+
+        synchronized boolean removeIfEmpty()
+        {
+            if (!_removed && _entries.isEmpty())
+            {
+                _removed = true;
+            }
+            return _removed;
+        }
+
+        boolean isRemoved()
+        {
+            return _removed;
+        }
+
+        /**
+         * Moves the group to the given map under the given key, or takes it out of the map it is in if the map is
+         * null.
+         */
+        synchronized void placeAt(final ConcurrentNavigableMap<QueueEntry, GroupEntries> map, final QueueEntry key)
+        {
+            if (_placedIn != map || _placedKey != key)
+            {
+                if (_placedIn != null)
+                {
+                    _placedIn.remove(_placedKey, this);
+                }
+                if (map != null)
+                {
+                    map.put(key, this);
+                }
+                _placedIn = map;
+                _placedKey = key;
+            }
+        }
+
+        synchronized ConcurrentNavigableMap<QueueEntry, GroupEntries> getPlacedIn()
+        {
+            return _placedIn;
+        }
+
+        /**
+         * @return the first available entry, skipping those the consumer (if given) has no interest in
+         */
+        QueueEntry firstAvailable(final QueueConsumer<?> consumer)
+        {
+            for (QueueEntry entry : _entries)
+            {
+                if (entry.isDeleted())
+                {
+                    _entries.remove(entry);
+                }
+                else if (entry.isAvailable() && (consumer == null || consumer.hasInterest(entry)))
+                {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -27,6 +27,8 @@ public interface MessageGroupManager
         public void resetSubPointersForGroups(QueueConsumer<?> consumer, boolean clearAssignments);
 
         boolean isEntryAheadOfConsumer(QueueEntry entry, QueueConsumer<?> sub);
+
+        void groupUnassigned(Object groupKey);
     }
 
     QueueConsumer getAssignedConsumer(QueueEntry entry);
@@ -36,4 +38,14 @@ public interface MessageGroupManager
     QueueEntry findEarliestAssignedAvailableEntry(QueueConsumer<?> sub);
 
     void clearAssignments(QueueConsumer<?> sub);
+
+    /**
+     * @return the key of the group the entry belongs to, or null if the entry is not in any group
+     */
+    Object getGroupKey(QueueEntry entry);
+
+    /**
+     * @return the consumer the group with the given key is currently assigned to, or null if it is unassigned
+     */
+    QueueConsumer<?> getGroupConsumer(Object groupKey);
 }
@@ -20,6 +20,8 @@
 */
 package org.apache.qpid.server.queue;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import org.apache.qpid.server.message.ServerMessage;
 
 abstract public class PriorityQueueList extends OrderedQueueEntryList
@@ -37,6 +39,13 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
         super(queue, headCreator);
     }
 
+    /**
+     * Holds one sub-list per priority level, and a bitmap of the levels which hold entries so that traversal can pass
+     * straight from one occupied level to the next, however many levels are configured.
+     * <p>
+     * A level's bit is set once an entry has been added to it and cleared once its last entry has been deleted.  As
+     * a level is only marked empty after rechecking its sub-list, an entry is never hidden by a cleared bit.
+     */
     static class PriorityQueueMasterList extends PriorityQueueList
     {
         private static final HeadCreator DUMMY_HEAD_CREATOR =
@@ -48,10 +57,18 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
                         return null;
                     }
                 };
+
+        /**
+         * Queues with no more than the standard number of levels map message priorities onto them around the default
+         * priority of 4; queues with more map the (unsigned) message priority directly onto a level.
+         */
+        private static final int STANDARD_PRIORITIES = 10;
+
         private final PriorityQueueImpl _queue;
         private final PriorityQueueEntrySubList[] _priorityLists;
         private final int _priorities;
         private final int _priorityOffset;
+        private final AtomicLongArray _occupied;
 
         public PriorityQueueMasterList(PriorityQueueImpl queue, int priorities)
         {
@@ -59,10 +76,11 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
             _queue = queue;
             _priorityLists = new PriorityQueueEntrySubList[priorities];
             _priorities = priorities;
-            _priorityOffset = 5-((priorities + 1)/2);
+            _priorityOffset = priorities > STANDARD_PRIORITIES ? 0 : 5-((priorities + 1)/2);
+            _occupied = new AtomicLongArray((priorities + 63) >>> 6);
             for(int i = 0; i < priorities; i++)
             {
-                _priorityLists[i] = new PriorityQueueEntrySubList(queue, i);
+                _priorityLists[i] = new PriorityQueueEntrySubList(queue, this, i);
             }
         }
 
@@ -80,7 +98,12 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
         @Override
         public PriorityQueueEntry add(ServerMessage message)
         {
-            int index = message.getMessageHeader().getPriority() - _priorityOffset;
+            int priority = message.getMessageHeader().getPriority();
+            if(_priorities > STANDARD_PRIORITIES)
+            {
+                priority &= 0xff;
+            }
+            int index = priority - _priorityOffset;
             if(index >= _priorities)
             {
                 index = _priorities-1;
@@ -89,7 +112,9 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
             {
                 index = 0;
             }
-            return (PriorityQueueEntry) _priorityLists[index].add(message);
+            PriorityQueueEntry entry = (PriorityQueueEntry) _priorityLists[index].add(message);
+            markOccupied(index);
+            return entry;
 
         }
 
@@ -106,23 +131,66 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
 
             if(next == null)
             {
-                final PriorityQueueList nodeEntryList = (PriorityQueueList) ((PriorityQueueEntry)node).getQueueEntryList();
-                int index;
-                for(index = _priorityLists.length-1; _priorityLists[index] != nodeEntryList; index--)
-                {
-                    // do nothing loop is just to find the index
-                }
+                int index = ((PriorityQueueEntrySubList) ((PriorityQueueEntry) node).getQueueEntryList()).getListPriority();
 
-                while(next == null && index != 0)
+                while(next == null && (index = highestOccupiedBelow(index)) >= 0)
                 {
-                    index--;
                     next = (PriorityQueueEntry) _priorityLists[index].getHead().getNextValidEntry();
+                    if(next == null)
+                    {
+                        clearOccupiedIfEmpty(index);
+                    }
                 }
 
             }
             return next;
         }
 
+        private void markOccupied(int level)
+        {
+            final int word = level >>> 6;
+            final long bit = 1L << level;
+            long bits;
+            while(((bits = _occupied.get(word)) & bit) == 0L && !_occupied.compareAndSet(word, bits, bits | bit))
+            {
+            }
+        }
+
+        void clearOccupiedIfEmpty(int level)
+        {
+            final int word = level >>> 6;
+            final long bit = 1L << level;
+            long bits;
+            while(((bits = _occupied.get(word)) & bit) != 0L && !_occupied.compareAndSet(word, bits, bits & ~bit))
+            {
+            }
+
+            // an entry added since the level was seen to be empty may not have marked it yet
+            if(_priorityLists[level].getHead().getNextValidEntry() != null)
+            {
+                markOccupied(level);
+            }
+        }
+
+        /**
+         * @return the highest occupied level below the given level, or -1 if there is none
+         */
+        int highestOccupiedBelow(int level)
+        {
+            int candidate = level - 1;
+            while(candidate >= 0)
+            {
+                final int word = candidate >>> 6;
+                final long bits = _occupied.get(word) & (-1L >>> (63 - (candidate & 63)));
+                if(bits != 0L)
+                {
+                    return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+                }
+                candidate = (word << 6) - 1;
+            }
+            return -1;
+        }
+
         private final class PriorityQueueEntryListIterator implements QueueEntryIterator
         {
             private final QueueEntryIterator[] _iterators = new QueueEntryIterator[ _priorityLists.length ];
@@ -130,19 +198,30 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
 
             PriorityQueueEntryListIterator()
             {
-                for(int i = 0; i < _priorityLists.length; i++)
+                _lastNode = (PriorityQueueEntry) getIterator(_iterators.length - 1).getNode();
+            }
+
+            /**
+             * Sub-list iterators are only created once their level is reached, as an iterator created later still
+             * starts from the head of its sub-list.
+             */
+            private QueueEntryIterator getIterator(int level)
+            {
+                QueueEntryIterator iterator = _iterators[level];
+                if(iterator == null)
                 {
-                    _iterators[i] = _priorityLists[i].iterator();
+                    iterator = _priorityLists[level].iterator();
+                    _iterators[level] = iterator;
                 }
-                _lastNode = (PriorityQueueEntry) _iterators[_iterators.length - 1].getNode();
+                return iterator;
             }
 
             @Override
             public boolean atTail()
             {
-                for(int i = 0; i < _iterators.length; i++)
+                for(int i = highestOccupiedBelow(_priorities); i >= 0; i = highestOccupiedBelow(i))
                 {
-                    if(!_iterators[i].atTail())
+                    if(!getIterator(i).atTail())
                     {
                         return false;
                     }
@@ -159,11 +238,12 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
             @Override
             public boolean advance()
             {
-                for(int i = _iterators.length-1; i >= 0; i--)
+                for(int i = highestOccupiedBelow(_priorities); i >= 0; i = highestOccupiedBelow(i))
                 {
-                    if(_iterators[i].advance())
+                    QueueEntryIterator iterator = getIterator(i);
+                    if(iterator.advance())
                     {
-                        _lastNode = (PriorityQueueEntry) _iterators[i].getNode();
+                        _lastNode = (PriorityQueueEntry) iterator.getNode();
                         return true;
                     }
                 }
@@ -194,9 +274,9 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
         public QueueEntry getOldestEntry()
         {
             QueueEntry oldest = null;
-            for(PriorityQueueEntrySubList subList : _priorityLists)
+            for(int i = highestOccupiedBelow(_priorities); i >= 0; i = highestOccupiedBelow(i))
             {
-                QueueEntry subListOldest = subList.getOldestEntry();
+                QueueEntry subListOldest = _priorityLists[i].getOldestEntry();
                 if(oldest == null || (subListOldest != null && subListOldest.getMessage().getMessageNumber() < oldest.getMessage().getMessageNumber()))
                 {
                     oldest = subListOldest;
@@ -216,11 +296,13 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
                 return new PriorityQueueEntry((PriorityQueueList) list);
             }
         };
+        private final PriorityQueueMasterList _masterList;
         private int _listPriority;
 
-        public PriorityQueueEntrySubList(PriorityQueueImpl queue, int listPriority)
+        public PriorityQueueEntrySubList(PriorityQueueImpl queue, PriorityQueueMasterList masterList, int listPriority)
         {
             super(queue, HEAD_CREATOR);
+            _masterList = masterList;
             _listPriority = listPriority;
         }
 
@@ -230,6 +312,16 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
             return new PriorityQueueEntry(this, message);
         }
 
+        @Override
+        public void entryDeleted(final QueueEntry queueEntry)
+        {
+            super.entryDeleted(queueEntry);
+            if(getHead().getNextValidEntry() == null)
+            {
+                _masterList.clearOccupiedIfEmpty(_listPriority);
+            }
+        }
+
         public int getListPriority()
         {
             return _listPriority;
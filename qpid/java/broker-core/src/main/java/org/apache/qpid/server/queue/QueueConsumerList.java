@@ -239,11 +239,22 @@ class QueueConsumerList
 
     public static class ConsumerNodeIterator
     {
+        private final ConsumerNode _head;
+        private final ConsumerNode _stopNode;
         private ConsumerNode _lastNode;
+        private boolean _wrapped;
 
         ConsumerNodeIterator(ConsumerNode startNode)
         {
+            this(startNode, startNode);
+        }
+
+        ConsumerNodeIterator(ConsumerNode head, ConsumerNode startNode)
+        {
+            _head = head;
+            _stopNode = startNode;
             _lastNode = startNode;
+            _wrapped = startNode == head;
         }
 
         public ConsumerNode getNode()
@@ -253,7 +264,18 @@ class QueueConsumerList
 
         public boolean advance()
         {
+            if(_wrapped && _stopNode != _head && (_lastNode == _stopNode || _stopNode.isDeleted()))
+            {
+                _lastNode = null;
+                return false;
+            }
+
             ConsumerNode nextNode = _lastNode.findNext();
+            if(nextNode == null && !_wrapped && !_stopNode.isDeleted())
+            {
+                _wrapped = true;
+                nextNode = _head.findNext();
+            }
             _lastNode = nextNode;
 
             return _lastNode != null;
@@ -265,6 +287,18 @@ class QueueConsumerList
         return new ConsumerNodeIterator(_head);
     }
 
+    /**
+     * Returns an iterator visiting each consumer once, starting with the one after the given node and wrapping
+     * around to end with the given node itself.  Should the given node be removed, the iteration ends at the tail
+     * of the list, or as soon as the removal is noticed once it has wrapped, so that no consumer is visited twice.
+     *
+     * @param startAfter the node to start after, or null to start from the head of the list
+     */
+    public ConsumerNodeIterator iterator(ConsumerNode startAfter)
+    {
+        return new ConsumerNodeIterator(_head, startAfter == null ? _head : startAfter);
+    }
+
     public ConsumerNode getHead()
     {
         return _head;
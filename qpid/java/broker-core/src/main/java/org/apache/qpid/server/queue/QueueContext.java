@@ -27,6 +27,7 @@ final class QueueContext
 {
     private volatile QueueEntry _lastSeenEntry;
     private volatile QueueEntry _releasedEntry;
+    private final DeliveryBatch _deliveryBatch = new DeliveryBatch();
 
     static final AtomicReferenceFieldUpdater<QueueContext, QueueEntry>
             _lastSeenUpdater =
@@ -53,6 +54,11 @@ final class QueueContext
         return _releasedEntry;
     }
 
+    DeliveryBatch getDeliveryBatch()
+    {
+        return _deliveryBatch;
+    }
+
     @Override
     public String toString()
     {
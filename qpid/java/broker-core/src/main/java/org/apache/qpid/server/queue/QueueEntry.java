@@ -37,4 +37,6 @@ public interface QueueEntry extends MessageInstance, Comparable<QueueEntry>
 
 
     void setExpiration(long calculatedExpiration);
+
+    long getExpiration();
 }
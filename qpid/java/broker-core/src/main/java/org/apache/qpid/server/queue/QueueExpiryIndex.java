@@ -0,0 +1,137 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The entries of a queue which have an expiration, ordered by that expiration, so that housekeeping need only visit
+ * the entries which have actually expired rather than every entry on the queue.
+ * <p>
+ * An entry's expiration must not change while it is in the index.
+ */
+final class QueueExpiryIndex
+{
+    private static final Comparator<QueueEntry> EXPIRATION_ORDER = new Comparator<QueueEntry>()
+    {
+        @Override
+        public int compare(final QueueEntry entry, final QueueEntry other)
+        {
+            int result = Long.compare(entry.getExpiration(), other.getExpiration());
+            return result == 0 ? entry.compareTo(other) : result;
+        }
+    };
+
+    private final ConcurrentSkipListSet<QueueEntry> _entries = new ConcurrentSkipListSet<>(EXPIRATION_ORDER);
+
+    void add(final QueueEntry entry)
+    {
+        if(entry.getExpiration() != 0l)
+        {
+            _entries.add(entry);
+        }
+    }
+
+    void remove(final QueueEntry entry)
+    {
+        if(entry.getExpiration() != 0l)
+        {
+            _entries.remove(entry);
+        }
+    }
+
+    int size()
+    {
+        return _entries.size();
+    }
+
+    /**
+     * @return the entries which expired before the given time, earliest first.  Deleted entries found along the way
+     * are dropped from the index.
+     */
+    Iterable<QueueEntry> getExpiredEntries(final long time)
+    {
+        return new Iterable<QueueEntry>()
+        {
+            @Override
+            public Iterator<QueueEntry> iterator()
+            {
+                return new ExpiredEntryIterator(time);
+            }
+        };
+    }
+
+    private final class ExpiredEntryIterator implements Iterator<QueueEntry>
+    {
+        private final long _time;
+        private final Iterator<QueueEntry> _iterator = _entries.iterator();
+        private QueueEntry _next;
+
+        private ExpiredEntryIterator(final long time)
+        {
+            _time = time;
+            _next = findNext();
+        }
+
+        private QueueEntry findNext()
+        {
+            while(_iterator.hasNext())
+            {
+                QueueEntry entry = _iterator.next();
+                if(entry.getExpiration() >= _time)
+                {
+                    return null;
+                }
+                else if(entry.isDeleted())
+                {
+                    _iterator.remove();
+                }
+                else
+                {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return _next != null;
+        }
+
+        @Override
+        public QueueEntry next()
+        {
+            QueueEntry next = _next;
+            _next = findNext();
+            return next;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
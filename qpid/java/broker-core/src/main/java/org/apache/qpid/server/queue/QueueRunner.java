@@ -21,6 +21,7 @@
 package org.apache.qpid.server.queue;
 
 import java.security.PrivilegedAction;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -56,6 +57,9 @@ public class QueueRunner implements Runnable
     private final AtomicLong _lastRunAgain = new AtomicLong();
     private final AtomicLong _lastRunTime = new AtomicLong();
 
+    private volatile long _scheduledTime;
+    private volatile long _latency;
+
     public QueueRunner(AbstractQueue queue)
     {
         _queue = queue;
@@ -65,6 +69,9 @@ public class QueueRunner implements Runnable
     {
         if(_scheduled.compareAndSet(SCHEDULED,RUNNING))
         {
+            // exponentially weighted average of the time spent waiting for a scheduler thread
+            final long delay = System.nanoTime() - _scheduledTime;
+            _latency = _latency + (delay - _latency) / 8;
             Subject.doAs(SecurityManager.getSystemTaskSubject("Queue Delivery"), new PrivilegedAction<Object>()
             {
                 @Override
@@ -98,6 +105,7 @@ public class QueueRunner implements Runnable
                         {
                             if(_scheduled.compareAndSet(IDLE, SCHEDULED))
                             {
+                                _scheduledTime = System.nanoTime();
                                 _queue.execute(QueueRunner.this);
                             }
                         }
@@ -119,10 +127,19 @@ public class QueueRunner implements Runnable
         _stateChange.set(true);
         if(_scheduled.compareAndSet(IDLE, SCHEDULED))
         {
+            _scheduledTime = System.nanoTime();
             _queue.execute(this);
         }
     }
 
+    /**
+     * @return the average delay, in microseconds, between the runner being scheduled and it starting to run
+     */
+    public long getLatency()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(_latency);
+    }
+
     public boolean isIdle()
     {
         return _scheduled.get() == IDLE;
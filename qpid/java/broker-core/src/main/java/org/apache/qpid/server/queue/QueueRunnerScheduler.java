@@ -0,0 +1,52 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Decides which thread runs the {@link QueueRunner} (and other delivery tasks) of the queues of a virtual host.
+ * <p>
+ * A queue registers itself with the scheduler of its virtual host when it is created and unregisters when it is
+ * closed. Implementations are created through a {@link org.apache.qpid.server.plugin.QueueRunnerSchedulerFactory}
+ * selected by the virtual host context variable
+ * {@value org.apache.qpid.server.model.VirtualHost#QUEUE_RUNNER_SCHEDULER}.
+ */
+public interface QueueRunnerScheduler
+{
+    void register(AMQQueue<?> queue);
+
+    void unregister(AMQQueue<?> queue);
+
+    /**
+     * Runs the task on behalf of the given queue.
+     *
+     * @throws RejectedExecutionException if the scheduler has been closed
+     */
+    void execute(AMQQueue<?> queue, Runnable task) throws RejectedExecutionException;
+
+    /**
+     * @return the number of tasks waiting to be run
+     */
+    int getRunQueueLength();
+
+    void close();
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.qpid.pool.ReferenceCountingExecutorService;
+
+/**
+ * Runs the tasks of all queues on the broker wide pool obtained from {@link ReferenceCountingExecutorService}.
+ * Each registered queue holds one reference to the pool.
+ */
+public class SharedPoolQueueRunnerScheduler implements QueueRunnerScheduler
+{
+    private volatile ExecutorService _pool;
+
+    @Override
+    public void register(final AMQQueue<?> queue)
+    {
+        _pool = ReferenceCountingExecutorService.getInstance().acquireExecutorService();
+    }
+
+    @Override
+    public void unregister(final AMQQueue<?> queue)
+    {
+        ReferenceCountingExecutorService.getInstance().releaseExecutorService();
+    }
+
+    @Override
+    public void execute(final AMQQueue<?> queue, final Runnable task)
+    {
+        final ExecutorService pool = _pool;
+        if (pool == null)
+        {
+            throw new RejectedExecutionException("No queue has been registered with this scheduler");
+        }
+        pool.execute(task);
+    }
+
+    @Override
+    public int getRunQueueLength()
+    {
+        final ExecutorService pool = _pool;
+        return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getQueue().size() : 0;
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
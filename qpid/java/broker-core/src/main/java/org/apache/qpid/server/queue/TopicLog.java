@@ -0,0 +1,439 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.store.MessageDurability;
+import org.apache.qpid.server.util.Action;
+
+/**
+ * An append-only log of the messages routed to a set of non-durable subscription queues which all receive the same
+ * messages.  Rather than each queue holding its own entry for every message, the log holds a single reference and
+ * each subscribing queue holds a {@link Cursor} into the log, creating its own entries only as its consumers reach
+ * them.  The log is held in fixed size segments which are released once every cursor has passed them.
+ * <p>
+ * Routing goes through a {@link Route}, an immutable snapshot of the cursors subscribed when the message was routed.
+ * Messages routed before a queue subscribed are skipped by its cursor; messages routed to a queue which has since
+ * unsubscribed are enqueued on it directly.
+ * <p>
+ * A post-enqueue action routed with a message is kept in the log alongside it, and is passed to each subscriber when
+ * the message is appended.  Subscribers perform it themselves, either straight away or on the entry they create when
+ * their cursor reaches the message.
+ */
+public class TopicLog
+{
+    private static final int SEGMENT_SIZE = Integer.getInteger("qpid.topic_log.segment_size", 256);
+
+    private final String _name;
+    private final UUID _id = UUID.randomUUID();
+    private final int _segmentSize;
+
+    private final List<Cursor> _cursors = new ArrayList<>();
+    private volatile Route _route;
+    private long _epoch;
+
+    private Segment _head;
+    private Segment _tailSegment;
+    private volatile long _tail;
+
+    public TopicLog(final String name)
+    {
+        this(name, SEGMENT_SIZE);
+    }
+
+    TopicLog(final String name, final int segmentSize)
+    {
+        _name = name;
+        _segmentSize = segmentSize;
+        _head = _tailSegment = new Segment(0L, segmentSize);
+        _route = new Route(this, 0L, new Cursor[0]);
+    }
+
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @return the route to add to the routing result in place of the subscribed queues
+     */
+    public Route getRoute()
+    {
+        return _route;
+    }
+
+    public boolean hasSubscribers()
+    {
+        return _route.getCursors().length != 0;
+    }
+
+    public synchronized Cursor subscribe(final Subscriber subscriber)
+    {
+        final Cursor cursor = new Cursor(this, subscriber, _tail, _tailSegment, ++_epoch);
+        _cursors.add(cursor);
+        final Cursor[] cursors = _route.getCursors();
+        final Cursor[] newCursors = Arrays.copyOf(cursors, cursors.length + 1);
+        newCursors[cursors.length] = cursor;
+        _route = new Route(this, _epoch, newCursors);
+        return cursor;
+    }
+
+    /**
+     * Stops the cursor at the current end of the log.  The subscriber must then consume the remaining messages from
+     * the cursor and {@link Cursor#release() release} it.
+     */
+    public synchronized void unsubscribe(final Cursor cursor)
+    {
+        if(!cursor._closed)
+        {
+            cursor._end = _tail;
+            cursor._closed = true;
+            final List<Cursor> remaining = new ArrayList<>(Arrays.asList(_route.getCursors()));
+            remaining.remove(cursor);
+            _route = new Route(this, ++_epoch, remaining.toArray(new Cursor[remaining.size()]));
+        }
+    }
+
+    public synchronized long getSize()
+    {
+        return _tail - _head._base;
+    }
+
+    synchronized int getSegmentCount()
+    {
+        int count = 0;
+        for(Segment segment = _head; segment != null; segment = segment._next)
+        {
+            count++;
+        }
+        return count;
+    }
+
+    private void append(final ServerMessage<?> message,
+                        final Route route,
+                        final Action<? super MessageInstance> action)
+    {
+        List<Cursor> unsubscribed = null;
+        long position = -1L;
+        final Cursor[] cursors = route.getCursors();
+        synchronized (this)
+        {
+            boolean subscribed = false;
+            for(Cursor cursor : cursors)
+            {
+                if(cursor._closed)
+                {
+                    if(unsubscribed == null)
+                    {
+                        unsubscribed = new ArrayList<>(1);
+                    }
+                    unsubscribed.add(cursor);
+                }
+                else
+                {
+                    subscribed = true;
+                }
+            }
+
+            if(subscribed)
+            {
+                Segment segment = _tailSegment;
+                int index = (int) (_tail - segment._base);
+                if(index == _segmentSize)
+                {
+                    segment = new Segment(_tail, _segmentSize);
+                    _tailSegment._next = segment;
+                    _tailSegment = segment;
+                    index = 0;
+                }
+                segment._references[index] = message.newReference();
+                segment._epochs[index] = route.getEpoch();
+                if(action != null)
+                {
+                    segment.setAction(index, action);
+                }
+                position = _tail++;
+            }
+        }
+
+        for(Cursor cursor : cursors)
+        {
+            if(unsubscribed == null || !unsubscribed.contains(cursor))
+            {
+                cursor._subscriber.messageAppended(message, position, action);
+            }
+            else
+            {
+                cursor._subscriber.enqueue(message, action);
+            }
+        }
+    }
+
+    private synchronized void reclaim()
+    {
+        long lowest = _tail;
+        for(Cursor cursor : _cursors)
+        {
+            lowest = Math.min(lowest, cursor._position);
+        }
+
+        while(_head != _tailSegment && _head._base + _segmentSize <= lowest)
+        {
+            _head.release();
+            _head = _head._next;
+        }
+
+        if(_cursors.isEmpty() && _tail != _tailSegment._base)
+        {
+            // no cursor can be reading the tail segment, so it need not be kept until it is full
+            _tailSegment.release();
+            _head = _tailSegment = new Segment(_tail, _segmentSize);
+        }
+    }
+
+    private synchronized void remove(final Cursor cursor)
+    {
+        _cursors.remove(cursor);
+    }
+
+    /**
+     * Receives notification of the messages appended to the log for a subscriber
+     */
+    public interface Subscriber
+    {
+        /**
+         * Called once a message has been appended to the log for the subscriber.
+         *
+         * @param position the position of the message in the log
+         * @param action the post-enqueue action routed with the message, or null
+         */
+        void messageAppended(ServerMessage<?> message, long position, Action<? super MessageInstance> action);
+
+        /**
+         * Called for messages which must be enqueued on the subscriber directly.
+         */
+        void enqueue(ServerMessage<?> message, Action<? super MessageInstance> action);
+    }
+
+    /**
+     * The position of a single subscriber in the log.  A cursor is only ever read by its subscriber, which must
+     * serialise its calls to {@link #peek()} and {@link #advance()}.
+     */
+    public static final class Cursor
+    {
+        private final TopicLog _log;
+        private final Subscriber _subscriber;
+        private final long _epoch;
+        private Segment _segment;
+        private volatile long _position;
+        private volatile boolean _closed;
+        private volatile long _end;
+
+        private Cursor(final TopicLog log,
+                       final Subscriber subscriber,
+                       final long position,
+                       final Segment segment,
+                       final long epoch)
+        {
+            _log = log;
+            _subscriber = subscriber;
+            _position = position;
+            _segment = segment;
+            _epoch = epoch;
+        }
+
+        public TopicLog getLog()
+        {
+            return _log;
+        }
+
+        /**
+         * @return the message at the cursor, or null if the subscriber has consumed every message in the log
+         */
+        public ServerMessage<?> peek()
+        {
+            while(_position < (_closed ? _end : _log._tail))
+            {
+                final int index = (int) (_position - _segment._base);
+                if(index == _log._segmentSize)
+                {
+                    _segment = _segment._next;
+                    _log.reclaim();
+                }
+                else if(_segment._epochs[index] < _epoch)
+                {
+                    // routed before this cursor subscribed
+                    _position++;
+                }
+                else
+                {
+                    return _segment._references[index].getMessage();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the position in the log of the message last returned by {@link #peek()}
+         */
+        public long getPosition()
+        {
+            return _position;
+        }
+
+        /**
+         * @return the post-enqueue action routed with the message last returned by {@link #peek()}, or null
+         */
+        public Action<? super MessageInstance> getAction()
+        {
+            return _segment.getAction((int) (_position - _segment._base));
+        }
+
+        public void advance()
+        {
+            _position++;
+        }
+
+        /**
+         * Releases the cursor once the subscriber has consumed the remaining messages after unsubscribing.
+         */
+        public void release()
+        {
+            _log.remove(this);
+            _log.reclaim();
+        }
+    }
+
+    /**
+     * The destination a message is routed to in place of the queues subscribed to the log.
+     */
+    public static final class Route implements BaseQueue
+    {
+        private final TopicLog _log;
+        private final long _epoch;
+        private final Cursor[] _cursors;
+
+        private Route(final TopicLog log, final long epoch, final Cursor[] cursors)
+        {
+            _log = log;
+            _epoch = epoch;
+            _cursors = cursors;
+        }
+
+        long getEpoch()
+        {
+            return _epoch;
+        }
+
+        Cursor[] getCursors()
+        {
+            return _cursors;
+        }
+
+        @Override
+        public void enqueue(final ServerMessage message, final Action<? super MessageInstance> action)
+        {
+            _log.append(message, this, action);
+        }
+
+        @Override
+        public boolean isDurable()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isDeleted()
+        {
+            return false;
+        }
+
+        @Override
+        public String getName()
+        {
+            return _log.getName();
+        }
+
+        @Override
+        public UUID getId()
+        {
+            return _log._id;
+        }
+
+        @Override
+        public MessageDurability getMessageDurability()
+        {
+            return MessageDurability.NEVER;
+        }
+    }
+
+    private static final class Segment
+    {
+        private final long _base;
+        private final MessageReference<?>[] _references;
+        private final long[] _epochs;
+        private volatile Action<? super MessageInstance>[] _actions;
+        private volatile Segment _next;
+
+        private Segment(final long base, final int size)
+        {
+            _base = base;
+            _references = new MessageReference<?>[size];
+            _epochs = new long[size];
+        }
+
+        @SuppressWarnings("unchecked")
+        private void setAction(final int index, final Action<? super MessageInstance> action)
+        {
+            if(_actions == null)
+            {
+                _actions = (Action<? super MessageInstance>[]) new Action[_references.length];
+            }
+            _actions[index] = action;
+        }
+
+        private Action<? super MessageInstance> getAction(final int index)
+        {
+            final Action<? super MessageInstance>[] actions = _actions;
+            return actions == null ? null : actions[index];
+        }
+
+        private void release()
+        {
+            _actions = null;
+            for(int i = 0; i < _references.length; i++)
+            {
+                if(_references[i] != null)
+                {
+                    _references[i].release();
+                    _references[i] = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Runs queue tasks on a pool of worker threads dedicated to one virtual host.
+ * <p>
+ * Each worker owns a run queue. A queue is assigned to the worker with the fewest queues when it registers and
+ * its tasks are always submitted to that worker, so that consecutive runs of the same queue tend to happen on the
+ * same thread. A worker whose run queue is empty steals from the tail of the run queue of a peer only once more
+ * than the steal threshold of tasks are waiting there, so that a few busy queues sharing a worker cannot hold up the
+ * rest while a queue whose worker merely happens to be busy still has its next task run on that worker.
+ * <p>
+ * Run queues are ordered by weighted fair queuing rather than arrival. Each queue accumulates a virtual finish time
+ * which every task it submits advances by the average time its tasks take to run divided by the queue's
+ * {@link AMQQueue#getQueueRunnerWeight() weight}; tasks run in order of the virtual finish time of their queue when
+ * they were submitted. Queues competing for a worker therefore share its time in proportion to their weights, and
+ * a queue which has been idle starts again from the current virtual time rather than from credit it built up.
+ * <p>
+ * Closing the scheduler rejects the tasks still waiting in the run queues: they are discarded without being run,
+ * since the virtual host closes the scheduler only after it has closed its queues and message store.
+ */
+public class WorkStealingQueueRunnerScheduler implements QueueRunnerScheduler
+{
+    private static final Logger _logger = Logger.getLogger(WorkStealingQueueRunnerScheduler.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+    private static final long INITIAL_TASK_COST_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+
+    private final Worker[] _workers;
+    private final int _stealThreshold;
+    private final ConcurrentMap<AMQQueue<?>, QueueState> _assignments = new ConcurrentHashMap<>();
+    private final AtomicLong _virtualTime = new AtomicLong();
+    private final AtomicLong _taskSequence = new AtomicLong();
+    private volatile boolean _closed;
+
+    public WorkStealingQueueRunnerScheduler(final String name, final int threadCount, final ThreadFactory threadFactory)
+    {
+        this(name, threadCount, VirtualHost.DEFAULT_QUEUE_RUNNER_STEAL_THRESHOLD, threadFactory);
+    }
+
+    /**
+     * @param stealThreshold the number of tasks which may wait in the run queue of a busy worker before an idle peer
+     *                       takes one of them
+     */
+    public WorkStealingQueueRunnerScheduler(final String name,
+                                            final int threadCount,
+                                            final int stealThreshold,
+                                            final ThreadFactory threadFactory)
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("Thread count must be positive, was " + threadCount);
+        }
+        if (stealThreshold < 0)
+        {
+            throw new IllegalArgumentException("Steal threshold must not be negative, was " + stealThreshold);
+        }
+        _stealThreshold = stealThreshold;
+        _workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            _workers[i] = new Worker(i);
+            final Thread thread = threadFactory.newThread(_workers[i]);
+            thread.setName(name + "-" + i);
+            _workers[i].setThread(thread);
+        }
+        for (Worker worker : _workers)
+        {
+            worker.getThread().start();
+        }
+    }
+
+    @Override
+    public void register(final AMQQueue<?> queue)
+    {
+        Worker leastLoaded = _workers[0];
+        for (Worker worker : _workers)
+        {
+            if (worker.getAssignedQueueCount() < leastLoaded.getAssignedQueueCount())
+            {
+                leastLoaded = worker;
+            }
+        }
+        if (_assignments.putIfAbsent(queue, new QueueState(leastLoaded)) == null)
+        {
+            leastLoaded.queueAssigned();
+        }
+    }
+
+    @Override
+    public void unregister(final AMQQueue<?> queue)
+    {
+        final QueueState state = _assignments.remove(queue);
+        if (state != null)
+        {
+            state.getWorker().queueUnassigned();
+        }
+    }
+
+    @Override
+    public void execute(final AMQQueue<?> queue, final Runnable task)
+    {
+        if (_closed)
+        {
+            throw new RejectedExecutionException("Scheduler is closed");
+        }
+        QueueState state = _assignments.get(queue);
+        if (state == null)
+        {
+            state = new QueueState(_workers[(queue.hashCode() & Integer.MAX_VALUE) % _workers.length]);
+        }
+        final long tag = state.advance(_virtualTime.get(), Math.max(1, queue.getQueueRunnerWeight()));
+        final ScheduledTask scheduledTask = new ScheduledTask(task, state, tag, _taskSequence.getAndIncrement());
+        state.getWorker().submit(scheduledTask);
+        // close() may have drained the run queue between the check above and the submit
+        if (_closed && state.getWorker().remove(scheduledTask))
+        {
+            throw new RejectedExecutionException("Scheduler is closed");
+        }
+    }
+
+    @Override
+    public int getRunQueueLength()
+    {
+        int length = 0;
+        for (Worker worker : _workers)
+        {
+            length += worker.getRunQueueLength();
+        }
+        return length;
+    }
+
+    public int[] getRunQueueLengths()
+    {
+        final int[] lengths = new int[_workers.length];
+        for (int i = 0; i < _workers.length; i++)
+        {
+            lengths[i] = _workers[i].getRunQueueLength();
+        }
+        return lengths;
+    }
+
+    int getWorkerIndex(final AMQQueue<?> queue)
+    {
+        final QueueState state = _assignments.get(queue);
+        return state == null ? -1 : state.getWorker().getIndex();
+    }
+
+    /**
+     * Stops the workers once they have finished the task they are running, if any, and discards the tasks still
+     * waiting in the run queues without running them. Tasks submitted afterwards are rejected by
+     * {@link #execute(AMQQueue, Runnable)}.
+     */
+    @Override
+    public void close()
+    {
+        _closed = true;
+        int discarded = 0;
+        for (Worker worker : _workers)
+        {
+            discarded += worker.drain();
+            LockSupport.unpark(worker.getThread());
+        }
+        if (discarded > 0)
+        {
+            _logger.info("Discarded " + discarded + " queue task(s) not yet run when the scheduler was closed");
+        }
+    }
+
+    private void wakeIdlePeer(final Worker submitter)
+    {
+        if (submitter.getRunQueueLength() <= _stealThreshold)
+        {
+            return;
+        }
+        for (Worker worker : _workers)
+        {
+            if (worker != submitter && worker.isIdle())
+            {
+                LockSupport.unpark(worker.getThread());
+                return;
+            }
+        }
+    }
+
+    private ScheduledTask stealFor(final Worker thief)
+    {
+        final int index = thief.getIndex();
+        for (int i = 1; i < _workers.length; i++)
+        {
+            final ScheduledTask task = _workers[(index + i) % _workers.length].steal();
+            if (task != null)
+            {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void advanceVirtualTime(final long tag)
+    {
+        long current;
+        while ((current = _virtualTime.get()) < tag && !_virtualTime.compareAndSet(current, tag))
+        {
+        }
+    }
+
+    private static final class QueueState
+    {
+        private final Worker _worker;
+        private final AtomicLong _virtualFinish = new AtomicLong();
+        private volatile long _averageCost = INITIAL_TASK_COST_NANOS;
+
+        private QueueState(final Worker worker)
+        {
+            _worker = worker;
+        }
+
+        Worker getWorker()
+        {
+            return _worker;
+        }
+
+        /**
+         * @return the virtual time at which the task being submitted should start
+         */
+        long advance(final long virtualTime, final int weight)
+        {
+            final long cost = Math.max(1L, _averageCost / weight);
+            long finish;
+            long start;
+            do
+            {
+                finish = _virtualFinish.get();
+                start = Math.max(finish, virtualTime);
+            }
+            while (!_virtualFinish.compareAndSet(finish, start + cost));
+            return start;
+        }
+
+        void taskRun(final long elapsedNanos)
+        {
+            _averageCost = _averageCost + (elapsedNanos - _averageCost) / 8;
+        }
+    }
+
+    private static final class ScheduledTask implements Comparable<ScheduledTask>
+    {
+        private final Runnable _task;
+        private final QueueState _queueState;
+        private final long _tag;
+        private final long _sequence;
+
+        private ScheduledTask(final Runnable task, final QueueState queueState, final long tag, final long sequence)
+        {
+            _task = task;
+            _queueState = queueState;
+            _tag = tag;
+            _sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final ScheduledTask other)
+        {
+            if (_tag != other._tag)
+            {
+                return _tag < other._tag ? -1 : 1;
+            }
+            return _sequence < other._sequence ? -1 : (_sequence == other._sequence ? 0 : 1);
+        }
+
+        @Override
+        public String toString()
+        {
+            return _task.toString();
+        }
+    }
+
+    private final class Worker implements Runnable
+    {
+        private final int _index;
+        private final ConcurrentSkipListSet<ScheduledTask> _runQueue = new ConcurrentSkipListSet<>();
+        private final AtomicInteger _runQueueLength = new AtomicInteger();
+        private final AtomicInteger _assignedQueueCount = new AtomicInteger();
+        private volatile boolean _idle;
+        private Thread _thread;
+
+        private Worker(final int index)
+        {
+            _index = index;
+        }
+
+        int getIndex()
+        {
+            return _index;
+        }
+
+        Thread getThread()
+        {
+            return _thread;
+        }
+
+        void setThread(final Thread thread)
+        {
+            _thread = thread;
+        }
+
+        boolean isIdle()
+        {
+            return _idle;
+        }
+
+        int getRunQueueLength()
+        {
+            return _runQueueLength.get();
+        }
+
+        int getAssignedQueueCount()
+        {
+            return _assignedQueueCount.get();
+        }
+
+        void queueAssigned()
+        {
+            _assignedQueueCount.incrementAndGet();
+        }
+
+        void queueUnassigned()
+        {
+            _assignedQueueCount.decrementAndGet();
+        }
+
+        void submit(final ScheduledTask task)
+        {
+            _runQueue.add(task);
+            _runQueueLength.incrementAndGet();
+            if (_idle)
+            {
+                LockSupport.unpark(_thread);
+            }
+            else
+            {
+                wakeIdlePeer(this);
+            }
+        }
+
+        ScheduledTask steal()
+        {
+            if (_runQueueLength.get() <= _stealThreshold)
+            {
+                return null;
+            }
+            final ScheduledTask task = _runQueue.pollLast();
+            if (task != null)
+            {
+                _runQueueLength.decrementAndGet();
+            }
+            return task;
+        }
+
+        boolean remove(final ScheduledTask task)
+        {
+            if (_runQueue.remove(task))
+            {
+                _runQueueLength.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        int drain()
+        {
+            int drained = 0;
+            while (poll() != null)
+            {
+                drained++;
+            }
+            return drained;
+        }
+
+        private ScheduledTask poll()
+        {
+            final ScheduledTask task = _runQueue.pollFirst();
+            if (task != null)
+            {
+                _runQueueLength.decrementAndGet();
+            }
+            return task;
+        }
+
+        @Override
+        public void run()
+        {
+            while (!_closed)
+            {
+                ScheduledTask task = poll();
+                if (task == null)
+                {
+                    task = stealFor(this);
+                }
+
+                if (task != null)
+                {
+                    advanceVirtualTime(task._tag);
+                    final long start = System.nanoTime();
+                    try
+                    {
+                        task._task.run();
+                    }
+                    catch (Throwable t)
+                    {
+                        // the worker must survive so that the tasks queued behind this one still run
+                        _logger.error("Unexpected error running queue task " + task, t);
+                    }
+                    finally
+                    {
+                        task._queueState.taskRun(System.nanoTime() - start);
+                    }
+                }
+                else
+                {
+                    _idle = true;
+                    // check again having advertised that we are idle, so that a concurrent submit cannot be missed
+                    if (_runQueue.isEmpty() && !_closed)
+                    {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    _idle = false;
+                }
+            }
+        }
+    }
+}
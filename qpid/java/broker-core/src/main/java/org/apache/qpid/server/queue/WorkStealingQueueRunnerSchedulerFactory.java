@@ -0,0 +1,50 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import org.apache.qpid.pool.SuppressingInheritedAccessControlContextThreadFactory;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.plugin.PluggableService;
+import org.apache.qpid.server.plugin.QueueRunnerSchedulerFactory;
+import org.apache.qpid.server.virtualhost.VirtualHostImpl;
+
+@PluggableService
+public class WorkStealingQueueRunnerSchedulerFactory implements QueueRunnerSchedulerFactory
+{
+    public static final String TYPE = "WorkStealing";
+
+    @Override
+    public QueueRunnerScheduler createScheduler(final VirtualHostImpl<?, ?, ?> virtualHost)
+    {
+        int threadCount = virtualHost.getContextValue(Integer.class, VirtualHost.QUEUE_RUNNER_THREAD_COUNT);
+        int stealThreshold = virtualHost.getContextValue(Integer.class, VirtualHost.QUEUE_RUNNER_STEAL_THRESHOLD);
+        return new WorkStealingQueueRunnerScheduler("QueueRunner-" + virtualHost.getName(),
+                                                    threadCount,
+                                                    stealThreshold,
+                                                    new SuppressingInheritedAccessControlContextThreadFactory());
+    }
+
+    @Override
+    public String getType()
+    {
+        return TYPE;
+    }
+}
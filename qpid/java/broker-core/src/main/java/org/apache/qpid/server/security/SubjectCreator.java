@@ -27,6 +27,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.security.auth.Subject;
 import javax.security.sasl.SaslException;
@@ -34,9 +36,11 @@ import javax.security.sasl.SaslServer;
 
 import org.apache.qpid.server.model.AuthenticationProvider;
 import org.apache.qpid.server.model.GroupProvider;
+import org.apache.qpid.server.security.auth.AuthenticationCache;
 import org.apache.qpid.server.security.auth.AuthenticationResult;
 import org.apache.qpid.server.security.auth.AuthenticationResult.AuthenticationStatus;
 import org.apache.qpid.server.security.auth.SubjectAuthenticationResult;
+import org.apache.qpid.server.util.Action;
 
 /**
  * Creates a {@link Subject} formed by the {@link Principal}'s returned from:
@@ -54,14 +58,31 @@ public class SubjectCreator
     private final boolean _secure;
     private AuthenticationProvider<?> _authenticationProvider;
     private Collection<GroupProvider<?>> _groupProviders;
+    private final Executor _authenticationExecutor;
+    private final AuthenticationCache<Set<Principal>> _groupPrincipalCache;
 
     public SubjectCreator(AuthenticationProvider<?> authenticationProvider,
                           Collection<GroupProvider<?>> groupProviders,
                           final boolean secure)
+    {
+        this(authenticationProvider, groupProviders, secure, null, null);
+    }
+
+    /**
+     * @param authenticationExecutor executor on which {@link #authenticateAsync} runs, or null to run on the caller
+     * @param groupPrincipalCache cache of the group principals of each user, or null
+     */
+    public SubjectCreator(AuthenticationProvider<?> authenticationProvider,
+                          Collection<GroupProvider<?>> groupProviders,
+                          final boolean secure,
+                          final Executor authenticationExecutor,
+                          final AuthenticationCache<Set<Principal>> groupPrincipalCache)
     {
         _authenticationProvider = authenticationProvider;
         _groupProviders = groupProviders;
         _secure = secure;
+        _authenticationExecutor = authenticationExecutor;
+        _groupPrincipalCache = groupPrincipalCache;
     }
 
    /**
@@ -113,6 +134,55 @@ public class SubjectCreator
         }
     }
 
+    /**
+     * Authenticates a user using SASL negotiation without blocking the caller on the authentication provider.  The
+     * callback is passed the result once authentication completes, on a thread of the authentication executor, or on
+     * the calling thread if there is none.
+     *
+     * @param server SASL server
+     * @param response SASL response to process
+     * @param callback receives the result
+     */
+    public void authenticateAsync(final SaslServer server,
+                                  final byte[] response,
+                                  final Action<SubjectAuthenticationResult> callback)
+    {
+        if(_authenticationExecutor == null)
+        {
+            callback.performAction(authenticate(server, response));
+        }
+        else
+        {
+            final Runnable task = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    SubjectAuthenticationResult result;
+                    try
+                    {
+                        result = authenticate(server, response);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        result = new SubjectAuthenticationResult(new AuthenticationResult(AuthenticationStatus.ERROR, e));
+                    }
+                    callback.performAction(result);
+                }
+            };
+
+            try
+            {
+                _authenticationExecutor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // the authentication provider is closing
+                task.run();
+            }
+        }
+    }
+
     /**
      * Authenticates a user using their username and password.
      */
@@ -155,6 +225,12 @@ public class SubjectCreator
 
     Set<Principal> getGroupPrincipals(String username)
     {
+        Set<Principal> cached = _groupPrincipalCache == null ? null : _groupPrincipalCache.get(username);
+        if (cached != null)
+        {
+            return cached;
+        }
+
         Set<Principal> principals = new HashSet<Principal>();
         for (GroupProvider groupProvider : _groupProviders)
         {
@@ -165,7 +241,12 @@ public class SubjectCreator
             }
         }
 
-        return Collections.unmodifiableSet(principals);
+        Set<Principal> groupPrincipals = Collections.unmodifiableSet(principals);
+        if (_groupPrincipalCache != null)
+        {
+            _groupPrincipalCache.put(groupPrincipals, username);
+        }
+        return groupPrincipals;
     }
 
 }
@@ -0,0 +1,198 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.security.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of the results of authentication operations, such as successful credential verifications or group
+ * lookups, which are expensive to repeat.
+ * <p>
+ * Entries are keyed by a digest of the supplied key parts (typically a username and password) salted with a random
+ * value chosen when the cache is created, so that the cache never holds the credentials themselves.  Entries expire
+ * after a fixed time; a cache with a non-positive expiration time is disabled and holds nothing.
+ */
+public final class AuthenticationCache<V>
+{
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final long _expirationTime;
+    private final int _maximumSize;
+    private final byte[] _salt = new byte[16];
+    private final Map<Key, Entry<V>> _entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param expirationTime the time in milliseconds for which an entry is retained, or zero to disable the cache
+     * @param maximumSize the maximum number of entries held
+     */
+    public AuthenticationCache(final long expirationTime, final int maximumSize)
+    {
+        _expirationTime = TimeUnit.MILLISECONDS.toNanos(expirationTime);
+        _maximumSize = maximumSize;
+        new SecureRandom().nextBytes(_salt);
+    }
+
+    public boolean isEnabled()
+    {
+        return _expirationTime > 0L && _maximumSize > 0;
+    }
+
+    /**
+     * @return the unexpired value cached for the given key parts, or null if there is none
+     */
+    public V get(final String... keyParts)
+    {
+        if(!isEnabled())
+        {
+            return null;
+        }
+        final Key key = createKey(keyParts);
+        final Entry<V> entry = _entries.get(key);
+        if(entry == null)
+        {
+            return null;
+        }
+        else if(entry.isExpired(System.nanoTime()))
+        {
+            _entries.remove(key, entry);
+            return null;
+        }
+        return entry._value;
+    }
+
+    public void put(final V value, final String... keyParts)
+    {
+        if(isEnabled())
+        {
+            if(_entries.size() >= _maximumSize)
+            {
+                makeRoom();
+            }
+            _entries.put(createKey(keyParts), new Entry<>(value, System.nanoTime() + _expirationTime));
+        }
+    }
+
+    public void clear()
+    {
+        _entries.clear();
+    }
+
+    int size()
+    {
+        return _entries.size();
+    }
+
+    private void makeRoom()
+    {
+        final long now = System.nanoTime();
+        Iterator<Entry<V>> iterator = _entries.values().iterator();
+        while(iterator.hasNext())
+        {
+            if(iterator.next().isExpired(now))
+            {
+                iterator.remove();
+            }
+        }
+
+        iterator = _entries.values().iterator();
+        while(_entries.size() >= _maximumSize && iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private Key createKey(final String... keyParts)
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("Digest algorithm " + DIGEST_ALGORITHM + " is not available", e);
+        }
+
+        digest.update(_salt);
+        for(String keyPart : keyParts)
+        {
+            // each part is prefixed by its length so that ("ab", "c") and ("a", "bc") differ
+            final byte[] bytes = keyPart == null ? null : keyPart.getBytes(StandardCharsets.UTF_8);
+            final int length = bytes == null ? -1 : bytes.length;
+            digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+            if(bytes != null)
+            {
+                digest.update(bytes);
+            }
+        }
+        return new Key(digest.digest());
+    }
+
+    private static final class Key
+    {
+        private final byte[] _digest;
+        private final int _hashCode;
+
+        private Key(final byte[] digest)
+        {
+            _digest = digest;
+            _hashCode = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            return o instanceof Key && Arrays.equals(_digest, ((Key) o)._digest);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+    }
+
+    private static final class Entry<V>
+    {
+        private final V _value;
+        private final long _expiry;
+
+        private Entry(final V value, final long expiry)
+        {
+            _value = value;
+            _expiry = expiry;
+        }
+
+        private boolean isExpired(final long now)
+        {
+            return now - _expiry >= 0L;
+        }
+    }
+}
@@ -21,12 +21,19 @@
 package org.apache.qpid.server.security.auth.manager;
 
 import java.security.AccessControlException;
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
@@ -46,6 +53,8 @@ import org.apache.qpid.server.model.VirtualHostAlias;
 import org.apache.qpid.server.model.port.AbstractPortWithAuthProvider;
 import org.apache.qpid.server.security.SubjectCreator;
 import org.apache.qpid.server.security.access.Operation;
+import org.apache.qpid.server.security.auth.AuthenticationCache;
+import org.apache.qpid.server.security.auth.AuthenticationResult;
 
 public abstract class AbstractAuthenticationManager<T extends AbstractAuthenticationManager<T>>
     extends AbstractConfiguredObject<T>
@@ -59,6 +68,10 @@ public abstract class AbstractAuthenticationManager<T extends AbstractAuthentica
     @ManagedAttributeField
     private List<String> _secureOnlyMechanisms;
 
+    private volatile ExecutorService _authenticationExecutor;
+    private volatile AuthenticationCache<AuthenticationResult> _credentialCache = new AuthenticationCache<>(0L, 0);
+    private volatile AuthenticationCache<Set<Principal>> _groupPrincipalCache = new AuthenticationCache<>(0L, 0);
+
     protected AbstractAuthenticationManager(final Map<String, Object> attributes, final Broker<?> broker)
     {
         super(parentsMap(broker), attributes);
@@ -105,6 +118,62 @@ public abstract class AbstractAuthenticationManager<T extends AbstractAuthentica
         {
             _preferencesProvider = prefsProviders.iterator().next();
         }
+
+        long cacheExpirationTime = getContextValue(Long.class, AUTHENTICATION_CACHE_EXPIRATION_TIME);
+        int cacheMaximumSize = getContextValue(Integer.class, AUTHENTICATION_CACHE_MAXIMUM_SIZE);
+        _credentialCache = new AuthenticationCache<>(TimeUnit.SECONDS.toMillis(cacheExpirationTime), cacheMaximumSize);
+        _groupPrincipalCache = new AuthenticationCache<>(TimeUnit.SECONDS.toMillis(cacheExpirationTime), cacheMaximumSize);
+
+        int threadCount = getContextValue(Integer.class, AUTHENTICATION_THREAD_COUNT);
+        if(threadCount > 0)
+        {
+            _authenticationExecutor = createAuthenticationExecutor(threadCount);
+        }
+    }
+
+    private ExecutorService createAuthenticationExecutor(final int threadCount)
+    {
+        final String threadNamePrefix = "Authentication-" + getName() + "-";
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+            private final AtomicInteger _threadId = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r)
+            {
+                Thread thread = new Thread(r, threadNamePrefix + _threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        // at most one authentication is outstanding per connection, so the queue is bounded by the connection count
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<Runnable>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    protected void onClose()
+    {
+        super.onClose();
+        ExecutorService executor = _authenticationExecutor;
+        if(executor != null)
+        {
+            _authenticationExecutor = null;
+            executor.shutdown();
+        }
+        _credentialCache.clear();
+        _groupPrincipalCache.clear();
+    }
+
+    /**
+     * Returns the cache of successful credential verifications.  Subclasses whose verification is expensive
+     * consult the cache before verifying, keyed by the credentials and anything else on which the outcome depends.
+     */
+    protected final AuthenticationCache<AuthenticationResult> getCredentialCache()
+    {
+        return _credentialCache;
     }
 
     @Override
@@ -116,7 +185,7 @@ public abstract class AbstractAuthenticationManager<T extends AbstractAuthentica
     @Override
     public SubjectCreator getSubjectCreator(final boolean secure)
     {
-        return new SubjectCreator(this, _broker.getGroupProviders(), secure);
+        return new SubjectCreator(this, _broker.getGroupProviders(), secure, _authenticationExecutor, _groupPrincipalCache);
     }
 
     @Override
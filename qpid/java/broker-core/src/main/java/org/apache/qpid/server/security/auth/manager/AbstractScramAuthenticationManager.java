@@ -94,14 +94,24 @@ public abstract class AbstractScramAuthenticationManager<X extends AbstractScram
         ManagedUser user = getUser(username);
         if(user != null)
         {
-            final String[] usernamePassword = user.getPassword().split(",");
+            final String storedPassword = user.getPassword();
+            // the stored password is part of the key so that changing the password invalidates the cached result
+            AuthenticationResult cached = getCredentialCache().get(username, password, storedPassword);
+            if(cached != null)
+            {
+                return cached;
+            }
+
+            final String[] usernamePassword = storedPassword.split(",");
             byte[] salt = DatatypeConverter.parseBase64Binary(usernamePassword[0]);
             try
             {
                 if(Arrays.equals(DatatypeConverter.parseBase64Binary(usernamePassword[1]),
                                  createSaltedPassword(salt, password)))
                 {
-                    return new AuthenticationResult(new UsernamePrincipal(username));
+                    AuthenticationResult result = new AuthenticationResult(new UsernamePrincipal(username));
+                    getCredentialCache().put(result, username, password, storedPassword);
+                    return result;
                 }
             }
             catch (IllegalArgumentException e)
@@ -260,7 +260,7 @@ public class SimpleLDAPAuthenticationManagerImpl extends AbstractAuthenticationM
     {
         try
         {
-            AuthenticationResult result = doLDAPNameAuthentication(getNameFromId(username), password);
+            AuthenticationResult result = doLDAPAuthentication(username, password);
             if(result.getStatus() == AuthenticationStatus.SUCCESS)
             {
                 //Return a result based on the supplied username rather than the search name
@@ -277,6 +277,25 @@ public class SimpleLDAPAuthenticationManagerImpl extends AbstractAuthenticationM
         }
     }
 
+    /**
+     * Authenticates the user with the given id, first searching for their name unless binding without search.
+     * Successful authentications are cached, so that a client reconnecting with the same credentials needs neither
+     * a search nor a bind.
+     */
+    private AuthenticationResult doLDAPAuthentication(String id, String password) throws NamingException
+    {
+        AuthenticationResult result = getCredentialCache().get(id, password);
+        if(result == null)
+        {
+            result = doLDAPNameAuthentication(getNameFromId(id), password);
+            if(result.getStatus() == AuthenticationStatus.SUCCESS)
+            {
+                getCredentialCache().put(result, id, password);
+            }
+        }
+        return result;
+    }
+
     private AuthenticationResult doLDAPNameAuthentication(String name, String password)
     {
         if(name == null)
@@ -441,33 +460,25 @@ public class SimpleLDAPAuthenticationManagerImpl extends AbstractAuthenticationM
         @Override
         public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException
         {
-            String name = null;
+            String id = null;
             String password = null;
             AuthenticationResult authenticated = null;
             for(Callback callback : callbacks)
             {
                 if (callback instanceof NameCallback)
                 {
-                    String id = ((NameCallback) callback).getDefaultName();
-                    try
-                    {
-                        name = getNameFromId(id);
-                    }
-                    catch (NamingException e)
-                    {
-                        _logger.warn("SASL Authentication Exception", e);
-                    }
+                    id = ((NameCallback) callback).getDefaultName();
                     if(password != null)
                     {
-                        authenticated = doLDAPNameAuthentication(name, password);
+                        authenticated = verifyCredentials(id, password);
                     }
                 }
                 else if (callback instanceof PlainPasswordCallback)
                 {
                     password = ((PlainPasswordCallback)callback).getPlainPassword();
-                    if(name != null)
+                    if(id != null)
                     {
-                        authenticated = doLDAPNameAuthentication(name, password);
+                        authenticated = verifyCredentials(id, password);
                         if(authenticated.getStatus()== AuthenticationResult.AuthenticationStatus.SUCCESS)
                         {
                             ((PlainPasswordCallback)callback).setAuthenticated(true);
@@ -484,6 +495,19 @@ public class SimpleLDAPAuthenticationManagerImpl extends AbstractAuthenticationM
                 }
             }
         }
+
+        private AuthenticationResult verifyCredentials(final String id, final String password)
+        {
+            try
+            {
+                return doLDAPAuthentication(id, password);
+            }
+            catch (NamingException e)
+            {
+                _logger.warn("SASL Authentication Exception", e);
+                return new AuthenticationResult(AuthenticationStatus.ERROR, e);
+            }
+        }
     }
 
     private String getNameFromId(String id) throws NamingException
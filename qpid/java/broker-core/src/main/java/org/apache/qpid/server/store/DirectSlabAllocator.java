@@ -0,0 +1,390 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates buffers of direct (off-heap) memory for message content.
+ * <p>
+ * Requests are rounded up to a power of two size class between the minimum chunk size and the slab size.  Each size
+ * class carves chunks from slabs of direct memory allocated on demand, handing out the free chunks of the slabs which
+ * had them first, so that slabs whose chunks are freed later can drain.  A slab all of whose chunks have been freed
+ * is given back, to be released by the garbage collector, unless it is the only slab of its size class with free
+ * chunks.  Requests larger than the slab size are
+ * given a buffer of their own which is released by the garbage collector once it has been freed.
+ * <p>
+ * Buffers are returned with their limit set to the requested size and must be passed back to {@link #free(ByteBuffer)}
+ * exactly once, with that limit, when they are no longer used.  Read-only views of a buffer may be handed to readers
+ * which cannot say when they are done with it through {@link #share(ByteBuffer, Runnable)}; the owner of the buffer
+ * is told once each view is no longer reachable, and should not free the buffer before then.
+ */
+public class DirectSlabAllocator
+{
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 256;
+
+    private final int _slabSize;
+    private final int _minChunkShift;
+    private final SizeClass[] _sizeClasses;
+
+    private final AtomicLong _requestedBytes = new AtomicLong();
+    private final AtomicLong _unpooledBytes = new AtomicLong();
+    private final AtomicInteger _unpooledBuffers = new AtomicInteger();
+
+    private final ReferenceQueue<ByteBuffer> _unreachableViews = new ReferenceQueue<>();
+    private final Set<SharedView> _sharedViews =
+            Collections.newSetFromMap(new ConcurrentHashMap<SharedView, Boolean>());
+
+    public DirectSlabAllocator()
+    {
+        this(DEFAULT_SLAB_SIZE, DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    public DirectSlabAllocator(final int slabSize, final int minChunkSize)
+    {
+        if(Integer.bitCount(slabSize) != 1 || Integer.bitCount(minChunkSize) != 1 || minChunkSize > slabSize)
+        {
+            throw new IllegalArgumentException("Slab size " + slabSize + " and minimum chunk size " + minChunkSize
+                                               + " must be powers of two with the chunk size no larger than the slab");
+        }
+        _slabSize = slabSize;
+        _minChunkShift = Integer.numberOfTrailingZeros(minChunkSize);
+        _sizeClasses = new SizeClass[Integer.numberOfTrailingZeros(slabSize) - _minChunkShift + 1];
+        for(int i = 0; i < _sizeClasses.length; i++)
+        {
+            _sizeClasses[i] = new SizeClass(minChunkSize << i, slabSize);
+        }
+    }
+
+    public ByteBuffer allocate(final int size)
+    {
+        if(size < 0)
+        {
+            throw new IllegalArgumentException("Cannot allocate a buffer of negative size " + size);
+        }
+
+        ByteBuffer buffer;
+        if(size > _slabSize)
+        {
+            buffer = ByteBuffer.allocateDirect(size);
+            _unpooledBytes.addAndGet(size);
+            _unpooledBuffers.incrementAndGet();
+        }
+        else
+        {
+            buffer = _sizeClasses[sizeClassIndex(size)].allocate();
+            buffer.limit(size);
+        }
+        _requestedBytes.addAndGet(size);
+        return buffer;
+    }
+
+    public void free(final ByteBuffer buffer)
+    {
+        final int size = buffer.limit();
+        if(buffer.capacity() > _slabSize)
+        {
+            _unpooledBytes.addAndGet(-buffer.capacity());
+            _unpooledBuffers.decrementAndGet();
+        }
+        else
+        {
+            _sizeClasses[sizeClassIndex(buffer.capacity())].free(buffer);
+        }
+        _requestedBytes.addAndGet(-size);
+    }
+
+    /**
+     * Returns a read-only view of the given view of an allocated buffer, and runs the given task once the view is no
+     * longer reachable.  Buffers the reader derives from the view refer to the underlying memory rather than to the
+     * view, so the reader must hold on to the view itself for as long as it uses them.
+     * <p>
+     * The task is run by a later call to {@link #releaseUnreachableViews()}, so must not depend on the caller's locks.
+     */
+    public ByteBuffer share(final ByteBuffer view, final Runnable onUnreachable)
+    {
+        final ByteBuffer readOnlyView = view.asReadOnlyBuffer();
+        _sharedViews.add(new SharedView(readOnlyView, _unreachableViews, onUnreachable));
+        return readOnlyView;
+    }
+
+    /**
+     * Runs the tasks of the shared views which have become unreachable.  Must not be called while holding a lock
+     * which those tasks take.
+     */
+    public void releaseUnreachableViews()
+    {
+        Reference<? extends ByteBuffer> reference;
+        while((reference = _unreachableViews.poll()) != null)
+        {
+            final SharedView view = (SharedView) reference;
+            if(_sharedViews.remove(view))
+            {
+                view.released();
+            }
+        }
+    }
+
+    /**
+     * @return the number of shared views which have not yet been found to be unreachable
+     */
+    public int getSharedViewCount()
+    {
+        return _sharedViews.size();
+    }
+
+    private int sizeClassIndex(final int size)
+    {
+        if(size <= 1 << _minChunkShift)
+        {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - _minChunkShift;
+    }
+
+    /**
+     * @return the direct memory held by the allocator, whether in use or free
+     */
+    public long getReservedBytes()
+    {
+        long reserved = _unpooledBytes.get();
+        for(SizeClass sizeClass : _sizeClasses)
+        {
+            reserved += (long) sizeClass.getSlabCount() * _slabSize;
+        }
+        return reserved;
+    }
+
+    /**
+     * @return the direct memory in buffers which have been allocated and not yet freed
+     */
+    public long getAllocatedBytes()
+    {
+        long allocated = _unpooledBytes.get();
+        for(SizeClass sizeClass : _sizeClasses)
+        {
+            allocated += sizeClass.getChunksInUse() * sizeClass.getChunkSize();
+        }
+        return allocated;
+    }
+
+    /**
+     * @return the total of the sizes requested for the buffers which have been allocated and not yet freed
+     */
+    public long getRequestedBytes()
+    {
+        return _requestedBytes.get();
+    }
+
+    /**
+     * @return the fraction of the allocated memory lost to rounding requests up to their size class
+     */
+    public double getInternalFragmentation()
+    {
+        final long allocated = getAllocatedBytes();
+        return allocated == 0 ? 0d : (double) (allocated - getRequestedBytes()) / allocated;
+    }
+
+    /**
+     * @return the fraction of the reserved memory held in free chunks
+     */
+    public double getExternalFragmentation()
+    {
+        final long reserved = getReservedBytes();
+        return reserved == 0 ? 0d : (double) (reserved - getAllocatedBytes()) / reserved;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder("DirectSlabAllocator[reserved=").append(getReservedBytes())
+                .append(", allocated=").append(getAllocatedBytes())
+                .append(", requested=").append(getRequestedBytes())
+                .append(String.format(", internalFragmentation=%.3f", getInternalFragmentation()))
+                .append(String.format(", externalFragmentation=%.3f", getExternalFragmentation()))
+                .append(", unpooledBuffers=").append(_unpooledBuffers.get())
+                .append(", sharedViews=").append(getSharedViewCount())
+                .append(", sizeClasses={");
+        boolean first = true;
+        for(SizeClass sizeClass : _sizeClasses)
+        {
+            if(sizeClass.getSlabCount() != 0)
+            {
+                if(!first)
+                {
+                    builder.append(", ");
+                }
+                first = false;
+                builder.append(sizeClass.getChunkSize()).append(": ")
+                        .append(sizeClass.getChunksInUse()).append(" used / ")
+                        .append(sizeClass.getSlabCount() * sizeClass.getChunksPerSlab()).append(" chunks");
+            }
+        }
+        return builder.append("}]").toString();
+    }
+
+    private static final class SharedView extends PhantomReference<ByteBuffer>
+    {
+        private final Runnable _onUnreachable;
+
+        private SharedView(final ByteBuffer view,
+                           final ReferenceQueue<ByteBuffer> queue,
+                           final Runnable onUnreachable)
+        {
+            super(view, queue);
+            _onUnreachable = onUnreachable;
+        }
+
+        private void released()
+        {
+            _onUnreachable.run();
+        }
+    }
+
+    private static final class Slab
+    {
+        private final Deque<ByteBuffer> _freeChunks = new ArrayDeque<>();
+        private final int _chunkCount;
+
+        private Slab(final int slabSize, final int chunkSize)
+        {
+            final ByteBuffer memory = ByteBuffer.allocateDirect(slabSize);
+            for(int offset = 0; offset < slabSize; offset += chunkSize)
+            {
+                memory.limit(offset + chunkSize).position(offset);
+                _freeChunks.add(memory.slice());
+            }
+            _chunkCount = _freeChunks.size();
+        }
+
+        private ByteBuffer take()
+        {
+            return _freeChunks.poll();
+        }
+
+        private void give(final ByteBuffer chunk)
+        {
+            chunk.clear();
+            _freeChunks.push(chunk);
+        }
+
+        private boolean hasFreeChunks()
+        {
+            return !_freeChunks.isEmpty();
+        }
+
+        private boolean isUnused()
+        {
+            return _freeChunks.size() == _chunkCount;
+        }
+    }
+
+    private static final class SizeClass
+    {
+        private final int _chunkSize;
+        private final int _slabSize;
+        private final Map<ByteBuffer, Slab> _allocatedChunks = new IdentityHashMap<>();
+        private final Deque<Slab> _slabsWithFreeChunks = new ArrayDeque<>();
+        private int _slabCount;
+
+        private SizeClass(final int chunkSize, final int slabSize)
+        {
+            _chunkSize = chunkSize;
+            _slabSize = slabSize;
+        }
+
+        private synchronized ByteBuffer allocate()
+        {
+            Slab slab = _slabsWithFreeChunks.peekFirst();
+            if(slab == null)
+            {
+                slab = new Slab(_slabSize, _chunkSize);
+                _slabCount++;
+                _slabsWithFreeChunks.addFirst(slab);
+            }
+            final ByteBuffer chunk = slab.take();
+            if(!slab.hasFreeChunks())
+            {
+                _slabsWithFreeChunks.removeFirst();
+            }
+            _allocatedChunks.put(chunk, slab);
+            return chunk;
+        }
+
+        private synchronized void free(final ByteBuffer chunk)
+        {
+            final Slab slab = _allocatedChunks.remove(chunk);
+            if(slab == null)
+            {
+                throw new IllegalArgumentException("Buffer " + chunk + " was not allocated or has already been freed");
+            }
+            final boolean wasFull = !slab.hasFreeChunks();
+            slab.give(chunk);
+            if(slab.isUnused() && _slabsWithFreeChunks.size() > (wasFull ? 0 : 1))
+            {
+                // another slab has free chunks, so this one is given back
+                if(!wasFull)
+                {
+                    _slabsWithFreeChunks.remove(slab);
+                }
+                _slabCount--;
+            }
+            else if(wasFull)
+            {
+                // behind the slabs with free chunks already, which are used first
+                _slabsWithFreeChunks.addLast(slab);
+            }
+        }
+
+        private int getChunkSize()
+        {
+            return _chunkSize;
+        }
+
+        private int getChunksPerSlab()
+        {
+            return _slabSize / _chunkSize;
+        }
+
+        private synchronized int getSlabCount()
+        {
+            return _slabCount;
+        }
+
+        private synchronized long getChunksInUse()
+        {
+            return _allocatedChunks.size();
+        }
+    }
+}
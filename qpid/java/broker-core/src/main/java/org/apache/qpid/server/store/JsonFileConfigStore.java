@@ -24,13 +24,15 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -64,6 +66,22 @@ public class JsonFileConfigStore implements DurableConfigurationStore
 {
     private static final Logger _logger = Logger.getLogger(JsonFileConfigStore.class);
 
+    /**
+     * Context variable which, when true, makes the store append each change to a log alongside the configuration
+     * file rather than rewriting the whole file.  The log is compacted into the configuration file once it reaches
+     * {@link #COMPACTION_THRESHOLD} changes, and when the store is opened or closed.
+     */
+    public static final String APPEND_LOG = "qpid.jsonConfigStore.appendLog";
+    public static final String COMPACTION_THRESHOLD = "qpid.jsonConfigStore.compactionThreshold";
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    private static final String LOG_OPERATION = "op";
+    private static final String LOG_RECORDS = "records";
+    private static final String LOG_IDS = "ids";
+    private static final String LOG_CREATE = "create";
+    private static final String LOG_UPDATE = "update";
+    private static final String LOG_REMOVE = "remove";
+
     private static final Comparator<Class<? extends ConfiguredObject>> CATEGORY_CLASS_COMPARATOR =
             new Comparator<Class<? extends ConfiguredObject>>()
             {
@@ -100,6 +118,16 @@ public class JsonFileConfigStore implements DurableConfigurationStore
     private String _backupFileName;
     private String _tempFileName;
     private String _lockFileName;
+    private String _logFileName;
+
+    private final ObjectMapper _logMapper = new ObjectMapper();
+    private final Object _syncLock = new Object();
+    private boolean _appendLog;
+    private int _compactionThreshold;
+    private FileChannel _logChannel;
+    private int _logEntries;
+    private volatile long _logWritten;
+    private long _logSynced;
 
     private static final Module _module;
     static
@@ -128,6 +156,7 @@ public class JsonFileConfigStore implements DurableConfigurationStore
     {
         _objectMapper.registerModule(_module);
         _objectMapper.enable(SerializationConfig.Feature.INDENT_OUTPUT);
+        _logMapper.registerModule(_module);
         _rootClass = rootClass;
         _fileHelper = new FileHelper();
     }
@@ -147,8 +176,16 @@ public class JsonFileConfigStore implements DurableConfigurationStore
         _name = parent.getName();
         _classNameMapping = generateClassNameMap(_parent.getModel(), _rootClass);
         FileBasedSettings fileBasedSettings = (FileBasedSettings)_parent;
+        Boolean appendLog = _parent.getContextValue(Boolean.class, APPEND_LOG);
+        _appendLog = appendLog != null && appendLog;
+        Integer compactionThreshold = _parent.getContextValue(Integer.class, COMPACTION_THRESHOLD);
+        _compactionThreshold = compactionThreshold == null ? DEFAULT_COMPACTION_THRESHOLD : compactionThreshold;
         setup(fileBasedSettings);
         load(overwrite, initialRecords);
+        if(_appendLog)
+        {
+            openLog();
+        }
     }
 
     @Override
@@ -181,6 +218,7 @@ public class JsonFileConfigStore implements DurableConfigurationStore
             _configFileName = fileFromSettings.getName();
             _backupFileName = fileFromSettings.getName() + ".bak";
             _tempFileName = fileFromSettings.getName() + ".tmp";
+            _logFileName = fileFromSettings.getName() + ".log";
 
             _lockFileName = fileFromSettings.getName() + ".lck";
         }
@@ -190,6 +228,7 @@ public class JsonFileConfigStore implements DurableConfigurationStore
             _configFileName = _name + ".json";
             _backupFileName = _name + ".bak";
             _tempFileName = _name + ".tmp";
+            _logFileName = _name + ".log";
 
             _lockFileName = _name + ".lck";
         }
@@ -294,39 +333,46 @@ public class JsonFileConfigStore implements DurableConfigurationStore
     protected void load(final boolean overwrite, final ConfiguredObjectRecord[] initialRecords)
     {
         final File configFile = new File(_directoryName, _configFileName);
+        final File logFile = new File(_directoryName, _logFileName);
         try
         {
             boolean updated = false;
-            Collection<ConfiguredObjectRecord> records = Collections.emptyList();
             if(!overwrite)
             {
                 ConfiguredObjectRecordConverter configuredObjectRecordConverter =
                         new ConfiguredObjectRecordConverter(_parent.getModel());
 
-                records = configuredObjectRecordConverter.readFromJson(_rootClass, _parent, new FileReader(configFile));
-            }
+                for(ConfiguredObjectRecord record : configuredObjectRecordConverter.readFromJson(_rootClass, _parent, new FileReader(configFile)))
+                {
+                    putRecord(record);
+                }
 
-            if(records.isEmpty())
-            {
-                records = Arrays.asList(initialRecords);
-                updated = true;
+                // changes appended to the log since the configuration file was last written are compacted into the
+                // file, whether or not the store is still in append log mode
+                if(logFile.exists())
+                {
+                    updated = replayLog(logFile);
+                }
             }
 
-            for(ConfiguredObjectRecord record : records)
+            if(_objectsById.isEmpty())
             {
-                _objectsById.put(record.getId(), record);
-                List<UUID> idsForType = _idsByType.get(record.getType());
-                if (idsForType == null)
+                for(ConfiguredObjectRecord record : initialRecords)
                 {
-                    idsForType = new ArrayList<>();
-                    _idsByType.put(record.getType(), idsForType);
+                    putRecord(record);
                 }
-                idsForType.add(record.getId());
+                updated = true;
             }
+
             if(updated)
             {
                 save();
             }
+            if(logFile.exists())
+            {
+                syncConfigFile();
+                Files.delete(logFile.toPath());
+            }
         }
         catch (IOException e)
         {
@@ -335,7 +381,12 @@ public class JsonFileConfigStore implements DurableConfigurationStore
     }
 
     @Override
-    public synchronized void create(ConfiguredObjectRecord record) throws StoreException
+    public void create(ConfiguredObjectRecord record) throws StoreException
+    {
+        sync(doCreate(record));
+    }
+
+    private synchronized long doCreate(ConfiguredObjectRecord record) throws StoreException
     {
         if(_objectsById.containsKey(record.getId()))
         {
@@ -371,7 +422,7 @@ public class JsonFileConfigStore implements DurableConfigurationStore
 
             idsForType.add(record.getId());
 
-            save();
+            return persist(LOG_CREATE, LOG_RECORDS, Collections.singletonList(toLogRecord(record)));
         }
     }
 
@@ -495,7 +546,7 @@ public class JsonFileConfigStore implements DurableConfigurationStore
     }
 
     @Override
-    public synchronized UUID[] remove(final ConfiguredObjectRecord... objects) throws StoreException
+    public UUID[] remove(final ConfiguredObjectRecord... objects) throws StoreException
     {
         if (objects.length == 0)
         {
@@ -503,6 +554,12 @@ public class JsonFileConfigStore implements DurableConfigurationStore
         }
 
         List<UUID> removedIds = new ArrayList<UUID>();
+        sync(doRemove(removedIds, objects));
+        return removedIds.toArray(new UUID[removedIds.size()]);
+    }
+
+    private synchronized long doRemove(final List<UUID> removedIds, final ConfiguredObjectRecord... objects)
+    {
         for(ConfiguredObjectRecord requestedRecord : objects)
         {
             ConfiguredObjectRecord record = _objectsById.remove(requestedRecord.getId());
@@ -512,13 +569,17 @@ public class JsonFileConfigStore implements DurableConfigurationStore
                 _idsByType.get(record.getType()).remove(record.getId());
             }
         }
-        save();
-        return removedIds.toArray(new UUID[removedIds.size()]);
+        List<String> ids = new ArrayList<String>(removedIds.size());
+        for(UUID id : removedIds)
+        {
+            ids.add(id.toString());
+        }
+        return persist(LOG_REMOVE, LOG_IDS, ids);
     }
 
 
     @Override
-    public synchronized void update(final boolean createIfNecessary, final ConfiguredObjectRecord... records)
+    public void update(final boolean createIfNecessary, final ConfiguredObjectRecord... records)
             throws StoreException
     {
         if (records.length == 0)
@@ -526,6 +587,11 @@ public class JsonFileConfigStore implements DurableConfigurationStore
             return;
         }
 
+        sync(doUpdate(createIfNecessary, records));
+    }
+
+    private synchronized long doUpdate(final boolean createIfNecessary, final ConfiguredObjectRecord... records)
+    {
         for(ConfiguredObjectRecord record : records)
         {
             final UUID id = record.getId();
@@ -557,24 +623,302 @@ public class JsonFileConfigStore implements DurableConfigurationStore
                 throw new StoreException("Cannot update record of unknown type " + type);
             }
         }
+        List<Map<String, Object>> logRecords = new ArrayList<Map<String, Object>>(records.length);
         for(ConfiguredObjectRecord record : records)
         {
             record = new ConfiguredObjectRecordImpl(record);
-            final UUID id = record.getId();
-            final String type = record.getType();
-            if(_objectsById.put(id, record) == null)
+            putRecord(record);
+            logRecords.add(toLogRecord(record));
+        }
+
+        return persist(LOG_UPDATE, LOG_RECORDS, logRecords);
+    }
+
+    private void putRecord(final ConfiguredObjectRecord record)
+    {
+        final UUID id = record.getId();
+        final String type = record.getType();
+        if(_objectsById.put(id, record) == null)
+        {
+            List<UUID> idsForType = _idsByType.get(type);
+            if(idsForType == null)
+            {
+                idsForType = new ArrayList<UUID>();
+                _idsByType.put(type, idsForType);
+            }
+            idsForType.add(id);
+        }
+    }
+
+    /**
+     * Records a change made to the in-memory configuration, either by rewriting the configuration file or by
+     * appending the change to the log.
+     *
+     * @return the position in the log which must be synced before the change is durable, or -1 if the change was
+     * written to the configuration file
+     */
+    private long persist(final String operation, final String key, final List<?> values)
+    {
+        if(_logChannel == null)
+        {
+            save();
+            return -1L;
+        }
+
+        Map<String, Object> entry = new LinkedHashMap<String, Object>();
+        entry.put(LOG_OPERATION, operation);
+        entry.put(key, values);
+        try
+        {
+            byte[] bytes = _logMapper.writeValueAsBytes(entry);
+            ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+            buffer.put(bytes).put((byte) '\n').flip();
+            while(buffer.hasRemaining())
+            {
+                _logChannel.write(buffer);
+            }
+            _logWritten += bytes.length + 1;
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("Cannot append to configuration log " + _logFileName, e);
+        }
+
+        if(++_logEntries >= _compactionThreshold)
+        {
+            try
+            {
+                compact();
+                return -1L;
+            }
+            catch (StoreException e)
+            {
+                // the change is in the log, which is kept until a later compaction succeeds
+                _logger.warn("Failed to compact configuration log " + _logFileName + ", will retry", e);
+            }
+        }
+        return _logWritten;
+    }
+
+    /**
+     * Waits until the log has been synced up to the given position.  Threads which appended while another was
+     * syncing share the next sync, so concurrent changes cost a single fsync between them.
+     */
+    private void sync(final long position)
+    {
+        if(position < 0)
+        {
+            return;
+        }
+        synchronized (_syncLock)
+        {
+            if(_logSynced < position)
+            {
+                long written = _logWritten;
+                try
+                {
+                    _logChannel.force(false);
+                }
+                catch (IOException e)
+                {
+                    throw new StoreException("Cannot sync configuration log " + _logFileName, e);
+                }
+                _logSynced = written;
+            }
+        }
+    }
+
+    private void openLog()
+    {
+        Path logFile = new File(_directoryName, _logFileName).toPath();
+        try
+        {
+            String posixFileAttributes = _parent.getContextValue(String.class, BrokerProperties.POSIX_FILE_PERMISSIONS);
+            _fileHelper.createNewFile(logFile, posixFileAttributes);
+            _logChannel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("Cannot open configuration log " + logFile, e);
+        }
+    }
+
+    /**
+     * Writes the configuration file and empties the log.  The log is only truncated once the new configuration file,
+     * and its directory entry, are durable.  It is truncated in place so that threads waiting to sync earlier appends
+     * find their changes already durable.
+     */
+    private synchronized void compact()
+    {
+        synchronized (_syncLock)
+        {
+            save();
+            try
+            {
+                syncConfigFile();
+                syncDirectory();
+                _logChannel.truncate(0L);
+                _logChannel.force(true);
+            }
+            catch (IOException e)
+            {
+                throw new StoreException("Cannot compact configuration log " + _logFileName, e);
+            }
+            _logEntries = 0;
+            _logSynced = _logWritten;
+        }
+    }
+
+    private void syncConfigFile() throws IOException
+    {
+        try (FileChannel configChannel = FileChannel.open(new File(_directoryName, _configFileName).toPath(),
+                                                          StandardOpenOption.WRITE))
+        {
+            configChannel.force(true);
+        }
+    }
+
+    /**
+     * Syncs the directory so that the rename of the new configuration file into place is durable.
+     */
+    private void syncDirectory() throws IOException
+    {
+        final FileChannel directoryChannel;
+        try
+        {
+            directoryChannel = FileChannel.open(new File(_directoryName).toPath(), StandardOpenOption.READ);
+        }
+        catch (IOException e)
+        {
+            // some platforms, e.g. Windows, cannot open a directory, and make renames durable without it
+            _logger.debug("Cannot open directory " + _directoryName + " to sync it", e);
+            return;
+        }
+
+        try
+        {
+            directoryChannel.force(true);
+        }
+        finally
+        {
+            directoryChannel.close();
+        }
+    }
+
+    private void closeLog()
+    {
+        if(_logChannel != null)
+        {
+            try
+            {
+                if(_logEntries != 0)
+                {
+                    compact();
+                }
+                _logChannel.close();
+                if(_directoryName != null)
+                {
+                    Files.deleteIfExists(new File(_directoryName, _logFileName).toPath());
+                }
+            }
+            catch (IOException e)
+            {
+                throw new StoreException("Cannot close configuration log " + _logFileName, e);
+            }
+            finally
+            {
+                _logChannel = null;
+            }
+        }
+    }
+
+    private Map<String, Object> toLogRecord(final ConfiguredObjectRecord record)
+    {
+        Map<String, Object> logRecord = new LinkedHashMap<String, Object>();
+        logRecord.put("id", record.getId());
+        logRecord.put("type", record.getType());
+        logRecord.put("attributes", record.getAttributes());
+        logRecord.put("parents", record.getParents());
+        return logRecord;
+    }
+
+    private ConfiguredObjectRecord fromLogRecord(final Map<String, Object> logRecord)
+    {
+        Map<String, UUID> parents = new LinkedHashMap<String, UUID>();
+        Map<String, String> parentIds = (Map<String, String>) logRecord.get("parents");
+        if(parentIds != null)
+        {
+            for(Map.Entry<String, String> parent : parentIds.entrySet())
+            {
+                parents.put(parent.getKey(), UUID.fromString(parent.getValue()));
+            }
+        }
+        return new ConfiguredObjectRecordImpl(UUID.fromString((String) logRecord.get("id")),
+                                              (String) logRecord.get("type"),
+                                              (Map<String, Object>) logRecord.get("attributes"),
+                                              parents);
+    }
+
+    /**
+     * Applies the changes in the log to the records read from the configuration file.  A partial entry at the end of
+     * the log, left by a change which was never synced, is discarded.
+     *
+     * @return true if the log held any changes
+     */
+    private boolean replayLog(final File logFile) throws IOException
+    {
+        List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+        int replayed = 0;
+        for(int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i);
+            if(line.isEmpty())
+            {
+                continue;
+            }
+
+            Map<String, Object> entry;
+            try
+            {
+                entry = _logMapper.readValue(line, Map.class);
+            }
+            catch (JsonProcessingException e)
+            {
+                if(i == lines.size() - 1)
+                {
+                    _logger.warn("Discarding incomplete entry at the end of configuration log " + logFile);
+                    break;
+                }
+                throw new StoreException("Configuration log " + logFile + " is corrupt at line " + (i + 1), e);
+            }
+
+            String operation = (String) entry.get(LOG_OPERATION);
+            if(LOG_REMOVE.equals(operation))
             {
-                List<UUID> idsForType = _idsByType.get(type);
-                if(idsForType == null)
+                for(String id : (List<String>) entry.get(LOG_IDS))
                 {
-                    idsForType = new ArrayList<UUID>();
-                    _idsByType.put(type, idsForType);
+                    ConfiguredObjectRecord record = _objectsById.remove(UUID.fromString(id));
+                    if(record != null)
+                    {
+                        _idsByType.get(record.getType()).remove(record.getId());
+                    }
                 }
-                idsForType.add(id);
             }
+            else
+            {
+                for(Map<String, Object> logRecord : (List<Map<String, Object>>) entry.get(LOG_RECORDS))
+                {
+                    putRecord(fromLogRecord(logRecord));
+                }
+            }
+            replayed++;
         }
 
-        save();
+        if(replayed != 0)
+        {
+            _logger.info("Replayed " + replayed + " changes from configuration log " + logFile);
+        }
+        return replayed != 0;
     }
 
     @Override
@@ -582,12 +926,19 @@ public class JsonFileConfigStore implements DurableConfigurationStore
     {
         try
         {
-            releaseFileLock();
+            closeLog();
         }
         finally
         {
-            _idsByType.clear();
-            _objectsById.clear();
+            try
+            {
+                releaseFileLock();
+            }
+            finally
+            {
+                _idsByType.clear();
+                _objectsById.clear();
+            }
         }
     }
 
@@ -609,6 +960,11 @@ public class JsonFileConfigStore implements DurableConfigurationStore
             {
                 _logger.info("Failed to delete the store at location " + storePath);
             }
+            File logFile = new File(storePath + ".log");
+            if (logFile.isFile() && !logFile.delete())
+            {
+                _logger.info("Failed to delete the configuration log at location " + logFile);
+            }
         }
 
         _configFileName = null;
@@ -30,6 +30,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.log4j.Logger;
+
 import org.apache.qpid.server.message.EnqueueableMessage;
 import org.apache.qpid.server.model.ConfiguredObject;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
@@ -41,13 +43,23 @@ public class MemoryMessageStore implements MessageStore
 {
     public static final String TYPE = "Memory";
 
+    /**
+     * Context variables which when set true hold message content in direct memory from a {@link DirectSlabAllocator},
+     * keeping it out of the heap, with the given slab and minimum chunk sizes.
+     */
+    public static final String DIRECT_CONTENT = "qpid.memoryMessageStore.directContent";
+    public static final String DIRECT_CONTENT_SLAB_SIZE = "qpid.memoryMessageStore.directContent.slabSize";
+    public static final String DIRECT_CONTENT_MIN_CHUNK_SIZE = "qpid.memoryMessageStore.directContent.minChunkSize";
+
+    private static final Logger _logger = Logger.getLogger(MemoryMessageStore.class);
+
     private final AtomicLong _messageId = new AtomicLong(1);
 
     private final ConcurrentMap<Long, StoredMemoryMessage> _messages = new ConcurrentHashMap<Long, StoredMemoryMessage>();
     private final Object _transactionLock = new Object();
     private final Map<UUID, Set<Long>> _messageInstances = new HashMap<UUID, Set<Long>>();
     private final Map<Xid, DistributedTransactionRecords> _distributedTransactions = new HashMap<Xid, DistributedTransactionRecords>();
-
+    private volatile DirectSlabAllocator _contentAllocator;
 
     private final class MemoryMessageStoreTransaction implements Transaction
     {
@@ -191,6 +203,15 @@ public class MemoryMessageStore implements MessageStore
     @Override
     public void openMessageStore(final ConfiguredObject<?> parent)
     {
+        Boolean directContent = parent.getContextValue(Boolean.class, DIRECT_CONTENT);
+        if(directContent != null && directContent)
+        {
+            Integer slabSize = parent.getContextValue(Integer.class, DIRECT_CONTENT_SLAB_SIZE);
+            Integer minChunkSize = parent.getContextValue(Integer.class, DIRECT_CONTENT_MIN_CHUNK_SIZE);
+            _contentAllocator = new DirectSlabAllocator(
+                    slabSize == null ? DirectSlabAllocator.DEFAULT_SLAB_SIZE : slabSize,
+                    minChunkSize == null ? DirectSlabAllocator.DEFAULT_MIN_CHUNK_SIZE : minChunkSize);
+        }
     }
 
     @Override
@@ -204,7 +225,7 @@ public class MemoryMessageStore implements MessageStore
     {
         long id = getNextMessageId();
 
-        StoredMemoryMessage<T> storedMemoryMessage = new StoredMemoryMessage<T>(id, metaData)
+        StoredMemoryMessage<T> storedMemoryMessage = new StoredMemoryMessage<T>(id, metaData, _contentAllocator)
         {
 
             @Override
@@ -241,6 +262,12 @@ public class MemoryMessageStore implements MessageStore
     @Override
     public void closeMessageStore()
     {
+        final DirectSlabAllocator contentAllocator = _contentAllocator;
+        if(contentAllocator != null)
+        {
+            _logger.info("Direct content memory on close: " + contentAllocator);
+            _contentAllocator = null;
+        }
         _messages.clear();
         synchronized (_transactionLock)
         {
@@ -249,6 +276,14 @@ public class MemoryMessageStore implements MessageStore
         }
     }
 
+    /**
+     * @return the allocator holding message content in direct memory, or null if content is held on the heap
+     */
+    public DirectSlabAllocator getContentAllocator()
+    {
+        return _contentAllocator;
+    }
+
     @Override
     public void addEventListener(final EventListener eventListener, final Event... events)
     {
@@ -28,11 +28,24 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
     private final long _messageNumber;
     private ByteBuffer _content;
     private final T _metaData;
+    private final DirectSlabAllocator _allocator;
+    private DirectContent _directContent;
 
     public StoredMemoryMessage(long messageNumber, T metaData)
+    {
+        this(messageNumber, metaData, null);
+    }
+
+    /**
+     * @param allocator if not null, the content is copied into direct memory from the allocator.  Content is handed
+     *                  out as read-only views of that memory, which is freed once the message has been removed and
+     *                  none of the views handed out remains reachable.
+     */
+    public StoredMemoryMessage(long messageNumber, T metaData, DirectSlabAllocator allocator)
     {
         _messageNumber = messageNumber;
         _metaData = metaData;
+        _allocator = allocator;
     }
 
     public long getMessageNumber()
@@ -42,7 +55,12 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
 
     public void addContent(int offsetInMessage, ByteBuffer src)
     {
-        if(_content == null)
+        if(_allocator != null)
+        {
+            _allocator.releaseUnreachableViews();
+            addDirectContent(offsetInMessage, src);
+        }
+        else if(_content == null)
         {
             if(offsetInMessage == 0)
             {
@@ -82,7 +100,38 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
         }
     }
 
+    private synchronized void addDirectContent(int offsetInMessage, ByteBuffer src)
+    {
+        final int end = offsetInMessage + src.remaining();
+        if(_content == null || _content.limit() < end)
+        {
+            ByteBuffer oldContent = _content;
+            _content = _allocator.allocate(Math.max(_metaData.getContentSize(), end));
+            if(oldContent != null)
+            {
+                _content.duplicate().put(oldContent.duplicate());
+                _directContent.retire();
+            }
+            _directContent = new DirectContent(_content);
+        }
+        ByteBuffer content = _content.duplicate();
+        content.position(offsetInMessage);
+        content.put(src.duplicate());
+    }
+
     public int getContent(int offset, ByteBuffer dst)
+    {
+        if(_allocator != null)
+        {
+            synchronized (this)
+            {
+                return copyContent(offset, dst);
+            }
+        }
+        return copyContent(offset, dst);
+    }
+
+    private int copyContent(int offset, ByteBuffer dst)
     {
         if(_content == null)
         {
@@ -105,6 +154,20 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
 
 
     public ByteBuffer getContent(int offsetInMessage, int size)
+    {
+        if(_allocator != null)
+        {
+            _allocator.releaseUnreachableViews();
+            synchronized (this)
+            {
+                final ByteBuffer content = sliceContent(offsetInMessage, size);
+                return content == null ? null : _directContent.share(content);
+            }
+        }
+        return sliceContent(offsetInMessage, size);
+    }
+
+    private ByteBuffer sliceContent(int offsetInMessage, int size)
     {
         if(_content == null)
         {
@@ -129,6 +192,19 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
 
     public void remove()
     {
+        if(_allocator != null)
+        {
+            _allocator.releaseUnreachableViews();
+            synchronized (this)
+            {
+                if(_content != null)
+                {
+                    _directContent.retire();
+                    _directContent = null;
+                    _content = null;
+                }
+            }
+        }
     }
 
     @Override
@@ -142,4 +218,47 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
     {
         return false;
     }
+
+    /**
+     * A buffer of direct content, counting the views of it handed out which may still be in use.  It is freed once it
+     * has been retired, on removal of the message or on growing the content, and its last view is unreachable.
+     */
+    private final class DirectContent implements Runnable
+    {
+        private final ByteBuffer _buffer;
+        private int _views;
+        private boolean _retired;
+
+        private DirectContent(final ByteBuffer buffer)
+        {
+            _buffer = buffer;
+        }
+
+        private ByteBuffer share(final ByteBuffer view)
+        {
+            _views++;
+            return _allocator.share(view, this);
+        }
+
+        private void retire()
+        {
+            _retired = true;
+            if(_views == 0)
+            {
+                _allocator.free(_buffer);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (StoredMemoryMessage.this)
+            {
+                if(--_views == 0 && _retired)
+                {
+                    _allocator.free(_buffer);
+                }
+            }
+        }
+    }
 }
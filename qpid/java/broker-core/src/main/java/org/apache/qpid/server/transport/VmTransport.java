@@ -0,0 +1,143 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.qpid.server.model.Broker;
+import org.apache.qpid.server.model.Protocol;
+import org.apache.qpid.server.model.Transport;
+import org.apache.qpid.server.model.port.AmqpPort;
+import org.apache.qpid.server.protocol.MultiVersionProtocolEngineFactory;
+import org.apache.qpid.transport.NetworkTransportConfiguration;
+import org.apache.qpid.transport.network.vm.VmNetworkTransport;
+
+/**
+ * Accepts connections from clients in the same JVM which connect to the port number of the port with the
+ * {@code vm} transport.  No socket is bound.
+ */
+class VmTransport implements AcceptingTransport
+{
+    private final AmqpPort<?> _port;
+    private final Set<Protocol> _supported;
+    private final Protocol _defaultSupportedProtocolReply;
+    private VmNetworkTransport _networkTransport;
+
+    VmTransport(final AmqpPort<?> port,
+                final Set<Protocol> supported,
+                final Protocol defaultSupportedProtocolReply)
+    {
+        _port = port;
+        _supported = supported;
+        _defaultSupportedProtocolReply = defaultSupportedProtocolReply;
+    }
+
+    @Override
+    public void start()
+    {
+        final MultiVersionProtocolEngineFactory protocolEngineFactory =
+                new MultiVersionProtocolEngineFactory(_port.getParent(Broker.class),
+                                                      null,
+                                                      false,
+                                                      false,
+                                                      _supported,
+                                                      _defaultSupportedProtocolReply,
+                                                      _port,
+                                                      Transport.VM);
+
+        _networkTransport = new VmNetworkTransport();
+        _networkTransport.accept(new VmNetworkTransportConfiguration(), protocolEngineFactory, null);
+    }
+
+    public int getAcceptingPort()
+    {
+        return _networkTransport.getAcceptingPort();
+    }
+
+    @Override
+    public void close()
+    {
+        if (_networkTransport != null)
+        {
+            _networkTransport.close();
+        }
+    }
+
+    private class VmNetworkTransportConfiguration implements NetworkTransportConfiguration
+    {
+        @Override
+        public boolean wantClientAuth()
+        {
+            return false;
+        }
+
+        @Override
+        public Collection<String> getEnabledCipherSuites()
+        {
+            return _port.getEnabledCipherSuites();
+        }
+
+        @Override
+        public Collection<String> getDisabledCipherSuites()
+        {
+            return _port.getDisabledCipherSuites();
+        }
+
+        @Override
+        public boolean needClientAuth()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean getTcpNoDelay()
+        {
+            return _port.isTcpNoDelay();
+        }
+
+        @Override
+        public int getSendBufferSize()
+        {
+            return _port.getSendBufferSize();
+        }
+
+        @Override
+        public int getReceiveBufferSize()
+        {
+            return _port.getReceiveBufferSize();
+        }
+
+        @Override
+        public InetSocketAddress getAddress()
+        {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), _port.getPort());
+        }
+
+        @Override
+        public String toString()
+        {
+            return _port.toString();
+        }
+    }
+}
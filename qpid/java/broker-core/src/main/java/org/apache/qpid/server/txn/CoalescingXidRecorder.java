@@ -0,0 +1,241 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.server.txn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.apache.qpid.server.store.MessageStore;
+import org.apache.qpid.server.store.StoreException;
+import org.apache.qpid.server.store.Transaction;
+import org.apache.qpid.transport.Xid;
+
+/**
+ * Writes and removes the prepared state of distributed transaction branches, coalescing the updates from branches
+ * completing concurrently into a single store transaction.
+ * <p>
+ * Each caller queues its update and then waits for the commit lock.  The holder of the lock applies every queued
+ * update in one store transaction and commits it, so while one batch is being synced to disk the updates from other
+ * branches build up to be committed together in the next.  A caller which obtains the lock to find its update has
+ * already been committed by another simply returns.
+ * <p>
+ * Should the store transaction for a batch fail, it is aborted and each update in the batch is retried in a store
+ * transaction of its own, so that only the branch whose update cannot be written sees the failure.
+ */
+class CoalescingXidRecorder
+{
+    private static final Logger _logger = Logger.getLogger(CoalescingXidRecorder.class);
+
+    private final Queue<Update> _pending = new ConcurrentLinkedQueue<Update>();
+    private final Lock _commitLock = new ReentrantLock();
+
+    void recordXid(final MessageStore store,
+                   final Xid xid,
+                   final Transaction.Record[] enqueues,
+                   final Transaction.Record[] dequeues) throws StoreException
+    {
+        perform(new Update(store, xid, enqueues, dequeues));
+    }
+
+    void removeXid(final MessageStore store, final Xid xid) throws StoreException
+    {
+        perform(new Update(store, xid, null, null));
+    }
+
+    private void perform(final Update update)
+    {
+        _pending.add(update);
+        _commitLock.lock();
+        try
+        {
+            if(!update._complete)
+            {
+                commitPending();
+            }
+        }
+        finally
+        {
+            _commitLock.unlock();
+        }
+
+        if(update._exception != null)
+        {
+            throw update._exception;
+        }
+    }
+
+    private void commitPending()
+    {
+        final List<Update> polled = new ArrayList<Update>();
+        final Map<MessageStore, List<Update>> updatesByStore = new LinkedHashMap<MessageStore, List<Update>>();
+        Update update;
+        while((update = _pending.poll()) != null)
+        {
+            polled.add(update);
+            List<Update> updates = updatesByStore.get(update._store);
+            if(updates == null)
+            {
+                updates = new ArrayList<Update>();
+                updatesByStore.put(update._store, updates);
+            }
+            updates.add(update);
+        }
+
+        Error error = null;
+        try
+        {
+            for(Map.Entry<MessageStore, List<Update>> entry : updatesByStore.entrySet())
+            {
+                commitBatch(entry.getKey(), entry.getValue());
+            }
+        }
+        catch (Error e)
+        {
+            error = e;
+            throw e;
+        }
+        finally
+        {
+            // no waiting branch may be left to commit an update already taken from the queue
+            for(Update polledUpdate : polled)
+            {
+                if(!polledUpdate._complete)
+                {
+                    polledUpdate._exception =
+                            new StoreException("Failed to update the prepared state of transaction branch "
+                                               + polledUpdate._xid, error);
+                    polledUpdate._complete = true;
+                }
+            }
+        }
+    }
+
+    private void commitBatch(final MessageStore store, final List<Update> updates)
+    {
+        if(_logger.isDebugEnabled())
+        {
+            _logger.debug("Committing " + updates.size() + " transaction branch update(s) in one store transaction");
+        }
+
+        RuntimeException exception = commit(store, updates);
+        if(exception == null || updates.size() == 1)
+        {
+            for(Update update : updates)
+            {
+                update.complete(exception);
+            }
+        }
+        else
+        {
+            _logger.debug("Store transaction for a batch of transaction branch updates failed,"
+                          + " retrying each update on its own", exception);
+            for(Update update : updates)
+            {
+                update.complete(commit(store, Collections.singletonList(update)));
+            }
+        }
+    }
+
+    /**
+     * Applies the updates in a single store transaction, aborting it on failure.
+     *
+     * @return the exception if the updates could not be committed, otherwise null
+     */
+    private RuntimeException commit(final MessageStore store, final List<Update> updates)
+    {
+        Transaction txn = null;
+        try
+        {
+            txn = store.newTransaction();
+            for(Update update : updates)
+            {
+                update.applyTo(txn);
+            }
+            txn.commitTran();
+            return null;
+        }
+        catch (RuntimeException e)
+        {
+            if(txn != null)
+            {
+                try
+                {
+                    txn.abortTran();
+                }
+                catch (RuntimeException abortException)
+                {
+                    _logger.warn("Failed to abort store transaction after failing to update transaction branches",
+                                 abortException);
+                }
+            }
+            return e;
+        }
+    }
+
+    private static final class Update
+    {
+        private final MessageStore _store;
+        private final Xid _xid;
+        private final Transaction.Record[] _enqueues;
+        private final Transaction.Record[] _dequeues;
+        // guarded by the commit lock
+        private boolean _complete;
+        private RuntimeException _exception;
+
+        private Update(final MessageStore store,
+                       final Xid xid,
+                       final Transaction.Record[] enqueues,
+                       final Transaction.Record[] dequeues)
+        {
+            _store = store;
+            _xid = xid;
+            _enqueues = enqueues;
+            _dequeues = dequeues;
+        }
+
+        private void complete(final RuntimeException exception)
+        {
+            _exception = exception;
+            _complete = true;
+        }
+
+        private void applyTo(final Transaction txn)
+        {
+            if(_enqueues == null)
+            {
+                txn.removeXid(_xid.getFormat(), _xid.getGlobalId(), _xid.getBranchId());
+            }
+            else
+            {
+                txn.recordXid(_xid.getFormat(), _xid.getGlobalId(), _xid.getBranchId(), _enqueues, _dequeues);
+            }
+        }
+    }
+}
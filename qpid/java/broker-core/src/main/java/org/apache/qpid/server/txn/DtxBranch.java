@@ -54,6 +54,7 @@ public class DtxBranch
     private VirtualHostImpl _vhost;
     private ScheduledFuture<?> _timeoutFuture;
     private MessageStore _store;
+    private volatile CoalescingXidRecorder _xidRecorder;
 
 
     public enum State
@@ -90,6 +91,11 @@ public class DtxBranch
         _state = state;
     }
 
+    void setXidRecorder(CoalescingXidRecorder xidRecorder)
+    {
+        _xidRecorder = xidRecorder;
+    }
+
     public long getTimeout()
     {
         return _timeout;
@@ -224,13 +230,19 @@ public class DtxBranch
             _logger.debug("Performing prepare for DtxBranch " + _xid);
         }
 
-        Transaction txn = _store.newTransaction();
-        txn.recordXid(_xid.getFormat(),
-                      _xid.getGlobalId(),
-                      _xid.getBranchId(),
-                      _enqueueRecords.toArray(new Record[_enqueueRecords.size()]),
-                      _dequeueRecords.toArray(new Record[_dequeueRecords.size()]));
-        txn.commitTran();
+        final Record[] enqueues = _enqueueRecords.toArray(new Record[_enqueueRecords.size()]);
+        final Record[] dequeues = _dequeueRecords.toArray(new Record[_dequeueRecords.size()]);
+        final CoalescingXidRecorder xidRecorder = _xidRecorder;
+        if(xidRecorder != null)
+        {
+            xidRecorder.recordXid(_store, _xid, enqueues, dequeues);
+        }
+        else
+        {
+            Transaction txn = _store.newTransaction();
+            txn.recordXid(_xid.getFormat(), _xid.getGlobalId(), _xid.getBranchId(), enqueues, dequeues);
+            txn.commitTran();
+        }
 
         prePrepareTransaction();
     }
@@ -263,9 +275,17 @@ public class DtxBranch
         {
             // prepare has previously been called
 
-            Transaction txn = _store.newTransaction();
-            txn.removeXid(_xid.getFormat(), _xid.getGlobalId(), _xid.getBranchId());
-            txn.commitTran();
+            final CoalescingXidRecorder xidRecorder = _xidRecorder;
+            if(xidRecorder != null)
+            {
+                xidRecorder.removeXid(_store, _xid);
+            }
+            else
+            {
+                Transaction txn = _store.newTransaction();
+                txn.removeXid(_xid.getFormat(), _xid.getGlobalId(), _xid.getBranchId());
+                txn.commitTran();
+            }
 
             _transaction.abortTran();
         }
@@ -22,25 +22,38 @@
 package org.apache.qpid.server.txn;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.qpid.server.store.StoreException;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.transport.Xid;
 
+/**
+ * The registry of the distributed transaction branches known to a virtual host.
+ * <p>
+ * The branches are held in a concurrent map, partitioned by the hash of their Xid, so that operations on unrelated
+ * branches do not contend.  Operations on a branch are serialised by locking the branch itself; as a branch may be
+ * unregistered by another thread before its lock is obtained, operations check that the branch is still registered
+ * once they hold the lock.  The store updates made when branches are prepared and rolled back are coalesced across
+ * concurrently completing branches by a {@link CoalescingXidRecorder}.
+ */
 public class DtxRegistry
 {
-    private final Map<ComparableXid, DtxBranch> _branches = new HashMap<ComparableXid, DtxBranch>();
+    private final ConcurrentMap<ComparableXid, DtxBranch> _branches = new ConcurrentHashMap<ComparableXid, DtxBranch>();
+    private final CoalescingXidRecorder _xidRecorder = new CoalescingXidRecorder();
 
 
     private static final class ComparableXid
     {
         private final Xid _xid;
+        private final int _hashCode;
 
         private ComparableXid(Xid xid)
         {
             _xid = xid;
+            _hashCode = hashCode(xid);
         }
 
         @Override
@@ -80,43 +93,53 @@ public class DtxRegistry
 
         @Override
         public int hashCode()
+        {
+            return _hashCode;
+        }
+
+        private static int hashCode(Xid xid)
         {
             int result = 0;
-            for(int i = 0; i < _xid.getGlobalId().length; i++)
+            for(int i = 0; i < xid.getGlobalId().length; i++)
             {
-                result = 31 * result + (int) _xid.getGlobalId()[i];
+                result = 31 * result + (int) xid.getGlobalId()[i];
             }
-            for(int i = 0; i < _xid.getBranchId().length; i++)
+            for(int i = 0; i < xid.getBranchId().length; i++)
             {
-                result = 31 * result + (int) _xid.getBranchId()[i];
+                result = 31 * result + (int) xid.getBranchId()[i];
             }
 
             return result;
         }
     }
 
-    public synchronized DtxBranch getBranch(Xid xid)
+    public DtxBranch getBranch(Xid xid)
     {
         return _branches.get(new ComparableXid(xid));
     }
 
-    public synchronized boolean registerBranch(DtxBranch branch)
+    public boolean registerBranch(DtxBranch branch)
     {
         ComparableXid xid = new ComparableXid(branch.getXid());
-        if(!_branches.containsKey(xid))
+        if(_branches.putIfAbsent(xid, branch) == null)
         {
-            _branches.put(xid, branch);
+            branch.setXidRecorder(_xidRecorder);
             return true;
         }
         return false;
     }
 
-    synchronized boolean unregisterBranch(DtxBranch branch)
+    boolean unregisterBranch(DtxBranch branch)
     {
-        return (_branches.remove(new ComparableXid(branch.getXid())) != null);
+        return _branches.remove(new ComparableXid(branch.getXid()), branch);
     }
 
-    public synchronized void commit(Xid id, boolean onePhase)
+    private boolean isRegistered(DtxBranch branch)
+    {
+        return _branches.get(new ComparableXid(branch.getXid())) == branch;
+    }
+
+    public void commit(Xid id, boolean onePhase)
             throws IncorrectDtxStateException, UnknownDtxBranchException, StoreException, RollbackOnlyDtxException, TimeoutDtxException
     {
         DtxBranch branch = getBranch(id);
@@ -124,6 +147,10 @@ public class DtxRegistry
         {
             synchronized (branch)
             {
+                if(!isRegistered(branch))
+                {
+                    throw new UnknownDtxBranchException(id);
+                }
                 if(!branch.hasAssociatedActiveSessions())
                 {
                     branch.clearAssociations();
@@ -162,7 +189,7 @@ public class DtxRegistry
         }
     }
 
-    public synchronized void prepare(Xid id)
+    public void prepare(Xid id)
             throws UnknownDtxBranchException,
             IncorrectDtxStateException, StoreException, RollbackOnlyDtxException, TimeoutDtxException
     {
@@ -171,6 +198,10 @@ public class DtxRegistry
         {
             synchronized (branch)
             {
+                if(!isRegistered(branch))
+                {
+                    throw new UnknownDtxBranchException(id);
+                }
                 if(!branch.hasAssociatedActiveSessions())
                 {
                     branch.clearAssociations();
@@ -204,7 +235,7 @@ public class DtxRegistry
         }
     }
 
-    public synchronized void rollback(Xid id)
+    public void rollback(Xid id)
             throws IncorrectDtxStateException,
             UnknownDtxBranchException,
             StoreException, TimeoutDtxException
@@ -215,6 +246,10 @@ public class DtxRegistry
         {
             synchronized (branch)
             {
+                if(!isRegistered(branch))
+                {
+                    throw new UnknownDtxBranchException(id);
+                }
                 if(branch.expired() || branch.getState() == DtxBranch.State.TIMEDOUT)
                 {
                     unregisterBranch(branch);
@@ -247,6 +282,10 @@ public class DtxRegistry
         {
             synchronized (branch)
             {
+                if(!isRegistered(branch))
+                {
+                    throw new UnknownDtxBranchException(id);
+                }
                 if(!branch.hasAssociatedSessions())
                 {
                     if(branch.getState() != DtxBranch.State.HEUR_COM && branch.getState() != DtxBranch.State.HEUR_RB)
@@ -295,7 +334,7 @@ public class DtxRegistry
         }
     }
 
-    public synchronized List<Xid> recover()
+    public List<Xid> recover()
     {
         List<Xid> inDoubt = new ArrayList<Xid>();
         for(DtxBranch branch : _branches.values())
@@ -308,21 +347,24 @@ public class DtxRegistry
         return inDoubt;
     }
 
-    public synchronized void endAssociations(AMQSessionModel session)
+    public void endAssociations(AMQSessionModel session)
     {
         for(DtxBranch branch : _branches.values())
         {
-            if(branch.isAssociated(session))
+            synchronized (branch)
             {
-                branch.setState(DtxBranch.State.ROLLBACK_ONLY);
-                branch.disassociateSession(session);
+                if(branch.isAssociated(session))
+                {
+                    branch.setState(DtxBranch.State.ROLLBACK_ONLY);
+                    branch.disassociateSession(session);
+                }
             }
         }
 
     }
 
 
-    public synchronized void close()
+    public void close()
     {
         for(DtxBranch branch : _branches.values())
         {
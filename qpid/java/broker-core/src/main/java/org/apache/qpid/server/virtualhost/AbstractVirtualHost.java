@@ -65,6 +65,7 @@ import org.apache.qpid.server.model.*;
 import org.apache.qpid.server.model.adapter.ConnectionAdapter;
 import org.apache.qpid.server.plugin.ConnectionValidator;
 import org.apache.qpid.server.plugin.QpidServiceLoader;
+import org.apache.qpid.server.plugin.QueueRunnerSchedulerFactory;
 import org.apache.qpid.server.plugin.SystemNodeCreator;
 import org.apache.qpid.server.protocol.AMQConnectionModel;
 import org.apache.qpid.server.protocol.AMQSessionModel;
@@ -72,15 +73,18 @@ import org.apache.qpid.server.protocol.LinkRegistry;
 import org.apache.qpid.server.queue.AMQQueue;
 import org.apache.qpid.server.queue.QueueConsumer;
 import org.apache.qpid.server.queue.QueueEntry;
+import org.apache.qpid.server.queue.QueueRunnerScheduler;
 import org.apache.qpid.server.security.SecurityManager;
 import org.apache.qpid.server.security.access.Operation;
 import org.apache.qpid.server.stats.StatisticsCounter;
 import org.apache.qpid.server.store.ConfiguredObjectRecord;
 import org.apache.qpid.server.store.ConfiguredObjectRecordImpl;
+import org.apache.qpid.server.store.DirectSlabAllocator;
 import org.apache.qpid.server.store.DurableConfigurationStore;
 import org.apache.qpid.server.store.Event;
 import org.apache.qpid.server.store.EventListener;
 import org.apache.qpid.server.store.GenericRecoverer;
+import org.apache.qpid.server.store.MemoryMessageStore;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.MessageStoreProvider;
 import org.apache.qpid.server.store.StoreException;
@@ -112,6 +116,9 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
 
     private ScheduledThreadPoolExecutor _houseKeepingTasks;
 
+    private final Object _queueRunnerSchedulerLock = new Object();
+    private QueueRunnerScheduler _queueRunnerScheduler;
+
     private final Broker<?> _broker;
 
     private final ConnectionRegistry _connectionRegistry;
@@ -288,6 +295,16 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         closeMessageStore();
     }
 
+    @Override
+    protected int getChildActivationThreadCount(final Class<? extends ConfiguredObject> childClass)
+    {
+        if(childClass == Queue.class)
+        {
+            return getContextValue(Integer.class, QUEUE_ACTIVATION_THREAD_COUNT);
+        }
+        return super.getChildActivationThreadCount(childClass);
+    }
+
     @Override
     protected void onOpen()
     {
@@ -561,6 +578,71 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         return _houseKeepingTasks.getActiveCount();
     }
 
+    @Override
+    public QueueRunnerScheduler getQueueRunnerScheduler()
+    {
+        synchronized (_queueRunnerSchedulerLock)
+        {
+            if (_queueRunnerScheduler == null)
+            {
+                String type = getContextValue(String.class, QUEUE_RUNNER_SCHEDULER);
+                QueueRunnerSchedulerFactory factory =
+                        new QpidServiceLoader().getInstancesByType(QueueRunnerSchedulerFactory.class).get(type);
+                if (factory == null)
+                {
+                    throw new IllegalConfigurationException("Unknown queue runner scheduler type '" + type + "'");
+                }
+                _queueRunnerScheduler = factory.createScheduler(this);
+            }
+            return _queueRunnerScheduler;
+        }
+    }
+
+    protected void shutdownQueueRunnerScheduler()
+    {
+        synchronized (_queueRunnerSchedulerLock)
+        {
+            if (_queueRunnerScheduler != null)
+            {
+                _queueRunnerScheduler.close();
+                _queueRunnerScheduler = null;
+            }
+        }
+    }
+
+    @Override
+    public long getQueueRunnerRunQueueLength()
+    {
+        QueueRunnerScheduler scheduler;
+        synchronized (_queueRunnerSchedulerLock)
+        {
+            scheduler = _queueRunnerScheduler;
+        }
+        return scheduler == null ? 0L : scheduler.getRunQueueLength();
+    }
+
+    @Override
+    public long getDirectContentReservedBytes()
+    {
+        DirectSlabAllocator allocator = getDirectContentAllocator();
+        return allocator == null ? 0L : allocator.getReservedBytes();
+    }
+
+    @Override
+    public long getDirectContentAllocatedBytes()
+    {
+        DirectSlabAllocator allocator = getDirectContentAllocator();
+        return allocator == null ? 0L : allocator.getAllocatedBytes();
+    }
+
+    private DirectSlabAllocator getDirectContentAllocator()
+    {
+        MessageStore messageStore = getMessageStore();
+        return messageStore instanceof MemoryMessageStore
+                ? ((MemoryMessageStore) messageStore).getContentAllocator()
+                : null;
+    }
+
     @Override
     public List<String> getEnabledConnectionValidators()
     {
@@ -739,6 +821,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         _dtxRegistry.close();
         closeMessageStore();
         shutdownHouseKeeping();
+        shutdownQueueRunnerScheduler();
 
         _eventLogger.message(VirtualHostMessages.CLOSED(getName()));
     }
@@ -1224,6 +1307,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     {
         closeChildren();
         shutdownHouseKeeping();
+        shutdownQueueRunnerScheduler();
         closeMessageStore();
         setState(State.STOPPED);
     }
@@ -36,6 +36,7 @@ import org.apache.qpid.server.model.VirtualHost;
 import org.apache.qpid.server.protocol.AMQConnectionModel;
 import org.apache.qpid.server.protocol.LinkRegistry;
 import org.apache.qpid.server.queue.AMQQueue;
+import org.apache.qpid.server.queue.QueueRunnerScheduler;
 import org.apache.qpid.server.security.SecurityManager;
 import org.apache.qpid.server.stats.StatisticsGatherer;
 import org.apache.qpid.server.store.DurableConfigurationStore;
@@ -99,6 +100,8 @@ public interface VirtualHostImpl< X extends VirtualHostImpl<X,Q,E>, Q extends AM
 
     int getHouseKeepingActiveCount();
 
+    QueueRunnerScheduler getQueueRunnerScheduler();
+
     DtxRegistry getDtxRegistry();
 
     LinkRegistry getLinkRegistry(String remoteContainerId);
@@ -137,6 +137,12 @@ public class CurrentThreadTaskExecutor implements TaskExecutor
         };
     }
 
+    @Override
+    public boolean isTaskExecutorThread()
+    {
+        return true;
+    }
+
     public static TaskExecutor newStartedInstance()
     {
         TaskExecutor executor = new CurrentThreadTaskExecutor();
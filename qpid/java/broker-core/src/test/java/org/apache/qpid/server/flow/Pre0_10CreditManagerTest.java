@@ -0,0 +1,202 @@
+/*
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+*/
+package org.apache.qpid.server.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class Pre0_10CreditManagerTest extends QpidTestCase
+{
+    private static final int THREADS = 4;
+    private static final int ITERATIONS = 50000;
+
+    private Pre0_10CreditManager _creditManager;
+    private RecordingListener _listener;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _creditManager = new Pre0_10CreditManager(0L, 0L);
+        _listener = new RecordingListener();
+        _creditManager.addStateListener(_listener);
+    }
+
+    public void testUseAndRestoreCredit()
+    {
+        _creditManager.setCreditLimits(100L, 2L);
+        assertTrue("Manager should have credit", _creditManager.hasCredit());
+
+        assertTrue("Credit should be available", _creditManager.useCreditForMessage(40L));
+        assertTrue("Credit should be available", _creditManager.useCreditForMessage(40L));
+        assertEquals("unexpected message credit", 0L, _creditManager.getMessageCredit());
+        assertEquals("unexpected bytes credit", 20L, _creditManager.getBytesCredit());
+        assertFalse("Manager should not have credit", _creditManager.hasCredit());
+
+        assertFalse("Credit should not be available", _creditManager.useCreditForMessage(1L));
+        assertEquals("unexpected notifications", 1, _listener.getNotifications().size());
+        assertFalse("Listener should have been told credit was exhausted", _listener.getLastState());
+
+        _creditManager.restoreCredit(1L, 40L);
+        assertEquals("unexpected message credit", 1L, _creditManager.getMessageCredit());
+        assertEquals("unexpected bytes credit", 60L, _creditManager.getBytesCredit());
+        assertTrue("Listener should have been told credit was restored", _listener.getLastState());
+    }
+
+    public void testRestoredCreditIsLimited()
+    {
+        _creditManager.setCreditLimits(100L, 2L);
+        assertTrue("Credit should be available", _creditManager.useCreditForMessage(40L));
+
+        _creditManager.restoreCredit(5L, 500L);
+        assertEquals("unexpected message credit", 2L, _creditManager.getMessageCredit());
+        assertEquals("unexpected bytes credit", 100L, _creditManager.getBytesCredit());
+    }
+
+    public void testMessageLargerThanBytesLimitIsAllowedWhenNoCreditUsed()
+    {
+        _creditManager.setCreditLimits(100L, 0L);
+
+        assertTrue("Oversized message should be allowed with full credit", _creditManager.useCreditForMessage(150L));
+        assertEquals("unexpected bytes credit", -50L, _creditManager.getBytesCredit());
+        assertFalse("Credit should not be available", _creditManager.useCreditForMessage(1L));
+    }
+
+    public void testUnlimitedCredit()
+    {
+        assertTrue("Manager should have credit", _creditManager.hasCredit());
+        for(int i = 0; i < 10; i++)
+        {
+            assertTrue("Credit should be available", _creditManager.useCreditForMessage(1000L));
+        }
+        assertTrue("Manager should have credit", _creditManager.hasCredit());
+    }
+
+    public void testConcurrentUseAndRestoreConservesCredit() throws Exception
+    {
+        _creditManager.setCreditLimits(10000L, 10L);
+
+        runConcurrently(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < ITERATIONS; i++)
+                {
+                    if(_creditManager.useCreditForMessage(10L))
+                    {
+                        _creditManager.restoreCredit(1L, 10L);
+                    }
+                }
+            }
+        });
+
+        assertEquals("unexpected message credit", 10L, _creditManager.getMessageCredit());
+        assertEquals("unexpected bytes credit", 10000L, _creditManager.getBytesCredit());
+    }
+
+    public void testLastNotificationReflectsCreditUnderContention() throws Exception
+    {
+        _creditManager.setCreditLimits(0L, 1L);
+
+        runConcurrently(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < ITERATIONS; i++)
+                {
+                    if(_creditManager.useCreditForMessage(10L))
+                    {
+                        _creditManager.restoreCredit(1L, 10L);
+                    }
+                }
+            }
+        });
+
+        assertTrue("Manager should have credit", _creditManager.hasCredit());
+        assertTrue("Last notification should report credit available", _listener.getLastState());
+    }
+
+    private void runConcurrently(final Runnable task) throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        final Thread[] threads = new Thread[THREADS];
+        for(int i = 0; i < THREADS; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        task.run();
+                    }
+                    catch (Throwable t)
+                    {
+                        synchronized (failures)
+                        {
+                            failures.add(t);
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread thread : threads)
+        {
+            thread.join(30000L);
+            assertFalse("Thread did not complete", thread.isAlive());
+        }
+        assertTrue("Unexpected failures " + failures, failures.isEmpty());
+    }
+
+    private static class RecordingListener implements FlowCreditManager.FlowCreditManagerListener
+    {
+        private final List<Boolean> _notifications = new ArrayList<Boolean>();
+
+        @Override
+        public synchronized void creditStateChanged(final boolean hasCredit)
+        {
+            _notifications.add(hasCredit);
+        }
+
+        synchronized List<Boolean> getNotifications()
+        {
+            return new ArrayList<Boolean>(_notifications);
+        }
+
+        /**
+         * @return the credit state last notified, a manager is initially not suspended
+         */
+        synchronized boolean getLastState()
+        {
+            return _notifications.isEmpty() || _notifications.get(_notifications.size() - 1);
+        }
+    }
+}
@@ -143,4 +143,17 @@ public class BrokerMessagesTest extends AbstractTestMessages
         validateLogMessage(log, "BRK-1011", expected);
     }
 
+    public void testBrokerStartupPhase()
+    {
+        String phase = "Configuration recovery";
+        long duration = 1234;
+
+        _logMessage = BrokerMessages.STARTUP_PHASE(phase, duration);
+        List<Object> log = performLog();
+
+        String[] expected = {"Startup phase :", phase, String.valueOf(duration), "ms"};
+
+        validateLogMessage(log, "BRK-1018", expected);
+    }
+
 }
@@ -18,11 +18,18 @@
  */
 package org.apache.qpid.server.model.testmodels.lifecycle;
 
+import static org.mockito.Mockito.mock;
+
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.qpid.server.configuration.IllegalConfigurationException;
+import org.apache.qpid.server.configuration.updater.TaskExecutor;
+import org.apache.qpid.server.configuration.updater.TaskExecutorImpl;
+import org.apache.qpid.server.model.ConfiguredObject;
 import org.apache.qpid.server.model.Port;
 import org.apache.qpid.server.model.State;
+import org.apache.qpid.server.util.ServerScopedRuntimeException;
 import org.apache.qpid.test.utils.QpidTestCase;
 
 public class AbstractConfiguredObjectTest extends QpidTestCase
@@ -214,4 +221,106 @@ public class AbstractConfiguredObjectTest extends QpidTestCase
         assertEquals("Unexpected child1 state", State.ERRORED, child1.getState());
     }
 
+    public void testChildrenOpenedConcurrently() throws Exception
+    {
+        TaskExecutor taskExecutor = new TaskExecutorImpl();
+        taskExecutor.start();
+        try
+        {
+            TestConfiguredObject parent = new TestConfiguredObject("parent", mock(ConfiguredObject.class), taskExecutor);
+            parent.setChildActivationThreadCount(2);
+            TestConfiguredObject child1 = new TestConfiguredObject("child1", parent, taskExecutor);
+            child1.registerWithParents();
+            TestConfiguredObject child2 = new TestConfiguredObject("child2", parent, taskExecutor);
+            child2.registerWithParents();
+
+            // each child waits in open for the other, so both open only if they are opened at the same time
+            CountDownLatch openLatch = new CountDownLatch(2);
+            child1.setOpenLatch(openLatch);
+            child2.setOpenLatch(openLatch);
+
+            parent.open();
+
+            assertEquals("Unexpected parent state", State.ACTIVE, parent.getState());
+            assertTrue("Child1 should be opened", child1.isOpened());
+            assertEquals("Unexpected child1 state", State.ACTIVE, child1.getState());
+            assertTrue("Child2 should be opened", child2.isOpened());
+            assertEquals("Unexpected child2 state", State.ACTIVE, child2.getState());
+            assertNotSame("Children should be opened on different threads",
+                          child1.getOpeningThread(), child2.getOpeningThread());
+
+            parent.close();
+        }
+        finally
+        {
+            taskExecutor.stop();
+        }
+    }
+
+    public void testChildFailingToOpenConcurrentlyIsErrored() throws Exception
+    {
+        TaskExecutor taskExecutor = new TaskExecutorImpl();
+        taskExecutor.start();
+        try
+        {
+            TestConfiguredObject parent = new TestConfiguredObject("parent", mock(ConfiguredObject.class), taskExecutor);
+            parent.setChildActivationThreadCount(2);
+            TestConfiguredObject child1 = new TestConfiguredObject("child1", parent, taskExecutor);
+            child1.registerWithParents();
+            TestConfiguredObject child2 = new TestConfiguredObject("child2", parent, taskExecutor);
+            child2.registerWithParents();
+
+            child1.setThrowExceptionOnOpen(true);
+
+            parent.open();
+
+            assertTrue("Parent should be opened", parent.isOpened());
+            assertEquals("Unexpected parent state", State.ACTIVE, parent.getState());
+            assertFalse("Child1 should not be opened", child1.isOpened());
+            assertEquals("Unexpected child1 state", State.ERRORED, child1.getState());
+            assertTrue("Child2 should be opened", child2.isOpened());
+            assertEquals("Unexpected child2 state", State.ACTIVE, child2.getState());
+
+            parent.close();
+        }
+        finally
+        {
+            taskExecutor.stop();
+        }
+    }
+
+    public void testServerScopedFailureOfChildOpenedConcurrentlyPropagatesToParent() throws Exception
+    {
+        TaskExecutor taskExecutor = new TaskExecutorImpl();
+        taskExecutor.start();
+        try
+        {
+            TestConfiguredObject parent = new TestConfiguredObject("parent", mock(ConfiguredObject.class), taskExecutor);
+            parent.setChildActivationThreadCount(2);
+            TestConfiguredObject child1 = new TestConfiguredObject("child1", parent, taskExecutor);
+            child1.registerWithParents();
+            TestConfiguredObject child2 = new TestConfiguredObject("child2", parent, taskExecutor);
+            child2.registerWithParents();
+
+            child1.setThrowServerScopedExceptionOnOpen(true);
+
+            try
+            {
+                parent.open();
+                fail("Exception should have been propagated from the child");
+            }
+            catch (ServerScopedRuntimeException e)
+            {
+                // pass
+            }
+
+            assertFalse("Child1 should not be opened", child1.isOpened());
+            assertTrue("Child2 should have been opened before the failure was reported", child2.isOpened());
+        }
+        finally
+        {
+            taskExecutor.stop();
+        }
+    }
+
 }
@@ -25,6 +25,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.qpid.server.configuration.IllegalConfigurationException;
 import org.apache.qpid.server.configuration.updater.CurrentThreadTaskExecutor;
@@ -39,6 +41,7 @@ import org.apache.qpid.server.model.Model;
 import org.apache.qpid.server.model.State;
 import org.apache.qpid.server.model.StateTransition;
 import org.apache.qpid.server.plugin.ConfiguredObjectRegistration;
+import org.apache.qpid.server.util.ServerScopedRuntimeException;
 
 @ManagedObject
 public class TestConfiguredObject extends AbstractConfiguredObject
@@ -51,6 +54,10 @@ public class TestConfiguredObject extends AbstractConfiguredObject
     private boolean _throwExceptionOnPostResolve;
     private boolean _throwExceptionOnCreate;
     private boolean _throwExceptionOnValidate;
+    private boolean _throwServerScopedExceptionOnOpen;
+    private CountDownLatch _openLatch;
+    private volatile Thread _openingThread;
+    private int _childActivationThreadCount = 1;
 
     public final static Map<Class<? extends ConfiguredObject>, ConfiguredObject<?>> createParents(ConfiguredObject<?> parent)
     {
@@ -100,6 +107,27 @@ public class TestConfiguredObject extends AbstractConfiguredObject
     @Override
     protected void onOpen()
     {
+        _openingThread = Thread.currentThread();
+        if (_openLatch != null)
+        {
+            _openLatch.countDown();
+            try
+            {
+                if (!_openLatch.await(10, TimeUnit.SECONDS))
+                {
+                    throw new IllegalConfigurationException("Timed out waiting for the other objects to open");
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalConfigurationException("Interrupted waiting for the other objects to open");
+            }
+        }
+        if (_throwServerScopedExceptionOnOpen)
+        {
+            throw new ServerScopedRuntimeException("Cannot open");
+        }
         if (_throwExceptionOnOpen)
         {
             throw new IllegalConfigurationException("Cannot open");
@@ -107,6 +135,12 @@ public class TestConfiguredObject extends AbstractConfiguredObject
         _opened = true;
     }
 
+    @Override
+    protected int getChildActivationThreadCount(final Class childClass)
+    {
+        return _childActivationThreadCount;
+    }
+
     @Override
     protected void validateOnCreate()
     {
@@ -148,6 +182,26 @@ public class TestConfiguredObject extends AbstractConfiguredObject
         _throwExceptionOnOpen = throwException;
     }
 
+    public void setThrowServerScopedExceptionOnOpen(boolean throwException)
+    {
+        _throwServerScopedExceptionOnOpen = throwException;
+    }
+
+    public void setOpenLatch(CountDownLatch openLatch)
+    {
+        _openLatch = openLatch;
+    }
+
+    public void setChildActivationThreadCount(int childActivationThreadCount)
+    {
+        _childActivationThreadCount = childActivationThreadCount;
+    }
+
+    public Thread getOpeningThread()
+    {
+        return _openingThread;
+    }
+
     public void setThrowExceptionOnValidationOnCreate(boolean throwException)
     {
         _throwExceptionOnValidationOnCreate = throwException;
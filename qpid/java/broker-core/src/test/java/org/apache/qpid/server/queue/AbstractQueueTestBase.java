@@ -793,6 +793,54 @@ abstract class AbstractQueueTestBase extends QpidTestCase
     }
 
 
+    public void testMessageSizeNotificationFiredAsync() throws Exception
+    {
+        QueueNotificationListener  listener = mock(QueueNotificationListener .class);
+
+        ServerMessage message = createMessage(new Long(24));
+        when(message.getSize()).thenReturn(1024l);
+        _queue.enqueue(message, null);
+
+        _queue.setNotificationListener(listener);
+        _queue.setAttributes(Collections.<String, Object>singletonMap(Queue.ALERT_THRESHOLD_MESSAGE_SIZE,
+                                                                      Integer.valueOf(512)));
+
+        verifyZeroInteractions(listener);
+
+        _queue.checkMessageStatus();
+
+        verify(listener, atLeastOnce()).notifyClients(eq(NotificationCheck.MESSAGE_SIZE_ALERT), eq(_queue), contains("Maximum message size threshold"));
+    }
+
+
+    public void testCheckMessageStatusDequeuesOnlyExpiredMessages() throws Exception
+    {
+        ServerMessage expiredMessage = createMessage(new Long(24));
+        when(expiredMessage.getExpiration()).thenReturn(System.currentTimeMillis() - 1000l);
+        ServerMessage unexpiredMessage = createMessage(new Long(25));
+        when(unexpiredMessage.getExpiration()).thenReturn(System.currentTimeMillis() + 60000l);
+        ServerMessage messageWithoutExpiration = createMessage(new Long(26));
+
+        _queue.enqueue(expiredMessage, null);
+        _queue.enqueue(unexpiredMessage, null);
+        _queue.enqueue(messageWithoutExpiration, null);
+
+        assertEquals("Unexpected queue depth before housekeeping", 3, _queue.getQueueDepthMessages());
+
+        _queue.checkMessageStatus();
+
+        assertEquals("Expired message should have been dequeued", 2, _queue.getQueueDepthMessages());
+        List<ServerMessage> remaining = new ArrayList<ServerMessage>();
+        for(QueueEntry entry : _queue.getMessagesOnTheQueue())
+        {
+            remaining.add(entry.getMessage());
+        }
+        assertFalse("Expired message should not remain on the queue", remaining.contains(expiredMessage));
+        assertTrue("Unexpired message should remain on the queue", remaining.contains(unexpiredMessage));
+        assertTrue("Message without expiration should remain on the queue",
+                   remaining.contains(messageWithoutExpiration));
+    }
+
     public void testMaximumMessageTtl() throws Exception
     {
 
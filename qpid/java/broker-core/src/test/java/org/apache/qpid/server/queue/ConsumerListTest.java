@@ -443,4 +443,60 @@ public class ConsumerListTest extends QpidTestCase
         assertFalse("Iterator should not have been able to advance", iter.advance());
         assertEquals("Iterator returned unexpected ConsumerNode", null, iter.getNode());
     }
+
+    /**
+     * Tests that an iterator started after a node visits the subsequent nodes, then wraps around
+     * to the head of the list and ends with the node it started after.
+     */
+    public void testIteratorStartingAfterNodeWrapsAround()
+    {
+        QueueConsumerList.ConsumerNodeIterator iter = _subList.iterator(getNodeForConsumer(_subList, _sub2));
+
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub3, iter.getNode().getConsumer());
+
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub1, iter.getNode().getConsumer());
+
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub2, iter.getNode().getConsumer());
+
+        assertFalse("Iterator should not have been able to advance", iter.advance());
+        assertNull("Iterator returned unexpected ConsumerNode", iter.getNode());
+    }
+
+    /**
+     * Tests that an iterator started after a null node visits every node from the head of the list.
+     */
+    public void testIteratorStartingAfterNullStartsFromHead()
+    {
+        QueueConsumerList.ConsumerNodeIterator iter = _subList.iterator(null);
+
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub1, iter.getNode().getConsumer());
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub2, iter.getNode().getConsumer());
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub3, iter.getNode().getConsumer());
+
+        assertFalse("Iterator should not have been able to advance", iter.advance());
+    }
+
+    /**
+     * Tests that an iterator started after a node that is subsequently removed does not
+     * wrap around, and so does not visit any node twice.
+     */
+    public void testIteratorStartingAfterRemovedNodeEndsAtTail()
+    {
+        QueueConsumerList.ConsumerNodeIterator iter = _subList.iterator(getNodeForConsumer(_subList, _sub1));
+
+        assertTrue("Removing consumer should have succeeded", _subList.remove(_sub1));
+
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub2, iter.getNode().getConsumer());
+        assertTrue("Iterator should have been able to advance", iter.advance());
+        assertEquals("Iterator returned unexpected ConsumerNode", _sub3, iter.getNode().getConsumer());
+
+        assertFalse("Iterator should not have been able to advance", iter.advance());
+    }
 }
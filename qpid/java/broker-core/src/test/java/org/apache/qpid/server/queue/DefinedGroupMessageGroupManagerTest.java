@@ -0,0 +1,342 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.qpid.server.consumer.ConsumerImpl;
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.util.StateChangeListener;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class DefinedGroupMessageGroupManagerTest extends QpidTestCase
+{
+    private static final String GROUP_HEADER = "group";
+
+    private MessageGroupManager.ConsumerResetHelper _resetHelper;
+    private DefinedGroupMessageGroupManager _groupManager;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _resetHelper = mock(MessageGroupManager.ConsumerResetHelper.class);
+        _groupManager = new DefinedGroupMessageGroupManager(GROUP_HEADER, "default", _resetHelper);
+    }
+
+    public void testGroupIsAssignedToFirstAcceptingConsumer()
+    {
+        QueueConsumer<?> consumer1 = createConsumer();
+        QueueConsumer<?> consumer2 = createConsumer();
+        TestEntry entry1 = new TestEntry("A");
+        TestEntry entry2 = new TestEntry("A");
+
+        assertTrue("First consumer should accept the message", _groupManager.acceptMessage(consumer1, entry1.getEntry()));
+        assertSame("Unexpected group consumer", consumer1, _groupManager.getGroupConsumer("A"));
+        assertFalse("Second consumer should not accept a message of the group",
+                    _groupManager.acceptMessage(consumer2, entry2.getEntry()));
+        assertTrue("First consumer should accept another message of the group",
+                   _groupManager.acceptMessage(consumer1, entry2.getEntry()));
+    }
+
+    public void testGroupIsReleasedOnceNoEntriesAreAcquired()
+    {
+        QueueConsumer<?> consumer1 = createConsumer();
+        QueueConsumer<?> consumer2 = createConsumer();
+        TestEntry entry1 = new TestEntry("A");
+        TestEntry entry2 = new TestEntry("A");
+
+        assertTrue(_groupManager.acceptMessage(consumer1, entry1.getEntry()));
+        assertTrue(_groupManager.acceptMessage(consumer1, entry2.getEntry()));
+
+        entry1.release();
+        assertSame("Group should remain assigned while an entry is acquired",
+                   consumer1, _groupManager.getGroupConsumer("A"));
+        verify(_resetHelper, never()).groupUnassigned("A");
+
+        entry2.release();
+        assertNull("Group should be unassigned", _groupManager.getGroupConsumer("A"));
+        verify(_resetHelper).groupUnassigned("A");
+
+        assertTrue("Group should be assignable to another consumer",
+                   _groupManager.acceptMessage(consumer2, entry1.getEntry()));
+        assertSame("Unexpected group consumer", consumer2, _groupManager.getGroupConsumer("A"));
+    }
+
+    public void testFailedAcquisitionDoesNotHoldGroup()
+    {
+        QueueConsumer<?> consumer1 = createConsumer();
+        QueueConsumer<?> consumer2 = createConsumer();
+        TestEntry entry = new TestEntry("A");
+        entry.getEntry().acquire(consumer2);
+
+        assertFalse("Acquired entry should not be accepted", _groupManager.acceptMessage(consumer1, entry.getEntry()));
+        assertNull("Group should not remain assigned", _groupManager.getGroupConsumer("A"));
+    }
+
+    public void testGroupOfClosedConsumerRemainsAssignedWhileEntriesAcquired()
+    {
+        QueueConsumer<?> consumer1 = createConsumer();
+        QueueConsumer<?> consumer2 = createConsumer();
+        TestEntry entry1 = new TestEntry("A");
+        TestEntry entry2 = new TestEntry("A");
+
+        assertTrue(_groupManager.acceptMessage(consumer1, entry1.getEntry()));
+        when(consumer1.isClosed()).thenReturn(true);
+
+        assertFalse("Group should not be reassigned while an entry is acquired",
+                    _groupManager.acceptMessage(consumer2, entry2.getEntry()));
+
+        entry1.release();
+        assertTrue("Group should be reassigned", _groupManager.acceptMessage(consumer2, entry2.getEntry()));
+        assertSame("Unexpected group consumer", consumer2, _groupManager.getGroupConsumer("A"));
+    }
+
+    public void testEntryAheadOfConsumerIsNotAccepted()
+    {
+        QueueConsumer<?> consumer = createConsumer();
+        TestEntry entry = new TestEntry("A");
+        when(_resetHelper.isEntryAheadOfConsumer(entry.getEntry(), consumer)).thenReturn(true);
+
+        assertFalse("Entry should not be accepted", _groupManager.acceptMessage(consumer, entry.getEntry()));
+        assertFalse("Entry should not be acquired", entry.isAcquired());
+    }
+
+    /**
+     * Many consumers, each driven by a single thread as in the broker, compete for the entries of many groups.  At no
+     * point may two consumers hold acquired entries of the same group.
+     */
+    public void testConcurrentConsumersNeverShareGroup() throws Exception
+    {
+        final int threadCount = 8;
+        final int consumersPerThread = 32;
+        final int groupCount = 256;
+        final int entriesPerGroup = 4;
+        final int iterations = 20000;
+
+        final TestEntry[][] entries = new TestEntry[groupCount][entriesPerGroup];
+        final AtomicReference<?>[] holders = new AtomicReference<?>[groupCount];
+        final AtomicInteger[] heldCounts = new AtomicInteger[groupCount];
+        for(int group = 0; group < groupCount; group++)
+        {
+            for(int i = 0; i < entriesPerGroup; i++)
+            {
+                entries[group][i] = new TestEntry(group);
+            }
+            holders[group] = new AtomicReference<QueueConsumer<?>>();
+            heldCounts[group] = new AtomicInteger();
+        }
+
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for(int t = 0; t < threadCount; t++)
+        {
+            final long seed = t;
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Random random = new Random(seed);
+                        QueueConsumer<?>[] consumers = new QueueConsumer<?>[consumersPerThread];
+                        List<List<Integer>> held = new ArrayList<List<Integer>>();
+                        for(int i = 0; i < consumersPerThread; i++)
+                        {
+                            consumers[i] = createConsumer();
+                            held.add(new ArrayList<Integer>());
+                        }
+                        start.await();
+
+                        for(int i = 0; i < iterations && failure.get() == null; i++)
+                        {
+                            int c = random.nextInt(consumersPerThread);
+                            int group = random.nextInt(groupCount);
+                            int index = random.nextInt(entriesPerGroup);
+                            TestEntry entry = entries[group][index];
+                            QueueConsumer<?> consumer = consumers[c];
+
+                            if(_groupManager.acceptMessage(consumer, entry.getEntry()))
+                            {
+                                AtomicReference<QueueConsumer<?>> holder =
+                                        (AtomicReference<QueueConsumer<?>>) holders[group];
+                                if(!holder.compareAndSet(null, consumer) && holder.get() != consumer)
+                                {
+                                    failure.set("Group " + group + " accepted by " + consumer
+                                                + " while held by " + holder.get());
+                                }
+                                heldCounts[group].incrementAndGet();
+                                held.get(c).add(group * entriesPerGroup + index);
+                            }
+
+                            if(random.nextInt(4) == 0)
+                            {
+                                releaseAll(held.get(c));
+                            }
+                        }
+
+                        for(List<Integer> consumerHeld : held)
+                        {
+                            releaseAll(consumerHeld);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+
+                private void releaseAll(final List<Integer> consumerHeld)
+                {
+                    for(Integer index : consumerHeld)
+                    {
+                        int group = index / entriesPerGroup;
+                        if(heldCounts[group].decrementAndGet() == 0)
+                        {
+                            holders[group].set(null);
+                        }
+                        entries[group][index % entriesPerGroup].release();
+                    }
+                    consumerHeld.clear();
+                }
+            }).start();
+        }
+
+        start.countDown();
+        assertTrue("Consumer threads did not complete", done.await(2, TimeUnit.MINUTES));
+        assertNull(failure.get(), failure.get());
+
+        for(int group = 0; group < groupCount; group++)
+        {
+            assertNull("Group " + group + " should be unassigned once all entries are released",
+                       _groupManager.getGroupConsumer(group));
+        }
+    }
+
+    private QueueConsumer<?> createConsumer()
+    {
+        QueueConsumer<?> consumer = mock(QueueConsumer.class);
+        when(consumer.isClosed()).thenReturn(false);
+        return consumer;
+    }
+
+    /**
+     * A queue entry of a group which tracks its acquiring consumer and notifies its listeners of state changes.
+     */
+    private static class TestEntry
+    {
+        private final QueueEntry _entry = mock(QueueEntry.class);
+        private final AtomicReference<ConsumerImpl> _acquiredBy = new AtomicReference<ConsumerImpl>();
+        private final List<StateChangeListener<? super MessageInstance, MessageInstance.State>> _listeners =
+                new CopyOnWriteArrayList<StateChangeListener<? super MessageInstance, MessageInstance.State>>();
+
+        private TestEntry(final Object group)
+        {
+            AMQMessageHeader header = mock(AMQMessageHeader.class);
+            when(header.getHeader(GROUP_HEADER)).thenReturn(group);
+            ServerMessage message = mock(ServerMessage.class);
+            when(message.getMessageHeader()).thenReturn(header);
+            when(_entry.getMessage()).thenReturn(message);
+
+            when(_entry.acquire(any(ConsumerImpl.class))).thenAnswer(new Answer<Boolean>()
+            {
+                @Override
+                public Boolean answer(final InvocationOnMock invocation)
+                {
+                    if(_acquiredBy.compareAndSet(null, (ConsumerImpl) invocation.getArguments()[0]))
+                    {
+                        notifyListeners(MessageInstance.State.AVAILABLE, MessageInstance.State.ACQUIRED);
+                        return true;
+                    }
+                    return false;
+                }
+            });
+            doAnswer(new Answer<Void>()
+            {
+                @Override
+                public Void answer(final InvocationOnMock invocation)
+                {
+                    _listeners.add((StateChangeListener<? super MessageInstance, MessageInstance.State>) invocation.getArguments()[0]);
+                    return null;
+                }
+            }).when(_entry).addStateChangeListener(any(StateChangeListener.class));
+            when(_entry.removeStateChangeListener(any(StateChangeListener.class))).thenAnswer(new Answer<Boolean>()
+            {
+                @Override
+                public Boolean answer(final InvocationOnMock invocation)
+                {
+                    return _listeners.remove(invocation.getArguments()[0]);
+                }
+            });
+        }
+
+        QueueEntry getEntry()
+        {
+            return _entry;
+        }
+
+        boolean isAcquired()
+        {
+            return _acquiredBy.get() != null;
+        }
+
+        void release()
+        {
+            if(_acquiredBy.getAndSet(null) != null)
+            {
+                notifyListeners(MessageInstance.State.ACQUIRED, MessageInstance.State.AVAILABLE);
+            }
+        }
+
+        private void notifyListeners(final MessageInstance.State oldState, final MessageInstance.State newState)
+        {
+            for(StateChangeListener<? super MessageInstance, MessageInstance.State> listener : _listeners)
+            {
+                listener.stateChanged(_entry, oldState, newState);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class DeliveryBatchTest extends QpidTestCase
+{
+    private static final long FLUSH_BYTES = 1000L;
+    private static final long NO_TIMEOUT = 0L;
+
+    private DeliveryBatch _batch;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _batch = new DeliveryBatch();
+    }
+
+    public void testFirstBatchIsFairShare()
+    {
+        assertEquals("Unexpected batch size", 10, _batch.start(10, 80, FLUSH_BYTES));
+    }
+
+    public void testBatchLimitedByRemainingIterations()
+    {
+        assertEquals("Unexpected batch size", 5, _batch.start(10, 5, FLUSH_BYTES));
+    }
+
+    public void testFilledBatchGrows()
+    {
+        int limit = _batch.start(10, 80, FLUSH_BYTES);
+        deliver(limit, 10);
+        _batch.end(limit, false);
+
+        assertEquals("Filled batch should double", 20, _batch.start(10, 80, FLUSH_BYTES));
+    }
+
+    public void testGrowthLimitedByFlushBytes()
+    {
+        int limit = _batch.start(10, 80, FLUSH_BYTES);
+        deliver(limit, 50);
+        _batch.end(limit, false);
+
+        assertEquals("Growth should be limited to the messages expected to fill the flush threshold",
+                     20, _batch.start(10, 80, FLUSH_BYTES));
+
+        limit = _batch.start(10, 80, 100L);
+        deliver(limit, 50);
+        _batch.end(limit, false);
+
+        assertEquals("Batch should not fall below the fair share", 10, _batch.start(10, 80, 100L));
+    }
+
+    public void testCreditLimitedBatchShrinks()
+    {
+        int limit = _batch.start(10, 80, FLUSH_BYTES);
+        deliver(limit, 10);
+        _batch.end(limit, false);
+
+        limit = _batch.start(10, 80, FLUSH_BYTES);
+        deliver(15, 10);
+        _batch.end(limit, true);
+
+        assertEquals("Batch should be sized to the deliveries the credit allowed", 15, _batch.getSize());
+        assertEquals("Unexpected batch size", 15, _batch.start(10, 80, FLUSH_BYTES));
+    }
+
+    public void testBatchEndingAtTailKeepsSize()
+    {
+        int limit = _batch.start(10, 80, FLUSH_BYTES);
+        deliver(limit, 10);
+        _batch.end(limit, false);
+
+        limit = _batch.start(10, 80, FLUSH_BYTES);
+        deliver(3, 10);
+        _batch.end(limit, false);
+
+        assertEquals("Unexpected batch size", 20, _batch.start(10, 80, FLUSH_BYTES));
+    }
+
+    public void testFlushOnBytes()
+    {
+        _batch.start(10, 80, FLUSH_BYTES);
+
+        assertFalse("Unexpected flush", _batch.delivered(400, FLUSH_BYTES, NO_TIMEOUT));
+        assertFalse("Unexpected flush", _batch.delivered(400, FLUSH_BYTES, NO_TIMEOUT));
+        assertTrue("Expected flush once the byte threshold is reached",
+                   _batch.delivered(400, FLUSH_BYTES, NO_TIMEOUT));
+        assertEquals("Unexpected flushed message count", 3, _batch.flushed());
+        assertFalse("Nothing should remain unflushed", _batch.hasUnflushed());
+
+        assertFalse("Unflushed bytes should be reset by the flush", _batch.delivered(400, FLUSH_BYTES, NO_TIMEOUT));
+        assertTrue("Delivery should be unflushed", _batch.hasUnflushed());
+    }
+
+    public void testFlushOnTimeout() throws Exception
+    {
+        _batch.start(10, 80, FLUSH_BYTES);
+
+        assertFalse("Unexpected flush", _batch.delivered(1, FLUSH_BYTES, 1000000L));
+        Thread.sleep(5);
+        assertTrue("Expected flush once the timeout has passed", _batch.delivered(1, FLUSH_BYTES, 1000000L));
+        assertEquals("Unexpected flushed message count", 2, _batch.flushed());
+    }
+
+    private void deliver(final int messages, final long messageSize)
+    {
+        for(int i = 0; i < messages; i++)
+        {
+            _batch.delivered(messageSize, 0L, NO_TIMEOUT);
+        }
+    }
+}
@@ -200,6 +200,62 @@ public class LastValueQueueListTest extends TestCase
         assertEquals(0, _list.getLatestValuesMap().size());
     }
 
+    public void testSupersededEntriesAreRemovedFromIndex()
+    {
+        final int numberOfKeys = 10;
+        for(int i = 0; i < 100; i++)
+        {
+            _list.add(createTestServerMessage(TEST_KEY_VALUE + (i % numberOfKeys)));
+        }
+
+        assertEquals(numberOfKeys, countEntries(_list));
+        assertEquals(numberOfKeys, _list.getIndexSize());
+        assertEquals(numberOfKeys, _list.getLatestValuesMap().size());
+    }
+
+    public void testEntriesAreTraversedInUpdateOrder()
+    {
+        ServerMessage message1 = createTestServerMessage(TEST_KEY_VALUE1);
+        ServerMessage message2 = createTestServerMessage(TEST_KEY_VALUE2);
+        ServerMessage message3 = createTestServerMessage(TEST_KEY_VALUE1);
+
+        _list.add(message1);
+        _list.add(message2);
+        _list.add(message3);
+
+        QueueEntryIterator iterator = _list.iterator();
+        assertTrue(iterator.advance());
+        assertSame(message2, iterator.getNode().getMessage());
+        assertTrue(iterator.advance());
+        assertSame(message3, iterator.getNode().getMessage());
+        assertFalse(iterator.advance());
+    }
+
+    public void testNextFromSupersededEntry()
+    {
+        QueueEntry entry1 = _list.add(createTestServerMessage(TEST_KEY_VALUE1));
+        QueueEntry entry2 = _list.add(createTestServerMessage(TEST_KEY_VALUE2));
+        QueueEntry entry3 = _list.add(createTestServerMessage(TEST_KEY_VALUE1));
+
+        assertTrue(entry1.isDeleted());
+        assertSame(entry2, _list.next(entry1));
+        assertSame(entry3, _list.next(entry2));
+        assertNull(_list.next(entry3));
+        assertSame(entry2, _list.getOldestEntry());
+    }
+
+    public void testAcquiredSupersededEntryRemainsIndexedUntilReleased()
+    {
+        QueueEntry entry1 = _list.add(createTestServerMessage(TEST_KEY_VALUE));
+        entry1.acquire();
+
+        _list.add(createTestServerMessage(TEST_KEY_VALUE));
+        assertEquals(2, _list.getIndexSize());
+
+        entry1.release();
+        assertEquals(1, _list.getIndexSize());
+    }
+
     private int countEntries(LastValueQueueList list)
     {
         QueueEntryIterator iterator =
@@ -0,0 +1,253 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class MessageGroupIndexTest extends QpidTestCase
+{
+    private final Map<QueueEntry, Object> _groupKeys = new ConcurrentHashMap<QueueEntry, Object>();
+    private final Map<Object, QueueConsumer<?>> _groupConsumers = new ConcurrentHashMap<Object, QueueConsumer<?>>();
+    private final Map<QueueEntry, Long> _positions = new ConcurrentHashMap<QueueEntry, Long>();
+    private MessageGroupIndex _index;
+    private long _position;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        MessageGroupManager groupManager = mock(MessageGroupManager.class);
+        when(groupManager.getGroupKey(any(QueueEntry.class))).thenAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(final InvocationOnMock invocation)
+            {
+                return _groupKeys.get(invocation.getArguments()[0]);
+            }
+        });
+        when(groupManager.getGroupConsumer(any())).thenAnswer(new Answer<QueueConsumer<?>>()
+        {
+            @Override
+            public QueueConsumer<?> answer(final InvocationOnMock invocation)
+            {
+                Object key = invocation.getArguments()[0];
+                return key == null ? null : _groupConsumers.get(key);
+            }
+        });
+        _index = new MessageGroupIndex(groupManager);
+    }
+
+    public void testAssignedGroupIsOnlyGivenToItsConsumer()
+    {
+        QueueConsumer<?> consumer1 = createConsumer();
+        QueueConsumer<?> consumer2 = createConsumer();
+        QueueEntry entry = addEntry("A");
+
+        assertSame("Unexpected entry for unassigned group", entry, _index.nextEntry(consumer2));
+
+        _groupConsumers.put("A", consumer1);
+        assertNull("Group assigned to another consumer should not be offered", _index.nextEntry(consumer2));
+        assertSame("Unexpected entry for owning consumer", entry, _index.nextEntry(consumer1));
+        assertNull("Group assigned to another consumer should not be offered", _index.nextEntry(consumer2));
+    }
+
+    public void testGroupsAreReleasedWhenConsumerRemoved()
+    {
+        QueueConsumer<?> consumer1 = createConsumer();
+        QueueConsumer<?> consumer2 = createConsumer();
+        QueueEntry entryA = addEntry("A");
+        QueueEntry entryB = addEntry("B");
+        _groupConsumers.put("A", consumer1);
+        _groupConsumers.put("B", consumer1);
+
+        assertSame("Unexpected entry for owning consumer", entryA, _index.nextEntry(consumer1));
+        assertNull("Groups assigned to another consumer should not be offered", _index.nextEntry(consumer2));
+
+        when(consumer1.isClosed()).thenReturn(true);
+        _groupConsumers.clear();
+        _index.consumerRemoved(consumer1);
+
+        assertSame("Released group should be offered", entryA, _index.nextEntry(consumer2));
+        setAvailable(entryA, false);
+        assertSame("Released group should be offered", entryB, _index.nextEntry(consumer2));
+    }
+
+    public void testEntriesOfGroupAreGivenInQueueOrder()
+    {
+        QueueConsumer<?> consumer = createConsumer();
+        QueueEntry entry1 = addEntry("A");
+        QueueEntry entry2 = addEntry("A");
+        QueueEntry entry3 = addEntry("A");
+        _groupConsumers.put("A", consumer);
+
+        assertSame("Unexpected entry", entry1, _index.nextEntry(consumer));
+        assertFalse("No entry of the group is ahead of the first", _index.hasAvailableEntryBefore(entry1));
+        assertTrue("An entry of the group is ahead of the last", _index.hasAvailableEntryBefore(entry3));
+
+        setAvailable(entry1, false);
+        assertSame("Unexpected entry", entry2, _index.nextEntry(consumer));
+        setAvailable(entry2, false);
+        assertSame("Unexpected entry", entry3, _index.nextEntry(consumer));
+
+        setAvailable(entry1, true);
+        _index.entryReleased(entry1);
+        assertSame("Released entry should be given first", entry1, _index.nextEntry(consumer));
+    }
+
+    public void testEntriesOfReadyGroupsAreGivenInQueueOrder()
+    {
+        QueueConsumer<?> consumer = createConsumer();
+        QueueEntry entryA = createEntry("A");
+        QueueEntry entryB = createEntry("B");
+        QueueEntry entryC = createEntry("C");
+
+        // groups become ready in a different order from that of their entries in the queue
+        _index.entryAdded(entryC);
+        _index.entryAdded(entryB);
+        _index.entryAdded(entryA);
+
+        assertSame("Unexpected entry", entryA, _index.nextEntry(consumer));
+        setAvailable(entryA, false);
+        assertSame("Unexpected entry", entryB, _index.nextEntry(consumer));
+        setAvailable(entryB, false);
+        assertSame("Unexpected entry", entryC, _index.nextEntry(consumer));
+    }
+
+    public void testReadyGroupsFollowTheirHeadEntries()
+    {
+        QueueConsumer<?> consumer = createConsumer();
+        QueueEntry entryA1 = addEntry("A");
+        QueueEntry entryB = addEntry("B");
+        QueueEntry entryA2 = addEntry("A");
+
+        assertSame("Unexpected entry", entryA1, _index.nextEntry(consumer));
+
+        setAvailable(entryA1, false);
+        assertSame("Group whose head is now earliest should be offered first", entryB, _index.nextEntry(consumer));
+        setAvailable(entryB, false);
+        assertSame("Unexpected entry", entryA2, _index.nextEntry(consumer));
+
+        setAvailable(entryA1, true);
+        _index.entryReleased(entryA1);
+        assertSame("Released entry should be offered first", entryA1, _index.nextEntry(consumer));
+    }
+
+    public void testUngroupedEntriesAreGivenInQueueOrder()
+    {
+        QueueConsumer<?> consumer = createConsumer();
+        QueueEntry entry1 = addEntry(null);
+        QueueEntry entry2 = addEntry("A");
+        QueueEntry entry3 = addEntry(null);
+
+        assertSame("Unexpected entry", entry1, _index.nextEntry(consumer));
+        setAvailable(entry1, false);
+        assertSame("Unexpected entry", entry2, _index.nextEntry(consumer));
+        setAvailable(entry2, false);
+        assertSame("Unexpected entry", entry3, _index.nextEntry(consumer));
+    }
+
+    /**
+     * A group with no available entries is taken off the ready queue; an entry released as this happens must still
+     * cause the group to be offered again.
+     */
+    public void testReleasedEntryOfEmptiedGroupIsOffered()
+    {
+        QueueConsumer<?> consumer = createConsumer();
+        QueueEntry entry = addEntry("A");
+        setAvailable(entry, false);
+
+        assertNull("Group without available entries should not be offered", _index.nextEntry(consumer));
+
+        setAvailable(entry, true);
+        _index.entryReleased(entry);
+        assertSame("Released entry should be offered", entry, _index.nextEntry(consumer));
+    }
+
+    public void testEntryAddedToRemovedGroupIsOffered()
+    {
+        QueueConsumer<?> consumer = createConsumer();
+        QueueEntry entry1 = addEntry("A");
+        setAvailable(entry1, false);
+        _index.entryRemoved(entry1);
+
+        assertNull("Removed group should not be offered", _index.nextEntry(consumer));
+
+        QueueEntry entry2 = addEntry("A");
+        assertSame("Entry of recreated group should be offered", entry2, _index.nextEntry(consumer));
+    }
+
+    private QueueConsumer<?> createConsumer()
+    {
+        QueueConsumer<?> consumer = mock(QueueConsumer.class);
+        when(consumer.isClosed()).thenReturn(false);
+        when(consumer.hasInterest(any(QueueEntry.class))).thenReturn(true);
+        return consumer;
+    }
+
+    private QueueEntry addEntry(final Object groupKey)
+    {
+        QueueEntry entry = createEntry(groupKey);
+        _index.entryAdded(entry);
+        return entry;
+    }
+
+    private QueueEntry createEntry(final Object groupKey)
+    {
+        final long position = _position++;
+        final QueueEntry entry = mock(QueueEntry.class);
+        when(entry.compareTo(any(QueueEntry.class))).thenAnswer(new Answer<Integer>()
+        {
+            @Override
+            public Integer answer(final InvocationOnMock invocation)
+            {
+                QueueEntry other = (QueueEntry) invocation.getArguments()[0];
+                return other == entry ? 0 : Long.compare(position, getPosition(other));
+            }
+        });
+        setAvailable(entry, true);
+        if(groupKey != null)
+        {
+            _groupKeys.put(entry, groupKey);
+        }
+        _positions.put(entry, position);
+        return entry;
+    }
+
+    private long getPosition(final QueueEntry entry)
+    {
+        return _positions.get(entry);
+    }
+
+    private void setAvailable(final QueueEntry entry, final boolean available)
+    {
+        when(entry.isAvailable()).thenReturn(available);
+    }
+}
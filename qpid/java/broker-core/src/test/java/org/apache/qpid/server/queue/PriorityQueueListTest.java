@@ -52,15 +52,31 @@ public class PriorityQueueListTest extends QpidTestCase
     private QueueEntry _priority4message2;
     private QueueEntry _priority5message1;
     private QueueEntry _priority5message2;
+    private long _messageNumber;
 
     protected void setUp()
     {
         BrokerTestHelper.setUp();
+        _list = createList(10);
+
         QueueEntry[] entries = new QueueEntry[PRIORITIES.length];
+        for (int i = 0; i < PRIORITIES.length; i++)
+        {
+            entries[i] = addMessage(_list, PRIORITIES[i]);
+        }
+
+        _priority4message1 = entries[0];
+        _priority4message2 = entries[3];
+        _priority5message1 = entries[1];
+        _priority5message2 = entries[2];
+    }
+
+    private PriorityQueueList createList(int priorities)
+    {
         Map<String,Object> queueAttributes = new HashMap<String, Object>();
         queueAttributes.put(Queue.ID, UUID.randomUUID());
-        queueAttributes.put(Queue.NAME, getName());
-        queueAttributes.put(PriorityQueue.PRIORITIES, 10);
+        queueAttributes.put(Queue.NAME, getName() + priorities);
+        queueAttributes.put(PriorityQueue.PRIORITIES, priorities);
         final VirtualHostImpl virtualHost = mock(VirtualHostImpl.class);
         when(virtualHost.getSecurityManager()).thenReturn(mock(SecurityManager.class));
         when(virtualHost.getEventLogger()).thenReturn(new EventLogger());
@@ -70,28 +86,24 @@ public class PriorityQueueListTest extends QpidTestCase
         when(virtualHost.getTaskExecutor()).thenReturn(CurrentThreadTaskExecutor.newStartedInstance());
         PriorityQueueImpl queue = new PriorityQueueImpl(queueAttributes, virtualHost);
         queue.open();
-        _list = queue.getEntries();
-
-        for (int i = 0; i < PRIORITIES.length; i++)
-        {
-            ServerMessage<?> message = mock(ServerMessage.class);
-            AMQMessageHeader header = mock(AMQMessageHeader.class);
-            @SuppressWarnings({ "rawtypes", "unchecked" })
-            MessageReference<ServerMessage> ref = mock(MessageReference.class);
-
-            when(message.getMessageHeader()).thenReturn(header);
-            when(message.newReference()).thenReturn(ref);
-            when(message.newReference(any(TransactionLogResource.class))).thenReturn(ref);
-            when(ref.getMessage()).thenReturn(message);
-            when(header.getPriority()).thenReturn(PRIORITIES[i]);
-
-            entries[i] = _list.add(message);
-        }
+        return queue.getEntries();
+    }
 
-        _priority4message1 = entries[0];
-        _priority4message2 = entries[3];
-        _priority5message1 = entries[1];
-        _priority5message2 = entries[2];
+    private QueueEntry addMessage(PriorityQueueList list, byte priority)
+    {
+        ServerMessage<?> message = mock(ServerMessage.class);
+        AMQMessageHeader header = mock(AMQMessageHeader.class);
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        MessageReference<ServerMessage> ref = mock(MessageReference.class);
+
+        when(message.getMessageHeader()).thenReturn(header);
+        when(message.getMessageNumber()).thenReturn(_messageNumber++);
+        when(message.newReference()).thenReturn(ref);
+        when(message.newReference(any(TransactionLogResource.class))).thenReturn(ref);
+        when(ref.getMessage()).thenReturn(message);
+        when(header.getPriority()).thenReturn(priority);
+
+        return list.add(message);
     }
 
     @Override
@@ -158,4 +170,70 @@ public class PriorityQueueListTest extends QpidTestCase
         assertEquals("second message with priority 4 should be 'later' than second message of priority 5",
                 1, _priority4message2.compareTo(_priority5message2));
     }
+
+    public void testEntriesAreTraversedByPriorityWith256Levels()
+    {
+        PriorityQueueList list = createList(256);
+        QueueEntry low = addMessage(list, (byte) 3);
+        QueueEntry highest1 = addMessage(list, (byte) 200);
+        QueueEntry middle = addMessage(list, (byte) 17);
+        QueueEntry highest2 = addMessage(list, (byte) 200);
+
+        QueueEntry[] expected = {highest1, highest2, middle, low};
+
+        QueueEntry node = list.getHead();
+        for (QueueEntry entry : expected)
+        {
+            node = list.next(node);
+            assertSame("Unexpected entry from next", entry, node);
+        }
+        assertNull("Unexpected entry after the lowest priority", list.next(node));
+
+        QueueEntryIterator iterator = list.iterator();
+        for (QueueEntry entry : expected)
+        {
+            assertTrue("Iterator should advance", iterator.advance());
+            assertSame("Unexpected entry from iterator", entry, iterator.getNode());
+        }
+        assertFalse("Iterator should be exhausted", iterator.advance());
+        assertTrue("Iterator should be at tail", iterator.atTail());
+    }
+
+    public void testLevelsEmptiedByDeletionAreSkipped()
+    {
+        PriorityQueueList list = createList(256);
+        PriorityQueueList.PriorityQueueMasterList masterList = (PriorityQueueList.PriorityQueueMasterList) list;
+        QueueEntry high = addMessage(list, (byte) 250);
+        QueueEntry middle = addMessage(list, (byte) 100);
+        QueueEntry low = addMessage(list, (byte) 5);
+
+        assertEquals("Unexpected highest occupied level", 250, masterList.highestOccupiedBelow(256));
+
+        middle.acquire();
+        middle.delete();
+
+        assertEquals("Emptied level should no longer be occupied", 5, masterList.highestOccupiedBelow(250));
+        assertSame("Unexpected entry after emptied level", low, list.next(high));
+
+        high.acquire();
+        high.delete();
+
+        assertEquals("Unexpected highest occupied level", 5, masterList.highestOccupiedBelow(256));
+        assertSame("Unexpected first entry", low, list.next(list.getHead()));
+        assertSame("Unexpected oldest entry", low, list.getOldestEntry());
+
+        QueueEntry readded = addMessage(list, (byte) 100);
+        assertEquals("Level should be occupied once an entry is added", 100, masterList.highestOccupiedBelow(256));
+        assertSame("Unexpected first entry", readded, list.next(list.getHead()));
+    }
+
+    public void testOldestEntryWith256Levels()
+    {
+        PriorityQueueList list = createList(256);
+        QueueEntry oldest = addMessage(list, (byte) 64);
+        addMessage(list, (byte) 130);
+        addMessage(list, (byte) 1);
+
+        assertSame("Unexpected oldest entry", oldest, list.getOldestEntry());
+    }
 }
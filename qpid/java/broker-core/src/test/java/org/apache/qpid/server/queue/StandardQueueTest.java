@@ -20,7 +20,13 @@
  */
 package org.apache.qpid.server.queue;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -36,6 +42,7 @@ import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.model.LifetimePolicy;
 import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.virtualhost.VirtualHostImpl;
 
 public class StandardQueueTest extends AbstractQueueTestBase
@@ -241,6 +248,40 @@ public class StandardQueueTest extends AbstractQueueTestBase
     }
 
 
+    public void testMessageAppendedToTopicLogFlowsToDiskAboveTargetSize() throws Exception
+    {
+        Map<String,Object> queueAttributes = new HashMap<String, Object>();
+        queueAttributes.put(Queue.ID, UUID.randomUUID());
+        queueAttributes.put(Queue.NAME, "testTopicLogFlowToDisk");
+        queueAttributes.put(Queue.CONTEXT, Collections.singletonMap(Queue.TOPIC_LOG, "true"));
+        final StandardQueueImpl queue = new StandardQueueImpl(queueAttributes, getVirtualHost());
+        queue.open();
+
+        TopicLog topicLog = new TopicLog("test");
+        assertTrue("Queue should subscribe to the topic log", queue.subscribeToTopicLog(topicLog));
+
+        StoredMessage belowTarget = mock(StoredMessage.class);
+        when(belowTarget.isInMemory()).thenReturn(true);
+        ServerMessage messageBelowTarget = createMessage(24l);
+        when(messageBelowTarget.getStoredMessage()).thenReturn(belowTarget);
+
+        queue.setTargetSize(Long.MAX_VALUE);
+        topicLog.getRoute().enqueue(messageBelowTarget, null);
+        verify(belowTarget, never()).flowToDisk();
+
+        StoredMessage aboveTarget = mock(StoredMessage.class);
+        when(aboveTarget.isInMemory()).thenReturn(true);
+        ServerMessage messageAboveTarget = createMessage(25l);
+        when(messageAboveTarget.getStoredMessage()).thenReturn(aboveTarget);
+
+        queue.setTargetSize(0l);
+        topicLog.getRoute().enqueue(messageAboveTarget, null);
+        verify(aboveTarget).flowToDisk();
+
+        queue.close();
+    }
+
+
     private static class DequeuedQueue extends AbstractQueue
     {
 
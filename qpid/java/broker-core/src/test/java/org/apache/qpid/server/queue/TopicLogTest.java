@@ -0,0 +1,209 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.util.Action;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class TopicLogTest extends QpidTestCase
+{
+    private TopicLog _topicLog;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _topicLog = new TopicLog(getTestName(), 2);
+    }
+
+    public void testEachSubscriberReadsEveryMessageInOrder()
+    {
+        TopicLog.Subscriber subscriber1 = mock(TopicLog.Subscriber.class);
+        TopicLog.Subscriber subscriber2 = mock(TopicLog.Subscriber.class);
+        TopicLog.Cursor cursor1 = _topicLog.subscribe(subscriber1);
+        TopicLog.Cursor cursor2 = _topicLog.subscribe(subscriber2);
+
+        ServerMessage<?>[] messages = { createMessage(), createMessage(), createMessage() };
+        for(ServerMessage<?> message : messages)
+        {
+            _topicLog.getRoute().enqueue(message, null);
+        }
+
+        assertEquals("Unexpected log size", 3, _topicLog.getSize());
+        for(int i = 0; i < messages.length; i++)
+        {
+            verify(subscriber1).messageAppended(eq(messages[i]), eq((long) i),
+                                                (Action<? super MessageInstance>) isNull());
+            verify(subscriber2).messageAppended(eq(messages[i]), eq((long) i),
+                                                (Action<? super MessageInstance>) isNull());
+        }
+        assertMessages(cursor1, messages);
+        assertMessages(cursor2, messages);
+    }
+
+    public void testSubscriberDoesNotReadMessagesRoutedBeforeItSubscribed()
+    {
+        TopicLog.Subscriber subscriber1 = mock(TopicLog.Subscriber.class);
+        TopicLog.Cursor cursor1 = _topicLog.subscribe(subscriber1);
+        TopicLog.Route route = _topicLog.getRoute();
+
+        TopicLog.Subscriber subscriber2 = mock(TopicLog.Subscriber.class);
+        TopicLog.Cursor cursor2 = _topicLog.subscribe(subscriber2);
+
+        ServerMessage<?> routedBefore = createMessage();
+        route.enqueue(routedBefore, null);
+        ServerMessage<?> routedAfter = createMessage();
+        _topicLog.getRoute().enqueue(routedAfter, null);
+
+        verify(subscriber2, never()).messageAppended(eq(routedBefore), anyLong(), any(Action.class));
+        assertMessages(cursor1, routedBefore, routedAfter);
+        assertMessages(cursor2, routedAfter);
+    }
+
+    public void testMessageRoutedToUnsubscribedSubscriberIsEnqueuedDirectly()
+    {
+        TopicLog.Subscriber subscriber = mock(TopicLog.Subscriber.class);
+        TopicLog.Cursor cursor = _topicLog.subscribe(subscriber);
+
+        ServerMessage<?> appended = createMessage();
+        _topicLog.getRoute().enqueue(appended, null);
+        TopicLog.Route route = _topicLog.getRoute();
+
+        _topicLog.unsubscribe(cursor);
+        ServerMessage<?> routedBeforeUnsubscribe = createMessage();
+        route.enqueue(routedBeforeUnsubscribe, null);
+
+        verify(subscriber).enqueue(eq(routedBeforeUnsubscribe), (Action<? super MessageInstance>) isNull());
+        verify(subscriber, never()).messageAppended(eq(routedBeforeUnsubscribe), anyLong(), any(Action.class));
+        assertMessages(cursor, appended);
+        assertFalse("Log should have no subscribers", _topicLog.hasSubscribers());
+    }
+
+    public void testMessageWithActionIsAppendedWithItsAction()
+    {
+        TopicLog.Subscriber subscriber1 = mock(TopicLog.Subscriber.class);
+        TopicLog.Cursor cursor1 = _topicLog.subscribe(subscriber1);
+        TopicLog.Subscriber subscriber2 = mock(TopicLog.Subscriber.class);
+        TopicLog.Cursor cursor2 = _topicLog.subscribe(subscriber2);
+        Action<? super MessageInstance> action = mock(Action.class);
+
+        ServerMessage<?> withoutAction = createMessage();
+        _topicLog.getRoute().enqueue(withoutAction, null);
+        ServerMessage<?> withAction = createMessage();
+        _topicLog.getRoute().enqueue(withAction, action);
+
+        verify(subscriber1).messageAppended(withAction, 1L, action);
+        verify(subscriber2).messageAppended(withAction, 1L, action);
+        verify(subscriber1, never()).enqueue(any(ServerMessage.class), any(Action.class));
+        verify(subscriber2, never()).enqueue(any(ServerMessage.class), any(Action.class));
+        assertEquals("Unexpected log size", 2, _topicLog.getSize());
+
+        for(TopicLog.Cursor cursor : new TopicLog.Cursor[] { cursor1, cursor2 })
+        {
+            assertSame("Unexpected message", withoutAction, cursor.peek());
+            assertNull("Message should have no action", cursor.getAction());
+            cursor.advance();
+            assertSame("Unexpected message", withAction, cursor.peek());
+            assertEquals("Unexpected position", 1L, cursor.getPosition());
+            assertSame("Action should be kept with the message", action, cursor.getAction());
+            cursor.advance();
+            assertNull("Unexpected message after the end of the log", cursor.peek());
+        }
+    }
+
+    public void testSegmentsAreReleasedOnceEverySubscriberHasPassedThem()
+    {
+        TopicLog.Cursor cursor1 = _topicLog.subscribe(mock(TopicLog.Subscriber.class));
+        TopicLog.Cursor cursor2 = _topicLog.subscribe(mock(TopicLog.Subscriber.class));
+
+        MessageReference<?>[] references = new MessageReference<?>[5];
+        for(int i = 0; i < references.length; i++)
+        {
+            ServerMessage message = createMessage();
+            _topicLog.getRoute().enqueue(message, null);
+            references[i] = message.newReference();
+        }
+        assertEquals("Unexpected segment count", 3, _topicLog.getSegmentCount());
+
+        consume(cursor1, 5);
+        assertEquals("Segments should be kept for the slower subscriber", 3, _topicLog.getSegmentCount());
+
+        consume(cursor2, 3);
+        assertEquals("First segment should be released", 2, _topicLog.getSegmentCount());
+        verify(references[0]).release();
+        verify(references[1]).release();
+        verify(references[2], never()).release();
+
+        _topicLog.unsubscribe(cursor1);
+        cursor1.release();
+        _topicLog.unsubscribe(cursor2);
+        consume(cursor2, 2);
+        cursor2.release();
+
+        assertEquals("Only an empty segment should remain", 1, _topicLog.getSegmentCount());
+        assertEquals("Log should be empty", 0, _topicLog.getSize());
+        for(MessageReference<?> reference : references)
+        {
+            verify(reference, times(1)).release();
+        }
+    }
+
+    private ServerMessage createMessage()
+    {
+        ServerMessage message = mock(ServerMessage.class);
+        MessageReference reference = mock(MessageReference.class);
+        when(reference.getMessage()).thenReturn(message);
+        when(message.newReference()).thenReturn(reference);
+        return message;
+    }
+
+    private void consume(final TopicLog.Cursor cursor, final int count)
+    {
+        for(int i = 0; i < count; i++)
+        {
+            assertNotNull("Expected a message at position " + i, cursor.peek());
+            cursor.advance();
+        }
+    }
+
+    private void assertMessages(final TopicLog.Cursor cursor, final ServerMessage<?>... expected)
+    {
+        for(ServerMessage<?> message : expected)
+        {
+            assertSame("Unexpected message", message, cursor.peek());
+            cursor.advance();
+        }
+        assertNull("Unexpected message after the end of the log", cursor.peek());
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.pool.SuppressingInheritedAccessControlContextThreadFactory;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class WorkStealingQueueRunnerSchedulerTest extends QpidTestCase
+{
+    private WorkStealingQueueRunnerScheduler _scheduler;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _scheduler = new WorkStealingQueueRunnerScheduler(getTestName(), 2,
+                                                          new SuppressingInheritedAccessControlContextThreadFactory());
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _scheduler.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testQueuesAreSpreadAcrossWorkers()
+    {
+        AMQQueue<?> queue1 = mock(AMQQueue.class);
+        AMQQueue<?> queue2 = mock(AMQQueue.class);
+        AMQQueue<?> queue3 = mock(AMQQueue.class);
+
+        _scheduler.register(queue1);
+        _scheduler.register(queue2);
+
+        assertTrue("Queues should be assigned to different workers",
+                   _scheduler.getWorkerIndex(queue1) != _scheduler.getWorkerIndex(queue2));
+
+        _scheduler.unregister(queue1);
+        _scheduler.register(queue3);
+
+        assertEquals("New queue should take the worker released by the unregistered queue",
+                     _scheduler.getWorkerIndex(queue3), 1 - _scheduler.getWorkerIndex(queue2));
+        assertEquals("Unregistered queue should have no worker", -1, _scheduler.getWorkerIndex(queue1));
+    }
+
+    public void testTaskOfBlockedWorkerIsStolenOnceBacklogExceedsThreshold() throws Exception
+    {
+        _scheduler.close();
+        _scheduler = new WorkStealingQueueRunnerScheduler(getTestName(), 2, 1,
+                                                          new SuppressingInheritedAccessControlContextThreadFactory());
+        AMQQueue<?> queue = mock(AMQQueue.class);
+        _scheduler.register(queue);
+
+        final CountDownLatch releaseBlocker = new CountDownLatch(1);
+        final AtomicReference<Thread> blockerThread = new AtomicReference<>();
+        blockWorker(queue, blockerThread, releaseBlocker);
+
+        final CountDownLatch firstRun = new CountDownLatch(1);
+        final CountDownLatch secondRun = new CountDownLatch(1);
+        final AtomicReference<Thread> firstThread = new AtomicReference<>();
+        final AtomicReference<Thread> secondThread = new AtomicReference<>();
+        _scheduler.execute(queue, new ThreadRecordingTask(firstThread, firstRun));
+        _scheduler.execute(queue, new ThreadRecordingTask(secondThread, secondRun));
+
+        try
+        {
+            assertTrue("Task queued beyond the steal threshold was not stolen", secondRun.await(5, TimeUnit.SECONDS));
+            assertNotSame("Stolen task should run on a different worker", blockerThread.get(), secondThread.get());
+            assertFalse("Task within the steal threshold should wait for its own worker",
+                        firstRun.await(100, TimeUnit.MILLISECONDS));
+        }
+        finally
+        {
+            releaseBlocker.countDown();
+        }
+        assertTrue("Task was not run after its worker was released", firstRun.await(5, TimeUnit.SECONDS));
+        assertSame("Task within the steal threshold should run on its own worker", blockerThread.get(), firstThread.get());
+    }
+
+    public void testCloseDiscardsQueuedTasks() throws Exception
+    {
+        AMQQueue<?> queue = mock(AMQQueue.class);
+        _scheduler.register(queue);
+
+        final CountDownLatch releaseBlocker = new CountDownLatch(1);
+        blockWorker(queue, new AtomicReference<Thread>(), releaseBlocker);
+
+        final CountDownLatch taskRun = new CountDownLatch(1);
+        _scheduler.execute(queue, new ThreadRecordingTask(new AtomicReference<Thread>(), taskRun));
+        assertEquals("Unexpected run queue length", 1, _scheduler.getRunQueueLength());
+
+        _scheduler.close();
+        releaseBlocker.countDown();
+
+        assertEquals("Run queue should be empty after close", 0, _scheduler.getRunQueueLength());
+        assertFalse("Task queued when the scheduler closed should not be run", taskRun.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    public void testWorkerSurvivesError() throws Exception
+    {
+        _scheduler.close();
+        _scheduler = new WorkStealingQueueRunnerScheduler(getTestName(), 1,
+                                                          new SuppressingInheritedAccessControlContextThreadFactory());
+        AMQQueue<?> queue = mock(AMQQueue.class);
+        _scheduler.register(queue);
+
+        final CountDownLatch taskRun = new CountDownLatch(1);
+        _scheduler.execute(queue, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new AssertionError("Test error");
+            }
+        });
+        _scheduler.execute(queue, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                taskRun.countDown();
+            }
+        });
+
+        assertTrue("Task queued after a failing task was not run", taskRun.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testWeightedQueuesShareWorker() throws Exception
+    {
+        _scheduler.close();
+        _scheduler = new WorkStealingQueueRunnerScheduler(getTestName(), 1,
+                                                          new SuppressingInheritedAccessControlContextThreadFactory());
+        AMQQueue<?> blockingQueue = mock(AMQQueue.class);
+        AMQQueue<?> lightQueue = mock(AMQQueue.class);
+        AMQQueue<?> heavyQueue = mock(AMQQueue.class);
+        when(lightQueue.getQueueRunnerWeight()).thenReturn(1);
+        when(heavyQueue.getQueueRunnerWeight()).thenReturn(4);
+        _scheduler.register(blockingQueue);
+        _scheduler.register(lightQueue);
+        _scheduler.register(heavyQueue);
+
+        final CountDownLatch blockerRunning = new CountDownLatch(1);
+        final CountDownLatch releaseBlocker = new CountDownLatch(1);
+        _scheduler.execute(blockingQueue, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                blockerRunning.countDown();
+                try
+                {
+                    releaseBlocker.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue("Blocking task did not start", blockerRunning.await(5, TimeUnit.SECONDS));
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch allRun = new CountDownLatch(8);
+        for (int i = 0; i < 4; i++)
+        {
+            _scheduler.execute(lightQueue, new RecordingTask("light", order, allRun));
+        }
+        for (int i = 0; i < 4; i++)
+        {
+            _scheduler.execute(heavyQueue, new RecordingTask("heavy", order, allRun));
+        }
+        releaseBlocker.countDown();
+
+        assertTrue("Tasks were not run", allRun.await(5, TimeUnit.SECONDS));
+        assertEquals("Heavier queue should have its tasks run first, after the first task of the lighter queue",
+                     "[light, heavy, heavy, heavy, heavy, light, light, light]", order.toString());
+    }
+
+    public void testExecuteAfterCloseIsRejected()
+    {
+        AMQQueue<?> queue = mock(AMQQueue.class);
+        _scheduler.register(queue);
+        _scheduler.close();
+
+        try
+        {
+            _scheduler.execute(queue, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                }
+            });
+            fail("Exception not thrown");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // pass
+        }
+    }
+
+    private void blockWorker(final AMQQueue<?> queue,
+                             final AtomicReference<Thread> blockerThread,
+                             final CountDownLatch releaseBlocker) throws InterruptedException
+    {
+        final CountDownLatch blockerRunning = new CountDownLatch(1);
+        _scheduler.execute(queue, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                blockerThread.set(Thread.currentThread());
+                blockerRunning.countDown();
+                try
+                {
+                    releaseBlocker.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue("Blocking task did not start", blockerRunning.await(5, TimeUnit.SECONDS));
+    }
+
+    private static class ThreadRecordingTask implements Runnable
+    {
+        private final AtomicReference<Thread> _thread;
+        private final CountDownLatch _latch;
+
+        ThreadRecordingTask(final AtomicReference<Thread> thread, final CountDownLatch latch)
+        {
+            _thread = thread;
+            _latch = latch;
+        }
+
+        @Override
+        public void run()
+        {
+            _thread.set(Thread.currentThread());
+            _latch.countDown();
+        }
+    }
+
+    private static class RecordingTask implements Runnable
+    {
+        private final String _name;
+        private final List<String> _order;
+        private final CountDownLatch _latch;
+
+        RecordingTask(final String name, final List<String> order, final CountDownLatch latch)
+        {
+            _name = name;
+            _order = order;
+            _latch = latch;
+        }
+
+        @Override
+        public void run()
+        {
+            _order.add(_name);
+            _latch.countDown();
+        }
+    }
+}
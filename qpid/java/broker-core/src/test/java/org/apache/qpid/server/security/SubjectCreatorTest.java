@@ -19,6 +19,8 @@
 package org.apache.qpid.server.security;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.security.Principal;
@@ -26,6 +28,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.security.auth.Subject;
 import javax.security.sasl.SaslServer;
@@ -35,9 +42,11 @@ import junit.framework.TestCase;
 import org.apache.qpid.server.model.AuthenticationProvider;
 import org.apache.qpid.server.model.GroupProvider;
 import org.apache.qpid.server.security.auth.AuthenticatedPrincipal;
+import org.apache.qpid.server.security.auth.AuthenticationCache;
 import org.apache.qpid.server.security.auth.AuthenticationResult;
 import org.apache.qpid.server.security.auth.AuthenticationResult.AuthenticationStatus;
 import org.apache.qpid.server.security.auth.SubjectAuthenticationResult;
+import org.apache.qpid.server.util.Action;
 
 public class SubjectCreatorTest extends TestCase
 {
@@ -143,6 +152,80 @@ public class SubjectCreatorTest extends TestCase
         assertNull(subjectAuthenticationResult.getSubject());
     }
 
+    public void testAsynchronousSaslAuthenticationCompletesOnExecutor() throws Exception
+    {
+        when(_authenticationProvider.authenticate(_testSaslServer, _saslResponseBytes)).thenReturn(_authenticationResult);
+        when(_testSaslServer.isComplete()).thenReturn(true);
+        when(_testSaslServer.getAuthorizationID()).thenReturn(USERNAME);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            SubjectCreator subjectCreator = new SubjectCreator(_authenticationProvider,
+                                                               Collections.<GroupProvider<?>>singleton(_groupManager1),
+                                                               false,
+                                                               executor,
+                                                               null);
+
+            final AtomicReference<SubjectAuthenticationResult> result = new AtomicReference<>();
+            final AtomicReference<Thread> callbackThread = new AtomicReference<>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            subjectCreator.authenticateAsync(_testSaslServer, _saslResponseBytes, new Action<SubjectAuthenticationResult>()
+            {
+                @Override
+                public void performAction(final SubjectAuthenticationResult object)
+                {
+                    result.set(object);
+                    callbackThread.set(Thread.currentThread());
+                    latch.countDown();
+                }
+            });
+
+            assertTrue("Authentication did not complete", latch.await(10, TimeUnit.SECONDS));
+            assertEquals(AuthenticationStatus.SUCCESS, result.get().getStatus());
+            assertTrue(result.get().getSubject().getPrincipals().contains(_group1));
+            assertNotSame("Callback should be made on the executor", Thread.currentThread(), callbackThread.get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testAsynchronousSaslAuthenticationWithoutExecutorCompletesOnCaller()
+    {
+        when(_authenticationProvider.authenticate(_testSaslServer, _saslResponseBytes)).thenReturn(
+                new AuthenticationResult(AuthenticationStatus.ERROR));
+        when(_testSaslServer.isComplete()).thenReturn(false);
+
+        final AtomicReference<SubjectAuthenticationResult> result = new AtomicReference<>();
+        _subjectCreator.authenticateAsync(_testSaslServer, _saslResponseBytes, new Action<SubjectAuthenticationResult>()
+        {
+            @Override
+            public void performAction(final SubjectAuthenticationResult object)
+            {
+                result.set(object);
+            }
+        });
+
+        assertNotNull("Callback should have been made on the calling thread", result.get());
+        assertEquals(AuthenticationStatus.ERROR, result.get().getStatus());
+    }
+
+    public void testGroupPrincipalsAreCached()
+    {
+        SubjectCreator subjectCreator = new SubjectCreator(_authenticationProvider,
+                                                           Collections.<GroupProvider<?>>singleton(_groupManager1),
+                                                           false,
+                                                           null,
+                                                           new AuthenticationCache<Set<Principal>>(60000L, 10));
+
+        assertEquals(Collections.singleton(_group1), subjectCreator.getGroupPrincipals(USERNAME));
+        assertEquals(Collections.singleton(_group1), subjectCreator.getGroupPrincipals(USERNAME));
+
+        verify(_groupManager1, times(1)).getGroupPrincipalsForUser(USERNAME);
+    }
+
     public void testGetGroupPrincipals()
     {
         getAndAssertGroupPrincipals(_group1, _group2);
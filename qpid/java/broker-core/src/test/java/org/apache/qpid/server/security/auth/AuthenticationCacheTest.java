@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.server.security.auth;
+
+import junit.framework.TestCase;
+
+public class AuthenticationCacheTest extends TestCase
+{
+    public void testGetReturnsCachedValue()
+    {
+        AuthenticationCache<String> cache = new AuthenticationCache<>(60000L, 10);
+        cache.put("value", "user", "password");
+
+        assertEquals("value", cache.get("user", "password"));
+        assertNull("Different credentials should not match", cache.get("user", "wrong"));
+        assertNull("Different user should not match", cache.get("other", "password"));
+    }
+
+    public void testKeyPartsAreDelimited()
+    {
+        AuthenticationCache<String> cache = new AuthenticationCache<>(60000L, 10);
+        cache.put("value", "ab", "c");
+
+        assertNull(cache.get("a", "bc"));
+        assertNull(cache.get("abc"));
+        assertNull(cache.get("ab", "c", null));
+    }
+
+    public void testDisabledCacheHoldsNothing()
+    {
+        AuthenticationCache<String> cache = new AuthenticationCache<>(0L, 10);
+        assertFalse(cache.isEnabled());
+
+        cache.put("value", "user", "password");
+
+        assertNull(cache.get("user", "password"));
+        assertEquals(0, cache.size());
+    }
+
+    public void testEntriesExpire() throws Exception
+    {
+        AuthenticationCache<String> cache = new AuthenticationCache<>(1L, 10);
+        cache.put("value", "user", "password");
+
+        Thread.sleep(10L);
+
+        assertNull(cache.get("user", "password"));
+        assertEquals("Expired entry should have been removed", 0, cache.size());
+    }
+
+    public void testSizeIsBounded()
+    {
+        AuthenticationCache<String> cache = new AuthenticationCache<>(60000L, 3);
+        for (int i = 0; i < 10; i++)
+        {
+            cache.put("value" + i, "user" + i, "password");
+        }
+
+        assertTrue("Unexpected size " + cache.size(), cache.size() <= 3);
+        assertEquals("Most recent entry should be cached", "value9", cache.get("user9", "password"));
+    }
+
+    public void testClear()
+    {
+        AuthenticationCache<String> cache = new AuthenticationCache<>(60000L, 10);
+        cache.put("value", "user", "password");
+
+        cache.clear();
+
+        assertNull(cache.get("user", "password"));
+    }
+
+    public void testCachesAreIndependentlySalted()
+    {
+        AuthenticationCache<String> cache1 = new AuthenticationCache<>(60000L, 10);
+        AuthenticationCache<String> cache2 = new AuthenticationCache<>(60000L, 10);
+        cache1.put("value", "user", "password");
+
+        assertNull(cache2.get("user", "password"));
+    }
+}
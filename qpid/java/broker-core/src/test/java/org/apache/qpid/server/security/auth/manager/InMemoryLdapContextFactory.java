@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.security.auth.manager;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.AuthenticationException;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+/**
+ * An in-process stand-in for a directory server, which accepts simple binds for the users it has been given and
+ * counts the binds made.
+ */
+public class InMemoryLdapContextFactory implements javax.naming.spi.InitialContextFactory
+{
+    private static final Map<String, String> USERS = new ConcurrentHashMap<>();
+    private static final AtomicInteger BIND_COUNT = new AtomicInteger();
+
+    public static void addUser(final String name, final String password)
+    {
+        USERS.put(name, password);
+    }
+
+    public static int getBindCount()
+    {
+        return BIND_COUNT.get();
+    }
+
+    public static void reset()
+    {
+        USERS.clear();
+        BIND_COUNT.set(0);
+    }
+
+    @Override
+    public Context getInitialContext(final Hashtable<?, ?> environment) throws NamingException
+    {
+        if("simple".equals(environment.get(Context.SECURITY_AUTHENTICATION)))
+        {
+            BIND_COUNT.incrementAndGet();
+            String password = USERS.get(String.valueOf(environment.get(Context.SECURITY_PRINCIPAL)));
+            if(password == null || !password.equals(environment.get(Context.SECURITY_CREDENTIALS)))
+            {
+                throw new AuthenticationException("Invalid credentials");
+            }
+        }
+        return mock(DirContext.class);
+    }
+}
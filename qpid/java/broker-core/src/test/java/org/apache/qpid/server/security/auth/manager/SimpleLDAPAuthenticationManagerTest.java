@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.security.auth.manager;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.security.sasl.SaslServer;
+
+import junit.framework.TestCase;
+
+import org.apache.qpid.server.model.AuthenticationProvider;
+import org.apache.qpid.server.model.Broker;
+import org.apache.qpid.server.model.BrokerModel;
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.model.ConfiguredObjectFactory;
+import org.apache.qpid.server.security.SubjectCreator;
+import org.apache.qpid.server.security.auth.AuthenticationResult;
+import org.apache.qpid.server.security.auth.AuthenticationResult.AuthenticationStatus;
+import org.apache.qpid.server.security.auth.SubjectAuthenticationResult;
+import org.apache.qpid.server.security.auth.UsernamePrincipal;
+import org.apache.qpid.server.util.Action;
+import org.apache.qpid.server.util.BrokerTestHelper;
+
+public class SimpleLDAPAuthenticationManagerTest extends TestCase
+{
+    private static final String USERNAME = "uid=test,dc=example";
+    private static final String PASSWORD = "password";
+
+    private ConfiguredObjectFactory _factory = BrokerModel.getInstance().getObjectFactory();
+    private Broker _broker = BrokerTestHelper.createBrokerMock();
+    private SimpleLDAPAuthenticationManager<?> _authenticationManager;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        InMemoryLdapContextFactory.reset();
+        InMemoryLdapContextFactory.addUser(USERNAME, PASSWORD);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            if (_authenticationManager != null)
+            {
+                _authenticationManager.close();
+            }
+            InMemoryLdapContextFactory.reset();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testAuthenticate()
+    {
+        _authenticationManager = createAuthenticationManager(Collections.<String, String>emptyMap());
+
+        AuthenticationResult result = _authenticationManager.authenticate(USERNAME, PASSWORD);
+        assertEquals(AuthenticationStatus.SUCCESS, result.getStatus());
+        assertEquals(new UsernamePrincipal(USERNAME), result.getMainPrincipal());
+
+        result = _authenticationManager.authenticate(USERNAME, "wrong");
+        assertFalse(AuthenticationStatus.SUCCESS.equals(result.getStatus()));
+    }
+
+    public void testCredentialsAreNotCachedByDefault()
+    {
+        _authenticationManager = createAuthenticationManager(Collections.<String, String>emptyMap());
+
+        _authenticationManager.authenticate(USERNAME, PASSWORD);
+        _authenticationManager.authenticate(USERNAME, PASSWORD);
+
+        assertEquals("Unexpected number of binds", 2, InMemoryLdapContextFactory.getBindCount());
+    }
+
+    public void testSuccessfulAuthenticationIsCached()
+    {
+        _authenticationManager = createAuthenticationManager(
+                Collections.singletonMap(AuthenticationProvider.AUTHENTICATION_CACHE_EXPIRATION_TIME, "60"));
+
+        assertEquals(AuthenticationStatus.SUCCESS, _authenticationManager.authenticate(USERNAME, PASSWORD).getStatus());
+        assertEquals(AuthenticationStatus.SUCCESS, _authenticationManager.authenticate(USERNAME, PASSWORD).getStatus());
+
+        assertEquals("Unexpected number of binds", 1, InMemoryLdapContextFactory.getBindCount());
+
+        assertFalse("Cached result should not be returned for a different password",
+                    AuthenticationStatus.SUCCESS.equals(_authenticationManager.authenticate(USERNAME, "wrong").getStatus()));
+        assertEquals("Unexpected number of binds", 2, InMemoryLdapContextFactory.getBindCount());
+    }
+
+    public void testFailedAuthenticationIsNotCached()
+    {
+        _authenticationManager = createAuthenticationManager(
+                Collections.singletonMap(AuthenticationProvider.AUTHENTICATION_CACHE_EXPIRATION_TIME, "60"));
+
+        _authenticationManager.authenticate(USERNAME, "wrong");
+        _authenticationManager.authenticate(USERNAME, "wrong");
+
+        assertEquals("Unexpected number of binds", 2, InMemoryLdapContextFactory.getBindCount());
+    }
+
+    public void testAsynchronousSaslAuthentication() throws Exception
+    {
+        _authenticationManager = createAuthenticationManager(
+                Collections.singletonMap(AuthenticationProvider.AUTHENTICATION_CACHE_EXPIRATION_TIME, "60"));
+
+        SubjectAuthenticationResult result = authenticateAsync(PASSWORD);
+        assertEquals(AuthenticationStatus.SUCCESS, result.getStatus());
+        boolean found = false;
+        for (Principal principal : result.getSubject().getPrincipals())
+        {
+            found |= USERNAME.equals(principal.getName());
+        }
+        assertTrue("Subject does not contain the user principal", found);
+
+        assertEquals(AuthenticationStatus.SUCCESS, authenticateAsync(PASSWORD).getStatus());
+        assertEquals("Unexpected number of binds", 1, InMemoryLdapContextFactory.getBindCount());
+
+        assertFalse(AuthenticationStatus.SUCCESS.equals(authenticateAsync("wrong").getStatus()));
+    }
+
+    private SubjectAuthenticationResult authenticateAsync(final String password) throws Exception
+    {
+        SubjectCreator subjectCreator = _authenticationManager.getSubjectCreator(true);
+        SaslServer saslServer = subjectCreator.createSaslServer("PLAIN", "localhost", null);
+        byte[] response = ("\0" + USERNAME + "\0" + password).getBytes("UTF-8");
+
+        final AtomicReference<SubjectAuthenticationResult> result = new AtomicReference<>();
+        final AtomicReference<Thread> callbackThread = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        subjectCreator.authenticateAsync(saslServer, response, new Action<SubjectAuthenticationResult>()
+        {
+            @Override
+            public void performAction(final SubjectAuthenticationResult object)
+            {
+                result.set(object);
+                callbackThread.set(Thread.currentThread());
+                latch.countDown();
+            }
+        });
+
+        assertTrue("Authentication did not complete", latch.await(10, TimeUnit.SECONDS));
+        assertNotSame("Authentication should be performed off the calling thread",
+                      Thread.currentThread(), callbackThread.get());
+        return result.get();
+    }
+
+    private SimpleLDAPAuthenticationManager<?> createAuthenticationManager(final Map<String, String> context)
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(AuthenticationProvider.ID, UUID.randomUUID());
+        attributes.put(AuthenticationProvider.NAME, getName());
+        attributes.put(AuthenticationProvider.TYPE, SimpleLDAPAuthenticationManager.PROVIDER_TYPE);
+        attributes.put(ConfiguredObject.CONTEXT, context);
+        attributes.put("providerUrl", "ldap://localhost:389/");
+        attributes.put("searchContext", "dc=example");
+        attributes.put("searchFilter", "(uid={0})");
+        attributes.put("bindWithoutSearch", true);
+        attributes.put("ldapContextFactory", InMemoryLdapContextFactory.class.getName());
+
+        return (SimpleLDAPAuthenticationManager<?>) _factory.create(AuthenticationProvider.class, attributes, _broker);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.nio.ByteBuffer;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class DirectSlabAllocatorTest extends QpidTestCase
+{
+    private DirectSlabAllocator _allocator;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _allocator = new DirectSlabAllocator(4096, 256);
+    }
+
+    public void testAllocateRoundsUpToSizeClass()
+    {
+        ByteBuffer buffer = _allocator.allocate(300);
+
+        assertTrue("Buffer should be direct", buffer.isDirect());
+        assertEquals("Unexpected limit", 300, buffer.limit());
+        assertEquals("Unexpected capacity", 512, buffer.capacity());
+        assertEquals("Unexpected reserved bytes", 4096, _allocator.getReservedBytes());
+        assertEquals("Unexpected allocated bytes", 512, _allocator.getAllocatedBytes());
+        assertEquals("Unexpected requested bytes", 300, _allocator.getRequestedBytes());
+
+        assertEquals("Unexpected capacity for minimum size", 256, _allocator.allocate(1).capacity());
+        assertEquals("Unexpected capacity for empty buffer", 256, _allocator.allocate(0).capacity());
+        assertEquals("Unexpected capacity for exact size", 1024, _allocator.allocate(1024).capacity());
+        assertEquals("Unexpected capacity for slab size", 4096, _allocator.allocate(4096).capacity());
+    }
+
+    public void testChunksDoNotOverlap()
+    {
+        ByteBuffer first = _allocator.allocate(256);
+        ByteBuffer second = _allocator.allocate(256);
+
+        while(first.hasRemaining())
+        {
+            first.put((byte) 1);
+        }
+        while(second.hasRemaining())
+        {
+            second.put((byte) 2);
+        }
+
+        first.flip();
+        while(first.hasRemaining())
+        {
+            assertEquals("Chunk overwritten", (byte) 1, first.get());
+        }
+    }
+
+    public void testFreedChunkIsReused()
+    {
+        ByteBuffer buffer = _allocator.allocate(200);
+        buffer.put((byte) 1);
+        _allocator.free(buffer);
+
+        assertEquals("Unexpected allocated bytes after free", 0, _allocator.getAllocatedBytes());
+        assertEquals("Unexpected requested bytes after free", 0, _allocator.getRequestedBytes());
+
+        for(int i = 0; i < 4096 / 256; i++)
+        {
+            ByteBuffer reused = _allocator.allocate(256);
+            assertEquals("Unexpected position", 0, reused.position());
+            assertEquals("Unexpected limit", 256, reused.limit());
+        }
+        assertEquals("Freed chunks should be reused before a new slab is allocated",
+                     4096, _allocator.getReservedBytes());
+
+        _allocator.allocate(256);
+        assertEquals("A new slab should be allocated once the chunks are used", 8192, _allocator.getReservedBytes());
+    }
+
+    public void testUnusedSlabIsGivenBack()
+    {
+        ByteBuffer[] buffers = new ByteBuffer[2 * 4096 / 1024];
+        for(int i = 0; i < buffers.length; i++)
+        {
+            buffers[i] = _allocator.allocate(1024);
+        }
+        assertEquals("Unexpected reserved bytes", 8192, _allocator.getReservedBytes());
+
+        for(ByteBuffer buffer : buffers)
+        {
+            _allocator.free(buffer);
+        }
+
+        assertEquals("Only one unused slab should be kept", 4096, _allocator.getReservedBytes());
+        assertEquals("Unexpected allocated bytes after free", 0, _allocator.getAllocatedBytes());
+    }
+
+    public void testDoubleFreeIsRejected()
+    {
+        ByteBuffer buffer = _allocator.allocate(256);
+        _allocator.free(buffer);
+        try
+        {
+            _allocator.free(buffer);
+            fail("Exception not thrown");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // pass
+        }
+    }
+
+    public void testSharedViewIsReadOnly()
+    {
+        ByteBuffer buffer = _allocator.allocate(256);
+        ByteBuffer view = _allocator.share(buffer, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        });
+
+        assertTrue("View should be read-only", view.isReadOnly());
+        assertTrue("View should be direct", view.isDirect());
+        assertEquals("Unexpected view limit", 256, view.limit());
+        assertEquals("Unexpected shared view count", 1, _allocator.getSharedViewCount());
+    }
+
+    public void testLargeAllocationIsUnpooled()
+    {
+        ByteBuffer buffer = _allocator.allocate(5000);
+
+        assertTrue("Buffer should be direct", buffer.isDirect());
+        assertEquals("Unexpected capacity", 5000, buffer.capacity());
+        assertEquals("Unexpected reserved bytes", 5000, _allocator.getReservedBytes());
+
+        _allocator.free(buffer);
+
+        assertEquals("Unexpected reserved bytes after free", 0, _allocator.getReservedBytes());
+        assertEquals("Unexpected allocated bytes after free", 0, _allocator.getAllocatedBytes());
+    }
+
+    public void testFragmentation()
+    {
+        assertEquals("Unexpected internal fragmentation when empty", 0d, _allocator.getInternalFragmentation(), 0.0001d);
+        assertEquals("Unexpected external fragmentation when empty", 0d, _allocator.getExternalFragmentation(), 0.0001d);
+
+        _allocator.allocate(384);
+
+        assertEquals("Unexpected internal fragmentation", 0.25d, _allocator.getInternalFragmentation(), 0.0001d);
+        assertEquals("Unexpected external fragmentation", 0.875d, _allocator.getExternalFragmentation(), 0.0001d);
+    }
+
+    public void testInvalidSizes()
+    {
+        try
+        {
+            new DirectSlabAllocator(4000, 256);
+            fail("Exception not thrown");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // pass
+        }
+
+        try
+        {
+            new DirectSlabAllocator(256, 4096);
+            fail("Exception not thrown");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // pass
+        }
+
+        try
+        {
+            _allocator.allocate(-1);
+            fail("Exception not thrown");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // pass
+        }
+    }
+}
@@ -29,6 +29,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -437,6 +438,123 @@ public class JsonFileConfigStoreTest extends QpidTestCase
     }
 
 
+    public void testAppendLogDefersConfigurationFileRewrite() throws Exception
+    {
+        when(_parent.getContextValue(Boolean.class, JsonFileConfigStore.APPEND_LOG)).thenReturn(true);
+        File configFile = new File(_storeLocation, _parent.getName() + ".json");
+        File logFile = new File(_storeLocation, _parent.getName() + ".log");
+
+        _store.openConfigurationStore(_parent, false);
+        createRootRecord();
+        final UUID queueId = new UUID(0, 1);
+        final Map<String, Object> queueAttr = Collections.<String, Object>singletonMap(ConfiguredObject.NAME, "queue");
+        _store.create(new ConfiguredObjectRecordImpl(queueId, "Queue", queueAttr, getRootAsParentMap()));
+
+        assertTrue("Log should hold the changes", logFile.length() > 0);
+        assertFalse("Configuration file should not have been rewritten",
+                    new String(Files.readAllBytes(configFile.toPath()), "UTF-8").contains(queueId.toString()));
+
+        _store.closeConfigurationStore();
+        assertFalse("Log should be compacted on close", logFile.exists());
+
+        when(_parent.getContextValue(Boolean.class, JsonFileConfigStore.APPEND_LOG)).thenReturn(false);
+        _store.openConfigurationStore(_parent, false);
+        _store.visitConfiguredObjectRecords(_handler);
+        verify(_handler).handle(matchesRecord(queueId, "Queue", queueAttr));
+        _store.closeConfigurationStore();
+    }
+
+    public void testAppendLogIsCompactedAtThreshold() throws Exception
+    {
+        when(_parent.getContextValue(Boolean.class, JsonFileConfigStore.APPEND_LOG)).thenReturn(true);
+        when(_parent.getContextValue(Integer.class, JsonFileConfigStore.COMPACTION_THRESHOLD)).thenReturn(3);
+        File configFile = new File(_storeLocation, _parent.getName() + ".json");
+        File logFile = new File(_storeLocation, _parent.getName() + ".log");
+
+        _store.openConfigurationStore(_parent, false);
+        createRootRecord();
+        final UUID queueId = new UUID(0, 1);
+        _store.create(new ConfiguredObjectRecordImpl(queueId, "Queue",
+                                                     Collections.<String, Object>singletonMap(ConfiguredObject.NAME, "queue"),
+                                                     getRootAsParentMap()));
+        assertTrue("Log should hold the changes", logFile.length() > 0);
+
+        _store.remove(new ConfiguredObjectRecordImpl(queueId, "Queue", Collections.<String, Object>emptyMap()));
+        assertEquals("Log should be empty after compaction", 0L, logFile.length());
+        String config = new String(Files.readAllBytes(configFile.toPath()), "UTF-8");
+        assertTrue("Configuration file should hold the root", config.contains(_rootRecord.getId().toString()));
+        assertFalse("Configuration file should not hold the removed queue", config.contains(queueId.toString()));
+        _store.closeConfigurationStore();
+    }
+
+    public void testLogIsTruncatedOnlyAfterSuccessfulCompaction() throws Exception
+    {
+        when(_parent.getContextValue(Boolean.class, JsonFileConfigStore.APPEND_LOG)).thenReturn(true);
+        when(_parent.getContextValue(Integer.class, JsonFileConfigStore.COMPACTION_THRESHOLD)).thenReturn(2);
+        File configFile = new File(_storeLocation, _parent.getName() + ".json");
+        File logFile = new File(_storeLocation, _parent.getName() + ".log");
+
+        _store.openConfigurationStore(_parent, false);
+        createRootRecord();
+
+        // a non-empty directory where the temporary configuration file is written makes the save fail
+        File blocker = new File(_storeLocation, _parent.getName() + ".tmp");
+        assertTrue("Could not create " + blocker, blocker.mkdir());
+        assertTrue("Could not populate " + blocker, new File(blocker, "blocker").createNewFile());
+
+        final UUID queueId = new UUID(0, 1);
+        final Map<String, Object> queueAttr = Collections.<String, Object>singletonMap(ConfiguredObject.NAME, "queue");
+        _store.create(new ConfiguredObjectRecordImpl(queueId, "Queue", queueAttr, getRootAsParentMap()));
+
+        assertTrue("Log should be kept when compaction fails",
+                   new String(Files.readAllBytes(logFile.toPath()), "UTF-8").contains(queueId.toString()));
+        assertFalse("Configuration file should not have been rewritten",
+                    new String(Files.readAllBytes(configFile.toPath()), "UTF-8").contains(queueId.toString()));
+
+        FileUtils.delete(blocker, true);
+        final UUID queue2Id = new UUID(0, 2);
+        _store.create(new ConfiguredObjectRecordImpl(queue2Id, "Queue",
+                                                     Collections.<String, Object>singletonMap(ConfiguredObject.NAME, "queue2"),
+                                                     getRootAsParentMap()));
+
+        assertEquals("Log should be empty after compaction", 0L, logFile.length());
+        String config = new String(Files.readAllBytes(configFile.toPath()), "UTF-8");
+        assertTrue("Configuration file should hold the first queue", config.contains(queueId.toString()));
+        assertTrue("Configuration file should hold the second queue", config.contains(queue2Id.toString()));
+        _store.closeConfigurationStore();
+    }
+
+    public void testLogIsReplayedOnOpen() throws Exception
+    {
+        _store.openConfigurationStore(_parent, false);
+        createRootRecord();
+        _store.closeConfigurationStore();
+
+        final UUID queueId = new UUID(0, 1);
+        final UUID queue2Id = new UUID(0, 2);
+        String root = _rootRecord.getId().toString();
+        String log = "{\"op\":\"create\",\"records\":[{\"id\":\"" + queueId + "\",\"type\":\"Queue\","
+                     + "\"attributes\":{\"name\":\"queue\"},\"parents\":{\"VirtualHost\":\"" + root + "\"}}]}\n"
+                     + "{\"op\":\"update\",\"records\":[{\"id\":\"" + queueId + "\",\"type\":\"Queue\","
+                     + "\"attributes\":{\"name\":\"queue\",\"owner\":\"owner\"},"
+                     + "\"parents\":{\"VirtualHost\":\"" + root + "\"}}]}\n"
+                     + "{\"op\":\"create\",\"records\":[{\"id\":\"" + queue2Id + "\",\"ty";
+        File logFile = new File(_storeLocation, _parent.getName() + ".log");
+        Files.write(logFile.toPath(), log.getBytes("UTF-8"));
+
+        _store.openConfigurationStore(_parent, false);
+        assertFalse("Log should be compacted on open", logFile.exists());
+        _store.visitConfiguredObjectRecords(_handler);
+
+        Map<String, Object> queueAttr = new HashMap<String, Object>();
+        queueAttr.put(ConfiguredObject.NAME, "queue");
+        queueAttr.put("owner", "owner");
+        verify(_handler).handle(matchesRecord(queueId, "Queue", queueAttr));
+        verify(_handler, times(2)).handle(any(ConfiguredObjectRecord.class));
+        _store.closeConfigurationStore();
+    }
+
+
     private void createRootRecord()
     {
         UUID rootRecordId = UUID.randomUUID();
@@ -20,10 +20,13 @@
  */
 package org.apache.qpid.server.store;
 
+import java.nio.ByteBuffer;
+
 import org.apache.qpid.server.model.VirtualHost;
 import org.apache.qpid.server.virtualhost.TestMemoryVirtualHost;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class MemoryMessageStoreTest extends MessageStoreTestCase
 {
@@ -47,4 +50,48 @@ public class MemoryMessageStoreTest extends MessageStoreTestCase
         // cannot re-open memory message store as it is not persistent
     }
 
+    public void testDirectContent() throws Exception
+    {
+        final TestMemoryVirtualHost parent = mock(TestMemoryVirtualHost.class);
+        when(parent.getContextValue(Boolean.class, MemoryMessageStore.DIRECT_CONTENT)).thenReturn(true);
+        MemoryMessageStore store = new MemoryMessageStore();
+        store.openMessageStore(parent);
+
+        DirectSlabAllocator allocator = store.getContentAllocator();
+        assertNotNull("Direct content allocator not created", allocator);
+
+        byte[] content = "0123456789".getBytes();
+        StoredMessage<TestMessageMetaData> message = store.addMessage(new TestMessageMetaData(1, content.length));
+        message.addContent(0, ByteBuffer.wrap(content, 0, 4));
+        message.addContent(4, ByteBuffer.wrap(content, 4, 6));
+
+        assertEquals("Unexpected requested bytes", content.length, allocator.getRequestedBytes());
+
+        ByteBuffer buffer = message.getContent(2, 5);
+        assertTrue("Content should be handed out from direct memory", buffer.isDirect());
+        assertTrue("Content handed out should be read-only", buffer.isReadOnly());
+        assertEquals("Unexpected shared view count", 1, allocator.getSharedViewCount());
+
+        message.remove();
+
+        assertEquals("Content should not be freed while a view of it is held", content.length,
+                     allocator.getRequestedBytes());
+        assertEquals("Removed message should have no content", 0, message.getContent(0, ByteBuffer.allocate(10)));
+
+        // the chunk held by the view is not reused for the next message
+        byte[] otherContent = "abcdefghij".getBytes();
+        StoredMessage<TestMessageMetaData> otherMessage =
+                store.addMessage(new TestMessageMetaData(2, otherContent.length));
+        otherMessage.addContent(0, ByteBuffer.wrap(otherContent));
+
+        byte[] read = new byte[buffer.remaining()];
+        buffer.get(read);
+        assertEquals("Content read before remove should be unaffected by later messages", "23456", new String(read));
+
+        otherMessage.remove();
+        assertEquals("Content of message without views should be freed on remove", content.length,
+                     allocator.getRequestedBytes());
+
+        store.closeMessageStore();
+    }
 }
@@ -0,0 +1,462 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.txn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.server.message.EnqueueableMessage;
+import org.apache.qpid.server.store.MessageStore;
+import org.apache.qpid.server.store.NullMessageStore;
+import org.apache.qpid.server.store.StoreException;
+import org.apache.qpid.server.store.StoreFuture;
+import org.apache.qpid.server.store.Transaction;
+import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.Xid;
+
+public class DtxRegistryTest extends QpidTestCase
+{
+    private DtxRegistry _registry;
+    private RecordingStore _store;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _registry = new DtxRegistry();
+        _store = new RecordingStore();
+    }
+
+    public void testPrepareAndCommit() throws Exception
+    {
+        Xid xid = createXid(1);
+        DtxBranch branch = registerBranch(xid);
+
+        _registry.prepare(xid);
+        assertEquals("Unexpected branch state", DtxBranch.State.PREPARED, branch.getState());
+        assertEquals("Unexpected number of recorded xids", 1, _store.getRecordedXids());
+
+        _registry.commit(xid, false);
+        assertEquals("Unexpected branch state", DtxBranch.State.FORGOTTEN, branch.getState());
+        assertEquals("Unexpected number of removed xids", 1, _store.getRemovedXids());
+        assertNull("Branch should have been unregistered", _registry.getBranch(xid));
+    }
+
+    public void testRollbackOfPreparedBranchRemovesXid() throws Exception
+    {
+        Xid xid = createXid(1);
+        DtxBranch branch = registerBranch(xid);
+
+        _registry.prepare(xid);
+        _registry.rollback(xid);
+
+        assertEquals("Unexpected branch state", DtxBranch.State.FORGOTTEN, branch.getState());
+        assertEquals("Unexpected number of removed xids", 1, _store.getRemovedXids());
+        assertNull("Branch should have been unregistered", _registry.getBranch(xid));
+    }
+
+    public void testRegisterBranchTwice() throws Exception
+    {
+        Xid xid = createXid(1);
+        registerBranch(xid);
+
+        assertFalse("Branch with the same xid should not be registered",
+                    _registry.registerBranch(new DtxBranch(xid, _store, null)));
+    }
+
+    public void testCommitOfUnknownBranch() throws Exception
+    {
+        Xid xid = createXid(1);
+        registerBranch(xid);
+        _registry.commit(xid, true);
+
+        try
+        {
+            _registry.commit(xid, true);
+            fail("Exception not thrown");
+        }
+        catch (UnknownDtxBranchException e)
+        {
+            // pass
+        }
+    }
+
+    public void testConcurrentPreparesAreCoalesced() throws Exception
+    {
+        final int branches = 5;
+        final List<Xid> xids = new ArrayList<Xid>();
+        for(int i = 0; i < branches; i++)
+        {
+            xids.add(createXid(i));
+            registerBranch(xids.get(i));
+        }
+
+        _store.blockNextCommit();
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Exception> failures = new ArrayList<Exception>();
+        for(final Xid xid : xids)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        _registry.prepare(xid);
+                    }
+                    catch (Exception e)
+                    {
+                        synchronized (failures)
+                        {
+                            failures.add(e);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            if(threads.size() == 1)
+            {
+                assertTrue("First prepare did not reach the store", _store.awaitBlockedCommit());
+            }
+        }
+
+        // the remaining prepares queue behind the blocked commit
+        for(Thread thread : threads.subList(1, threads.size()))
+        {
+            long timeout = System.currentTimeMillis() + 10000L;
+            while(thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < timeout)
+            {
+                Thread.sleep(10L);
+            }
+            assertEquals("Prepare should be waiting to commit", Thread.State.WAITING, thread.getState());
+        }
+
+        _store.unblockCommit();
+        for(Thread thread : threads)
+        {
+            thread.join(10000L);
+            assertFalse("Prepare did not complete", thread.isAlive());
+        }
+
+        assertTrue("Unexpected failures " + failures, failures.isEmpty());
+        assertEquals("Unexpected number of recorded xids", branches, _store.getRecordedXids());
+        assertEquals("Prepares should have been committed in two store transactions", 2, _store.getCommits());
+        for(Xid xid : xids)
+        {
+            assertEquals("Unexpected branch state", DtxBranch.State.PREPARED, _registry.getBranch(xid).getState());
+        }
+    }
+
+    public void testFailedUpdateInCoalescedBatchFailsOnlyItsBranch() throws Exception
+    {
+        final int branches = 4;
+        final List<Xid> xids = new ArrayList<Xid>();
+        for(int i = 0; i < branches; i++)
+        {
+            xids.add(createXid(i));
+            registerBranch(xids.get(i));
+        }
+        final Xid failingXid = xids.get(2);
+        _store.failRecordOf(failingXid);
+
+        _store.blockNextCommit();
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Xid> failedXids = new ArrayList<Xid>();
+        for(final Xid xid : xids)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        _registry.prepare(xid);
+                    }
+                    catch (Exception e)
+                    {
+                        synchronized (failedXids)
+                        {
+                            failedXids.add(xid);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            if(threads.size() == 1)
+            {
+                assertTrue("First prepare did not reach the store", _store.awaitBlockedCommit());
+            }
+        }
+
+        // the remaining prepares queue behind the blocked commit and are attempted as one batch
+        for(Thread thread : threads.subList(1, threads.size()))
+        {
+            long timeout = System.currentTimeMillis() + 10000L;
+            while(thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < timeout)
+            {
+                Thread.sleep(10L);
+            }
+            assertEquals("Prepare should be waiting to commit", Thread.State.WAITING, thread.getState());
+        }
+
+        _store.unblockCommit();
+        for(Thread thread : threads)
+        {
+            thread.join(10000L);
+            assertFalse("Prepare did not complete", thread.isAlive());
+        }
+
+        assertEquals("Only the branch whose update failed should fail", Arrays.asList(failingXid), failedXids);
+        assertEquals("Unexpected number of recorded xids", branches - 1, _store.getRecordedXids());
+        assertEquals("Failed store transactions should be aborted", 2, _store.getAborts());
+        for(Xid xid : xids)
+        {
+            if(xid != failingXid)
+            {
+                assertEquals("Unexpected branch state", DtxBranch.State.PREPARED, _registry.getBranch(xid).getState());
+            }
+        }
+    }
+
+    public void testConcurrentBranchesCompleteIndependently() throws Exception
+    {
+        final int threadCount = 4;
+        final int branchesPerThread = 200;
+        final List<Exception> failures = new ArrayList<Exception>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for(int i = 0; i < threadCount; i++)
+        {
+            final int threadNumber = i;
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for(int j = 0; j < branchesPerThread; j++)
+                        {
+                            Xid xid = createXid(threadNumber * branchesPerThread + j);
+                            registerBranch(xid);
+                            _registry.prepare(xid);
+                            _registry.commit(xid, false);
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        synchronized (failures)
+                        {
+                            failures.add(e);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads)
+        {
+            thread.join(30000L);
+            assertFalse("Thread did not complete", thread.isAlive());
+        }
+
+        assertTrue("Unexpected failures " + failures, failures.isEmpty());
+        assertEquals("Unexpected number of recorded xids", threadCount * branchesPerThread, _store.getRecordedXids());
+        assertEquals("Unexpected number of removed xids", threadCount * branchesPerThread, _store.getRemovedXids());
+        assertTrue("All branches should be complete", _registry.recover().isEmpty());
+    }
+
+    private DtxBranch registerBranch(final Xid xid)
+    {
+        DtxBranch branch = new DtxBranch(xid, _store, null);
+        assertTrue("Branch not registered", _registry.registerBranch(branch));
+        return branch;
+    }
+
+    private static Xid createXid(final int id)
+    {
+        return new Xid(0L, ("global" + id).getBytes(), ("branch" + id).getBytes());
+    }
+
+    private static class RecordingStore extends NullMessageStore
+    {
+        private final Object _lock = new Object();
+        private int _recordedXids;
+        private int _removedXids;
+        private int _commits;
+        private int _aborts;
+        private volatile Xid _failingXid;
+        private CountDownLatch _commitBlocked;
+        private CountDownLatch _commitReleased;
+
+        @Override
+        public Transaction newTransaction()
+        {
+            return new RecordingTransaction();
+        }
+
+        void failRecordOf(final Xid xid)
+        {
+            _failingXid = xid;
+        }
+
+        void blockNextCommit()
+        {
+            _commitBlocked = new CountDownLatch(1);
+            _commitReleased = new CountDownLatch(1);
+        }
+
+        boolean awaitBlockedCommit() throws InterruptedException
+        {
+            return _commitBlocked.await(10, TimeUnit.SECONDS);
+        }
+
+        void unblockCommit()
+        {
+            _commitReleased.countDown();
+        }
+
+        int getRecordedXids()
+        {
+            synchronized (_lock)
+            {
+                return _recordedXids;
+            }
+        }
+
+        int getRemovedXids()
+        {
+            synchronized (_lock)
+            {
+                return _removedXids;
+            }
+        }
+
+        int getCommits()
+        {
+            synchronized (_lock)
+            {
+                return _commits;
+            }
+        }
+
+        int getAborts()
+        {
+            synchronized (_lock)
+            {
+                return _aborts;
+            }
+        }
+
+        private class RecordingTransaction implements Transaction
+        {
+            private int _recorded;
+            private int _removed;
+
+            @Override
+            public void enqueueMessage(final TransactionLogResource queue, final EnqueueableMessage message)
+            {
+            }
+
+            @Override
+            public void dequeueMessage(final TransactionLogResource queue, final EnqueueableMessage message)
+            {
+            }
+
+            @Override
+            public void commitTran()
+            {
+                CountDownLatch released = null;
+                synchronized (_lock)
+                {
+                    _recordedXids += _recorded;
+                    _removedXids += _removed;
+                    if(_recorded != 0 || _removed != 0)
+                    {
+                        _commits++;
+                        if(_commitBlocked != null && _commitBlocked.getCount() != 0)
+                        {
+                            _commitBlocked.countDown();
+                            released = _commitReleased;
+                        }
+                    }
+                }
+
+                if(released != null)
+                {
+                    try
+                    {
+                        released.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public StoreFuture commitTranAsync()
+            {
+                commitTran();
+                return StoreFuture.IMMEDIATE_FUTURE;
+            }
+
+            @Override
+            public void abortTran()
+            {
+                synchronized (_lock)
+                {
+                    _aborts++;
+                }
+            }
+
+            @Override
+            public void removeXid(final long format, final byte[] globalId, final byte[] branchId)
+            {
+                _removed++;
+            }
+
+            @Override
+            public void recordXid(final long format,
+                                  final byte[] globalId,
+                                  final byte[] branchId,
+                                  final Record[] enqueues,
+                                  final Record[] dequeues)
+            {
+                Xid failingXid = _failingXid;
+                if(failingXid != null && Arrays.equals(globalId, failingXid.getGlobalId()))
+                {
+                    throw new StoreException("Cannot record xid");
+                }
+                _recorded++;
+            }
+        }
+    }
+}
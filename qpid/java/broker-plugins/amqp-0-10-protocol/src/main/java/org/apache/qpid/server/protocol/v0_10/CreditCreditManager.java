@@ -21,113 +21,140 @@
 package org.apache.qpid.server.protocol.v0_10;
 
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.qpid.server.flow.AbstractFlowCreditManager;
 
 public class CreditCreditManager extends AbstractFlowCreditManager implements FlowCreditManager_0_10
 {
-    private volatile long _bytesCredit;
-    private volatile long _messageCredit;
+    private final AtomicReference<Credit> _credit;
 
     public CreditCreditManager(long bytesCredit, long messageCredit)
     {
-        _bytesCredit = bytesCredit;
-        _messageCredit = messageCredit;
+        _credit = new AtomicReference<Credit>(new Credit(bytesCredit, messageCredit));
         setSuspended(!hasCredit());
 
     }
 
 
-    public synchronized void setCreditLimits(final long bytesCredit, final long messageCredit)
+    public void setCreditLimits(final long bytesCredit, final long messageCredit)
     {
-        _bytesCredit = bytesCredit;
-        _messageCredit = messageCredit;
+        final Credit updated = new Credit(bytesCredit, messageCredit);
+        _credit.set(updated);
 
-        setSuspended(!hasCredit());
+        setSuspended(!updated.hasCredit(), _credit, updated);
 
     }
 
 
     public long getMessageCredit()
     {
-         return _messageCredit == -1L
+        final long messageCredit = _credit.get()._messageCredit;
+        return messageCredit == -1L
                     ? Long.MAX_VALUE
-                    : _messageCredit;
+                    : messageCredit;
     }
 
     public long getBytesCredit()
     {
-        return _bytesCredit == -1L
+        final long bytesCredit = _credit.get()._bytesCredit;
+        return bytesCredit == -1L
                     ? Long.MAX_VALUE
-                    : _bytesCredit;
+                    : bytesCredit;
     }
 
-    public synchronized void restoreCredit(final long messageCredit, final long bytesCredit)
+    public void restoreCredit(final long messageCredit, final long bytesCredit)
     {
     }
 
 
-    public synchronized void addCredit(final long messageCredit, final long bytesCredit)
+    public void addCredit(final long messageCredit, final long bytesCredit)
     {
-        boolean notifyIncrease = true;
-        if(_messageCredit >= 0L && messageCredit > 0L)
+        Credit current;
+        Credit updated;
+        boolean notifyIncrease;
+        do
         {
-            notifyIncrease = _messageCredit != 0L;
-            _messageCredit += messageCredit;
-        }
-
-
-
-        if(_bytesCredit >= 0L && bytesCredit > 0L)
-        {
-            notifyIncrease = notifyIncrease && bytesCredit>0;
-            _bytesCredit += bytesCredit;
-
+            current = _credit.get();
+            notifyIncrease = true;
 
+            long newMessageCredit = current._messageCredit;
+            if(newMessageCredit >= 0L && messageCredit > 0L)
+            {
+                notifyIncrease = newMessageCredit != 0L;
+                newMessageCredit += messageCredit;
+            }
 
-            if(notifyIncrease)
+            long newBytesCredit = current._bytesCredit;
+            if(newBytesCredit >= 0L && bytesCredit > 0L)
             {
-                notifyIncreaseBytesCredit();
+                newBytesCredit += bytesCredit;
+            }
+            else
+            {
+                notifyIncrease = false;
             }
-        }
 
+            updated = new Credit(newBytesCredit, newMessageCredit);
+        }
+        while(!_credit.compareAndSet(current, updated));
 
+        if(notifyIncrease)
+        {
+            notifyIncreaseBytesCredit();
+        }
 
-        setSuspended(!hasCredit());
+        setSuspended(!updated.hasCredit(), _credit, updated);
 
     }
 
     public void clearCredit()
     {
-        _bytesCredit = 0l;
-        _messageCredit = 0l;
-        setSuspended(true);
+        final Credit updated = new Credit(0L, 0L);
+        _credit.set(updated);
+        setSuspended(true, _credit, updated);
     }
 
 
-    public synchronized boolean hasCredit()
+    public boolean hasCredit()
     {
-        // Note !=, if credit is < 0 that indicates infinite credit
-        return (_bytesCredit != 0L  && _messageCredit != 0L);
+        return _credit.get().hasCredit();
     }
 
-    public synchronized boolean useCreditForMessage(long msgSize)
+    public boolean useCreditForMessage(long msgSize)
     {
-        if(_messageCredit >= 0L)
+        while(true)
         {
-            if(_messageCredit > 0)
+            final Credit current = _credit.get();
+            final Credit updated;
+            if(current._messageCredit >= 0L)
             {
-                if(_bytesCredit < 0L)
+                if(current._messageCredit > 0)
                 {
-                    _messageCredit--;
-
-                    return true;
+                    if(current._bytesCredit < 0L)
+                    {
+                        updated = new Credit(current._bytesCredit, current._messageCredit - 1);
+                    }
+                    else if(msgSize <= current._bytesCredit)
+                    {
+                        updated = new Credit(current._bytesCredit - msgSize, current._messageCredit - 1);
+                    }
+                    else
+                    {
+                        return false;
+                    }
                 }
-                else if(msgSize <= _bytesCredit)
+                else
                 {
-                    _messageCredit--;
-                    _bytesCredit -= msgSize;
-
-                    return true;
+                    setSuspended(true, _credit, current);
+                    return false;
+                }
+            }
+            else if(current._bytesCredit >= 0L)
+            {
+                if(msgSize <= current._bytesCredit)
+                {
+                    updated = new Credit(current._bytesCredit - msgSize, current._messageCredit);
                 }
                 else
                 {
@@ -136,43 +163,49 @@ public class CreditCreditManager extends AbstractFlowCreditManager implements Fl
             }
             else
             {
-                setSuspended(true);
-                return false;
-            }
-        }
-        else if(_bytesCredit >= 0L)
-        {
-            if(msgSize <= _bytesCredit)
-            {
-                 _bytesCredit -= msgSize;
-
                 return true;
             }
-            else
+
+            if(_credit.compareAndSet(current, updated))
             {
-                return false;
+                return true;
             }
-
         }
-        else
+    }
+
+    public void stop()
+    {
+        Credit current;
+        Credit updated;
+        do
         {
-            return true;
+            current = _credit.get();
+            updated = new Credit(current._bytesCredit > 0 ? 0L : current._bytesCredit,
+                                 current._messageCredit > 0 ? 0L : current._messageCredit);
         }
+        while(!_credit.compareAndSet(current, updated));
 
     }
 
-    public synchronized void stop()
+    /**
+     * An immutable snapshot of the credit remaining, where a negative value indicates infinite credit.
+     */
+    private static final class Credit
     {
-        if(_bytesCredit > 0)
+        private final long _bytesCredit;
+        private final long _messageCredit;
+
+        private Credit(final long bytesCredit, final long messageCredit)
         {
-            _bytesCredit = 0;
+            _bytesCredit = bytesCredit;
+            _messageCredit = messageCredit;
         }
-        if(_messageCredit > 0)
+
+        private boolean hasCredit()
         {
-            _messageCredit = 0;
+            // Note !=, if credit is < 0 that indicates infinite credit
+            return (_bytesCredit != 0L  && _messageCredit != 0L);
         }
-
     }
 
-
 }
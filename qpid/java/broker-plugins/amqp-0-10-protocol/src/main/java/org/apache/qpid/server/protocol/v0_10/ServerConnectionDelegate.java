@@ -49,6 +49,7 @@ import org.apache.qpid.server.protocol.AMQConnectionModel;
 import org.apache.qpid.server.security.SubjectCreator;
 import org.apache.qpid.server.security.auth.AuthenticationResult.AuthenticationStatus;
 import org.apache.qpid.server.security.auth.SubjectAuthenticationResult;
+import org.apache.qpid.server.util.Action;
 import org.apache.qpid.server.virtualhost.VirtualHostImpl;
 import org.apache.qpid.transport.*;
 import org.apache.qpid.transport.network.NetworkConnection;
@@ -136,12 +137,26 @@ public class ServerConnectionDelegate extends ServerDelegate
     protected void secure(final SaslServer ss, final Connection conn, final byte[] response)
     {
         final ServerConnection sconn = (ServerConnection) conn;
-        final SubjectAuthenticationResult authResult = _subjectCreator.authenticate(ss, response);
+        _subjectCreator.authenticateAsync(ss, response, new Action<SubjectAuthenticationResult>()
+        {
+            @Override
+            public void performAction(final SubjectAuthenticationResult authResult)
+            {
+                processAuthenticationResult(sconn, authResult);
+            }
+        });
+    }
 
+    /**
+     * Completes a step of the SASL exchange, possibly on an authentication thread.  The subject is set before the
+     * connection is tuned, so that it is in place when the client's tune-ok arrives.
+     */
+    private void processAuthenticationResult(final ServerConnection sconn, final SubjectAuthenticationResult authResult)
+    {
         if (AuthenticationStatus.SUCCESS.equals(authResult.getStatus()))
         {
-            tuneAuthorizedConnection(sconn);
             sconn.setAuthorizedSubject(authResult.getSubject());
+            tuneAuthorizedConnection(sconn);
         }
         else if (AuthenticationStatus.CONTINUE.equals(authResult.getStatus()))
         {
@@ -20,6 +20,8 @@
  */
 package org.apache.qpid.server.protocol.v0_10;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.log4j.Logger;
 import org.apache.qpid.server.flow.AbstractFlowCreditManager;
 
@@ -27,11 +29,7 @@ public class WindowCreditManager extends AbstractFlowCreditManager implements Fl
 {
     private static final Logger LOGGER = Logger.getLogger(WindowCreditManager.class);
 
-    private volatile long _bytesCreditLimit;
-    private volatile long _messageCreditLimit;
-
-    private volatile long _bytesUsed;
-    private volatile long _messageUsed;
+    private final AtomicReference<Window> _window;
 
      public WindowCreditManager()
      {
@@ -40,108 +38,161 @@ public class WindowCreditManager extends AbstractFlowCreditManager implements Fl
 
     public WindowCreditManager(long bytesCreditLimit, long messageCreditLimit)
     {
-        _bytesCreditLimit = bytesCreditLimit;
-        _messageCreditLimit = messageCreditLimit;
+        _window = new AtomicReference<Window>(new Window(bytesCreditLimit, messageCreditLimit, 0L, 0L));
         setSuspended(!hasCredit());
 
     }
 
     public long getBytesCreditLimit()
     {
-        return _bytesCreditLimit;
+        return _window.get()._bytesCreditLimit;
     }
 
     public long getMessageCreditLimit()
     {
-        return _messageCreditLimit;
+        return _window.get()._messageCreditLimit;
     }
 
-    public synchronized void setCreditLimits(final long bytesCreditLimit, final long messageCreditLimit)
+    public void setCreditLimits(final long bytesCreditLimit, final long messageCreditLimit)
     {
-        _bytesCreditLimit = bytesCreditLimit;
-        _messageCreditLimit = messageCreditLimit;
+        Window current;
+        Window updated;
+        do
+        {
+            current = _window.get();
+            updated = new Window(bytesCreditLimit, messageCreditLimit, current._bytesUsed, current._messageUsed);
+        }
+        while(!_window.compareAndSet(current, updated));
 
-        setSuspended(!hasCredit());
+        setSuspended(!updated.hasCredit(), _window, updated);
 
     }
 
 
     public long getMessageCredit()
     {
-         return _messageCreditLimit == -1L
+        final Window window = _window.get();
+        return window._messageCreditLimit == -1L
                     ? Long.MAX_VALUE
-                    : _messageUsed < _messageCreditLimit ? _messageCreditLimit - _messageUsed : 0L;
+                    : window._messageUsed < window._messageCreditLimit
+                        ? window._messageCreditLimit - window._messageUsed
+                        : 0L;
     }
 
     public long getBytesCredit()
     {
-        return _bytesCreditLimit == -1L
+        final Window window = _window.get();
+        return window._bytesCreditLimit == -1L
                     ? Long.MAX_VALUE
-                    : _bytesUsed < _bytesCreditLimit ? _bytesCreditLimit - _bytesUsed : 0L;
+                    : window._bytesUsed < window._bytesCreditLimit
+                        ? window._bytesCreditLimit - window._bytesUsed
+                        : 0L;
     }
 
-    public synchronized void restoreCredit(final long messageCredit, final long bytesCredit)
+    public void restoreCredit(final long messageCredit, final long bytesCredit)
     {
-        _messageUsed -= messageCredit;
-        if(_messageUsed < 0L)
+        Window current;
+        Window updated;
+        long messageUsed;
+        long bytesUsed;
+        boolean notifyIncrease;
+        do
         {
-            LOGGER.error("Message credit used value was negative: "+ _messageUsed);
-            _messageUsed = 0;
-        }
+            current = _window.get();
 
-        boolean notifyIncrease = true;
+            messageUsed = current._messageUsed - messageCredit;
+            notifyIncrease = true;
 
-        if(_messageCreditLimit > 0L)
-        {
-            notifyIncrease = (_messageUsed != _messageCreditLimit);
+            if(current._messageCreditLimit > 0L)
+            {
+                notifyIncrease = (Math.max(messageUsed, 0L) != current._messageCreditLimit);
+            }
+
+            bytesUsed = current._bytesUsed - bytesCredit;
+
+            if(current._bytesCreditLimit > 0L)
+            {
+                notifyIncrease = notifyIncrease && bytesCredit>0;
+            }
+            else
+            {
+                notifyIncrease = false;
+            }
+
+            updated = new Window(current._bytesCreditLimit,
+                                 current._messageCreditLimit,
+                                 Math.max(bytesUsed, 0L),
+                                 Math.max(messageUsed, 0L));
         }
+        while(!_window.compareAndSet(current, updated));
 
-        _bytesUsed -= bytesCredit;
-        if(_bytesUsed < 0L)
+        if(messageUsed < 0L)
         {
-            LOGGER.error("Bytes credit used value was negative: "+ _messageUsed);
-            _bytesUsed = 0;
+            LOGGER.error("Message credit used value was negative: "+ messageUsed);
         }
-
-        if(_bytesCreditLimit > 0L)
+        if(bytesUsed < 0L)
         {
-            notifyIncrease = notifyIncrease && bytesCredit>0;
+            LOGGER.error("Bytes credit used value was negative: "+ bytesUsed);
+        }
 
-            if(notifyIncrease)
-            {
-                notifyIncreaseBytesCredit();
-            }
+        if(notifyIncrease)
+        {
+            notifyIncreaseBytesCredit();
         }
 
-        setSuspended(!hasCredit());
+        setSuspended(!updated.hasCredit(), _window, updated);
     }
 
 
 
-    public synchronized boolean hasCredit()
+    public boolean hasCredit()
     {
-        return (_bytesCreditLimit < 0L || _bytesCreditLimit > _bytesUsed)
-                && (_messageCreditLimit < 0L || _messageCreditLimit > _messageUsed);
+        return _window.get().hasCredit();
     }
 
-    public synchronized boolean useCreditForMessage(final long msgSize)
+    public boolean useCreditForMessage(final long msgSize)
     {
-        if(_messageCreditLimit >= 0L)
+        while(true)
         {
-            if(_messageUsed < _messageCreditLimit)
+            final Window current = _window.get();
+            final Window updated;
+            if(current._messageCreditLimit >= 0L)
             {
-                if(_bytesCreditLimit < 0L)
+                if(current._messageUsed < current._messageCreditLimit)
                 {
-                    _messageUsed++;
-
-                    return true;
+                    if(current._bytesCreditLimit < 0L)
+                    {
+                        updated = new Window(current._bytesCreditLimit,
+                                             current._messageCreditLimit,
+                                             current._bytesUsed,
+                                             current._messageUsed + 1);
+                    }
+                    else if(current._bytesUsed + msgSize <= current._bytesCreditLimit)
+                    {
+                        updated = new Window(current._bytesCreditLimit,
+                                             current._messageCreditLimit,
+                                             current._bytesUsed + msgSize,
+                                             current._messageUsed + 1);
+                    }
+                    else
+                    {
+                        return false;
+                    }
                 }
-                else if(_bytesUsed + msgSize <= _bytesCreditLimit)
+                else
                 {
-                    _messageUsed++;
-                    _bytesUsed += msgSize;
-
-                    return true;
+                    setSuspended(true, _window, current);
+                    return false;
+                }
+            }
+            else if(current._bytesCreditLimit >= 0L)
+            {
+                if(current._bytesUsed + msgSize <= current._bytesCreditLimit)
+                {
+                    updated = new Window(current._bytesCreditLimit,
+                                         current._messageCreditLimit,
+                                         current._bytesUsed + msgSize,
+                                         current._messageUsed);
                 }
                 else
                 {
@@ -150,58 +201,90 @@ public class WindowCreditManager extends AbstractFlowCreditManager implements Fl
             }
             else
             {
-                setSuspended(true);
-                return false;
+                return true;
+            }
+
+            if(_window.compareAndSet(current, updated))
+            {
+                return true;
             }
         }
-        else if(_bytesCreditLimit >= 0L)
+    }
+
+
+    public void addCredit(long count, long bytes)
+    {
+        Window current;
+        Window updated;
+        do
         {
-            if(_bytesUsed + msgSize <= _bytesCreditLimit)
+            current = _window.get();
+
+            long bytesCreditLimit = current._bytesCreditLimit;
+            if(bytes > 0)
+            {
+                bytesCreditLimit += bytes;
+            }
+            else if(bytes == -1)
             {
-                 _bytesUsed += msgSize;
+                bytesCreditLimit = -1;
+            }
 
-                return true;
+            long messageCreditLimit = current._messageCreditLimit;
+            if(count > 0)
+            {
+                messageCreditLimit += count;
             }
-            else
+            else if(count == -1)
             {
-                return false;
+                messageCreditLimit = -1;
             }
 
+            updated = new Window(bytesCreditLimit, messageCreditLimit, current._bytesUsed, current._messageUsed);
         }
-        else
-        {
-            return true;
-        }
-
+        while(!_window.compareAndSet(current, updated));
     }
 
-
-    public synchronized void addCredit(long count, long bytes)
+    public void clearCredit()
     {
-        if(bytes > 0)
-        {
-            _bytesCreditLimit += bytes;
-        }
-        else if(bytes == -1)
+        Window current;
+        Window updated;
+        do
         {
-            _bytesCreditLimit = -1;
+            current = _window.get();
+            updated = new Window(0L, 0L, current._bytesUsed, current._messageUsed);
         }
+        while(!_window.compareAndSet(current, updated));
 
+        setSuspended(true, _window, updated);
+    }
 
-        if(count > 0)
+    /**
+     * An immutable snapshot of the credit window and the credit used within it, where a negative limit
+     * indicates infinite credit.
+     */
+    private static final class Window
+    {
+        private final long _bytesCreditLimit;
+        private final long _messageCreditLimit;
+        private final long _bytesUsed;
+        private final long _messageUsed;
+
+        private Window(final long bytesCreditLimit,
+                       final long messageCreditLimit,
+                       final long bytesUsed,
+                       final long messageUsed)
         {
-            _messageCreditLimit += count;
+            _bytesCreditLimit = bytesCreditLimit;
+            _messageCreditLimit = messageCreditLimit;
+            _bytesUsed = bytesUsed;
+            _messageUsed = messageUsed;
         }
-        else if(count == -1)
+
+        private boolean hasCredit()
         {
-            _messageCreditLimit = -1;
+            return (_bytesCreditLimit < 0L || _bytesCreditLimit > _bytesUsed)
+                    && (_messageCreditLimit < 0L || _messageCreditLimit > _messageUsed);
         }
     }
-
-    public void clearCredit()
-    {
-        _bytesCreditLimit = 0l;
-        _messageCreditLimit = 0l;
-        setSuspended(true);
-    }
 }
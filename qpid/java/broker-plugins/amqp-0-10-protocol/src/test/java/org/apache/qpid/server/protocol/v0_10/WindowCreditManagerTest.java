@@ -20,6 +20,9 @@
  */
 package org.apache.qpid.server.protocol.v0_10;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.qpid.server.flow.FlowCreditManager;
 import org.apache.qpid.server.protocol.v0_10.WindowCreditManager;
 import org.apache.qpid.test.utils.QpidTestCase;
 
@@ -81,4 +84,52 @@ public class WindowCreditManagerTest extends QpidTestCase
         assertEquals("unexpected credit value", 1, _creditManager.getMessageCredit());
         assertTrue("Manager should 'haveCredit'", _creditManager.hasCredit());
     }
+
+    /**
+     * Tests that credit used and restored concurrently from several threads is neither lost nor created, and that
+     * the last notification given to listeners reflects the credit available once the threads are done.
+     */
+    public void testConcurrentUseAndRestoreCredit() throws Exception
+    {
+        final AtomicBoolean lastNotifiedState = new AtomicBoolean(true);
+        _creditManager.addStateListener(new FlowCreditManager.FlowCreditManagerListener()
+        {
+            @Override
+            public void creditStateChanged(final boolean hasCredit)
+            {
+                lastNotifiedState.set(hasCredit);
+            }
+        });
+        _creditManager.addCredit(2, 1000);
+
+        final Thread[] threads = new Thread[4];
+        for(int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for(int j = 0; j < 50000; j++)
+                    {
+                        if(_creditManager.useCreditForMessage(10))
+                        {
+                            _creditManager.restoreCredit(1, 10);
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for(Thread thread : threads)
+        {
+            thread.join(30000L);
+            assertFalse("Thread did not complete", thread.isAlive());
+        }
+
+        assertEquals("unexpected credit value", 2, _creditManager.getMessageCredit());
+        assertEquals("unexpected credit value", 1000, _creditManager.getBytesCredit());
+        assertTrue("Manager should 'haveCredit'", _creditManager.hasCredit());
+        assertTrue("Last notification should report credit available", lastNotifiedState.get());
+    }
 }
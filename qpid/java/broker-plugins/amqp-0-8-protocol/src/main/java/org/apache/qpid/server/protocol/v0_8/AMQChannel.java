@@ -93,7 +93,7 @@ import org.apache.qpid.server.model.Session;
 import org.apache.qpid.server.model.State;
 import org.apache.qpid.server.model.UnknownConfiguredObjectException;
 import org.apache.qpid.server.protocol.AMQSessionModel;
-import org.apache.qpid.server.protocol.CapacityChecker;
+import org.apache.qpid.server.protocol.CapacityCheckAction;
 import org.apache.qpid.server.protocol.ConsumerListener;
 import org.apache.qpid.server.queue.AMQQueue;
 import org.apache.qpid.server.queue.QueueArgumentsConverter;
@@ -196,7 +196,7 @@ public class AMQChannel
             new CopyOnWriteArrayList<Action<? super AMQChannel>>();
 
 
-    private final CapacityCheckAction _capacityCheckAction = new CapacityCheckAction();
+    private final CapacityCheckAction _capacityCheckAction = new CapacityCheckAction(this);
     private final ImmediateAction _immediateAction = new ImmediateAction();
     private Subject _subject;
     private final CopyOnWriteArrayList<Consumer<?>> _consumers = new CopyOnWriteArrayList<Consumer<?>>();
@@ -1540,28 +1540,12 @@ public class AMQChannel
             }
             else
             {
-                if(queue instanceof CapacityChecker)
-                {
-                    ((CapacityChecker)queue).checkCapacity(AMQChannel.this);
-                }
+                _capacityCheckAction.checkCapacity(queue);
             }
 
         }
     }
 
-    private final class CapacityCheckAction implements Action<MessageInstance>
-    {
-        @Override
-        public void performAction(final MessageInstance entry)
-        {
-            TransactionLogResource queue = entry.getOwningResource();
-            if(queue instanceof CapacityChecker)
-            {
-                ((CapacityChecker)queue).checkCapacity(AMQChannel.this);
-            }
-        }
-    }
-
     private class MessageAcknowledgeAction implements ServerTransaction.Action
     {
         private final Collection<MessageInstance> _ackedMessages;
@@ -100,6 +100,7 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
     {
         INIT,
         AWAIT_START_OK,
+        AWAIT_AUTHENTICATION,
         AWAIT_SECURE_OK,
         AWAIT_TUNE_OK,
         AWAIT_OPEN,
@@ -133,7 +134,7 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
 
     private final AMQChannel[] _cachedChannels = new AMQChannel[CHANNEL_CACHE_SIZE + 1];
 
-    private ConnectionState _state = ConnectionState.INIT;
+    private volatile ConnectionState _state = ConnectionState.INIT;
 
     /**
      * The channels that the latest call to {@link #received(ByteBuffer)} applied to.
@@ -1657,8 +1658,6 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
 
         assertState(ConnectionState.AWAIT_SECURE_OK);
 
-        Broker<?> broker = getBroker();
-
         SubjectCreator subjectCreator = getSubjectCreator();
 
         SaslServer ss = getSaslServer();
@@ -1666,8 +1665,25 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
         {
             closeConnection(AMQConstant.INTERNAL_ERROR, "No SASL context set up in session",0 );
         }
+        _state = ConnectionState.AWAIT_AUTHENTICATION;
+        subjectCreator.authenticateAsync(ss, response, new Action<SubjectAuthenticationResult>()
+        {
+            @Override
+            public void performAction(final SubjectAuthenticationResult authResult)
+            {
+                processAuthenticationResult(authResult);
+            }
+        });
+    }
+
+    /**
+     * Completes a step of the SASL exchange.  Authentication is performed off the I/O thread, so this may be called
+     * on an authentication thread; the connection state is updated before the response is written, so that it is
+     * already current when the client's next frame arrives.
+     */
+    private void processAuthenticationResult(final SubjectAuthenticationResult authResult)
+    {
         MethodRegistry methodRegistry = getMethodRegistry();
-        SubjectAuthenticationResult authResult = subjectCreator.authenticate(ss, response);
         switch (authResult.getStatus())
         {
             case ERROR:
@@ -1675,7 +1691,7 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
 
                 _logger.info("Authentication failed:" + (cause == null ? "" : cause.getMessage()));
 
-                closeConnection(AMQConstant.NOT_ALLOWED, "Authentication failed",0);
+                closeConnection(AMQConstant.NOT_ALLOWED, "Authentication failed", 0);
 
                 disposeSaslServer();
                 break;
@@ -1684,7 +1700,10 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
                 {
                     _logger.info("Connected as: " + authResult.getSubject());
                 }
+                setAuthorizedSubject(authResult.getSubject());
+                disposeSaslServer();
 
+                Broker<?> broker = getBroker();
                 int frameMax = broker.getContextValue(Integer.class, Broker.BROKER_FRAME_SIZE);
 
                 if (frameMax <= 0)
@@ -1696,15 +1715,13 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
                         methodRegistry.createConnectionTuneBody(broker.getConnection_sessionCountLimit(),
                                                                 frameMax,
                                                                 broker.getConnection_heartBeatDelay());
-                writeFrame(tuneBody.generateFrame(0));
                 _state = ConnectionState.AWAIT_TUNE_OK;
-                setAuthorizedSubject(authResult.getSubject());
-                disposeSaslServer();
+                writeFrame(tuneBody.generateFrame(0));
                 break;
             case CONTINUE:
-
                 ConnectionSecureBody
                         secureBody = methodRegistry.createConnectionSecureBody(authResult.getChallenge());
+                _state = ConnectionState.AWAIT_SECURE_OK;
                 writeFrame(secureBody.generateFrame(0));
         }
     }
@@ -1748,8 +1765,6 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
 
         assertState(ConnectionState.AWAIT_START_OK);
 
-        Broker<?> broker = getBroker();
-
         _logger.info("SASL Mechanism selected: " + mechanism);
         _logger.info("Locale selected: " + locale);
 
@@ -1773,51 +1788,15 @@ public class AMQProtocolEngine implements ServerProtocolEngine,
 
                 setSaslServer(ss);
 
-                final SubjectAuthenticationResult authResult = subjectCreator.authenticate(ss, response);
-
-                MethodRegistry methodRegistry = getMethodRegistry();
-
-                switch (authResult.getStatus())
+                _state = ConnectionState.AWAIT_AUTHENTICATION;
+                subjectCreator.authenticateAsync(ss, response, new Action<SubjectAuthenticationResult>()
                 {
-                    case ERROR:
-                        Exception cause = authResult.getCause();
-
-                        _logger.info("Authentication failed:" + (cause == null ? "" : cause.getMessage()));
-
-                        closeConnection(AMQConstant.NOT_ALLOWED, "Authentication failed", 0);
-
-                        disposeSaslServer();
-                        break;
-
-                    case SUCCESS:
-                        if (_logger.isInfoEnabled())
-                        {
-                            _logger.info("Connected as: " + authResult.getSubject());
-                        }
-                        setAuthorizedSubject(authResult.getSubject());
-
-                        int frameMax = broker.getContextValue(Integer.class, Broker.BROKER_FRAME_SIZE);
-
-                        if (frameMax <= 0)
-                        {
-                            frameMax = Integer.MAX_VALUE;
-                        }
-
-                        ConnectionTuneBody
-                                tuneBody =
-                                methodRegistry.createConnectionTuneBody(broker.getConnection_sessionCountLimit(),
-                                                                        frameMax,
-                                                                        broker.getConnection_heartBeatDelay());
-                        writeFrame(tuneBody.generateFrame(0));
-                        _state = ConnectionState.AWAIT_TUNE_OK;
-                        break;
-                    case CONTINUE:
-                        ConnectionSecureBody
-                                secureBody = methodRegistry.createConnectionSecureBody(authResult.getChallenge());
-                        writeFrame(secureBody.generateFrame(0));
-
-                        _state = ConnectionState.AWAIT_SECURE_OK;
-                }
+                    @Override
+                    public void performAction(final SubjectAuthenticationResult authResult)
+                    {
+                        processAuthenticationResult(authResult);
+                    }
+                });
             }
         }
         catch (SaslException e)
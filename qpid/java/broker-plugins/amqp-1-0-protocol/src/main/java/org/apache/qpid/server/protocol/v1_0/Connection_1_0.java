@@ -67,6 +67,7 @@ public class Connection_1_0 implements ConnectionEventListener, AMQConnectionMod
     private VirtualHostImpl _vhost;
     private final Transport _transport;
     private final ConnectionEndpoint _conn;
+    private final ProtocolEngine_1_0_0_SASL _protocolEngine;
     private final long _connectionId;
     private final Collection<Session_1_0> _sessions = Collections.synchronizedCollection(new ArrayList<Session_1_0>());
     private final Object _reference = new Object();
@@ -105,12 +106,14 @@ public class Connection_1_0 implements ConnectionEventListener, AMQConnectionMod
                           ConnectionEndpoint conn,
                           long connectionId,
                           AmqpPort<?> port,
-                          Transport transport, final SubjectCreator subjectCreator)
+                          Transport transport, final SubjectCreator subjectCreator,
+                          final ProtocolEngine_1_0_0_SASL protocolEngine)
     {
         _broker = broker;
         _port = port;
         _transport = transport;
         _conn = conn;
+        _protocolEngine = protocolEngine;
         _connectionId = connectionId;
         _subject.getPrincipals().add(new ConnectionPrincipal(this));
         _subjectCreator = subjectCreator;
@@ -120,6 +123,16 @@ public class Connection_1_0 implements ConnectionEventListener, AMQConnectionMod
         _dataReceiptStatistics = new StatisticsCounter("data-received-" + getConnectionId());
     }
 
+    public void setDeferFlush(final boolean deferFlush)
+    {
+        _protocolEngine.setDeferFlush(deferFlush);
+    }
+
+    public void flushBatched()
+    {
+        _protocolEngine.flushBatched();
+    }
+
     public Object getReference()
     {
         return _reference;
@@ -115,15 +115,30 @@ class ConsumerTarget_1_0 extends AbstractConsumerTarget
 
     public long send(final ConsumerImpl consumer, MessageInstance entry, boolean batch)
     {
-        // TODO
         long size = entry.getMessage().getSize();
-        send(entry);
+        _link.getSession().getConnectionModel().setDeferFlush(batch);
+        boolean sent = false;
+        try
+        {
+            send(entry);
+            sent = true;
+        }
+        finally
+        {
+            if(!sent)
+            {
+                // the queue runner does not flush a delivery which failed, so nothing may be left deferred
+                flushBatched();
+            }
+        }
         return size;
     }
 
     public void flushBatched()
     {
-        // TODO
+        Connection_1_0 connection = _link.getSession().getConnectionModel();
+        connection.setDeferFlush(false);
+        connection.flushBatched();
     }
 
     public void send(final MessageInstance queueEntry)
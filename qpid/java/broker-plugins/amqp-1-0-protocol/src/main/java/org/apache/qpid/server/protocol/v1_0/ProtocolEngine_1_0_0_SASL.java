@@ -26,9 +26,12 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.security.Principal;
 import java.security.PrivilegedAction;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.security.auth.Subject;
 import javax.security.sasl.SaslException;
@@ -68,6 +71,8 @@ public class ProtocolEngine_1_0_0_SASL implements ServerProtocolEngine, FrameOut
     private static final org.apache.log4j.Logger
             _logger = org.apache.log4j.Logger.getLogger(ProtocolEngine_1_0_0_SASL.class);
 
+    private static final int OUTPUT_BUFFER_SIZE = Integer.getInteger("qpid.amqp_1_0.output_buffer_size", 65536);
+
     private final AmqpPort<?> _port;
     private final Transport _transport;
     private long _readBytes;
@@ -119,6 +124,16 @@ public class ProtocolEngine_1_0_0_SASL implements ServerProtocolEngine, FrameOut
     private Sender<ByteBuffer> _sender;
     private Connection_1_0 _connection;
 
+    /**
+     * Frames are encoded one after another into the output buffer, and the region not yet passed to the sender is
+     * sent as a single buffer when the output is flushed.  Sent regions are never overwritten; once the buffer has
+     * too little room left for a frame a new one is allocated.
+     */
+    private ByteBuffer _outputBuffer;
+    private int _outputSentPosition;
+    private final Set<Thread> _batchingThreads =
+            Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
 
     static enum State {
            A,
@@ -211,7 +226,7 @@ public class ProtocolEngine_1_0_0_SASL implements ServerProtocolEngine, FrameOut
         _endpoint.setProperties(serverProperties);
 
         _endpoint.setRemoteAddress(getRemoteAddress());
-        _connection = new Connection_1_0(_broker, _endpoint, _connectionId, _port, _transport, subjectCreator);
+        _connection = new Connection_1_0(_broker, _endpoint, _connectionId, _port, _transport, subjectCreator, this);
 
         _endpoint.setConnectionEventListener(_connection);
         _endpoint.setFrameOutputHandler(this);
@@ -490,30 +505,83 @@ public class ProtocolEngine_1_0_0_SASL implements ServerProtocolEngine, FrameOut
 
             _frameWriter.setValue(amqFrame);
 
-            ByteBuffer dup = ByteBuffer.allocate(_endpoint.getMaxFrameSize());
+            final int maxFrameSize = _endpoint.getMaxFrameSize();
+            if (_outputBuffer == null || _outputBuffer.remaining() < maxFrameSize)
+            {
+                sendOutput();
+                _outputBuffer = ByteBuffer.allocate(Math.max(maxFrameSize, OUTPUT_BUFFER_SIZE));
+                _outputSentPosition = 0;
+            }
 
-            int size = _frameWriter.writeToBuffer(dup);
-            if (size > _endpoint.getMaxFrameSize())
+            int start = _outputBuffer.position();
+            int size = _frameWriter.writeToBuffer(_outputBuffer);
+            if (size > maxFrameSize)
             {
+                _outputBuffer.position(start);
                 throw new OversizeFrameException(amqFrame, size);
             }
 
-            dup.flip();
-            _writtenBytes += dup.limit();
+            _writtenBytes += size;
 
             if (RAW_LOGGER.isDebugEnabled())
             {
-                ByteBuffer dup2 = dup.duplicate();
+                ByteBuffer dup2 = _outputBuffer.duplicate();
+                dup2.position(start);
+                dup2.limit(start + size);
                 byte[] data = new byte[dup2.remaining()];
                 dup2.get(data);
                 Binary bin = new Binary(data);
                 RAW_LOGGER.debug("SEND[" + getRemoteAddress() + "] : " + bin.toString());
             }
 
-            _sender.send(dup);
-            _sender.flush();
+            if (!_batchingThreads.contains(Thread.currentThread()))
+            {
+                sendOutput();
+                _sender.flush();
+            }
+        }
+    }
+
+    /**
+     * Passes the frames encoded since the last call to the sender as a single buffer.  Must be called holding the
+     * send lock.
+     */
+    private void sendOutput()
+    {
+        if (_outputBuffer != null && _outputBuffer.position() > _outputSentPosition)
+        {
+            ByteBuffer output = _outputBuffer.duplicate();
+            output.position(_outputSentPosition);
+            output.limit(_outputBuffer.position());
+            _outputSentPosition = _outputBuffer.position();
+            _sender.send(output.slice());
+        }
+    }
 
+    /**
+     * While set for the calling thread, the frames it sends (transfers, and the dispositions and flows sent along
+     * with them) are accumulated rather than written to the network, so that a batch of deliveries goes out in a
+     * single write on {@link #flushBatched()}.  Frames sent by other threads are written immediately along with any
+     * frames accumulated before them.
+     */
+    public void setDeferFlush(final boolean deferFlush)
+    {
+        if (deferFlush)
+        {
+            _batchingThreads.add(Thread.currentThread());
+        }
+        else
+        {
+            _batchingThreads.remove(Thread.currentThread());
+        }
+    }
 
+    public void flushBatched()
+    {
+        synchronized (_sendLock)
+        {
+            sendOutput();
+            _sender.flush();
         }
     }
 
@@ -526,6 +594,10 @@ public class ProtocolEngine_1_0_0_SASL implements ServerProtocolEngine, FrameOut
 
     public void close()
     {
+        synchronized (_sendLock)
+        {
+            sendOutput();
+        }
         _sender.close();
     }
 
@@ -58,7 +58,7 @@ public class AMQBrokerDetails implements BrokerDetails, Serializable
             if (transport != null)
             {
                 //todo this list of valid transports should be enumerated somewhere
-                if (!(transport.equalsIgnoreCase(BrokerDetails.TCP)))
+                if (!(transport.equalsIgnoreCase(BrokerDetails.TCP) || transport.equalsIgnoreCase(BrokerDetails.VM)))
                 {
                     if (transport.equalsIgnoreCase("localhost"))
                     {
@@ -482,6 +482,12 @@ public class AMQBrokerDetails implements BrokerDetails, Serializable
                     getBooleanProperty(BrokerDetails.OPTIONS_TCP_NO_DELAY,true));
         }
 
+        if (getProperty(BrokerDetails.OPTIONS_SHARED_IO) != null)
+        {
+            conSettings.setSharedIo(
+                    getBooleanProperty(BrokerDetails.OPTIONS_SHARED_IO));
+        }
+
         conSettings.setConnectTimeout(lookupConnectTimeout());
 
         if (getProperty(BrokerDetails.OPTIONS_HEARTBEAT) != null)
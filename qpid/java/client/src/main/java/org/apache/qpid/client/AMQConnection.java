@@ -193,6 +193,7 @@ public class AMQConnection extends Closeable implements Connection, QueueConnect
     private volatile long _lastFailoverTime = 0;
 
     private boolean _compressMessages;
+    private boolean _sharedDispatcher;
     private int _messageCompressionThresholdSize;
 
     static
@@ -357,6 +358,17 @@ public class AMQConnection extends Closeable implements Connection, QueueConnect
         }
 
 
+        if(connectionURL.getOption(ConnectionURL.OPTIONS_SHARED_DISPATCHER) != null)
+        {
+            _sharedDispatcher = Boolean.parseBoolean(connectionURL.getOption(ConnectionURL.OPTIONS_SHARED_DISPATCHER));
+        }
+        else
+        {
+            _sharedDispatcher =
+                    Boolean.parseBoolean(System.getProperty(ClientProperties.CONNECTION_OPTION_SHARED_DISPATCHER,
+                                         String.valueOf(ClientProperties.DEFAULT_CONNECTION_OPTION_SHARED_DISPATCHER)));
+        }
+
         if(connectionURL.getOption(ConnectionURL.OPTIONS_MESSAGES_COMPRESSION_THRESHOLD_SIZE) != null)
         {
             _messageCompressionThresholdSize = Integer.valueOf(connectionURL.getOption(ConnectionURL.OPTIONS_MESSAGES_COMPRESSION_THRESHOLD_SIZE));
@@ -1571,6 +1583,11 @@ public class AMQConnection extends Closeable implements Connection, QueueConnect
         return _compressMessages;
     }
 
+    public boolean isSharedDispatcherDesired()
+    {
+        return _sharedDispatcher;
+    }
+
     public int getNextChannelID()
     {
         return _sessions.getNextChannelId();
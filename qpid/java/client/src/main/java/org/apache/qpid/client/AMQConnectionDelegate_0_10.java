@@ -456,6 +456,7 @@ public class AMQConnectionDelegate_0_10 implements AMQConnectionDelegate, Connec
     {
         ConnectionSettings conSettings = brokerDetail.buildConnectionSettings();
 
+        conSettings.setProtocol(brokerDetail.getTransport());
         conSettings.setVhost(_conn.getVirtualHost());
         conSettings.setUsername(_conn.getUsername());
         conSettings.setPassword(_conn.getPassword());
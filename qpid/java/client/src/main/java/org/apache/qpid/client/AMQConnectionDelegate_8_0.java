@@ -141,7 +141,7 @@ public class AMQConnectionDelegate_8_0 implements AMQConnectionDelegate
 
         SecurityLayer securityLayer = SecurityLayerFactory.newInstance(settings);
 
-        OutgoingNetworkTransport transport = Transport.getOutgoingTransportInstance(getProtocolVersion());
+        OutgoingNetworkTransport transport = Transport.getOutgoingTransportInstance(getProtocolVersion(), settings);
 
         ReceiverClosedWaiter monitoringReceiver = new ReceiverClosedWaiter(securityLayer.receiver(_conn.getProtocolHandler()));
 
@@ -34,6 +34,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -135,6 +136,17 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
      */
     protected final boolean DAEMON_DISPATCHER_THREAD = Boolean.getBoolean(ClientProperties.DAEMON_DISPATCHER);
 
+    /** The maximum number of messages delivered by each task when using the shared dispatcher */
+    private static final int SHARED_DISPATCHER_BATCH_SIZE =
+            Integer.getInteger(ClientProperties.SHARED_DISPATCHER_BATCH_SIZE,
+                               ClientProperties.DEFAULT_SHARED_DISPATCHER_BATCH_SIZE);
+
+    /** The fraction of the prefetch consumed between the points at which credit is returned to the broker */
+    private static final double CREDIT_REPLENISH_FRACTION = getCreditReplenishFraction();
+
+    /** Whether messages are delivered on the shared dispatcher pool rather than a dispatcher thread of our own */
+    private final boolean _sharedDispatcher;
+
     /** The connection to which this session belongs. */
     private AMQConnection _connection;
 
@@ -287,6 +299,20 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         return _dispatcherThread;
     }
 
+    /**
+     * @return true if called by the thread delivering the session's messages
+     */
+    protected boolean isDispatcherThread()
+    {
+        final Thread currentThread = Thread.currentThread();
+        if (currentThread == _dispatcherThread)
+        {
+            return true;
+        }
+        final Dispatcher dispatcher = _dispatcher;
+        return dispatcher != null && dispatcher._dispatchingThread == currentThread;
+    }
+
     /** Holds the message factory factory for this session. */
     protected MessageFactoryRegistry getMessageFactoryRegistry()
     {
@@ -332,6 +358,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
     {
         _useAMQPEncodedMapMessage = con == null ? true : !con.isUseLegacyMapMessageFormat();
         _useAMQPEncodedStreamMessage = con == null ? false : !con.isUseLegacyStreamMessageFormat();
+        _sharedDispatcher = con != null && con.isSharedDispatcherDesired();
         _strictAMQP = Boolean.parseBoolean(System.getProperties().getProperty(STRICT_AMQP, STRICT_AMQP_DEFAULT));
         _strictAMQPFATAL =
                 Boolean.parseBoolean(System.getProperties().getProperty(STRICT_AMQP_FATAL, STRICT_AMQP_FATAL_DEFAULT));
@@ -846,6 +873,10 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         {
             _dispatcherThread.interrupt();
         }
+        else if (_sharedDispatcher && _dispatcher != null)
+        {
+            _dispatcher.getClosed().set(true);
+        }
     }
     /**
      * Commits all messages done in this transaction and releases any locks currently held.
@@ -940,7 +971,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
                     }
                     else
                     {
-                        _queue.add(new CloseConsumerMessage(consumer));
+                        addToDispatchQueue(new CloseConsumerMessage(consumer));
                     }
                 }
             }
@@ -1709,7 +1740,17 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
             _logger.debug("Message[" + message.toString() + "] received in session");
         }
         _highestDeliveryTag.set(message.getDeliveryTag());
-        _queue.add(message);
+        addToDispatchQueue(message);
+    }
+
+    private void addToDispatchQueue(final Dispatchable dispatchable)
+    {
+        _queue.add(dispatchable);
+        final Dispatcher dispatcher = _dispatcher;
+        if (_sharedDispatcher && dispatcher != null)
+        {
+            dispatcher.scheduleDispatch();
+        }
     }
 
     public void declareAndBind(AMQDestination amqd)
@@ -1828,6 +1869,46 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
     protected abstract void flushAcknowledgments();
 
+    /**
+     * Acknowledges a message consumed by a DUPS_OK_ACKNOWLEDGE consumer.  The acknowledgement may be held back to be
+     * sent with others, as duplicates are permitted should the session fail before it is sent.
+     */
+    protected void acknowledgeDupsOkMessage(long deliveryTag)
+    {
+        acknowledgeMessage(deliveryTag, false);
+    }
+
+    /**
+     * @return the number of messages to consume before returning credit to the broker for the given prefetch
+     */
+    protected static int getCreditReplenishBatchSize(long prefetch)
+    {
+        return (int) Math.max(1L, (long) (prefetch * CREDIT_REPLENISH_FRACTION));
+    }
+
+    private static double getCreditReplenishFraction()
+    {
+        final String value = System.getProperty(ClientProperties.CREDIT_REPLENISH_FRACTION);
+        if (value != null)
+        {
+            try
+            {
+                final double fraction = Double.parseDouble(value);
+                if (fraction > 0d && fraction <= 1d)
+                {
+                    return fraction;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                // fall through to the default
+            }
+            _logger.warn("Ignoring invalid value '" + value + "' for " + ClientProperties.CREDIT_REPLENISH_FRACTION
+                         + ", using " + ClientProperties.DEFAULT_CREDIT_REPLENISH_FRACTION);
+        }
+        return ClientProperties.DEFAULT_CREDIT_REPLENISH_FRACTION;
+    }
+
     public void rejectMessage(UnprocessedMessage message, boolean requeue)
     {
 
@@ -2204,7 +2285,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
     void syncDispatchQueue(final boolean holdDispatchLock)
     {
-        if (Thread.currentThread() == _dispatcherThread || holdDispatchLock)
+        if (isDispatcherThread() || holdDispatchLock)
         {
             while (!super.isClosed() && !_queue.isEmpty())
             {
@@ -2235,7 +2316,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
             final CountDownLatch signal = new CountDownLatch(1);
 
-            _queue.add(new Dispatchable()
+            addToDispatchQueue(new Dispatchable()
             {
                 public void dispatch(AMQSession ssn)
                 {
@@ -2256,7 +2337,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
     void drainDispatchQueue()
     {
-        if (Thread.currentThread() == _dispatcherThread)
+        if (isDispatcherThread())
         {
             while (!super.isClosed() && !_queue.isEmpty())
             {
@@ -2287,7 +2368,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
             final CountDownLatch signal = new CountDownLatch(1);
 
-            _queue.add(new Dispatchable()
+            addToDispatchQueue(new Dispatchable()
             {
                 public void dispatch(AMQSession ssn)
                 {
@@ -2364,7 +2445,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
     void startDispatcherIfNecessary()
     {
         //If we are the dispatcher then we don't need to check we are started
-        if (Thread.currentThread() == _dispatcherThread)
+        if (isDispatcherThread())
         {
             return;
         }
@@ -2392,7 +2473,13 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
     synchronized void startDispatcherIfNecessary(boolean initiallyStopped)
     {
-        if (_dispatcher == null)
+        if (_dispatcher == null && _sharedDispatcher)
+        {
+            _dispatcher = new Dispatcher();
+            _dispatcher.setConnectionStopped(initiallyStopped);
+            _dispatcher.scheduleDispatch();
+        }
+        else if (_dispatcher == null)
         {
             _dispatcher = new Dispatcher();
             try
@@ -3267,6 +3354,18 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         private final Object _lock = new Object();
         private final String dispatcherID = "" + System.identityHashCode(this);
 
+        /** Set while a task delivering the session's messages is queued or running on the shared dispatcher pool */
+        private final AtomicBoolean _dispatchScheduled = new AtomicBoolean();
+        private final Runnable _dispatchTask = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                dispatchBatch();
+            }
+        };
+        private volatile Thread _dispatchingThread;
+
         public Dispatcher()
         {
         }
@@ -3274,7 +3373,10 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         public void close()
         {
             _closed.set(true);
-            _dispatcherThread.interrupt();
+            if (_dispatcherThread != null)
+            {
+                _dispatcherThread.interrupt();
+            }
 
             // fixme awaitTermination
 
@@ -3417,6 +3519,70 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
         }
 
+        /**
+         * Queues a task on the shared dispatcher pool to deliver the session's messages, unless one is already
+         * queued or running, or there is nothing the session may deliver.
+         */
+        void scheduleDispatch()
+        {
+            if (!_closed.get()
+                && !connectionStopped()
+                && !_queue.isEmpty()
+                && _dispatchScheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    SharedDispatcherPool.getExecutor().execute(_dispatchTask);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    _dispatchScheduled.set(false);
+                    _dispatcherLogger.error("Unable to schedule delivery for session " + AMQSession.this, e);
+                }
+            }
+        }
+
+        /**
+         * Delivers up to {@link #SHARED_DISPATCHER_BATCH_SIZE} messages, then gives the thread up to other sessions,
+         * rescheduling itself if more messages remain.  Only one batch runs at a time, so the session delivers its
+         * messages serially as with a dispatcher thread of its own; the batch stops as soon as the session is stopped
+         * rather than holding the thread until it is restarted.
+         */
+        private void dispatchBatch()
+        {
+            _dispatchingThread = Thread.currentThread();
+            try
+            {
+                for (int i = 0; i < SHARED_DISPATCHER_BATCH_SIZE && !_closed.get(); i++)
+                {
+                    synchronized (_lock)
+                    {
+                        if (connectionStopped())
+                        {
+                            break;
+                        }
+
+                        Dispatchable disp = _queue.nonBlockingTake();
+                        if (disp == null)
+                        {
+                            break;
+                        }
+                        disp.dispatch(AMQSession.this);
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // nonBlockingTake does not wait
+            }
+            finally
+            {
+                _dispatchingThread = null;
+                _dispatchScheduled.set(false);
+                scheduleDispatch();
+            }
+        }
+
         // only call while holding lock
         final boolean connectionStopped()
         {
@@ -3433,6 +3599,11 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
                     _connectionStopped.set(connectionStopped);
                     _lock.notify();
 
+                    if (_sharedDispatcher && !connectionStopped)
+                    {
+                        scheduleDispatch();
+                    }
+
                     if (_dispatcherLogger.isDebugEnabled())
                     {
                         _dispatcherLogger.debug("Set Dispatcher Connection " + (connectionStopped
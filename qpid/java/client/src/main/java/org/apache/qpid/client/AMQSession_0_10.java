@@ -275,7 +275,8 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
 
         long prefetch = getAMQConnection().getMaxPrefetch();
 
-        if (unackedCount >= prefetch/2 || maxAckDelay <= 0 || getAcknowledgeMode() == javax.jms.Session.AUTO_ACKNOWLEDGE)
+        if (unackedCount >= getCreditReplenishBatchSize(prefetch) || maxAckDelay <= 0
+            || getAcknowledgeMode() == javax.jms.Session.AUTO_ACKNOWLEDGE)
         {
             flushAcknowledgments();
         }
@@ -1006,13 +1007,13 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
 
     /**
      * With 0.10 messages are consumed with window mode, we must send a completion
-     * before the window size is reached so credits don't dry up.
+     * before the window size is reached so credits don't dry up.  Completions are sent
+     * once per batch of the configured fraction of the prefetch.
      */
     protected void sendTxCompletionsIfNecessary()
     {
-        // this is a heuristic, we may want to have that configurable
-        if (_txSize > 0 && (getAMQConnection().getMaxPrefetch() == 1 ||
-                getAMQConnection().getMaxPrefetch() != 0 && _txSize % (getAMQConnection().getMaxPrefetch() / 2) == 0))
+        final long prefetch = getAMQConnection().getMaxPrefetch();
+        if (_txSize > 0 && prefetch != 0 && _txSize % getCreditReplenishBatchSize(prefetch) == 0)
         {
             // send completed so consumer credits don't dry up
             messageAcknowledge(_txRangeSet, false);
@@ -32,6 +32,8 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -100,6 +102,15 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
     private FlowControlIndicator _flowControl = new FlowControlIndicator();
     private final AtomicBoolean _creditChanged = new AtomicBoolean();
 
+    private static final int MAX_SETTLED_AFTER_CONTIGUOUS_ACK = 65536;
+
+    /** The DUPS_OK_ACKNOWLEDGE acknowledgements held back to be sent as a batch, in delivery order */
+    private final List<Long> _pendingDupsOkAcks = new ArrayList<Long>();
+    /** Every delivery on the channel up to and including this tag has been acknowledged or rejected */
+    private long _lastContiguousAck;
+    /** The deliveries after {@link #_lastContiguousAck} which have been acknowledged or rejected individually */
+    private final SortedSet<Long> _settledAfterContiguousAck = new TreeSet<Long>();
+
     /**
      * Creates a new session on a connection.
      *
@@ -249,6 +260,7 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
         if (!(getProtocolHandler().getStateManager().getCurrentState().equals(AMQState.CONNECTION_CLOSED)
             || getProtocolHandler().getStateManager().getCurrentState().equals(AMQState.CONNECTION_CLOSING)))
         {
+            flushAcknowledgments();
 
             getProtocolHandler().closeSession(this);
             getProtocolHandler().syncWrite(getProtocolHandler().getMethodRegistry().createChannelCloseBody(AMQConstant.REPLY_SUCCESS.getCode(),
@@ -411,6 +423,14 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
             AMQFrame frame = body.generateFrame(getChannelId());
 
             getAMQConnection().getProtocolHandler().writeFrame(frame);
+
+            if (getAcknowledgeMode() == DUPS_OK_ACKNOWLEDGE)
+            {
+                synchronized (_pendingDupsOkAcks)
+                {
+                    settledIndividually(deliveryTag);
+                }
+            }
         }
     }
 
@@ -1382,7 +1402,108 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
 
     protected void flushAcknowledgments()
     {
+        synchronized (_pendingDupsOkAcks)
+        {
+            sendPendingDupsOkAcks();
+        }
+    }
 
+    /**
+     * Holds back the acknowledgement until the configured fraction of the prefetch has been consumed, so that the
+     * basic.qos window is replenished once per batch rather than once per message.
+     */
+    @Override
+    protected void acknowledgeDupsOkMessage(final long deliveryTag)
+    {
+        final int batchSize = getCreditReplenishBatchSize(getPrefetch());
+        synchronized (_pendingDupsOkAcks)
+        {
+            _pendingDupsOkAcks.add(deliveryTag);
+            if (_pendingDupsOkAcks.size() >= batchSize)
+            {
+                sendPendingDupsOkAcks();
+            }
+        }
+    }
+
+    /**
+     * Sends the held back acknowledgements.  The pending deliveries which, together with those already settled,
+     * extend the contiguous run of settled deliveries are covered by a single multiple acknowledgement; the rest
+     * follow a delivery still held elsewhere (e.g. by another consumer), so are acknowledged individually.
+     */
+    private void sendPendingDupsOkAcks()
+    {
+        if (!_pendingDupsOkAcks.isEmpty())
+        {
+            final SortedSet<Long> pending = new TreeSet<Long>(_pendingDupsOkAcks);
+            long highestContiguous = _lastContiguousAck;
+            long highestPendingInRun = -1L;
+            while (true)
+            {
+                final Long next = highestContiguous + 1;
+                if (pending.remove(next))
+                {
+                    highestPendingInRun = next;
+                }
+                else if (!_settledAfterContiguousAck.remove(next))
+                {
+                    break;
+                }
+                highestContiguous = next;
+            }
+
+            if (highestPendingInRun != -1L)
+            {
+                // acknowledged at the highest tag still outstanding, the settled deliveries before it are covered too
+                acknowledgeMessage(highestPendingInRun, true);
+                getUnacknowledgedMessageTags().removeAll(_pendingDupsOkAcks);
+            }
+            _lastContiguousAck = highestContiguous;
+
+            for (Long tag : pending)
+            {
+                acknowledgeMessage(tag, false);
+                settledIndividually(tag);
+            }
+            _pendingDupsOkAcks.clear();
+        }
+    }
+
+    /**
+     * Records a delivery settled on its own so that a later multiple acknowledgement may cover it.
+     */
+    private void settledIndividually(final long deliveryTag)
+    {
+        if (deliveryTag == _lastContiguousAck + 1)
+        {
+            _lastContiguousAck = deliveryTag;
+            while (_settledAfterContiguousAck.remove(_lastContiguousAck + 1))
+            {
+                _lastContiguousAck++;
+            }
+        }
+        else if (deliveryTag > _lastContiguousAck)
+        {
+            if (_settledAfterContiguousAck.size() >= MAX_SETTLED_AFTER_CONTIGUOUS_ACK)
+            {
+                // a gap which is never filled, e.g. by deliveries to a no-ack consumer, only costs multiple acks
+                _settledAfterContiguousAck.clear();
+            }
+            _settledAfterContiguousAck.add(deliveryTag);
+        }
+    }
+
+    @Override
+    void resubscribe() throws AMQException
+    {
+        synchronized (_pendingDupsOkAcks)
+        {
+            // delivery tags start again on the new channel and the held back deliveries will be redelivered
+            _pendingDupsOkAcks.clear();
+            _settledAfterContiguousAck.clear();
+            _lastContiguousAck = 0L;
+        }
+        super.resubscribe();
     }
 
     @Override
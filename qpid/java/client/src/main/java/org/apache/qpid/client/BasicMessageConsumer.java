@@ -834,6 +834,13 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
         switch (_acknowledgeMode)
         {
             case Session.DUPS_OK_ACKNOWLEDGE:
+                // we do not auto ack a message if the application code called recover()
+                if (!_session.isInRecovery())
+                {
+                    _session.acknowledgeDupsOkMessage(msg.getDeliveryTag());
+                }
+
+                break;
             case Session.AUTO_ACKNOWLEDGE:
                 // we do not auto ack a message if the application code called recover()
                 if (!_session.isInRecovery())
@@ -0,0 +1,90 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.configuration.ClientProperties;
+import org.apache.qpid.thread.Threading;
+
+/**
+ * The threads on which sessions using the shared dispatcher deliver their messages.  Each such session has at most
+ * one dispatch task queued or running at a time, so the work queue is bounded by the number of sessions, and the
+ * pool by {@link ClientProperties#SHARED_DISPATCHER_THREADS}.  Idle threads exit, so the pool does not keep the JVM
+ * alive once the sessions have stopped delivering.
+ */
+final class SharedDispatcherPool
+{
+    private static final int THREADS = Integer.getInteger(ClientProperties.SHARED_DISPATCHER_THREADS,
+                                                          2 * Runtime.getRuntime().availableProcessors());
+
+    private static final boolean DAEMON = Boolean.getBoolean(ClientProperties.DAEMON_DISPATCHER);
+
+    private SharedDispatcherPool()
+    {
+    }
+
+    static Executor getExecutor()
+    {
+        return Holder.EXECUTOR;
+    }
+
+    private static final class Holder
+    {
+        private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private static ThreadPoolExecutor createExecutor()
+        {
+            final int threads = Math.max(1, THREADS);
+            final ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           new ThreadFactory()
+                                           {
+                                               private final AtomicInteger _count = new AtomicInteger();
+
+                                               @Override
+                                               public Thread newThread(final Runnable r)
+                                               {
+                                                   final Thread thread;
+                                                   try
+                                                   {
+                                                       thread = Threading.getThreadFactory().createThread(r);
+                                                   }
+                                                   catch (Exception e)
+                                                   {
+                                                       throw new Error("Error creating shared dispatcher thread", e);
+                                                   }
+                                                   thread.setName("SharedDispatcher-" + _count.incrementAndGet());
+                                                   thread.setDaemon(DAEMON);
+                                                   return thread;
+                                               }
+                                           });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
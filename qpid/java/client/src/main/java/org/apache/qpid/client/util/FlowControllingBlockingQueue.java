@@ -23,36 +23,41 @@ package org.apache.qpid.client.util;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A blocking queue that emits events above a user specified threshold allowing the caller to take action (e.g. flow
  * control) to try to prevent the queue growing (much) further. The underlying queue itself is not bounded therefore the
  * caller is not obliged to react to the events.
  * <p>
- * This implementation is <b>only</b> safe where we have a single
- * thread adding items and a single (different) thread removing items.
+ * Items are held in a lock-free queue, the threshold count is maintained atomically and a thread waiting for an item
+ * parks itself, being unparked by the next add.  Only when the count reaches a threshold is the listener's monitor
+ * taken: the count is read again under it and the listener told if the queue has moved above the high threshold or
+ * below the low one, so the listener's callbacks are serialized and always follow the count.
  * <p>
  * TODO  Make this implement java.util.Queue and hide the implementation. Then different queue types can be substituted.
  */
 public class FlowControllingBlockingQueue<T>
 {
-	private static final Logger _logger = LoggerFactory.getLogger(FlowControllingBlockingQueue.class);
-	
     /** This queue is bounded and is used to store messages before being dispatched to the consumer */
     private final Queue<T> _queue = new ConcurrentLinkedQueue<T>();
 
+    /** The threads parked waiting for an item to be added */
+    private final Queue<Thread> _waiters = new ConcurrentLinkedQueue<Thread>();
+
     private final int _flowControlHighThreshold;
     private final int _flowControlLowThreshold;
 
     private final ThresholdListener _listener;
 
     /** We require a separate count so we can track whether we have reached the threshold */
-    private int _count;
-    
-    private boolean disableFlowControl; 
+    private final AtomicInteger _count = new AtomicInteger();
+
+    private final boolean _disableFlowControl;
+
+    /** Whether the listener was last told that the queue is above the threshold, guarded by the listener */
+    private boolean _aboveThreshold;
 
     public boolean isEmpty()
     {
@@ -76,10 +81,7 @@ public class FlowControllingBlockingQueue<T>
         _flowControlHighThreshold = highThreshold;
         _flowControlLowThreshold = lowThreshold;
         _listener = listener;
-        if (highThreshold == 0)
-        {
-        	disableFlowControl = true;
-        }
+        _disableFlowControl = highThreshold == 0 || listener == null;
     }
 
     public T blockingPeek() throws InterruptedException
@@ -87,13 +89,20 @@ public class FlowControllingBlockingQueue<T>
         T o = _queue.peek();
         if (o == null)
         {
-            synchronized (this)
+            final Thread waiter = Thread.currentThread();
+            _waiters.add(waiter);
+            try
             {
+                // the queue is checked again after registering so an add racing with the registration is not missed
                 while ((o = _queue.peek()) == null)
                 {
-                    wait();
+                    park();
                 }
             }
+            finally
+            {
+                _waiters.remove(waiter);
+            }
         }
         return o;
     }
@@ -102,16 +111,9 @@ public class FlowControllingBlockingQueue<T>
     {
         T o = _queue.poll();
 
-        if (o != null && !disableFlowControl && _listener != null)
+        if (o != null)
         {
-            synchronized (_listener)
-            {
-                if (_count-- == _flowControlLowThreshold)
-                {
-                    _listener.underThreshold(_count);
-                }
-            }
-
+            taken();
         }
 
         return o;
@@ -122,45 +124,42 @@ public class FlowControllingBlockingQueue<T>
         T o = _queue.poll();
         if(o == null)
         {
-            synchronized(this)
+            final Thread waiter = Thread.currentThread();
+            _waiters.add(waiter);
+            try
             {
                 while((o = _queue.poll())==null)
                 {
-                    wait();
+                    park();
                 }
             }
-        }
-        if (!disableFlowControl && _listener != null)
-        {
-            synchronized (_listener)
+            finally
             {
-                if (_count-- == _flowControlLowThreshold)
-                {
-                    _listener.underThreshold(_count);
-                }
+                _waiters.remove(waiter);
             }
-            
         }
+        taken();
 
         return o;
     }
 
     public void add(T o)
     {
-        synchronized(this)
-        {
-            _queue.add(o);
+        _queue.add(o);
 
-            notifyAll();
+        if (!_waiters.isEmpty())
+        {
+            for (Thread waiter : _waiters)
+            {
+                LockSupport.unpark(waiter);
+            }
         }
-        if (!disableFlowControl && _listener != null)
+
+        if (!_disableFlowControl)
         {
-            synchronized (_listener)
+            if (_count.incrementAndGet() == _flowControlHighThreshold)
             {
-                if (++_count == _flowControlHighThreshold)
-                {
-                    _listener.aboveThreshold(_count);
-                }
+                thresholdReached();
             }
         }
     }
@@ -169,4 +168,46 @@ public class FlowControllingBlockingQueue<T>
     {
         return _queue.iterator();
     }
+
+    private void taken()
+    {
+        if (!_disableFlowControl)
+        {
+            if (_count.getAndDecrement() == _flowControlLowThreshold)
+            {
+                thresholdReached();
+            }
+        }
+    }
+
+    /**
+     * Called when the count reaches a threshold.  Another thread may have moved the count on before the listener's
+     * monitor is held, so the listener is only told of the state the count is in now, and only if it has changed.
+     */
+    private void thresholdReached()
+    {
+        synchronized (_listener)
+        {
+            final int count = _count.get();
+            if (!_aboveThreshold && count >= _flowControlHighThreshold)
+            {
+                _aboveThreshold = true;
+                _listener.aboveThreshold(count);
+            }
+            else if (_aboveThreshold && count < _flowControlLowThreshold)
+            {
+                _aboveThreshold = false;
+                _listener.underThreshold(count);
+            }
+        }
+    }
+
+    private void park() throws InterruptedException
+    {
+        LockSupport.park(this);
+        if (Thread.interrupted())
+        {
+            throw new InterruptedException();
+        }
+    }
 }
@@ -41,6 +41,7 @@ public interface BrokerDetails
     public static final String OPTIONS_SASL_ENCRYPTION = "sasl_encryption";
     public static final String OPTIONS_SSL = "ssl";
     public static final String OPTIONS_TCP_NO_DELAY = "tcp_nodelay";
+    public static final String OPTIONS_SHARED_IO = "shared_io";
     public static final String OPTIONS_SASL_PROTOCOL_NAME = "sasl_protocol";
     public static final String OPTIONS_SASL_SERVER_NAME = "sasl_server";
     
@@ -55,6 +56,9 @@ public interface BrokerDetails
 
     public static final String TCP = "tcp";
 
+    /** Connects to a broker in the same JVM without using the network, e.g. {@code vm://:5672} */
+    public static final String VM = "vm";
+
     public static final String DEFAULT_TRANSPORT = TCP;
 
     public static final String URL_FORMAT_EXAMPLE =
@@ -75,6 +75,12 @@ public interface ConnectionURL
     public static final String OPTIONS_MESSAGES_COMPRESSION_THRESHOLD_SIZE = "messageCompressionThresholdSize";
 
 
+    /**
+     * When true, the connection's sessions deliver messages on a pool of threads shared by all such sessions in the
+     * JVM, rather than each on a dispatcher thread of its own.
+     */
+    public static final String OPTIONS_SHARED_DISPATCHER = "sharedDispatcher";
+
     public static final String OPTIONS_DEFAULT_TOPIC_EXCHANGE = "defaultTopicExchange";
     public static final String OPTIONS_DEFAULT_QUEUE_EXCHANGE = "defaultQueueExchange";
     public static final String OPTIONS_TEMPORARY_TOPIC_EXCHANGE = "temporaryTopicExchange";
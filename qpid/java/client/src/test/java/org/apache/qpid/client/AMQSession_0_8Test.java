@@ -20,6 +20,11 @@
  */
 package org.apache.qpid.client;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.Session;
+
 import org.apache.qpid.AMQException;
 import org.apache.qpid.client.transport.TestNetworkConnection;
 import org.apache.qpid.framing.AMQShortString;
@@ -70,4 +75,56 @@ public class AMQSession_0_8Test extends QpidTestCase
 
         assertEquals("Unexpected queue name", testQueueName, queue.getAMQQueueName());
     }
+
+    public void testDupsOkAcknowledgementsCoverContiguousRunOnceGapIsFilled() throws Exception
+    {
+        final List<String> acks = new ArrayList<String>();
+        AMQSession_0_8 session = new AMQSession_0_8(_connection, 1, false, Session.DUPS_OK_ACKNOWLEDGE, 4, 2)
+        {
+            @Override
+            public void acknowledgeMessage(final long deliveryTag, final boolean multiple)
+            {
+                acks.add(deliveryTag + (multiple ? "+" : ""));
+            }
+        };
+
+        // delivery 1 is still held, e.g. by another consumer
+        session.acknowledgeDupsOkMessage(2);
+        session.acknowledgeDupsOkMessage(3);
+        assertEquals("[2, 3]", acks.toString());
+
+        session.acknowledgeDupsOkMessage(1);
+        session.acknowledgeDupsOkMessage(4);
+        assertEquals("[2, 3, 4+]", acks.toString());
+
+        session.acknowledgeDupsOkMessage(5);
+        session.acknowledgeDupsOkMessage(6);
+        assertEquals("[2, 3, 4+, 6+]", acks.toString());
+    }
+
+    public void testDupsOkAcknowledgementsAfterGapAreSentIndividually() throws Exception
+    {
+        final List<String> acks = new ArrayList<String>();
+        AMQSession_0_8 session = new AMQSession_0_8(_connection, 1, false, Session.DUPS_OK_ACKNOWLEDGE, 4, 2)
+        {
+            @Override
+            public void acknowledgeMessage(final long deliveryTag, final boolean multiple)
+            {
+                acks.add(deliveryTag + (multiple ? "+" : ""));
+            }
+        };
+
+        session.acknowledgeDupsOkMessage(1);
+        session.acknowledgeDupsOkMessage(2);
+        assertEquals("[2+]", acks.toString());
+
+        // delivery 3 is still held
+        session.acknowledgeDupsOkMessage(4);
+        session.acknowledgeDupsOkMessage(5);
+        assertEquals("[2+, 4, 5]", acks.toString());
+
+        session.acknowledgeDupsOkMessage(3);
+        session.flushAcknowledgments();
+        assertEquals("[2+, 4, 5, 3+]", acks.toString());
+    }
 }
@@ -0,0 +1,231 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class FlowControllingBlockingQueueTest extends QpidTestCase
+{
+    public void testThresholdEvents() throws Exception
+    {
+        final List<String> events = new ArrayList<String>();
+        FlowControllingBlockingQueue<Integer> queue =
+                new FlowControllingBlockingQueue<Integer>(3, 1, new FlowControllingBlockingQueue.ThresholdListener()
+                {
+                    public void aboveThreshold(int currentValue)
+                    {
+                        events.add("above:" + currentValue);
+                    }
+
+                    public void underThreshold(int currentValue)
+                    {
+                        events.add("under:" + currentValue);
+                    }
+                });
+
+        queue.add(1);
+        queue.add(2);
+        assertTrue("Unexpected events " + events, events.isEmpty());
+        queue.add(3);
+        assertEquals("[above:3]", events.toString());
+
+        assertEquals(Integer.valueOf(1), queue.take());
+        assertEquals(Integer.valueOf(2), queue.nonBlockingTake());
+        assertEquals("[above:3]", events.toString());
+        assertEquals(Integer.valueOf(3), queue.take());
+        assertEquals("[above:3, under:0]", events.toString());
+        assertNull(queue.nonBlockingTake());
+        assertEquals("[above:3, under:0]", events.toString());
+    }
+
+    public void testThresholdEventsFromConcurrentThreadsFollowCount() throws Exception
+    {
+        final int threads = 4;
+        final int itemsPerThread = 20000;
+        final AtomicInteger concurrentCallbacks = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final List<String> events = new ArrayList<String>();
+        final FlowControllingBlockingQueue<Integer> queue =
+                new FlowControllingBlockingQueue<Integer>(4, 2, new FlowControllingBlockingQueue.ThresholdListener()
+                {
+                    public void aboveThreshold(int currentValue)
+                    {
+                        record("above");
+                    }
+
+                    public void underThreshold(int currentValue)
+                    {
+                        record("under");
+                    }
+
+                    private void record(final String event)
+                    {
+                        if (concurrentCallbacks.incrementAndGet() != 1)
+                        {
+                            overlaps.incrementAndGet();
+                        }
+                        events.add(event);
+                        concurrentCallbacks.decrementAndGet();
+                    }
+                });
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i = 0; i < itemsPerThread; i++)
+                        {
+                            queue.add(i);
+                            queue.take();
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue("Threads did not finish", done.await(30, TimeUnit.SECONDS));
+
+        assertEquals("Listener callbacks overlapped", 0, overlaps.get());
+        String previous = "under";
+        for (String event : events)
+        {
+            assertFalse("Repeated event " + event + " in " + events.size() + " events", event.equals(previous));
+            previous = event;
+        }
+        assertEquals("Listener not told that the empty queue is under the threshold", "under", previous);
+    }
+
+    public void testBlockingPeekWokenByAdd() throws Exception
+    {
+        final FlowControllingBlockingQueue<String> queue = new FlowControllingBlockingQueue<String>(0, null);
+        final AtomicReference<String> peeked = new AtomicReference<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread peeker = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    peeked.set(queue.blockingPeek());
+                }
+                catch (InterruptedException e)
+                {
+                    // leaves peeked unset
+                }
+                done.countDown();
+            }
+        });
+        peeker.start();
+
+        assertFalse("Peek returned from an empty queue", done.await(100, TimeUnit.MILLISECONDS));
+        queue.add("message");
+        assertTrue("Peek was not woken by the add", done.await(5, TimeUnit.SECONDS));
+        assertEquals("message", peeked.get());
+        assertFalse("Peek removed the item", queue.isEmpty());
+    }
+
+    public void testBlockedTakeIsInterrupted() throws Exception
+    {
+        final FlowControllingBlockingQueue<String> queue = new FlowControllingBlockingQueue<String>(0, null);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Thread taker = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    queue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted.countDown();
+                }
+            }
+        });
+        taker.start();
+        Thread.sleep(50);
+        taker.interrupt();
+
+        assertTrue("Take was not interrupted", interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testItemsFromConcurrentProducersAllTakenInProducerOrder() throws Exception
+    {
+        final int producers = 4;
+        final int itemsPerProducer = 10000;
+        final FlowControllingBlockingQueue<int[]> queue = new FlowControllingBlockingQueue<int[]>(0, null);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++)
+        {
+            final int producer = p;
+            new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    for (int i = 0; i < itemsPerProducer; i++)
+                    {
+                        queue.add(new int[]{producer, i});
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+
+        final int[] next = new int[producers];
+        final AtomicInteger taken = new AtomicInteger();
+        while (taken.get() < producers * itemsPerProducer)
+        {
+            int[] item = queue.take();
+            assertEquals("Items from producer " + item[0] + " out of order", next[item[0]], item[1]);
+            next[item[0]]++;
+            taken.incrementAndGet();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
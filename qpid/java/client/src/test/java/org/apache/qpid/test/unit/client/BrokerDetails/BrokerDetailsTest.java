@@ -50,6 +50,19 @@ public class BrokerDetailsTest extends QpidTestCase
         assertFalse("value should be false", Boolean.valueOf(broker.getProperty(BrokerDetails.OPTIONS_TCP_NO_DELAY)));
     }
 
+    public void testSharedIoDefaultsToFalse() throws URLSyntaxException
+    {
+        AMQBrokerDetails broker = new AMQBrokerDetails("tcp://localhost:5672");
+        assertFalse(broker.buildConnectionSettings().isSharedIo());
+    }
+
+    public void testOverridingSharedIo() throws URLSyntaxException
+    {
+        String url = "tcp://localhost:5672?" + BrokerDetails.OPTIONS_SHARED_IO + "='true'";
+        AMQBrokerDetails broker = new AMQBrokerDetails(url);
+        assertTrue(broker.buildConnectionSettings().isSharedIo());
+    }
+
     public void testDefaultConnectTimeout() throws URLSyntaxException
     {
         String brokerURL = "tcp://localhost:5672";
@@ -91,6 +104,15 @@ public class BrokerDetailsTest extends QpidTestCase
         assertTrue(broker.getTransport().equals("tcp"));
     }
 
+    public void testVmTransport() throws URLSyntaxException
+    {
+        String url = "vm://:5673";
+
+        AMQBrokerDetails broker = new AMQBrokerDetails(url);
+        assertEquals(BrokerDetails.VM, broker.getTransport());
+        assertEquals(5673, broker.getPort());
+    }
+
     public void testCheckDefaultPort() throws URLSyntaxException
     {
         String url = "tcp://localhost";
@@ -262,6 +262,10 @@ if segments:
         }
     }
 
+    public final ByteBuffer getBodyBuffer() {
+        return this.body;
+    }
+
     public final void setBody(ByteBuffer body) {
         this.body = body;
     }
@@ -333,13 +337,17 @@ for f in fields:
   pre = ""
   post = ""
   arg = ""
+  coder = f.coder
   if f.type_node.name == "struct":
     pre = "(%s)" % cname(f.type_node)
     arg = "%s.TYPE" % cname(f.type_node)
   elif f.type_node.name == "domain":
     pre = "%s.get(" % cname(f.type_node)
     post = ")"
-  out("        this.$(f.name) = $(pre)dec.read$(f.coder)($(arg))$(post);\n")
+  elif base == "Struct" and coder == "Map":
+    # the maps held by structs, such as message application headers, are decoded on demand
+    coder = "EncodedMap"
+  out("        this.$(f.name) = $(pre)dec.read$(coder)($(arg))$(post);\n")
   if pack > 0:
     out("        }\n")
 }
@@ -165,6 +165,23 @@ public class ClientProperties
     @Deprecated
     public static final String AMQJ_TCP_NODELAY_PROP_NAME = "amqj.tcp_nodelay";
 
+    /**
+     * System property to change the default value used for the connection option 'shared_io'.  When true, the
+     * client's connections share a small pool of selector threads rather than each having its own I/O threads.
+     */
+    public static final String QPID_SHARED_IO_PROP_NAME = "qpid.shared_io";
+
+    /**
+     * System property to set the number of selector threads shared by the connections using shared I/O
+     */
+    public static final String QPID_SHARED_IO_THREADS_PROP_NAME = "qpid.shared_io_threads";
+
+    /**
+     * System property to set the number of threads on which the connections using shared I/O hand received bytes to
+     * their receivers
+     */
+    public static final String QPID_SHARED_IO_NOTIFIER_THREADS_PROP_NAME = "qpid.shared_io_notifier_threads";
+
     /**
      * System property to set the reject behaviour. default value will be 'normal' but can be
      * changed to 'server' in which case the server decides whether a message should be requeued
@@ -196,6 +213,35 @@ public class ClientProperties
      */
     public static final String DAEMON_DISPATCHER = "qpid.jms.daemon.dispatcher";
 
+    /**
+     * System property to set a default value for the connection option 'sharedDispatcher'.  When true, sessions
+     * deliver messages on a pool of threads shared by all such sessions, rather than each on its own thread.
+     */
+    public static final String CONNECTION_OPTION_SHARED_DISPATCHER = "qpid.connection_shared_dispatcher";
+    public static final boolean DEFAULT_CONNECTION_OPTION_SHARED_DISPATCHER = false;
+
+    /**
+     * System property to set the number of threads in the shared dispatcher pool (default twice the number of
+     * processors)
+     */
+    public static final String SHARED_DISPATCHER_THREADS = "qpid.shared_dispatcher_threads";
+
+    /**
+     * System property to set the maximum number of messages a session using the shared dispatcher delivers before
+     * giving up its thread to other sessions
+     */
+    public static final String SHARED_DISPATCHER_BATCH_SIZE = "qpid.shared_dispatcher_batch_size";
+    public static final int DEFAULT_SHARED_DISPATCHER_BATCH_SIZE = 16;
+
+    /**
+     * System property to set the fraction of the prefetch consumed between the points at which a session returns
+     * credit to the broker. The completions (0-10) and the acknowledgements of DUPS_OK_ACKNOWLEDGE sessions (0-8..0-9-1)
+     * are held back and sent in batches of this fraction of the prefetch rather than one per message.
+     * type: double, between 0 (exclusive) and 1
+     */
+    public static final String CREDIT_REPLENISH_FRACTION = "qpid.credit_replenish_fraction";
+    public static final double DEFAULT_CREDIT_REPLENISH_FRACTION = 0.5d;
+
     /**
      * Used to name the process utilising the Qpid client, to override the default
      * value is used in the ConnectionStartOk reply to the broker.
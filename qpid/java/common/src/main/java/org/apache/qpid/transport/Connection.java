@@ -232,7 +232,7 @@ public class Connection extends ConnectionInvoker
 
             securityLayer = SecurityLayerFactory.newInstance(getConnectionSettings());
 
-            OutgoingNetworkTransport transport = Transport.getOutgoingTransportInstance(ProtocolVersion.v0_10);
+            OutgoingNetworkTransport transport = Transport.getOutgoingTransportInstance(ProtocolVersion.v0_10, settings);
             final InputHandler inputHandler = new InputHandler(new Assembler(this));
             addFrameSizeObserver(inputHandler);
             Receiver<ByteBuffer> secureReceiver = securityLayer.receiver(inputHandler);
@@ -234,7 +234,7 @@ public final class ExchangeQueryResult extends Struct {
         }
         if ((packing_flags & 2048) != 0)
         {
-            this.arguments = dec.readMap();
+            this.arguments = dec.readEncodedMap();
         }
 
     }
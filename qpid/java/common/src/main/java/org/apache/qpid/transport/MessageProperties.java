@@ -421,7 +421,7 @@ public final class MessageProperties extends Struct {
         }
         if ((packing_flags & 1) != 0)
         {
-            this.applicationHeaders = dec.readMap();
+            this.applicationHeaders = dec.readEncodedMap();
         }
 
     }
@@ -210,6 +210,10 @@ public final class MessageTransfer extends Method {
         }
     }
 
+    public final ByteBuffer getBodyBuffer() {
+        return this.body;
+    }
+
     public final void setBody(ByteBuffer body) {
         this.body = body;
     }
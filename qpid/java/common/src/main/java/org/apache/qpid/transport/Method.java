@@ -135,6 +135,15 @@ public abstract class Method extends Struct implements ProtocolEvent
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Returns the body buffer itself rather than a slice of it, for encoders that must not allocate.
+     * Callers must leave the position and limit of the returned buffer unchanged.
+     */
+    public ByteBuffer getBodyBuffer()
+    {
+        return getBody();
+    }
+
     public int getBodySize()
     {
         ByteBuffer body = getBody();
@@ -371,7 +371,7 @@ public final class QueueQueryResult extends Struct {
         }
         if ((packing_flags & 8192) != 0)
         {
-            this.arguments = dec.readMap();
+            this.arguments = dec.readEncodedMap();
         }
         if ((packing_flags & 16384) != 0)
         {
@@ -26,8 +26,10 @@ import org.apache.qpid.transport.RangeSet;
 import org.apache.qpid.transport.RangeSetFactory;
 import org.apache.qpid.transport.Struct;
 import org.apache.qpid.transport.Type;
+import org.apache.qpid.util.Strings;
 
 import java.io.UnsupportedEncodingException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -279,6 +281,11 @@ abstract class AbstractDecoder implements Decoder
             return Collections.EMPTY_MAP;
         }
 
+        return readMapEntries(count);
+    }
+
+    Map<String,Object> readMapEntries(long count)
+    {
         Map<String,Object> result = new LinkedHashMap();
         for (int i = 0; i < count; i++)
         {
@@ -292,6 +299,78 @@ abstract class AbstractDecoder implements Decoder
         return result;
     }
 
+    public Map<String,Object> readEncodedMap()
+    {
+        long size = readUint32();
+
+        if (size == 0)
+        {
+            return null;
+        }
+
+        long count = readUint32();
+
+        if (count == 0)
+        {
+            return Collections.EMPTY_MAP;
+        }
+
+        byte[] entries = new byte[(int) (size - 4)];
+        get(entries);
+        return new EncodedMap(entries, (int) count);
+    }
+
+    public Map.Entry<String,Object> readMapEntry(String key)
+    {
+        long size = readUint32();
+
+        if (size == 0)
+        {
+            return null;
+        }
+
+        long count = readUint32();
+        return readMapEntry(Strings.toUTF8(key), count, true);
+    }
+
+    /**
+     * Reads the entries of an encoded map until one with the given key is found, comparing the encoded keys in place
+     * and skipping over the values of the other entries without decoding them.
+     *
+     * @param key the UTF-8 encoding of the key
+     * @param count the number of entries in the map
+     * @param consumeAll whether to skip the entries after the one found, leaving the decoder positioned after the map
+     * @return the entry found, or null if the map has no entry with the given key
+     */
+    Map.Entry<String,Object> readMapEntry(byte[] key, long count, boolean consumeAll)
+    {
+        Binary target = new Binary(key);
+        Map.Entry<String,Object> result = null;
+        for (long i = 0; i < count; i++)
+        {
+            short keySize = readUint8();
+            if (result == null && keySize == key.length)
+            {
+                if (get(keySize).equals(target))
+                {
+                    Type t = getType(get());
+                    result = new AbstractMap.SimpleImmutableEntry<String,Object>(decode(key, "UTF-8"), read(t));
+                    if (!consumeAll)
+                    {
+                        break;
+                    }
+                    continue;
+                }
+            }
+            else
+            {
+                skip(keySize);
+            }
+            skip(getType(get()));
+        }
+        return result;
+    }
+
     public List<Object> readList()
     {
         long size = readUint32();
@@ -386,6 +465,16 @@ abstract class AbstractDecoder implements Decoder
         }
     }
 
+    private void skip(Type t)
+    {
+        skip((int) readSize(t));
+    }
+
+    protected void skip(int size)
+    {
+        get(new byte[size]);
+    }
+
     private byte[] readBytes(Type t)
     {
         long size = readSize(t);
@@ -65,6 +65,8 @@ abstract class AbstractEncoder implements Encoder
         ENCODINGS.put(Xid.class, Type.STRUCT32);
     }
 
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
     private final Map<String,byte[]> str8cache = new LinkedHashMap<String,byte[]>()
     {
         @Override protected boolean removeEldestEntry(Map.Entry<String,byte[]> me)
@@ -188,27 +190,27 @@ abstract class AbstractEncoder implements Encoder
 
     public void writeVbin8(byte[] bytes)
     {
-        if (bytes == null) { bytes = new byte[0]; }
+        if (bytes == null) { bytes = EMPTY_BYTES; }
         if (bytes.length > 255)
         {
             throw new IllegalArgumentException("array too long: " + bytes.length);
         }
         writeUint8((short) bytes.length);
-        put(ByteBuffer.wrap(bytes));
+        put(bytes);
     }
 
     public void writeVbin16(byte[] bytes)
     {
-        if (bytes == null) { bytes = new byte[0]; }
+        if (bytes == null) { bytes = EMPTY_BYTES; }
         writeUint16(bytes.length);
-        put(ByteBuffer.wrap(bytes));
+        put(bytes);
     }
 
     public void writeVbin32(byte[] bytes)
     {
-        if (bytes == null) { bytes = new byte[0]; }
+        if (bytes == null) { bytes = EMPTY_BYTES; }
         writeUint32(bytes.length);
-        put(ByteBuffer.wrap(bytes));
+        put(bytes);
     }
 
     public void writeSequenceSet(RangeSet ranges)
@@ -345,7 +347,13 @@ abstract class AbstractEncoder implements Encoder
     public void writeMap(Map<String,Object> map)
     {
         int pos = beginSize32();
-        if (map != null)
+        if (map instanceof EncodedMap && !((EncodedMap) map).isEncodingStale())
+        {
+            EncodedMap encoded = (EncodedMap) map;
+            writeUint32(encoded.getEncodedCount());
+            put(encoded.getEncodedEntries());
+        }
+        else if (map != null)
         {
             writeUint32(map.size());
             writeMapEntries(map);
@@ -71,6 +71,11 @@ public final class BBDecoder extends AbstractDecoder
         }
     }
 
+    protected void skip(int size)
+    {
+        in.position(in.position() + size);
+    }
+
     public boolean hasRemaining()
     {
         return in.hasRemaining();
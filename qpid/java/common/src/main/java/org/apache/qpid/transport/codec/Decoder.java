@@ -172,6 +172,23 @@ public interface Decoder
      * @return the decoded map.
      */
     Map<String,Object> readMap();
+
+    /**
+     * Reads a map as {@link #readMap()} does, but leaves its entries encoded until they are needed. Looking up a
+     * single key decodes only the value of that entry; any other use of the map decodes it in full.
+     *
+     * @return the map, or null if no map was encoded.
+     */
+    Map<String,Object> readEncodedMap();
+
+    /**
+     * Reads a map, decoding only the entry with the given key. The keys of the other entries are compared in their
+     * encoded form and their values are skipped over without being decoded.
+     *
+     * @param key the key of the entry to decode.
+     * @return the entry, or null if the map has no entry with the given key.
+     */
+    Map.Entry<String,Object> readMapEntry(String key);
     
     /**
      * A list is an ordered sequence of (type, value) pairs. The (type, value) pair forms an item within the list. 
@@ -0,0 +1,304 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.codec;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.qpid.util.Strings;
+
+/**
+ * A map read from its AMQP 0-10 encoding which holds on to the encoded entries rather than decoding them up front.
+ * Looking up a single key decodes only the value of that entry; iterating over the map decodes it in full.  Until the
+ * map is modified, it may be read by any number of threads: each value is decoded once and the same instance handed
+ * out for its key thereafter, and the fully decoded map is published as an immutable map.  Modifying the map makes a
+ * mutable copy of it, which, as for any {@link LinkedHashMap}, must not be modified concurrently with other access.
+ * <p>
+ * A map which has not been modified is written back out by copying its encoded entries, unless a map, list or binary
+ * value, which the caller could have changed in place, has been handed out.
+ */
+public final class EncodedMap extends AbstractMap<String,Object>
+{
+    private static final Object ABSENT = new Object();
+    private static final Object NULL_VALUE = new Object();
+
+    private static final ThreadLocal<BBDecoder> _decoder = new ThreadLocal<BBDecoder>()
+    {
+        public BBDecoder initialValue()
+        {
+            return new BBDecoder();
+        }
+    };
+
+    private final byte[] _entries;
+    private final int _count;
+    /** The values looked up so far, or {@link #ABSENT} for a key the map does not contain */
+    private final ConcurrentMap<String,Object> _lookups = new ConcurrentHashMap<String,Object>();
+    /** The immutable, fully decoded map, once it is needed */
+    private volatile Map<String,Object> _decoded;
+    /** The mutable copy of the map, once it has been modified */
+    private volatile Map<String,Object> _modified;
+    private volatile boolean _mutableValueReturned;
+
+    EncodedMap(final byte[] entries, final int count)
+    {
+        _entries = entries;
+        _count = count;
+    }
+
+    public boolean isDecoded()
+    {
+        return _decoded != null || _modified != null;
+    }
+
+    /**
+     * @return true if the encoded entries may no longer match the map, so it must be encoded afresh
+     */
+    boolean isEncodingStale()
+    {
+        return _modified != null || _mutableValueReturned;
+    }
+
+    byte[] getEncodedEntries()
+    {
+        return _entries;
+    }
+
+    int getEncodedCount()
+    {
+        return _count;
+    }
+
+    @Override
+    public Object get(final Object key)
+    {
+        final Map<String,Object> map = current();
+        if (map != null)
+        {
+            return map.get(key);
+        }
+        Object value = lookup(key);
+        return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        final Map<String,Object> map = current();
+        if (map != null)
+        {
+            return map.containsKey(key);
+        }
+        return lookup(key) != ABSENT;
+    }
+
+    @Override
+    public int size()
+    {
+        return read().size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        final Map<String,Object> map = current();
+        return map == null ? _count == 0 : map.isEmpty();
+    }
+
+    @Override
+    public Object put(final String key, final Object value)
+    {
+        return modifiable().put(key, value);
+    }
+
+    @Override
+    public Object remove(final Object key)
+    {
+        return modifiable().remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        modifiable().clear();
+    }
+
+    @Override
+    public Set<Entry<String,Object>> entrySet()
+    {
+        final Map<String,Object> modified = _modified;
+        return modified == null ? new EntrySet() : modified.entrySet();
+    }
+
+    private Map<String,Object> current()
+    {
+        final Map<String,Object> modified = _modified;
+        return modified == null ? _decoded : modified;
+    }
+
+    private Map<String,Object> read()
+    {
+        final Map<String,Object> modified = _modified;
+        return modified == null ? decode() : modified;
+    }
+
+    private Map<String,Object> modifiable()
+    {
+        Map<String,Object> modified = _modified;
+        if (modified == null)
+        {
+            modified = new LinkedHashMap<String,Object>(decode());
+            _modified = modified;
+        }
+        return modified;
+    }
+
+    private Object lookup(final Object key)
+    {
+        if (!(key instanceof String))
+        {
+            return ABSENT;
+        }
+
+        Object value = _lookups.get(key);
+        if (value == null)
+        {
+            BBDecoder dec = _decoder.get();
+            dec.init(ByteBuffer.wrap(_entries));
+            try
+            {
+                Entry<String,Object> entry = dec.readMapEntry(Strings.toUTF8((String) key), _count, false);
+                value = share((String) key, entry == null ? ABSENT : entry.getValue());
+            }
+            finally
+            {
+                dec.releaseBuffer();
+            }
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    /**
+     * @return the instance to hand out for the key: the value decoded by whichever thread got there first
+     */
+    private Object share(final String key, final Object value)
+    {
+        final Object candidate = value == null ? NULL_VALUE : value;
+        final Object existing = _lookups.putIfAbsent(key, candidate);
+        final Object shared = existing == null ? candidate : existing;
+        if (shared instanceof Map || shared instanceof Collection || shared instanceof byte[])
+        {
+            _mutableValueReturned = true;
+        }
+        return shared;
+    }
+
+    private Map<String,Object> decode()
+    {
+        Map<String,Object> decoded = _decoded;
+        if (decoded == null)
+        {
+            BBDecoder dec = _decoder.get();
+            dec.init(ByteBuffer.wrap(_entries));
+            try
+            {
+                final Map<String,Object> entries = dec.readMapEntries(_count);
+                for (Entry<String,Object> entry : entries.entrySet())
+                {
+                    final Object value = share(entry.getKey(), entry.getValue());
+                    entry.setValue(value == NULL_VALUE ? null : value);
+                }
+                decoded = Collections.unmodifiableMap(entries);
+                _decoded = decoded;
+            }
+            finally
+            {
+                dec.releaseBuffer();
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * The entries of the map before it is modified, read from the immutable decoded map; modifying the map through
+     * the set or its entries makes the map's mutable copy.
+     */
+    private final class EntrySet extends AbstractSet<Entry<String,Object>>
+    {
+        @Override
+        public Iterator<Entry<String,Object>> iterator()
+        {
+            final Iterator<Entry<String,Object>> iterator = read().entrySet().iterator();
+            return new Iterator<Entry<String,Object>>()
+            {
+                private Entry<String,Object> _last;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<String,Object> next()
+                {
+                    final Entry<String,Object> next = iterator.next();
+                    _last = new SimpleEntry<String,Object>(next)
+                    {
+                        @Override
+                        public Object setValue(final Object value)
+                        {
+                            super.setValue(value);
+                            return EncodedMap.this.put(getKey(), value);
+                        }
+                    };
+                    return _last;
+                }
+
+                @Override
+                public void remove()
+                {
+                    if (_last == null)
+                    {
+                        throw new IllegalStateException();
+                    }
+                    EncodedMap.this.remove(_last.getKey());
+                    _last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size()
+        {
+            return EncodedMap.this.size();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.codec;
+
+import static org.apache.qpid.transport.network.Frame.FIRST_FRAME;
+import static org.apache.qpid.transport.network.Frame.HEADER_SIZE;
+import static org.apache.qpid.transport.network.Frame.LAST_FRAME;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.qpid.transport.Sender;
+
+
+/**
+ * Frame Encoder.
+ * Encoder concrete implementor that writes complete 0-10 frames, headers included, into a single reusable
+ * buffer owned by a connection.
+ * <p>
+ * Each segment is encoded in place behind a reserved frame header. When the segment is ended the header is filled
+ * in, and if the segment exceeds the maximum frame payload the remaining frame headers are inserted by moving the
+ * encoded bytes within the buffer. The buffer only ever grows, so once it has reached the size of the largest
+ * message sent on the connection encoding and framing allocate nothing.
+ */
+public final class FrameEncoder extends AbstractEncoder
+{
+    private static final byte[] MAGIC_NUMBER = { 'A', 'M', '2' };
+
+    private ByteBuffer out;
+    private int segment = -1;
+
+    public FrameEncoder(int capacity)
+    {
+        out = ByteBuffer.allocate(capacity);
+        out.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    public void init()
+    {
+        out.clear();
+        segment = -1;
+    }
+
+    public int position()
+    {
+        return out.position();
+    }
+
+    public int capacity()
+    {
+        return out.capacity();
+    }
+
+    /**
+     * Reserves space for a frame header; everything written until {@link #endSegment} forms the segment payload.
+     */
+    public void beginSegment()
+    {
+        if (segment != -1)
+        {
+            throw new IllegalStateException("Segment already in progress");
+        }
+        ensureRemaining(HEADER_SIZE);
+        segment = out.position();
+        out.position(segment + HEADER_SIZE);
+    }
+
+    /**
+     * Completes the current segment, splitting it into as many frames as necessary to keep each frame payload
+     * within {@code maxPayload}.
+     */
+    public void endSegment(byte flags, byte type, byte track, int channel, int maxPayload)
+    {
+        if (segment == -1)
+        {
+            throw new IllegalStateException("No segment in progress");
+        }
+
+        final int payloadStart = segment + HEADER_SIZE;
+        final int end = out.position();
+        final int length = end - payloadStart;
+        final int frames = length == 0 ? 1 : (length + maxPayload - 1) / maxPayload;
+
+        if (frames > 1)
+        {
+            final int extra = (frames - 1) * HEADER_SIZE;
+            ensureRemaining(extra);
+
+            final byte[] array = out.array();
+            final int offset = out.arrayOffset();
+            // work backwards so that no frame is overwritten before it has been moved
+            for (int i = frames - 1; i > 0; i--)
+            {
+                final int src = payloadStart + i * maxPayload;
+                final int size = Math.min(maxPayload, length - i * maxPayload);
+                final int dst = src + i * HEADER_SIZE;
+                System.arraycopy(array, offset + src, array, offset + dst, size);
+                putFrameHeader(dst - HEADER_SIZE,
+                               frameFlags(flags, false, i == frames - 1),
+                               type, track, channel, size);
+            }
+            out.position(end + extra);
+        }
+
+        putFrameHeader(segment, frameFlags(flags, true, frames == 1), type, track, channel,
+                       Math.min(maxPayload, length));
+        segment = -1;
+    }
+
+    /**
+     * Appends a complete single frame segment whose payload is copied from {@code payload}.
+     * The position of {@code payload} is left unchanged.
+     */
+    public void writeFrame(byte flags, byte type, byte track, int channel, ByteBuffer payload)
+    {
+        final int size = payload.remaining();
+        ensureRemaining(HEADER_SIZE + size);
+        putFrameHeader(out.position(), (byte) (flags | FIRST_FRAME | LAST_FRAME), type, track, channel, size);
+        out.position(out.position() + HEADER_SIZE);
+        if (payload.hasArray())
+        {
+            out.put(payload.array(), payload.arrayOffset() + payload.position(), size);
+        }
+        else
+        {
+            final int position = payload.position();
+            out.put(payload);
+            payload.position(position);
+        }
+    }
+
+    /**
+     * Appends a frame header only, for a payload of {@code size} bytes that the caller sends separately.
+     */
+    public void writeFrameHeader(byte flags, byte type, byte track, int channel, int size)
+    {
+        ensureRemaining(HEADER_SIZE);
+        putFrameHeader(out.position(), flags, type, track, channel, size);
+        out.position(out.position() + HEADER_SIZE);
+    }
+
+    /**
+     * Passes everything encoded so far to the sender and resets the encoder for reuse. The sender must have
+     * consumed the buffer by the time it returns.
+     */
+    public void flushTo(Sender<ByteBuffer> sender)
+    {
+        if (segment != -1)
+        {
+            throw new IllegalStateException("Segment in progress");
+        }
+        if (out.position() > 0)
+        {
+            out.flip();
+            sender.send(out);
+        }
+        out.clear();
+    }
+
+    private static byte frameFlags(byte flags, boolean first, boolean last)
+    {
+        byte frameFlags = flags;
+        if (first)
+        {
+            frameFlags |= FIRST_FRAME;
+        }
+        if (last)
+        {
+            frameFlags |= LAST_FRAME;
+        }
+        return frameFlags;
+    }
+
+    private void putFrameHeader(int pos, byte flags, byte type, byte track, int channel, int size)
+    {
+        out.put(pos, flags);
+        out.put(pos + 1, type);
+        out.putShort(pos + 2, (short) (size + HEADER_SIZE));
+        out.put(pos + 4, (byte) 0);
+        out.put(pos + 5, track);
+        out.putShort(pos + 6, (short) channel);
+        out.putInt(pos + 8, 0);
+    }
+
+    private void ensureRemaining(int size)
+    {
+        if (out.remaining() < size)
+        {
+            grow(size);
+        }
+    }
+
+    private void grow(int size)
+    {
+        ByteBuffer old = out;
+        int capacity = old.capacity();
+        out = ByteBuffer.allocate(Math.max(capacity + size, 2*capacity));
+        out.order(ByteOrder.BIG_ENDIAN);
+        old.flip();
+        out.put(old);
+    }
+
+    protected void doPut(byte b)
+    {
+        try
+        {
+            out.put(b);
+        }
+        catch (BufferOverflowException e)
+        {
+            grow(1);
+            out.put(b);
+        }
+    }
+
+    protected void doPut(ByteBuffer src)
+    {
+        try
+        {
+            out.put(src);
+        }
+        catch (BufferOverflowException e)
+        {
+            grow(src.remaining());
+            out.put(src);
+        }
+    }
+
+    protected void put(byte[] bytes)
+    {
+        try
+        {
+            out.put(bytes);
+        }
+        catch (BufferOverflowException e)
+        {
+            grow(bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    public void writeUint8(short b)
+    {
+        assert b < 0x100;
+
+        try
+        {
+            out.put((byte) b);
+        }
+        catch (BufferOverflowException e)
+        {
+            grow(1);
+            out.put((byte) b);
+        }
+    }
+
+    public void writeUint16(int s)
+    {
+        assert s < 0x10000;
+
+        try
+        {
+            out.putShort((short) s);
+        }
+        catch (BufferOverflowException e)
+        {
+            grow(2);
+            out.putShort((short) s);
+        }
+    }
+
+    public void writeUint32(long i)
+    {
+        assert i < 0x100000000L;
+
+        try
+        {
+            out.putInt((int) i);
+        }
+        catch (BufferOverflowException e)
+        {
+            grow(4);
+            out.putInt((int) i);
+        }
+    }
+
+    public void writeUint64(long l)
+    {
+        try
+        {
+            out.putLong(l);
+        }
+        catch (BufferOverflowException e)
+        {
+            grow(8);
+            out.putLong(l);
+        }
+    }
+
+    public int beginSize8()
+    {
+        int pos = out.position();
+        writeUint8((short) 0);
+        return pos;
+    }
+
+    public void endSize8(int pos)
+    {
+        int cur = out.position();
+        out.put(pos, (byte) (cur - pos - 1));
+    }
+
+    public int beginSize16()
+    {
+        int pos = out.position();
+        writeUint16(0);
+        return pos;
+    }
+
+    public void endSize16(int pos)
+    {
+        int cur = out.position();
+        out.putShort(pos, (short) (cur - pos - 2));
+    }
+
+    public int beginSize32()
+    {
+        int pos = out.position();
+        writeUint32(0);
+        return pos;
+    }
+
+    public void endSize32(int pos)
+    {
+        int cur = out.position();
+        out.putInt(pos, (cur - pos - 4));
+    }
+
+    public void writeDouble(double aDouble)
+    {
+        writeUint64(Double.doubleToLongBits(aDouble));
+    }
+
+    public void writeInt16(short aShort)
+    {
+        writeUint16(aShort & 0xffff);
+    }
+
+    public void writeInt32(int anInt)
+    {
+        writeUint32(anInt & 0xffffffffL);
+    }
+
+    public void writeInt64(long aLong)
+    {
+        writeUint64(aLong);
+    }
+
+    public void writeInt8(byte aByte)
+    {
+        doPut(aByte);
+    }
+
+    public void writeBin128(byte[] byteArray)
+    {
+        byteArray = (byteArray != null) ? byteArray : new byte [16];
+
+        assert byteArray.length == 16;
+
+        put(byteArray);
+    }
+
+    public void writeFloat(float aFloat)
+    {
+        writeUint32(Float.floatToIntBits(aFloat) & 0xffffffffL);
+    }
+
+    public void writeMagicNumber()
+    {
+        put(MAGIC_NUMBER);
+    }
+}
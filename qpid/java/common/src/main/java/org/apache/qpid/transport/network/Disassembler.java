@@ -28,7 +28,6 @@ import static org.apache.qpid.transport.network.Frame.LAST_FRAME;
 import static org.apache.qpid.transport.network.Frame.LAST_SEG;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import org.apache.qpid.transport.FrameSizeObserver;
 import org.apache.qpid.transport.Header;
@@ -40,7 +39,7 @@ import org.apache.qpid.transport.ProtocolHeader;
 import org.apache.qpid.transport.SegmentType;
 import org.apache.qpid.transport.Sender;
 import org.apache.qpid.transport.Struct;
-import org.apache.qpid.transport.codec.BBEncoder;
+import org.apache.qpid.transport.codec.FrameEncoder;
 
 /**
  * Disassembler
@@ -50,13 +49,7 @@ public final class Disassembler implements Sender<ProtocolEvent>, ProtocolDelega
     private final Sender<ByteBuffer> sender;
     private int maxPayload;
     private final Object sendlock = new Object();
-    private final static ThreadLocal<BBEncoder> _encoder = new ThreadLocal<BBEncoder>()
-    {
-        public BBEncoder initialValue()
-        {
-            return new BBEncoder(4*1024);
-        }
-    };
+    private final FrameEncoder _encoder = new FrameEncoder(4*1024);
 
     public Disassembler(Sender<ByteBuffer> sender, int maxFrame)
     {
@@ -89,70 +82,6 @@ public final class Disassembler implements Sender<ProtocolEvent>, ProtocolDelega
         }
     }
 
-    private final ByteBuffer _frameHeader = ByteBuffer.allocate(HEADER_SIZE);
-
-    {
-        _frameHeader.order(ByteOrder.BIG_ENDIAN);
-    }
-
-    private void frame(byte flags, byte type, byte track, int channel, int size, ByteBuffer buf)
-    {
-        synchronized (sendlock)
-        {
-            ByteBuffer data = _frameHeader;
-            _frameHeader.rewind();
-
-            
-            data.put(0, flags);
-            data.put(1, type);
-            data.putShort(2, (short) (size + HEADER_SIZE));
-            data.put(5, track);
-            data.putShort(6, (short) channel);
-
-
-            int limit = buf.limit();
-            buf.limit(buf.position() + size);
-
-            data.rewind();
-            sender.send(data);
-            sender.send(buf);
-            buf.limit(limit);
-
-        }
-    }
-
-    private void fragment(byte flags, SegmentType type, ProtocolEvent event, ByteBuffer buf)
-    {
-        byte typeb = (byte) type.getValue();
-        byte track = event.getEncodedTrack() == Frame.L4 ? (byte) 1 : (byte) 0;
-
-        int remaining = buf.remaining();
-        boolean first = true;
-        while (true)
-        {
-            int size = min(maxPayload, remaining);
-            remaining -= size;
-
-            byte newflags = flags;
-            if (first)
-            {
-                newflags |= FIRST_FRAME;
-                first = false;
-            }
-            if (remaining == 0)
-            {
-                newflags |= LAST_FRAME;
-            }
-
-            frame(newflags, typeb, track, event.getChannel(), size, buf);
-
-            if (remaining == 0)
-            {
-                break;
-            }
-        }
-    }
-
     public void init(Void v, ProtocolHeader header)
     {
         synchronized (sendlock)
@@ -174,76 +103,130 @@ public final class Disassembler implements Sender<ProtocolEvent>, ProtocolDelega
 
     private void method(Method method, SegmentType type)
     {
-        BBEncoder enc = _encoder.get();
-        enc.init();
-        enc.writeUint16(method.getEncodedType());
-        if (type == SegmentType.COMMAND)
-        {
-            if (method.isSync())
-            {
-                enc.writeUint16(0x0101);
-            }
-            else
-            {
-                enc.writeUint16(0x0100);
-            }
-        }
-        method.write(enc);
-        int methodLimit = enc.position();
-
-        byte flags = FIRST_SEG;
-
-        boolean payload = method.hasPayload();
-        if (!payload)
-        {
-            flags |= LAST_SEG;
-        }
+        final byte track = method.getEncodedTrack() == Frame.L4 ? (byte) 1 : (byte) 0;
+        final int channel = method.getChannel();
+        final boolean payload = method.hasPayload();
 
-        int headerLimit = -1;
-        if (payload)
+        synchronized (sendlock)
         {
-            final Header hdr = method.getHeader();
-            if (hdr != null)
+            final FrameEncoder enc = _encoder;
+            try
             {
-                if(hdr.getDeliveryProperties() != null)
+                enc.beginSegment();
+                enc.writeUint16(method.getEncodedType());
+                if (type == SegmentType.COMMAND)
                 {
-                    enc.writeStruct32(hdr.getDeliveryProperties());
+                    if (method.isSync())
+                    {
+                        enc.writeUint16(0x0101);
+                    }
+                    else
+                    {
+                        enc.writeUint16(0x0100);
+                    }
                 }
-                if(hdr.getMessageProperties() != null)
+                method.write(enc);
+
+                byte flags = FIRST_SEG;
+                if (!payload)
                 {
-                    enc.writeStruct32(hdr.getMessageProperties());
+                    flags |= LAST_SEG;
                 }
-                if(hdr.getNonStandardProperties() != null)
+                enc.endSegment(flags, (byte) type.getValue(), track, channel, maxPayload);
+
+                if (payload)
                 {
-                    for (Struct st : hdr.getNonStandardProperties())
+                    final ByteBuffer body = method.getBodyBuffer();
+
+                    enc.beginSegment();
+                    final Header hdr = method.getHeader();
+                    if (hdr != null)
                     {
-                        enc.writeStruct32(st);
+                        if(hdr.getDeliveryProperties() != null)
+                        {
+                            enc.writeStruct32(hdr.getDeliveryProperties());
+                        }
+                        if(hdr.getMessageProperties() != null)
+                        {
+                            enc.writeStruct32(hdr.getMessageProperties());
+                        }
+                        if(hdr.getNonStandardProperties() != null)
+                        {
+                            for (Struct st : hdr.getNonStandardProperties())
+                            {
+                                enc.writeStruct32(st);
+                            }
+                        }
+                    }
+                    enc.endSegment(body == null ? LAST_SEG : 0x0, (byte) SegmentType.HEADER.getValue(), track, channel,
+                                   maxPayload);
+
+                    if (body != null)
+                    {
+                        if (body.remaining() <= maxPayload)
+                        {
+                            enc.writeFrame(LAST_SEG, (byte) SegmentType.BODY.getValue(), track, channel, body);
+                        }
+                        else
+                        {
+                            enc.flushTo(sender);
+                            body(track, channel, body);
+                        }
                     }
                 }
+
+                enc.flushTo(sender);
+            }
+            catch (RuntimeException e)
+            {
+                // discard whatever was partially encoded so that the encoder can be reused
+                enc.init();
+                throw e;
             }
-            headerLimit = enc.position();
         }
+    }
 
-        synchronized (sendlock)
+    /**
+     * Sends a body too large for a single frame straight from the body buffer, so that it is not copied twice.
+     */
+    private void body(byte track, int channel, ByteBuffer body)
+    {
+        final int position = body.position();
+        final int limit = body.limit();
+        final byte type = (byte) SegmentType.BODY.getValue();
+        try
         {
-            ByteBuffer buf = enc.underlyingBuffer();
-            buf.position(0);
-            buf.limit(methodLimit);
-
-            fragment(flags, type, method, buf);
-            if (payload)
+            int remaining = body.remaining();
+            boolean first = true;
+            while (remaining > 0)
             {
-                ByteBuffer body = method.getBody();
-                buf.limit(headerLimit);
-                buf.position(methodLimit);
-                fragment(body == null ? LAST_SEG : 0x0, SegmentType.HEADER, method, buf);
-                if (body != null)
+                int size = min(maxPayload, remaining);
+                remaining -= size;
+
+                byte flags = LAST_SEG;
+                if (first)
+                {
+                    flags |= FIRST_FRAME;
+                    first = false;
+                }
+                if (remaining == 0)
                 {
-                    fragment(LAST_SEG, SegmentType.BODY, method, body);
+                    flags |= LAST_FRAME;
                 }
 
+                _encoder.writeFrameHeader(flags, type, track, channel, size);
+                _encoder.flushTo(sender);
+
+                body.limit(body.position() + size);
+                sender.send(body);
+                body.limit(limit);
             }
         }
+        finally
+        {
+            body.limit(limit);
+            body.position(position);
+        }
     }
 
     public void error(Void v, ProtocolError error)
@@ -21,6 +21,7 @@
 package org.apache.qpid.transport.network;
 
 import org.apache.qpid.framing.ProtocolVersion;
+import org.apache.qpid.transport.ConnectionSettings;
 import org.apache.qpid.transport.TransportException;
 
 import java.util.Collections;
@@ -38,8 +39,11 @@ public class Transport
 
     // Can't reference the class directly here, as this would preclude the ability to bundle transports separately.
     private static final String IO_TRANSPORT_CLASSNAME = "org.apache.qpid.transport.network.io.IoNetworkTransport";
+    private static final String NIO_TRANSPORT_CLASSNAME = "org.apache.qpid.transport.network.nio.NioNetworkTransport";
+    private static final String VM_TRANSPORT_CLASSNAME = "org.apache.qpid.transport.network.vm.VmNetworkTransport";
 
     public static final String TCP = "tcp";
+    public static final String VM = "vm";
 
     private final static Map<ProtocolVersion,String> OUTGOING_PROTOCOL_TO_IMPLDEFAULTS_MAP;
 
@@ -82,6 +86,24 @@ public class Transport
         return (OutgoingNetworkTransport) loadTransportClass(networkTransportClassName);
     }
 
+    /**
+     * Returns the in-VM transport if the connection settings name the {@value #VM} protocol, the shared I/O
+     * transport if the settings ask for shared I/O, or the transport for the protocol version otherwise.
+     */
+    public static OutgoingNetworkTransport getOutgoingTransportInstance(final ProtocolVersion protocolVersion,
+                                                                        final ConnectionSettings settings)
+    {
+        if (VM.equalsIgnoreCase(settings.getProtocol()))
+        {
+            return (OutgoingNetworkTransport) loadTransportClass(VM_TRANSPORT_CLASSNAME);
+        }
+        if (settings.isSharedIo())
+        {
+            return (OutgoingNetworkTransport) loadTransportClass(NIO_TRANSPORT_CLASSNAME);
+        }
+        return getOutgoingTransportInstance(protocolVersion);
+    }
+
     private static NetworkTransport loadTransportClass(final String networkTransportClassName)
     {
         if (networkTransportClassName == null)
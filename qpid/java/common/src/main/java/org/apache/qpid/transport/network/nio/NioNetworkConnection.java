@@ -0,0 +1,650 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.Sender;
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.SenderException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.Ticker;
+
+/**
+ * A non-blocking socket connection served by a shared {@link SelectorThread}.
+ * <p>
+ * Sent bytes are queued and written by the thread which flushes them, without blocking; only if the socket buffer
+ * fills is the rest left for the selector thread to write once the socket becomes writable.  A sender which has
+ * more than the pending limit queued waits for the queue to drain, writing it itself meanwhile so that it never
+ * depends on the selector thread.
+ * <p>
+ * Received bytes are queued by the selector thread and handed to the receiver in order by a task on the shared
+ * notifier threads, so a receiver which blocks, e.g. on a session lock, holds up only its own connection.  While
+ * more than a few buffers of received bytes wait for the receiver, the selector stops reading from the socket.
+ * The receiver's {@link Receiver#exception(Throwable)} and {@link Receiver#closed()} are called by the same task,
+ * after the last received bytes, as the client starts failover from them.
+ */
+public class NioNetworkConnection implements NetworkConnection, Sender<ByteBuffer>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioNetworkConnection.class);
+
+    private static final int MAX_GATHERED_BUFFERS = 64;
+    private static final int MAX_READS_PER_SELECT = 4;
+    private static final int MAX_UNDELIVERED_BUFFERS = 4;
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+    private static final long WRITE_RETRY_INTERVAL = 10L;
+
+    private final SocketChannel _channel;
+    private final Receiver<ByteBuffer> _receiver;
+    private final SelectorThread _selectorThread;
+    private final Executor _notifier;
+    private final Ticker _ticker;
+    private final int _receiveBufferSize;
+    private final long _pendingLimit;
+    private final long _timeout;
+    private final SocketAddress _localAddress;
+    private final SocketAddress _remoteAddress;
+
+    private final Queue<ByteBuffer> _writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicLong _pendingBytes = new AtomicLong();
+    private final ReentrantLock _writeLock = new ReentrantLock();
+    private final ByteBuffer[] _gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+    private final Object _notFull = new Object();
+    private final AtomicBoolean _closed = new AtomicBoolean();
+    private final AtomicBoolean _channelClosed = new AtomicBoolean();
+    private final AtomicBoolean _tickInProgress = new AtomicBoolean();
+    private final Queue<ByteBuffer> _deliveryQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicLong _undeliveredBytes = new AtomicLong();
+    private final AtomicBoolean _deliveryScheduled = new AtomicBoolean();
+    private final Runnable _deliver = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            deliver();
+        }
+    };
+    private final Runnable _enableReadInterest = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            final SelectionKey key = _key;
+            if (key != null && key.isValid())
+            {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+    };
+    private final Runnable _enableWriteInterest = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            final SelectionKey key = _key;
+            if (key != null && key.isValid())
+            {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    };
+
+    private volatile Throwable _exception;
+    private volatile Throwable _closeException;
+    private volatile boolean _receiverFailed;
+    private volatile SelectionKey _key;
+    private volatile int _maxReadIdle;
+    private volatile int _maxWriteIdle;
+    private ByteBuffer _readBuffer;
+
+    NioNetworkConnection(final SocketChannel channel,
+                         final Receiver<ByteBuffer> receiver,
+                         final SelectorThread selectorThread,
+                         final Executor notifier,
+                         final int receiveBufferSize,
+                         final int pendingLimit,
+                         final long timeout,
+                         final Ticker ticker)
+    {
+        _channel = channel;
+        _receiver = receiver;
+        _selectorThread = selectorThread;
+        _notifier = notifier;
+        _receiveBufferSize = receiveBufferSize;
+        _pendingLimit = pendingLimit;
+        _timeout = timeout;
+        _ticker = ticker;
+        _localAddress = channel.socket().getLocalSocketAddress();
+        _remoteAddress = channel.socket().getRemoteSocketAddress();
+    }
+
+    SocketChannel getChannel()
+    {
+        return _channel;
+    }
+
+    void setSelectionKey(final SelectionKey key)
+    {
+        _key = key;
+    }
+
+    @Override
+    public void start()
+    {
+        _selectorThread.register(this);
+    }
+
+    @Override
+    public Sender<ByteBuffer> getSender()
+    {
+        return this;
+    }
+
+    @Override
+    public void send(final ByteBuffer msg)
+    {
+        checkNotAlreadyClosed();
+
+        final int size = msg.remaining();
+        final ByteBuffer copy = ByteBuffer.allocate(size);
+        copy.put(msg);
+        copy.flip();
+        _writeQueue.add(copy);
+
+        if (_pendingBytes.addAndGet(size) > _pendingLimit && !_selectorThread.isSelectorThread())
+        {
+            awaitNotFull();
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        if (!write())
+        {
+            _selectorThread.execute(_enableWriteInterest);
+        }
+    }
+
+    @Override
+    public void setIdleTimeout(final int i)
+    {
+    }
+
+    @Override
+    public void close()
+    {
+        if (_closed.compareAndSet(false, true))
+        {
+            if (_selectorThread.isSelectorThread())
+            {
+                write();
+            }
+            else
+            {
+                awaitDrained();
+            }
+            closeChannel(null);
+
+            final Throwable exception = _exception;
+            if (exception != null)
+            {
+                throw new SenderException(exception);
+            }
+        }
+    }
+
+    /**
+     * Writes as much of the queue as the socket will take without blocking.
+     *
+     * @return false if bytes remain queued because the socket buffer is full
+     */
+    private boolean write()
+    {
+        while (!_writeQueue.isEmpty())
+        {
+            if (!_writeLock.tryLock())
+            {
+                // the thread holding the lock writes our bytes too
+                return true;
+            }
+            try
+            {
+                if (!writeQueued())
+                {
+                    return false;
+                }
+            }
+            finally
+            {
+                _writeLock.unlock();
+            }
+        }
+        return true;
+    }
+
+    private boolean writeQueued()
+    {
+        try
+        {
+            while (!_channelClosed.get())
+            {
+                int count = 0;
+                for (ByteBuffer buf : _writeQueue)
+                {
+                    _gathered[count++] = buf;
+                    if (count == MAX_GATHERED_BUFFERS)
+                    {
+                        break;
+                    }
+                }
+                if (count == 0)
+                {
+                    return true;
+                }
+
+                final long written = _channel.write(_gathered, 0, count);
+                final boolean socketFull = _gathered[count - 1].hasRemaining();
+                Arrays.fill(_gathered, 0, count, null);
+
+                ByteBuffer head;
+                while ((head = _writeQueue.peek()) != null && !head.hasRemaining())
+                {
+                    _writeQueue.poll();
+                }
+
+                if (written > 0L)
+                {
+                    final long pending = _pendingBytes.addAndGet(-written);
+                    if (pending + written > _pendingLimit && pending <= _pendingLimit)
+                    {
+                        synchronized (_notFull)
+                        {
+                            _notFull.notifyAll();
+                        }
+                    }
+                }
+
+                if (socketFull)
+                {
+                    return false;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.info("Exception sending to '" + _remoteAddress + "': " + e);
+            _exception = e;
+            closeChannel(null);
+        }
+        return true;
+    }
+
+    private void awaitNotFull()
+    {
+        final long deadline = System.currentTimeMillis() + _timeout;
+        while (_pendingBytes.get() > _pendingLimit)
+        {
+            checkNotAlreadyClosed();
+            if (write() && _pendingBytes.get() <= _pendingLimit)
+            {
+                return;
+            }
+
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L)
+            {
+                final String message = String.format("write timed out for socket %s: %d bytes pending",
+                                                     _remoteAddress, _pendingBytes.get());
+                LOGGER.error(message);
+                _closed.set(true);
+                closeChannel(null);
+                throw new SenderException(message);
+            }
+            waitForWrite(remaining);
+        }
+    }
+
+    private void awaitDrained()
+    {
+        final long deadline = System.currentTimeMillis() + _timeout;
+        while (!write() || !_writeQueue.isEmpty())
+        {
+            if (_channelClosed.get())
+            {
+                return;
+            }
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L)
+            {
+                LOGGER.error("Timed out flushing " + _pendingBytes.get() + " bytes to '" + _remoteAddress
+                             + "' before close");
+                return;
+            }
+            waitForWrite(remaining);
+        }
+    }
+
+    private void waitForWrite(final long remaining)
+    {
+        synchronized (_notFull)
+        {
+            if (!_channelClosed.get())
+            {
+                try
+                {
+                    // woken when the selector thread drains the queue, otherwise retry the write ourselves
+                    _notFull.wait(Math.min(remaining, WRITE_RETRY_INTERVAL));
+                }
+                catch (InterruptedException e)
+                {
+                    // pass
+                }
+            }
+        }
+    }
+
+    void processReadyOps(final SelectionKey key)
+    {
+        if (key.isValid() && key.isWritable())
+        {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (!write())
+            {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        if (key.isValid() && key.isReadable())
+        {
+            read(key);
+        }
+    }
+
+    private void read(final SelectionKey key)
+    {
+        try
+        {
+            for (int i = 0; i < MAX_READS_PER_SELECT && !_channelClosed.get(); i++)
+            {
+                if (_readBuffer == null)
+                {
+                    _readBuffer = ByteBuffer.allocate(_receiveBufferSize);
+                }
+
+                final int read = _channel.read(_readBuffer);
+                if (read == -1)
+                {
+                    closeChannel(null);
+                    return;
+                }
+                else if (read == 0)
+                {
+                    return;
+                }
+
+                // the receiver may hold on to the bytes, so that part of the buffer is never reused
+                final ByteBuffer received = _readBuffer.duplicate();
+                received.limit(received.position());
+                received.position(received.position() - read);
+                if (_readBuffer.position() > _receiveBufferSize / 2)
+                {
+                    _readBuffer = null;
+                }
+
+                _undeliveredBytes.addAndGet(read);
+                _deliveryQueue.add(received);
+                scheduleDelivery();
+
+                if (_undeliveredBytes.get() > (long) MAX_UNDELIVERED_BUFFERS * _receiveBufferSize)
+                {
+                    // resumed once the receiver has caught up
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            if (!_closed.get())
+            {
+                LOGGER.debug("Exception receiving from '" + _remoteAddress + "'", e);
+                closeChannel(e);
+            }
+            else
+            {
+                closeChannel(null);
+            }
+        }
+    }
+
+    private void scheduleDelivery()
+    {
+        if (_deliveryScheduled.compareAndSet(false, true))
+        {
+            _notifier.execute(_deliver);
+        }
+    }
+
+    /**
+     * Hands the queued bytes to the receiver, followed by the notification of closure once the selector thread has
+     * queued the end of the stream.  Only one delivery task runs at a time for a connection.
+     */
+    private void deliver()
+    {
+        do
+        {
+            ByteBuffer received;
+            while ((received = _deliveryQueue.poll()) != null)
+            {
+                if (received == END_OF_STREAM)
+                {
+                    notifyClosed();
+                    continue;
+                }
+
+                final int size = received.remaining();
+                if (!_receiverFailed)
+                {
+                    try
+                    {
+                        _receiver.received(received);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        _receiverFailed = true;
+                        LOGGER.debug("Exception receiving from '" + _remoteAddress + "'", e);
+                        closeChannel(_closed.get() ? null : e);
+                    }
+                }
+
+                final long limit = (long) MAX_UNDELIVERED_BUFFERS * _receiveBufferSize;
+                final long undelivered = _undeliveredBytes.addAndGet(-size);
+                if (undelivered + size > limit && undelivered <= limit)
+                {
+                    _selectorThread.execute(_enableReadInterest);
+                }
+            }
+            _deliveryScheduled.set(false);
+        }
+        while (!_deliveryQueue.isEmpty() && _deliveryScheduled.compareAndSet(false, true));
+    }
+
+    private void notifyClosed()
+    {
+        try
+        {
+            final Throwable exception = _closeException;
+            if (exception != null)
+            {
+                _receiver.exception(exception);
+            }
+        }
+        finally
+        {
+            _receiver.closed();
+        }
+    }
+
+    /**
+     * Closes the socket and, once the selector thread has finished with the connection, notifies the receiver after
+     * any bytes still waiting to be delivered to it.
+     */
+    void closeChannel(final Throwable exception)
+    {
+        _closed.set(true);
+        if (_channelClosed.compareAndSet(false, true))
+        {
+            try
+            {
+                _channel.close();
+            }
+            catch (IOException e)
+            {
+                LOGGER.debug("Exception closing channel to '" + _remoteAddress + "'", e);
+            }
+
+            synchronized (_notFull)
+            {
+                _notFull.notifyAll();
+            }
+
+            _selectorThread.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    _selectorThread.deregister(NioNetworkConnection.this);
+                    _closeException = exception;
+                    _deliveryQueue.add(END_OF_STREAM);
+                    scheduleDelivery();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the idle ticker off the selector thread if it is due.
+     *
+     * @return the time at which the ticker should next be checked
+     */
+    long checkTicker(final long currentTime)
+    {
+        if (_ticker == null || _channelClosed.get() || _tickInProgress.get())
+        {
+            return Long.MAX_VALUE;
+        }
+
+        final int timeToNextTick = _ticker.getTimeToNextTick(currentTime);
+        if (timeToNextTick > 0)
+        {
+            return currentTime + timeToNextTick;
+        }
+
+        _tickInProgress.set(true);
+        _notifier.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    _ticker.tick(System.currentTimeMillis());
+                }
+                finally
+                {
+                    _tickInProgress.set(false);
+                    _selectorThread.rescheduleTicks();
+                }
+            }
+        });
+        return Long.MAX_VALUE;
+    }
+
+    private void checkNotAlreadyClosed()
+    {
+        if (_closed.get())
+        {
+            throw new SenderClosedException(String.format("sender for socket %s is closed", _remoteAddress),
+                                            _exception);
+        }
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress()
+    {
+        return _remoteAddress;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress()
+    {
+        return _localAddress;
+    }
+
+    @Override
+    public void setMaxWriteIdle(final int sec)
+    {
+        _maxWriteIdle = sec;
+        _selectorThread.rescheduleTicks();
+    }
+
+    @Override
+    public void setMaxReadIdle(final int sec)
+    {
+        _maxReadIdle = sec;
+        _selectorThread.rescheduleTicks();
+    }
+
+    @Override
+    public Principal getPeerPrincipal()
+    {
+        return null;
+    }
+
+    @Override
+    public int getMaxReadIdle()
+    {
+        return _maxReadIdle;
+    }
+
+    @Override
+    public int getMaxWriteIdle()
+    {
+        return _maxWriteIdle;
+    }
+}
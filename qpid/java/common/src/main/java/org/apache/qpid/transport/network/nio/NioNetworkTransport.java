@@ -0,0 +1,138 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.configuration.CommonProperties;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
+import org.apache.qpid.transport.network.TransportActivity;
+import org.apache.qpid.transport.network.io.IdleTimeoutTicker;
+
+/**
+ * An outgoing transport whose connections share a small pool of selector threads, rather than each having its own
+ * reader and writer threads as {@link org.apache.qpid.transport.network.io.IoNetworkTransport} connections do.
+ * Used when the {@code shared_io} broker option is set.
+ */
+public class NioNetworkTransport implements OutgoingNetworkTransport
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioNetworkTransport.class);
+    private static final int TIMEOUT = Integer.getInteger(CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_PROP_NAME,
+                                                          CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_DEFAULT);
+
+    private NioNetworkConnection _connection;
+
+    @Override
+    public NetworkConnection connect(final ConnectionSettings settings,
+                                     final Receiver<ByteBuffer> delegate,
+                                     final TransportActivity transportActivity)
+    {
+        final int sendBufferSize = settings.getWriteBufferSize();
+        final int receiveBufferSize = settings.getReadBufferSize();
+
+        SocketChannel channel = null;
+        try
+        {
+            channel = SocketChannel.open();
+            final Socket socket = channel.socket();
+            socket.setReuseAddress(true);
+            socket.setTcpNoDelay(settings.isTcpNodelay());
+            socket.setSendBufferSize(sendBufferSize);
+            socket.setReceiveBufferSize(receiveBufferSize);
+
+            if (LOGGER.isDebugEnabled())
+            {
+                LOGGER.debug("SO_RCVBUF : " + socket.getReceiveBufferSize());
+                LOGGER.debug("SO_SNDBUF : " + socket.getSendBufferSize());
+                LOGGER.debug("TCP_NODELAY : " + socket.getTcpNoDelay());
+            }
+
+            final InetAddress address = InetAddress.getByName(settings.getHost());
+
+            socket.connect(new InetSocketAddress(address, settings.getPort()), settings.getConnectTimeout());
+            channel.configureBlocking(false);
+        }
+        catch (IOException e)
+        {
+            closeQuietly(channel);
+            throw new TransportException("Error connecting to broker", e);
+        }
+
+        try
+        {
+            final SelectorThreadPool pool = SelectorThreadPool.getInstance();
+            final IdleTimeoutTicker ticker = new IdleTimeoutTicker(transportActivity, TIMEOUT);
+            _connection = new NioNetworkConnection(channel, delegate, pool.nextSelectorThread(), pool.getNotifier(),
+                                                   receiveBufferSize, 2 * sendBufferSize, TIMEOUT, ticker);
+            ticker.setConnection(_connection);
+            _connection.start();
+        }
+        catch (Exception e)
+        {
+            closeQuietly(channel);
+            throw new TransportException("Error creating network connection", e);
+        }
+
+        return _connection;
+    }
+
+    @Override
+    public void close()
+    {
+        if (_connection != null)
+        {
+            _connection.close();
+        }
+    }
+
+    @Override
+    public NetworkConnection getConnection()
+    {
+        return _connection;
+    }
+
+    private void closeQuietly(final SocketChannel channel)
+    {
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                // ignored, throw based on original exception
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.thread.Threading;
+import org.apache.qpid.transport.TransportException;
+
+/**
+ * A thread multiplexing the I/O of many {@link NioNetworkConnection}s over a single selector.  Reads are done on
+ * this thread, but the bytes are handed to the connections' receivers on other threads; writes are normally done by
+ * the thread flushing the connection, and only finished here once the socket becomes writable again.  The thread also works out when each
+ * connection's idle ticker is due, but the tick itself runs on another thread as it may block on protocol locks.
+ */
+final class SelectorThread implements Runnable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorThread.class);
+
+    private final Selector _selector;
+    private final Thread _thread;
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Set<NioNetworkConnection> _connections =
+            Collections.newSetFromMap(new ConcurrentHashMap<NioNetworkConnection, Boolean>());
+    private final AtomicBoolean _ticksChanged = new AtomicBoolean();
+    private final AtomicInteger _connectionCount = new AtomicInteger();
+    private long _nextTickTime;
+
+    SelectorThread(final String name)
+    {
+        try
+        {
+            _selector = Selector.open();
+        }
+        catch (IOException e)
+        {
+            throw new TransportException("Unable to open selector", e);
+        }
+
+        try
+        {
+            _thread = Threading.getThreadFactory().createThread(this);
+        }
+        catch (Exception e)
+        {
+            throw new Error("Error creating selector thread", e);
+        }
+        _thread.setDaemon(true);
+        _thread.setName(name);
+        _thread.start();
+    }
+
+    boolean isSelectorThread()
+    {
+        return Thread.currentThread() == _thread;
+    }
+
+    int getConnectionCount()
+    {
+        return _connectionCount.get();
+    }
+
+    void register(final NioNetworkConnection connection)
+    {
+        _connectionCount.incrementAndGet();
+        execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    final SelectionKey key =
+                            connection.getChannel().register(_selector, SelectionKey.OP_READ, connection);
+                    connection.setSelectionKey(key);
+                    _connections.add(connection);
+                    _ticksChanged.set(true);
+                }
+                catch (ClosedChannelException e)
+                {
+                    _connectionCount.decrementAndGet();
+                    connection.closeChannel(e);
+                }
+            }
+        });
+    }
+
+    void deregister(final NioNetworkConnection connection)
+    {
+        if (_connections.remove(connection))
+        {
+            _connectionCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Makes the selector re-evaluate when the idle tickers are next due, e.g. after a connection's idle limits
+     * have changed.
+     */
+    void rescheduleTicks()
+    {
+        _ticksChanged.set(true);
+        _selector.wakeup();
+    }
+
+    void execute(final Runnable task)
+    {
+        _tasks.add(task);
+        if (!isSelectorThread())
+        {
+            _selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            try
+            {
+                runTasks();
+
+                final long timeout = _ticksChanged.get() ? 0L : _nextTickTime - System.currentTimeMillis();
+                if (timeout > 0L)
+                {
+                    _selector.select(timeout);
+                }
+                else
+                {
+                    _selector.selectNow();
+                }
+
+                final Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    final NioNetworkConnection connection = (NioNetworkConnection) key.attachment();
+                    connection.processReadyOps(key);
+                }
+
+                final long currentTime = System.currentTimeMillis();
+                if (_ticksChanged.getAndSet(false) || currentTime >= _nextTickTime)
+                {
+                    long nextTickTime = Long.MAX_VALUE;
+                    for (NioNetworkConnection connection : _connections)
+                    {
+                        nextTickTime = Math.min(nextTickTime, connection.checkTicker(currentTime));
+                    }
+                    _nextTickTime = nextTickTime;
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                LOGGER.error("Unexpected exception in selector thread " + _thread.getName(), e);
+            }
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while ((task = _tasks.poll()) != null)
+        {
+            task.run();
+        }
+    }
+}
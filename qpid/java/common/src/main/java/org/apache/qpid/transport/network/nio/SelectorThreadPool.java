@@ -0,0 +1,124 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.configuration.ClientProperties;
+import org.apache.qpid.thread.Threading;
+
+/**
+ * The selector threads shared by every {@link NioNetworkConnection} in the JVM, together with a fixed number of
+ * notifier threads on which the connections' receivers are handed received bytes and notified of exceptions and
+ * closure, and their idle tickers are run.  The threads are daemons, started when the first connection is made.
+ * <p>
+ * The notifier's queue is bounded by the number of connections: a connection has at most one delivery and one tick
+ * queued at a time, and its selector thread stops reading from it while too many received bytes are waiting to be
+ * delivered.  A receiver which blocks therefore holds up its own connection and one notifier thread, delaying the
+ * connections queued behind it, rather than causing more threads to be created.
+ */
+final class SelectorThreadPool
+{
+    private static final int SELECTOR_THREADS =
+            Integer.getInteger(ClientProperties.QPID_SHARED_IO_THREADS_PROP_NAME,
+                               Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+    private static final int NOTIFIER_THREADS =
+            Integer.getInteger(ClientProperties.QPID_SHARED_IO_NOTIFIER_THREADS_PROP_NAME,
+                               Math.max(4, Runtime.getRuntime().availableProcessors()));
+    private static final long NOTIFIER_KEEP_ALIVE_SECONDS = 60L;
+
+    private final SelectorThread[] _selectorThreads;
+    private final ThreadPoolExecutor _notifier;
+
+    private SelectorThreadPool(final int threadCount, final int notifierThreadCount)
+    {
+        _selectorThreads = new SelectorThread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            _selectorThreads[i] = new SelectorThread(String.format("SharedIoSelector-%d", i));
+        }
+
+        _notifier = new ThreadPoolExecutor(notifierThreadCount,
+                                           notifierThreadCount,
+                                           NOTIFIER_KEEP_ALIVE_SECONDS,
+                                           TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           new ThreadFactory()
+        {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r)
+            {
+                final Thread thread;
+                try
+                {
+                    thread = Threading.getThreadFactory().createThread(r);
+                }
+                catch (Exception e)
+                {
+                    throw new Error("Error creating shared I/O notifier thread", e);
+                }
+                thread.setDaemon(true);
+                thread.setName(String.format("SharedIoNotifier-%d", _count.incrementAndGet()));
+                return thread;
+            }
+        });
+        _notifier.allowCoreThreadTimeOut(true);
+    }
+
+    static SelectorThreadPool getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return the selector thread currently serving the fewest connections
+     */
+    SelectorThread nextSelectorThread()
+    {
+        SelectorThread selected = _selectorThreads[0];
+        for (int i = 1; i < _selectorThreads.length; i++)
+        {
+            if (_selectorThreads[i].getConnectionCount() < selected.getConnectionCount())
+            {
+                selected = _selectorThreads[i];
+            }
+        }
+        return selected;
+    }
+
+    Executor getNotifier()
+    {
+        return _notifier;
+    }
+
+    private static final class Holder
+    {
+        private static final SelectorThreadPool INSTANCE = new SelectorThreadPool(Math.max(1, SELECTOR_THREADS),
+                                                                               Math.max(1, NOTIFIER_THREADS));
+    }
+}
@@ -38,22 +38,26 @@ public class SSLBufferingSender implements Sender<ByteBuffer>
 
     private final Sender<ByteBuffer> delegate;
     private final SSLEngine engine;
-    private final int sslBufSize;
-    private final ByteBuffer netData;
+    private ByteBuffer netData;
     private final SSLStatus _sslStatus;
 
     private String _hostname;
 
     private final AtomicBoolean closed = new AtomicBoolean(false);
-    private ByteBuffer _appData = EMPTY_BYTE_BUFFER;
+
+    /**
+     * Plaintext accumulated since the last flush, in write mode.  Sized to hold a maximum size record, so that small
+     * sends are wrapped together into as few records as possible.
+     */
+    private ByteBuffer _appData;
 
 
     public SSLBufferingSender(SSLEngine engine, Sender<ByteBuffer> delegate, SSLStatus sslStatus)
     {
         this.engine = engine;
         this.delegate = delegate;
-        sslBufSize = engine.getSession().getPacketBufferSize();
-        netData = ByteBuffer.allocate(sslBufSize);
+        netData = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        _appData = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
         _sslStatus = sslStatus;
     }
 
@@ -104,37 +108,33 @@ public class SSLBufferingSender implements Sender<ByteBuffer>
 
     private void tearDownSSLConnection() throws Exception
     {
-        SSLEngineResult result = engine.wrap(ByteBuffer.allocate(0), netData);
+        SSLEngineResult result = engine.wrap(EMPTY_BYTE_BUFFER, netData);
         Status status = result.getStatus();
-        int read   = result.bytesProduced();
         while (status != Status.CLOSED)
         {
             if (status == Status.BUFFER_OVERFLOW)
             {
-                netData.clear();
+                growNetData();
             }
-            if(read > 0)
+            if(result.bytesProduced() > 0)
             {
-                int limit = netData.limit();
-                netData.limit(netData.position());
-                netData.position(netData.position() - read);
-
-                ByteBuffer data = netData.slice();
-
-                netData.limit(limit);
-                netData.position(netData.position() + read);
-
-                delegate.send(data);
-                flush();
+                sendNetData();
+                delegate.flush();
             }
-            result = engine.wrap(ByteBuffer.allocate(0), netData);
+            result = engine.wrap(EMPTY_BYTE_BUFFER, netData);
             status = result.getStatus();
-            read   = result.bytesProduced();
         }
     }
 
+    /**
+     * Wraps the plaintext accumulated since the last flush and flushes the resulting records to the network.
+     */
     public void flush()
     {
+        if(!closed.get())
+        {
+            doSend();
+        }
         delegate.flush();
     }
 
@@ -146,48 +146,62 @@ public class SSLBufferingSender implements Sender<ByteBuffer>
         }
     }
 
+    /**
+     * Buffers the given plaintext, which is wrapped once the buffer holds a maximum size record, or on flush.
+     */
     public synchronized void send(ByteBuffer appData)
     {
-        boolean buffered;
-        if(buffered = _appData.hasRemaining())
-        {
-            ByteBuffer newBuf = ByteBuffer.allocate(_appData.remaining()+appData.remaining());
-            newBuf.put(_appData);
-            newBuf.put(appData);
-            newBuf.flip();
-            _appData = newBuf;
-        }
         if (closed.get())
         {
             throw new SenderException("SSL Sender is closed");
         }
-        doSend();
-        if(!appData.hasRemaining())
+        while(appData.hasRemaining())
         {
-            _appData = EMPTY_BYTE_BUFFER;
-        }
-        else if(!buffered)
-        {
-            _appData = ByteBuffer.allocate(appData.remaining());
-            _appData.put(appData);
-            _appData.flip();
+            if(!_appData.hasRemaining())
+            {
+                doSend();
+                if(!_appData.hasRemaining())
+                {
+                    // nothing could be wrapped as the handshake is still in progress
+                    ByteBuffer newBuf = ByteBuffer.allocate(_appData.capacity() * 2);
+                    _appData.flip();
+                    newBuf.put(_appData);
+                    _appData = newBuf;
+                }
+            }
+
+            int length = Math.min(appData.remaining(), _appData.remaining());
+            ByteBuffer chunk = appData.duplicate();
+            chunk.limit(chunk.position() + length);
+            _appData.put(chunk);
+            appData.position(appData.position() + length);
         }
     }
 
     private synchronized void doSend()
     {
+        _appData.flip();
+        try
+        {
+            wrap();
+        }
+        finally
+        {
+            _appData.compact();
+        }
+    }
 
+    private void wrap()
+    {
         HandshakeStatus handshakeStatus;
         Status status;
 
         while((_appData.hasRemaining() || engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP)
               && !_sslStatus.getSslErrorFlag())
         {
-            int read = 0;
             try
             {
                 SSLEngineResult result = engine.wrap(_appData, netData);
-                read   = result.bytesProduced();
                 status = result.getStatus();
                 handshakeStatus = result.getHandshakeStatus();
             }
@@ -197,19 +211,7 @@ public class SSLBufferingSender implements Sender<ByteBuffer>
                 throw new SenderException("SSL, Error occurred while encrypting data",e);
             }
 
-            if(read > 0)
-            {
-                int limit = netData.limit();
-                netData.limit(netData.position());
-                netData.position(netData.position() - read);
-
-                ByteBuffer data = netData.slice();
-
-                netData.limit(limit);
-                netData.position(netData.position() + read);
-
-                delegate.send(data);
-            }
+            sendNetData();
 
             switch(status)
             {
@@ -217,7 +219,7 @@ public class SSLBufferingSender implements Sender<ByteBuffer>
                     throw new SenderException("SSLEngine is closed");
 
                 case BUFFER_OVERFLOW:
-                    netData.clear();
+                    growNetData();
                     continue;
 
                 case OK:
@@ -230,17 +232,14 @@ public class SSLBufferingSender implements Sender<ByteBuffer>
             switch (handshakeStatus)
             {
                 case NEED_WRAP:
-                    if (netData.hasRemaining())
-                    {
-                        continue;
-                    }
+                    continue;
 
                 case NEED_TASK:
                     doTasks();
                     break;
 
                 case NEED_UNWRAP:
-                    flush();
+                    delegate.flush();
                     return;
 
                 case FINISHED:
@@ -259,6 +258,29 @@ public class SSLBufferingSender implements Sender<ByteBuffer>
         }
     }
 
+    /**
+     * Passes the records produced into the network buffer to the delegate, which copies them, so that the buffer can
+     * be reused for the next wrap.
+     */
+    private void sendNetData()
+    {
+        if(netData.position() > 0)
+        {
+            netData.flip();
+            delegate.send(netData);
+            netData.clear();
+        }
+    }
+
+    private void growNetData()
+    {
+        int packetBufferSize = engine.getSession().getPacketBufferSize();
+        if(netData.capacity() < packetBufferSize)
+        {
+            netData = ByteBuffer.allocate(packetBufferSize);
+        }
+    }
+
     private void doTasks()
     {
         Runnable runnable;
@@ -37,13 +37,19 @@ public class SSLReceiver implements Receiver<ByteBuffer>
 {
     private static final Logger log = Logger.get(SSLReceiver.class);
 
+    private static final int RECORD_HEADER_LENGTH = 5;
+
     private final Receiver<ByteBuffer> delegate;
     private final SSLEngine engine;
     private final int sslBufSize;
-    private final ByteBuffer localBuffer;
     private final SSLStatus _sslStatus;
     private ByteBuffer appData;
-    private boolean dataCached = false;
+
+    /**
+     * Holds, in write mode, the start of a record which straddled the end of an earlier read.  Records are otherwise
+     * unwrapped in place from the buffers passed to {@link #received(ByteBuffer)}.
+     */
+    private ByteBuffer _partialRecord;
 
     private String _hostname;
 
@@ -53,7 +59,7 @@ public class SSLReceiver implements Receiver<ByteBuffer>
         this.delegate = delegate;
         this.sslBufSize = engine.getSession().getApplicationBufferSize();
         appData = ByteBuffer.allocate(sslBufSize);
-        localBuffer = ByteBuffer.allocate(sslBufSize);
+        _partialRecord = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
         _sslStatus = sslStatus;
     }
 
@@ -72,31 +78,94 @@ public class SSLReceiver implements Receiver<ByteBuffer>
         delegate.exception(t);
     }
 
-    private ByteBuffer addPreviouslyUnreadData(ByteBuffer buf)
+    public void received(ByteBuffer buf)
     {
-        if (dataCached)
+        while (_partialRecord.position() != 0)
         {
-            ByteBuffer b = ByteBuffer.allocate(localBuffer.remaining() + buf.remaining());
-            b.put(localBuffer);
-            b.put(buf);
-            b.flip();
-            dataCached = false;
-            return b;
+            // complete the held record from the new data, copying no more than the record needs
+            int length = Math.min(buf.remaining(), getPartialRecordShortfall());
+            ByteBuffer chunk = buf.duplicate();
+            chunk.limit(chunk.position() + length);
+            _partialRecord.put(chunk);
+            buf.position(buf.position() + length);
+
+            _partialRecord.flip();
+            boolean closed;
+            try
+            {
+                closed = unwrap(_partialRecord);
+            }
+            finally
+            {
+                _partialRecord.compact();
+            }
+
+            if (closed || !buf.hasRemaining())
+            {
+                return;
+            }
         }
-        else
+
+        if (!unwrap(buf) && buf.hasRemaining())
         {
-            return buf;
+            ensurePartialRecordCapacity(buf.remaining());
+            _partialRecord.put(buf);
         }
     }
 
-    public void received(ByteBuffer buf)
+    private void ensurePartialRecordCapacity(int required)
+    {
+        if (_partialRecord.remaining() < required)
+        {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(_partialRecord.position() + required,
+                                                             _partialRecord.capacity() * 2));
+            _partialRecord.flip();
+            larger.put(_partialRecord);
+            _partialRecord = larger;
+        }
+    }
+
+    /**
+     * @return the number of bytes needed to complete the record held in the partial record buffer, or the space left
+     * in the buffer if that cannot be determined from a TLS record header
+     */
+    private int getPartialRecordShortfall()
     {
-        ByteBuffer netData = addPreviouslyUnreadData(buf);
+        int held = _partialRecord.position();
+        if (held < RECORD_HEADER_LENGTH)
+        {
+            return RECORD_HEADER_LENGTH - held;
+        }
+
+        int contentType = _partialRecord.get(0) & 0xff;
+        int majorVersion = _partialRecord.get(1) & 0xff;
+        if (contentType >= 20 && contentType <= 23 && majorVersion == 3)
+        {
+            int recordLength = RECORD_HEADER_LENGTH
+                               + (((_partialRecord.get(3) & 0xff) << 8) | (_partialRecord.get(4) & 0xff));
+            if (recordLength > held)
+            {
+                ensurePartialRecordCapacity(recordLength - held);
+                return recordLength - held;
+            }
+        }
 
+        ensurePartialRecordCapacity(1);
+        return _partialRecord.remaining();
+    }
+
+    /**
+     * Unwraps as many complete records as possible from the given buffer, leaving any incomplete record unread.
+     *
+     * @return true if the engine has closed
+     */
+    private boolean unwrap(ByteBuffer netData)
+    {
         HandshakeStatus handshakeStatus;
         Status status;
+        boolean underflow = false;
 
-        while (netData.hasRemaining())
+        while (netData.hasRemaining() && !underflow)
         {
             try
             {
@@ -132,17 +201,15 @@ public class SSLReceiver implements Receiver<ByteBuffer>
                         {
                             _sslStatus.getSslLock().notifyAll();
                         }
-                        return;
+                        return true;
 
                     case BUFFER_OVERFLOW:
+                        // slices of the application buffer may still be held by the delegate, so it is not reused
                         appData = ByteBuffer.allocate(sslBufSize);
                         continue;
 
                     case BUFFER_UNDERFLOW:
-                        localBuffer.clear();
-                        localBuffer.put(netData);
-                        localBuffer.flip();
-                        dataCached = true;
+                        underflow = true;
                         break;
 
                     case OK:
@@ -200,6 +267,7 @@ public class SSLReceiver implements Receiver<ByteBuffer>
             }
 
         }
+        return false;
     }
 
     private void doTasks()
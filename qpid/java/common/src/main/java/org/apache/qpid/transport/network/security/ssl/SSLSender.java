@@ -35,11 +35,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class SSLSender implements Sender<ByteBuffer>
 {
     private static final Logger log = Logger.get(SSLSender.class);
+    private static final ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.allocate(0);
 
     private final Sender<ByteBuffer> delegate;
     private final SSLEngine engine;
-    private final int sslBufSize;
-    private final ByteBuffer netData;
+    private ByteBuffer netData;
     private final long timeout;
     private final SSLStatus _sslStatus;
 
@@ -47,13 +47,19 @@ public class SSLSender implements Sender<ByteBuffer>
 
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
+    /**
+     * Plaintext accumulated since the last flush, in write mode.  Sized to hold a maximum size record, so that small
+     * sends are wrapped together into as few records as possible.
+     */
+    private final ByteBuffer appBuffer;
+
 
     public SSLSender(SSLEngine engine, Sender<ByteBuffer> delegate, SSLStatus sslStatus)
     {
         this.engine = engine;
         this.delegate = delegate;
-        sslBufSize = engine.getSession().getPacketBufferSize();
-        netData = ByteBuffer.allocate(sslBufSize);
+        netData = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        appBuffer = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
         timeout = Long.getLong("qpid.ssl_timeout", 60000);
         _sslStatus = sslStatus;
     }
@@ -73,6 +79,7 @@ public class SSLSender implements Sender<ByteBuffer>
             }
             log.debug("Closing SSL connection");
 
+            wrapBuffered();
             engine.closeOutbound();
             try
             {
@@ -105,57 +112,81 @@ public class SSLSender implements Sender<ByteBuffer>
 
     private void tearDownSSLConnection() throws Exception
     {
-        SSLEngineResult result = engine.wrap(ByteBuffer.allocate(0), netData);
+        SSLEngineResult result = engine.wrap(EMPTY_BYTE_BUFFER, netData);
         Status status = result.getStatus();
-        int read   = result.bytesProduced();
         while (status != Status.CLOSED)
         {
             if (status == Status.BUFFER_OVERFLOW)
             {
-                netData.clear();
+                growNetData();
             }
-            if(read > 0)
+            if(result.bytesProduced() > 0)
             {
-                int limit = netData.limit();
-                netData.limit(netData.position());
-                netData.position(netData.position() - read);
-
-                ByteBuffer data = netData.slice();
-
-                netData.limit(limit);
-                netData.position(netData.position() + read);
-
-                delegate.send(data);
-                flush();
+                sendNetData();
+                delegate.flush();
             }
-            result = engine.wrap(ByteBuffer.allocate(0), netData);
+            result = engine.wrap(EMPTY_BYTE_BUFFER, netData);
             status = result.getStatus();
-            read   = result.bytesProduced();
         }
     }
 
+    /**
+     * Wraps the plaintext accumulated since the last flush and flushes the resulting records to the network.
+     */
     public void flush()
     {
+        wrapBuffered();
         delegate.flush();
     }
 
-    public void send(ByteBuffer appData)
+    /**
+     * Buffers the given plaintext, which is wrapped once the buffer holds a maximum size record, or on flush.
+     */
+    public synchronized void send(ByteBuffer appData)
     {
         if (closed.get() && !_sslStatus.getSslErrorFlag())
         {
             throw new SenderException("SSL Sender is closed");
         }
 
+        while(appData.hasRemaining() && !_sslStatus.getSslErrorFlag())
+        {
+            if(!appBuffer.hasRemaining())
+            {
+                wrapBuffered();
+            }
+
+            int length = Math.min(appData.remaining(), appBuffer.remaining());
+            ByteBuffer chunk = appData.duplicate();
+            chunk.limit(chunk.position() + length);
+            appBuffer.put(chunk);
+            appData.position(appData.position() + length);
+        }
+    }
+
+    private synchronized void wrapBuffered()
+    {
+        appBuffer.flip();
+        try
+        {
+            wrap(appBuffer);
+        }
+        finally
+        {
+            appBuffer.compact();
+        }
+    }
+
+    private void wrap(ByteBuffer appData)
+    {
         HandshakeStatus handshakeStatus;
         Status status;
 
         while(appData.hasRemaining() && !_sslStatus.getSslErrorFlag())
         {
-            int read = 0;
             try
             {
                 SSLEngineResult result = engine.wrap(appData, netData);
-                read   = result.bytesProduced();
                 status = result.getStatus();
                 handshakeStatus = result.getHandshakeStatus();
             }
@@ -165,19 +196,7 @@ public class SSLSender implements Sender<ByteBuffer>
                 throw new SenderException("SSL, Error occurred while encrypting data",e);
             }
 
-            if(read > 0)
-            {
-                int limit = netData.limit();
-                netData.limit(netData.position());
-                netData.position(netData.position() - read);
-
-                ByteBuffer data = netData.slice();
-
-                netData.limit(limit);
-                netData.position(netData.position() + read);
-
-                delegate.send(data);
-            }
+            sendNetData();
 
             switch(status)
             {
@@ -185,7 +204,7 @@ public class SSLSender implements Sender<ByteBuffer>
                     throw new SenderException("SSLEngine is closed");
 
                 case BUFFER_OVERFLOW:
-                    netData.clear();
+                    growNetData();
                     continue;
 
                 case OK:
@@ -198,17 +217,14 @@ public class SSLSender implements Sender<ByteBuffer>
             switch (handshakeStatus)
             {
                 case NEED_WRAP:
-                    if (netData.hasRemaining())
-                    {
-                        continue;
-                    }
+                    continue;
 
                 case NEED_TASK:
                     doTasks();
                     break;
 
                 case NEED_UNWRAP:
-                    flush();
+                    delegate.flush();
                     synchronized(_sslStatus.getSslLock())
                     {
                         if (_sslStatus.getSslErrorFlag())
@@ -256,6 +272,29 @@ public class SSLSender implements Sender<ByteBuffer>
         }
     }
 
+    /**
+     * Passes the records produced into the network buffer to the delegate, which copies them, so that the buffer can
+     * be reused for the next wrap.
+     */
+    private void sendNetData()
+    {
+        if(netData.position() > 0)
+        {
+            netData.flip();
+            delegate.send(netData);
+            netData.clear();
+        }
+    }
+
+    private void growNetData()
+    {
+        int packetBufferSize = engine.getSession().getPacketBufferSize();
+        if(netData.capacity() < packetBufferSize)
+        {
+            netData = ByteBuffer.allocate(packetBufferSize);
+        }
+    }
+
     private void doTasks()
     {
         Runnable runnable;
@@ -0,0 +1,147 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.vm;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.net.ssl.SSLContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.protocol.ProtocolEngine;
+import org.apache.qpid.protocol.ProtocolEngineFactory;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.NetworkTransportConfiguration;
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.network.IncomingNetworkTransport;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
+import org.apache.qpid.transport.network.TransportActivity;
+
+/**
+ * A transport connecting a client to a broker running in the same JVM.  A broker accepts in-VM connections on a
+ * port number, which is only a key into the in-VM registry and is never bound to a socket; a client connects with
+ * the {@code vm} transport in its broker URL, e.g. {@code vm://:5672}.
+ * <p>
+ * Each connection is a {@link VmPipe}: the bytes flushed by one end are handed to the receiver of the other by the
+ * flushing thread, so no sockets, selectors, or reader or sender threads are used.
+ */
+public class VmNetworkTransport implements OutgoingNetworkTransport, IncomingNetworkTransport
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(VmNetworkTransport.class);
+
+    private static final ConcurrentMap<Integer, VmNetworkTransport> ACCEPTING_TRANSPORTS =
+            new ConcurrentHashMap<Integer, VmNetworkTransport>();
+
+    private NetworkConnection _connection;
+    private volatile ProtocolEngineFactory _factory;
+    private volatile int _acceptingPort = -1;
+
+    @Override
+    public NetworkConnection connect(final ConnectionSettings settings,
+                                     final Receiver<ByteBuffer> delegate,
+                                     final TransportActivity transportActivity)
+    {
+        final int port = settings.getPort();
+        final VmNetworkTransport acceptor = ACCEPTING_TRANSPORTS.get(port);
+        final ProtocolEngineFactory factory = acceptor == null ? null : acceptor._factory;
+        if (factory == null)
+        {
+            throw new TransportException("Error connecting to broker: no broker is accepting in-VM connections on port "
+                                         + port);
+        }
+
+        final InetSocketAddress brokerAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        final InetSocketAddress clientAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+        final ProtocolEngine engine = factory.newProtocolEngine(clientAddress);
+        if (engine == null)
+        {
+            throw new TransportException("Error connecting to broker: in-VM connection on port " + port
+                                         + " was refused");
+        }
+
+        final VmPipe pipe = new VmPipe(clientAddress, brokerAddress);
+        final VmPipe.End brokerEnd = pipe.getServerEnd();
+        brokerEnd.setReceiver(engine);
+        pipe.getClientEnd().setReceiver(delegate);
+
+        engine.setNetworkConnection(brokerEnd, brokerEnd.getSender());
+        pipe.start();
+
+        if (LOGGER.isDebugEnabled())
+        {
+            LOGGER.debug("Opened in-VM connection to port " + port);
+        }
+
+        _connection = pipe.getClientEnd();
+        return _connection;
+    }
+
+    @Override
+    public NetworkConnection getConnection()
+    {
+        return _connection;
+    }
+
+    @Override
+    public void accept(final NetworkTransportConfiguration config,
+                       final ProtocolEngineFactory factory,
+                       final SSLContext sslContext)
+    {
+        final int port = config.getAddress().getPort();
+        _factory = factory;
+        if (ACCEPTING_TRANSPORTS.putIfAbsent(port, this) != null)
+        {
+            _factory = null;
+            throw new TransportException("Failed to start AMQP on port : " + config
+                                         + ": in-VM port " + port + " is already in use");
+        }
+        _acceptingPort = port;
+    }
+
+    @Override
+    public int getAcceptingPort()
+    {
+        return _acceptingPort;
+    }
+
+    @Override
+    public void close()
+    {
+        if (_connection != null)
+        {
+            _connection.close();
+        }
+        if (_acceptingPort != -1)
+        {
+            ACCEPTING_TRANSPORTS.remove(_acceptingPort, this);
+            _factory = null;
+            _acceptingPort = -1;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.vm;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.Sender;
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.network.NetworkConnection;
+
+/**
+ * A pair of connected in-memory ends.  Bytes sent by one end are held by it until it is flushed, or until more than
+ * {@link #DELIVERY_THRESHOLD} bytes are waiting, and are then queued for the other end.
+ * <p>
+ * The pipe has no threads of its own: the flushing thread hands the bytes queued for the other end to its receiver,
+ * in order, unless another thread is already doing so, in which case that thread delivers them once it has finished
+ * with the bytes before them.  A receiver is therefore never re-entered, and a receiver replying to the other end
+ * delivers the reply itself, whereupon a further reply back is left to the delivery already under way.  A thread
+ * flushing to an end which has more than {@link #BUFFER_SIZE} bytes queued waits for its delivery to catch up, unless
+ * it is delivering to either end itself, so that two receivers replying to each other cannot deadlock.  There is no
+ * idle timeout or heartbeat: an in-VM connection cannot be lost without one of its ends closing it.
+ */
+class VmPipe
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(VmPipe.class);
+
+    static final int DELIVERY_THRESHOLD = Integer.getInteger("qpid.transport.vm.delivery_threshold", 65536);
+    static final int BUFFER_SIZE = Integer.getInteger("qpid.transport.vm.buffer_size", 1024 * 1024);
+
+    private final AtomicBoolean _closed = new AtomicBoolean();
+    private final End _clientEnd;
+    private final End _serverEnd;
+
+    VmPipe(final SocketAddress clientAddress, final SocketAddress serverAddress)
+    {
+        _clientEnd = new End(clientAddress, serverAddress);
+        _serverEnd = new End(serverAddress, clientAddress);
+        _clientEnd._peer = _serverEnd;
+        _serverEnd._peer = _clientEnd;
+    }
+
+    End getClientEnd()
+    {
+        return _clientEnd;
+    }
+
+    End getServerEnd()
+    {
+        return _serverEnd;
+    }
+
+    /**
+     * Starts delivery to both ends, which must have been given their receivers.  Bytes flushed before now are
+     * delivered by the calling thread.
+     */
+    void start()
+    {
+        _serverEnd.startDelivery();
+        _clientEnd.startDelivery();
+    }
+
+    boolean isClosed()
+    {
+        return _closed.get();
+    }
+
+    private void close()
+    {
+        // bytes sent before the close are still delivered ahead of it
+        _serverEnd.flush(false);
+        _clientEnd.flush(false);
+        if (_closed.compareAndSet(false, true))
+        {
+            _serverEnd.wakeUp();
+            _clientEnd.wakeUp();
+            _serverEnd.deliver();
+            _clientEnd.deliver();
+        }
+    }
+
+    private boolean isDeliveringThread()
+    {
+        final Thread current = Thread.currentThread();
+        return current == _serverEnd._deliveringThread.get() || current == _clientEnd._deliveringThread.get();
+    }
+
+    class End implements NetworkConnection, Sender<ByteBuffer>
+    {
+        private final Object _inboundLock = new Object();
+        private final Queue<ByteBuffer> _inbound = new ArrayDeque<ByteBuffer>();
+        private int _inboundBytes;
+        private final List<ByteBuffer> _outbound = new ArrayList<ByteBuffer>();
+        private int _outboundBytes;
+        private final SocketAddress _localAddress;
+        private final SocketAddress _remoteAddress;
+        private End _peer;
+        private volatile Receiver<ByteBuffer> _receiver;
+        private volatile boolean _started;
+        private final AtomicReference<Thread> _deliveringThread = new AtomicReference<Thread>();
+        private boolean _receiverFailed;
+        private volatile boolean _closedNotified;
+        private int _maxReadIdle;
+        private int _maxWriteIdle;
+
+        private End(final SocketAddress localAddress, final SocketAddress remoteAddress)
+        {
+            _localAddress = localAddress;
+            _remoteAddress = remoteAddress;
+        }
+
+        void setReceiver(final Receiver<ByteBuffer> receiver)
+        {
+            _receiver = receiver;
+        }
+
+        private void startDelivery()
+        {
+            _started = true;
+            deliver();
+        }
+
+        @Override
+        public Sender<ByteBuffer> getSender()
+        {
+            return this;
+        }
+
+        @Override
+        public void start()
+        {
+        }
+
+        @Override
+        public void setIdleTimeout(final int i)
+        {
+        }
+
+        @Override
+        public void send(final ByteBuffer msg)
+        {
+            if (_closed.get())
+            {
+                throw new SenderClosedException("in-VM connection to " + _remoteAddress + " is closed");
+            }
+
+            // the caller may reuse its buffer once send returns
+            final ByteBuffer copy = ByteBuffer.allocate(msg.remaining());
+            copy.put(msg.duplicate());
+            copy.flip();
+
+            final boolean flush;
+            synchronized (_outbound)
+            {
+                _outbound.add(copy);
+                _outboundBytes += copy.remaining();
+                flush = _outboundBytes > DELIVERY_THRESHOLD;
+            }
+            if (flush)
+            {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush()
+        {
+            flush(!isDeliveringThread());
+        }
+
+        private void flush(final boolean awaitSpace)
+        {
+            if (awaitSpace)
+            {
+                _peer.awaitSpace();
+            }
+            synchronized (_outbound)
+            {
+                if (!_outbound.isEmpty())
+                {
+                    _peer.enqueue(_outbound, _outboundBytes);
+                    _outbound.clear();
+                    _outboundBytes = 0;
+                }
+            }
+            _peer.deliver();
+        }
+
+        @Override
+        public void close()
+        {
+            VmPipe.this.close();
+        }
+
+        private void awaitSpace()
+        {
+            synchronized (_inboundLock)
+            {
+                while (_inboundBytes > BUFFER_SIZE && !_closed.get())
+                {
+                    try
+                    {
+                        _inboundLock.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void enqueue(final List<ByteBuffer> buffers, final int bytes)
+        {
+            synchronized (_inboundLock)
+            {
+                _inbound.addAll(buffers);
+                _inboundBytes += bytes;
+                _inboundLock.notifyAll();
+            }
+        }
+
+        private void wakeUp()
+        {
+            synchronized (_inboundLock)
+            {
+                _inboundLock.notifyAll();
+            }
+        }
+
+        /**
+         * Hands the bytes queued for this end to its receiver, followed by the notification of closure once the pipe
+         * is closed, unless another thread is already doing so.
+         */
+        private void deliver()
+        {
+            final Thread current = Thread.currentThread();
+            while (_started && hasUndelivered() && _deliveringThread.compareAndSet(null, current))
+            {
+                try
+                {
+                    final Receiver<ByteBuffer> receiver = _receiver;
+                    ByteBuffer buf;
+                    while ((buf = takeInbound()) != null)
+                    {
+                        if (!_receiverFailed)
+                        {
+                            try
+                            {
+                                receiver.received(buf);
+                            }
+                            catch (RuntimeException e)
+                            {
+                                LOGGER.info("Exception receiving from in-VM connection to " + _remoteAddress, e);
+                                _receiverFailed = true;
+                                receiver.exception(e);
+                                VmPipe.this.close();
+                            }
+                        }
+                    }
+
+                    if (_closed.get() && !_closedNotified)
+                    {
+                        _closedNotified = true;
+                        VmPipe.this.close();
+                        receiver.closed();
+                    }
+                }
+                finally
+                {
+                    _deliveringThread.set(null);
+                }
+            }
+        }
+
+        private boolean hasUndelivered()
+        {
+            synchronized (_inboundLock)
+            {
+                return !_inbound.isEmpty() || (_closed.get() && !_closedNotified);
+            }
+        }
+
+        /**
+         * @return the next buffer queued for this end, or null if there is none
+         */
+        private ByteBuffer takeInbound()
+        {
+            synchronized (_inboundLock)
+            {
+                final ByteBuffer buf = _inbound.poll();
+                if (buf != null)
+                {
+                    _inboundBytes -= buf.remaining();
+                    _inboundLock.notifyAll();
+                }
+                return buf;
+            }
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress()
+        {
+            return _remoteAddress;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress()
+        {
+            return _localAddress;
+        }
+
+        @Override
+        public void setMaxWriteIdle(final int sec)
+        {
+            _maxWriteIdle = sec;
+        }
+
+        @Override
+        public void setMaxReadIdle(final int sec)
+        {
+            _maxReadIdle = sec;
+        }
+
+        @Override
+        public Principal getPeerPrincipal()
+        {
+            return null;
+        }
+
+        @Override
+        public int getMaxReadIdle()
+        {
+            return _maxReadIdle;
+        }
+
+        @Override
+        public int getMaxWriteIdle()
+        {
+            return _maxWriteIdle;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "VmPipe.End[local=" + _localAddress + ", remote=" + _remoteAddress + "]";
+        }
+    }
+}
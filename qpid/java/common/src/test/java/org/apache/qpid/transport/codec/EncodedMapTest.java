@@ -0,0 +1,248 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class EncodedMapTest extends QpidTestCase
+{
+    private Map<String,Object> _original;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _original = new LinkedHashMap<String,Object>();
+        _original.put("string", "value");
+        _original.put("int", 42);
+        _original.put("long", 4242L);
+        _original.put("nested", Collections.<String,Object>singletonMap("inner", true));
+        _original.put("list", Arrays.<Object>asList("a", 1));
+        _original.put("void", null);
+        _original.put("last", 1.5d);
+    }
+
+    public void testReadMapEntry()
+    {
+        assertEquals(4242L, decoder(_original).readMapEntry("long").getValue());
+        assertEquals(1.5d, decoder(_original).readMapEntry("last").getValue());
+        assertEquals(_original.get("nested"), decoder(_original).readMapEntry("nested").getValue());
+        assertNull(decoder(_original).readMapEntry("missing"));
+
+        Map.Entry<String,Object> entry = decoder(_original).readMapEntry("void");
+        assertNotNull(entry);
+        assertNull(entry.getValue());
+    }
+
+    public void testReadMapEntryConsumesMap()
+    {
+        BBEncoder enc = new BBEncoder(256);
+        enc.writeMap(_original);
+        enc.writeStr8("after");
+        BBDecoder dec = decoder(enc);
+
+        assertEquals("value", dec.readMapEntry("string").getValue());
+        assertEquals("after", dec.readStr8());
+    }
+
+    public void testLookupWithoutDecoding()
+    {
+        EncodedMap map = (EncodedMap) decoder(_original).readEncodedMap();
+
+        assertEquals("value", map.get("string"));
+        assertEquals(42, map.get("int"));
+        assertTrue(map.containsKey("void"));
+        assertNull(map.get("void"));
+        assertFalse(map.containsKey("missing"));
+        assertNull(map.get("missing"));
+        assertFalse(map.isEmpty());
+        assertFalse(map.isDecoded());
+
+        assertEquals(_original, map);
+        assertTrue(map.isDecoded());
+    }
+
+    public void testModification()
+    {
+        Map<String,Object> map = decoder(_original).readEncodedMap();
+        map.remove("string");
+        map.put("added", "new");
+
+        Map<String,Object> reread = decoder(map).readMap();
+        assertFalse(reread.containsKey("string"));
+        assertEquals("new", reread.get("added"));
+        assertEquals(_original.size(), reread.size());
+    }
+
+    public void testWriteUndecoded()
+    {
+        Map<String,Object> map = decoder(_original).readEncodedMap();
+        map.get("int");
+
+        assertEquals(_original, decoder(map).readMap());
+    }
+
+    public void testSameValueInstanceHandedOutPerKey()
+    {
+        Map<String,Object> map = decoder(_original).readEncodedMap();
+
+        Object nested = map.get("nested");
+        assertSame(nested, map.get("nested"));
+        for (Map.Entry<String,Object> entry : map.entrySet())
+        {
+            if (entry.getKey().equals("nested"))
+            {
+                assertSame(nested, entry.getValue());
+            }
+        }
+        assertSame(nested, map.get("nested"));
+    }
+
+    public void testModificationThroughEntrySet()
+    {
+        Map<String,Object> map = decoder(_original).readEncodedMap();
+
+        Iterator<Map.Entry<String,Object>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<String,Object> entry = iterator.next();
+            if (entry.getKey().equals("string"))
+            {
+                iterator.remove();
+            }
+            else if (entry.getKey().equals("int"))
+            {
+                entry.setValue(43);
+            }
+        }
+
+        Map<String,Object> reread = decoder(map).readMap();
+        assertFalse(reread.containsKey("string"));
+        assertEquals(43, reread.get("int"));
+        assertEquals(_original.size() - 1, reread.size());
+    }
+
+    public void testWriteAfterNestedValueChangedInPlace()
+    {
+        Map<String,Object> map = decoder(_original).readEncodedMap();
+        ((Map<String,Object>) map.get("nested")).put("added", "new");
+
+        Map<String,Object> reread = decoder(map).readMap();
+        assertEquals("new", ((Map<String,Object>) reread.get("nested")).get("added"));
+    }
+
+    public void testConcurrentReaders() throws Exception
+    {
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            for (int i = 0; i < 200; i++)
+            {
+                final Map<String,Object> map = decoder(_original).readEncodedMap();
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<Object>> results = new ArrayList<Future<Object>>();
+                for (int t = 0; t < threads; t++)
+                {
+                    final boolean iterate = t % 2 == 0;
+                    results.add(executor.submit(new Callable<Object>()
+                    {
+                        @Override
+                        public Object call() throws Exception
+                        {
+                            start.await();
+                            Object nested = null;
+                            if (iterate)
+                            {
+                                assertEquals(_original, new LinkedHashMap<String,Object>(map));
+                                for (Map.Entry<String,Object> entry : map.entrySet())
+                                {
+                                    if (entry.getKey().equals("nested"))
+                                    {
+                                        nested = entry.getValue();
+                                    }
+                                }
+                            }
+                            else
+                            {
+                                assertEquals("value", map.get("string"));
+                                assertTrue(map.containsKey("void"));
+                                assertFalse(map.containsKey("missing"));
+                                nested = map.get("nested");
+                            }
+                            return nested;
+                        }
+                    }));
+                }
+                start.countDown();
+
+                Object nested = results.get(0).get(10, TimeUnit.SECONDS);
+                assertEquals(_original.get("nested"), nested);
+                for (Future<Object> result : results)
+                {
+                    assertSame("Different instances handed out for the same key", nested,
+                               result.get(10, TimeUnit.SECONDS));
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testEmptyAndNullMaps()
+    {
+        assertTrue(decoder(Collections.<String,Object>emptyMap()).readEncodedMap().isEmpty());
+        assertNull(decoder((Map<String,Object>) null).readEncodedMap());
+        assertNull(decoder((Map<String,Object>) null).readMapEntry("string"));
+    }
+
+    private BBDecoder decoder(Map<String,Object> map)
+    {
+        BBEncoder enc = new BBEncoder(256);
+        enc.writeMap(map);
+        return decoder(enc);
+    }
+
+    private BBDecoder decoder(BBEncoder enc)
+    {
+        ByteBuffer buf = enc.buffer();
+        BBDecoder dec = new BBDecoder();
+        dec.init(buf);
+        return dec;
+    }
+}
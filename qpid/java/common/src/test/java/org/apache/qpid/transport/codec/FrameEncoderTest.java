@@ -0,0 +1,217 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.codec;
+
+import static org.apache.qpid.transport.network.Frame.FIRST_FRAME;
+import static org.apache.qpid.transport.network.Frame.FIRST_SEG;
+import static org.apache.qpid.transport.network.Frame.HEADER_SIZE;
+import static org.apache.qpid.transport.network.Frame.LAST_FRAME;
+import static org.apache.qpid.transport.network.Frame.LAST_SEG;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.qpid.transport.DeliveryProperties;
+import org.apache.qpid.transport.Header;
+import org.apache.qpid.transport.MessageAcceptMode;
+import org.apache.qpid.transport.MessageAcquireMode;
+import org.apache.qpid.transport.MessageProperties;
+import org.apache.qpid.transport.MessageTransfer;
+import org.apache.qpid.transport.ProtocolEvent;
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.Sender;
+import org.apache.qpid.transport.network.Assembler;
+import org.apache.qpid.transport.network.Disassembler;
+import org.apache.qpid.transport.network.InputHandler;
+
+public class FrameEncoderTest extends TestCase
+{
+    public void testSegmentSplitIntoFrames()
+    {
+        FrameEncoder enc = new FrameEncoder(16);
+        enc.beginSegment();
+        for (int i = 0; i < 25; i++)
+        {
+            enc.writeUint8((short) i);
+        }
+        enc.endSegment(FIRST_SEG, (byte) 2, (byte) 1, 7, 10);
+
+        CapturingSender sender = new CapturingSender();
+        enc.flushTo(sender);
+        ByteBuffer buf = sender.getBytes();
+
+        assertEquals("Unexpected encoded length", 25 + 3 * HEADER_SIZE, buf.remaining());
+
+        int expected = 0;
+        int[] sizes = { 10, 10, 5 };
+        for (int frame = 0; frame < sizes.length; frame++)
+        {
+            byte flags = FIRST_SEG;
+            if (frame == 0)
+            {
+                flags |= FIRST_FRAME;
+            }
+            if (frame == sizes.length - 1)
+            {
+                flags |= LAST_FRAME;
+            }
+            assertEquals("Unexpected flags for frame " + frame, flags, buf.get());
+            assertEquals("Unexpected type for frame " + frame, 2, buf.get());
+            assertEquals("Unexpected size for frame " + frame, sizes[frame] + HEADER_SIZE, buf.getShort());
+            assertEquals(0, buf.get());
+            assertEquals("Unexpected track for frame " + frame, 1, buf.get());
+            assertEquals("Unexpected channel for frame " + frame, 7, buf.getShort());
+            assertEquals(0, buf.getInt());
+            for (int i = 0; i < sizes[frame]; i++)
+            {
+                assertEquals("Unexpected payload byte", expected++, buf.get());
+            }
+        }
+    }
+
+    public void testEncoderReusedAfterFlush()
+    {
+        FrameEncoder enc = new FrameEncoder(64);
+        CapturingSender sender = new CapturingSender();
+
+        enc.beginSegment();
+        enc.writeUint32(0xCAFEBABEL);
+        enc.endSegment((byte) (FIRST_SEG | LAST_SEG), (byte) 1, (byte) 0, 0, 100);
+        enc.flushTo(sender);
+        assertEquals(0, enc.position());
+
+        enc.beginSegment();
+        enc.writeUint16(0xBEEF);
+        enc.endSegment((byte) (FIRST_SEG | LAST_SEG), (byte) 1, (byte) 0, 0, 100);
+        enc.flushTo(sender);
+
+        ByteBuffer buf = sender.getBytes();
+        assertEquals(2 * HEADER_SIZE + 6, buf.remaining());
+        assertEquals(0xCAFEBABE, buf.getInt(HEADER_SIZE));
+        assertEquals((short) 0xBEEF, buf.getShort(HEADER_SIZE + 4 + HEADER_SIZE));
+        assertEquals("Capacity should not change", 64, enc.capacity());
+    }
+
+    public void testDisassembledTransferReassembles()
+    {
+        final int maxFrame = 256;
+        char[] longValue = new char[400];
+        Arrays.fill(longValue, 'x');
+        byte[] body = new byte[1000];
+        for (int i = 0; i < body.length; i++)
+        {
+            body[i] = (byte) i;
+        }
+
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setApplicationHeaders(Collections.<String, Object>singletonMap("long", new String(longValue)));
+        DeliveryProperties deliveryProperties = new DeliveryProperties();
+        deliveryProperties.setRoutingKey("routingKey");
+        MessageTransfer transfer = new MessageTransfer("destination",
+                                                       MessageAcceptMode.NONE,
+                                                       MessageAcquireMode.PRE_ACQUIRED,
+                                                       new Header(deliveryProperties, messageProperties),
+                                                       ByteBuffer.wrap(body));
+
+        CapturingSender sender = new CapturingSender();
+        Disassembler disassembler = new Disassembler(sender, maxFrame);
+        disassembler.send(transfer);
+        assertEquals("Body buffer position should be unchanged", 0, transfer.getBodyBuffer().position());
+
+        CapturingReceiver receiver = new CapturingReceiver();
+        InputHandler inputHandler = new InputHandler(new Assembler(receiver), InputHandler.State.FRAME_HDR);
+        inputHandler.setMaxFrameSize(maxFrame);
+        inputHandler.received(sender.getBytes());
+
+        assertEquals("Unexpected number of events", 1, receiver.getEvents().size());
+        MessageTransfer received = (MessageTransfer) receiver.getEvents().get(0);
+        assertEquals("destination", received.getDestination());
+        assertEquals("routingKey", received.getHeader().getDeliveryProperties().getRoutingKey());
+        assertEquals(new String(longValue),
+                     received.getHeader().getMessageProperties().getApplicationHeaders().get("long"));
+        assertTrue("Unexpected body", Arrays.equals(body, received.getBodyBytes()));
+    }
+
+    private static class CapturingSender implements Sender<ByteBuffer>
+    {
+        private ByteBuffer _bytes = ByteBuffer.allocate(4096);
+
+        @Override
+        public void setIdleTimeout(final int i)
+        {
+        }
+
+        @Override
+        public void send(final ByteBuffer msg)
+        {
+            _bytes.put(msg);
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        ByteBuffer getBytes()
+        {
+            ByteBuffer bytes = _bytes.duplicate();
+            bytes.flip();
+            return bytes;
+        }
+    }
+
+    private static class CapturingReceiver implements Receiver<ProtocolEvent>
+    {
+        private final List<ProtocolEvent> _events = new ArrayList<ProtocolEvent>();
+
+        @Override
+        public void received(final ProtocolEvent msg)
+        {
+            _events.add(msg);
+        }
+
+        @Override
+        public void exception(final Throwable t)
+        {
+            throw new RuntimeException(t);
+        }
+
+        @Override
+        public void closed()
+        {
+        }
+
+        List<ProtocolEvent> getEvents()
+        {
+            return _events;
+        }
+    }
+}
@@ -33,6 +33,8 @@ import org.apache.qpid.transport.NetworkTransportConfiguration;
 import org.apache.qpid.transport.Receiver;
 import org.apache.qpid.transport.TransportException;
 import org.apache.qpid.transport.network.io.IoNetworkTransport;
+import org.apache.qpid.transport.network.nio.NioNetworkTransport;
+import org.apache.qpid.transport.network.vm.VmNetworkTransport;
 
 public class TransportTest extends QpidTestCase
 {
@@ -71,6 +73,39 @@ public class TransportTest extends QpidTestCase
         assertTrue(networkTransport instanceof IoNetworkTransport);
     }
 
+    public void testGetOutgoingTransportForVmProtocol() throws Exception
+    {
+        final ConnectionSettings settings = new ConnectionSettings();
+        settings.setProtocol(Transport.VM);
+
+        final OutgoingNetworkTransport networkTransport =
+                Transport.getOutgoingTransportInstance(ProtocolVersion.v0_10, settings);
+        assertNotNull(networkTransport);
+        assertTrue(networkTransport instanceof VmNetworkTransport);
+    }
+
+    public void testGetOutgoingTransportForSharedIo() throws Exception
+    {
+        final ConnectionSettings settings = new ConnectionSettings();
+        settings.setSharedIo(true);
+
+        final OutgoingNetworkTransport networkTransport =
+                Transport.getOutgoingTransportInstance(ProtocolVersion.v0_10, settings);
+        assertNotNull(networkTransport);
+        assertTrue(networkTransport instanceof NioNetworkTransport);
+    }
+
+    public void testGetOutgoingTransportForTcpProtocol() throws Exception
+    {
+        final ConnectionSettings settings = new ConnectionSettings();
+        settings.setProtocol("tcp");
+
+        final OutgoingNetworkTransport networkTransport =
+                Transport.getOutgoingTransportInstance(ProtocolVersion.v0_10, settings);
+        assertNotNull(networkTransport);
+        assertTrue(networkTransport instanceof IoNetworkTransport);
+    }
+
     public void testDefaultGetIncomingTransport() throws Exception
     {
         final IncomingNetworkTransport networkTransport = Transport.getIncomingTransportInstance();
@@ -0,0 +1,411 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.TransportActivity;
+
+public class NioNetworkTransportTest extends QpidTestCase
+{
+    private ServerSocket _serverSocket;
+    private Socket _peer;
+    private NioNetworkTransport _transport;
+    private RecordingReceiver _receiver;
+    private TestTransportActivity _activity;
+    private ConnectionSettings _settings;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _serverSocket = new ServerSocket();
+        _serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        _transport = new NioNetworkTransport();
+        _receiver = new RecordingReceiver();
+        _activity = new TestTransportActivity();
+        _settings = new ConnectionSettings();
+        _settings.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        _settings.setPort(_serverSocket.getLocalPort());
+        _settings.setSharedIo(true);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _transport.close();
+            if (_peer != null)
+            {
+                _peer.close();
+            }
+            _serverSocket.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testSendAndReceive() throws Exception
+    {
+        NetworkConnection connection = connect();
+
+        connection.getSender().send(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        connection.getSender().flush();
+
+        byte[] read = readFromPeer(3);
+        assertEquals(1, read[0]);
+        assertEquals(3, read[2]);
+
+        _peer.getOutputStream().write(new byte[]{4, 5});
+        _peer.getOutputStream().flush();
+
+        assertTrue("Bytes not received", _receiver.awaitBytes(2));
+        assertEquals(4, _receiver.getBytes()[0]);
+    }
+
+    public void testSendMoreThanPendingLimit() throws Exception
+    {
+        _settings.setWriteBufferSize(1024);
+        NetworkConnection connection = connect();
+
+        final int size = 1024 * 1024;
+        final CountDownLatch read = new CountDownLatch(1);
+        final byte[][] result = new byte[1][];
+        Thread reader = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    result[0] = readFromPeer(size);
+                }
+                catch (IOException e)
+                {
+                    // result left null
+                }
+                read.countDown();
+            }
+        });
+        reader.start();
+
+        byte[] chunk = new byte[256];
+        for (int i = 0; i < size / chunk.length; i++)
+        {
+            chunk[0] = (byte) i;
+            connection.getSender().send(ByteBuffer.wrap(chunk));
+        }
+        connection.getSender().flush();
+
+        assertTrue("Peer did not read all bytes", read.await(10, TimeUnit.SECONDS));
+        assertNotNull(result[0]);
+        assertEquals((byte) ((size / chunk.length) - 1), result[0][size - chunk.length]);
+    }
+
+    public void testPeerCloseNotifiesReceiverOffSelectorThread() throws Exception
+    {
+        connect();
+        _peer.close();
+
+        assertTrue("Receiver not notified of close", _receiver.awaitClosed());
+        assertTrue("Receiver notified on unexpected thread " + _receiver.getClosedThreadName(),
+                   _receiver.getClosedThreadName().startsWith("SharedIoNotifier"));
+    }
+
+    public void testCloseFlushesAndNotifiesReceiver() throws Exception
+    {
+        NetworkConnection connection = connect();
+        connection.getSender().send(ByteBuffer.wrap(new byte[]{7}));
+
+        connection.close();
+
+        assertEquals(7, readFromPeer(1)[0]);
+        assertTrue("Receiver not notified of close", _receiver.awaitClosed());
+
+        try
+        {
+            connection.getSender().send(ByteBuffer.wrap(new byte[]{1}));
+            fail("Send after close should fail");
+        }
+        catch (SenderClosedException e)
+        {
+            // pass
+        }
+    }
+
+    public void testBytesDeliveredOffSelectorThread() throws Exception
+    {
+        connect();
+
+        _peer.getOutputStream().write(new byte[]{1});
+        _peer.getOutputStream().flush();
+
+        assertTrue("Bytes not received", _receiver.awaitBytes(1));
+        assertTrue("Bytes received on unexpected thread " + _receiver.getReceivedThreadName(),
+                   _receiver.getReceivedThreadName().startsWith("SharedIoNotifier"));
+    }
+
+    public void testBlockedReceiverDoesNotHoldUpOtherConnections() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingReceiver blockedReceiver = new RecordingReceiver(release);
+        _transport.connect(_settings, blockedReceiver, _activity);
+        final Socket blockedPeer = _serverSocket.accept();
+        NioNetworkTransport otherTransport = new NioNetworkTransport();
+        try
+        {
+            blockedPeer.getOutputStream().write(new byte[]{1, 2});
+            blockedPeer.getOutputStream().flush();
+            assertTrue("Receiver not blocked", blockedReceiver.awaitBlocked());
+
+            otherTransport.connect(_settings, _receiver, _activity);
+            _peer = _serverSocket.accept();
+            _peer.getOutputStream().write(new byte[]{3});
+            _peer.getOutputStream().flush();
+
+            assertTrue("Bytes not received while another receiver is blocked", _receiver.awaitBytes(1));
+            assertEquals(3, _receiver.getBytes()[0]);
+        }
+        finally
+        {
+            release.countDown();
+            otherTransport.close();
+            blockedPeer.close();
+        }
+        assertTrue("Blocked receiver did not get its bytes", blockedReceiver.awaitBytes(2));
+    }
+
+    public void testClosedNotifiedAfterReceivedBytes() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        _receiver = new RecordingReceiver(release);
+        connect();
+
+        _peer.getOutputStream().write(new byte[]{1, 2, 3});
+        _peer.getOutputStream().flush();
+        assertTrue("Receiver not blocked", _receiver.awaitBlocked());
+        _peer.close();
+
+        assertFalse("Receiver notified of close before receiving all bytes", _receiver.awaitClosed(200L));
+        release.countDown();
+
+        assertTrue("Receiver not notified of close", _receiver.awaitClosed());
+        assertEquals(3, _receiver.getBytesAtClose());
+    }
+
+    public void testWriterIdleTicks() throws Exception
+    {
+        NetworkConnection connection = connect();
+        connection.setMaxWriteIdle(1);
+
+        assertTrue("Writer idle not ticked", _activity.awaitWriterIdle());
+    }
+
+    private NetworkConnection connect() throws IOException
+    {
+        NetworkConnection connection = _transport.connect(_settings, _receiver, _activity);
+        _peer = _serverSocket.accept();
+        return connection;
+    }
+
+    private byte[] readFromPeer(final int length) throws IOException
+    {
+        InputStream in = _peer.getInputStream();
+        byte[] buf = new byte[length];
+        int offset = 0;
+        while (offset < length)
+        {
+            int read = in.read(buf, offset, length - offset);
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of stream after " + offset + " bytes");
+            }
+            offset += read;
+        }
+        return buf;
+    }
+
+    private static class RecordingReceiver implements Receiver<ByteBuffer>
+    {
+        private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+        private final CountDownLatch _closed = new CountDownLatch(1);
+        private final CountDownLatch _blocked = new CountDownLatch(1);
+        private final CountDownLatch _release;
+        private volatile String _closedThreadName;
+        private volatile String _receivedThreadName;
+        private volatile int _bytesAtClose = -1;
+
+        RecordingReceiver()
+        {
+            this(null);
+        }
+
+        /**
+         * @param release if not null, the first delivery of bytes blocks until this latch is released
+         */
+        RecordingReceiver(final CountDownLatch release)
+        {
+            _release = release;
+        }
+
+        @Override
+        public void received(final ByteBuffer msg)
+        {
+            _receivedThreadName = Thread.currentThread().getName();
+            if (_release != null)
+            {
+                _blocked.countDown();
+                try
+                {
+                    _release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (_bytes)
+            {
+                while (msg.hasRemaining())
+                {
+                    _bytes.write(msg.get());
+                }
+                _bytes.notifyAll();
+            }
+        }
+
+        @Override
+        public void exception(final Throwable t)
+        {
+        }
+
+        @Override
+        public void closed()
+        {
+            _closedThreadName = Thread.currentThread().getName();
+            _bytesAtClose = getBytes().length;
+            _closed.countDown();
+        }
+
+        boolean awaitBytes(final int count) throws InterruptedException
+        {
+            final long deadline = System.currentTimeMillis() + 5000L;
+            synchronized (_bytes)
+            {
+                while (_bytes.size() < count && System.currentTimeMillis() < deadline)
+                {
+                    _bytes.wait(100L);
+                }
+                return _bytes.size() >= count;
+            }
+        }
+
+        byte[] getBytes()
+        {
+            synchronized (_bytes)
+            {
+                return _bytes.toByteArray();
+            }
+        }
+
+        boolean awaitClosed() throws InterruptedException
+        {
+            return awaitClosed(5000L);
+        }
+
+        boolean awaitClosed(final long timeout) throws InterruptedException
+        {
+            return _closed.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        boolean awaitBlocked() throws InterruptedException
+        {
+            return _blocked.await(5, TimeUnit.SECONDS);
+        }
+
+        String getClosedThreadName()
+        {
+            return _closedThreadName;
+        }
+
+        String getReceivedThreadName()
+        {
+            return _receivedThreadName;
+        }
+
+        int getBytesAtClose()
+        {
+            return _bytesAtClose;
+        }
+    }
+
+    private static class TestTransportActivity implements TransportActivity
+    {
+        private final CountDownLatch _writerIdle = new CountDownLatch(1);
+        private final long _created = System.currentTimeMillis();
+
+        @Override
+        public long getLastReadTime()
+        {
+            return _created;
+        }
+
+        @Override
+        public long getLastWriteTime()
+        {
+            return _created;
+        }
+
+        @Override
+        public void writerIdle()
+        {
+            _writerIdle.countDown();
+        }
+
+        @Override
+        public void readerIdle()
+        {
+        }
+
+        boolean awaitWriterIdle() throws InterruptedException
+        {
+            return _writerIdle.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.security.ssl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.Sender;
+import org.apache.qpid.transport.network.security.SSLStatus;
+
+public class SSLBufferingSenderTest extends QpidTestCase
+{
+    private static final String BROKER_KEYSTORE_PATH = TEST_RESOURCES_DIR + "/ssl/java_broker_keystore.jks";
+    private static final String STORE_PASSWORD = "password";
+
+    private RecordingSender _clientNetwork;
+    private RecordingSender _serverNetwork;
+    private RecordingReceiver _clientApplication;
+    private RecordingReceiver _serverApplication;
+    private SSLBufferingSender _clientSender;
+    private SSLBufferingSender _serverSender;
+    private SSLReceiver _clientReceiver;
+    private SSLReceiver _serverReceiver;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        KeyManagerFactory keyManager = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManager.init(loadKeyStore(BROKER_KEYSTORE_PATH), STORE_PASSWORD.toCharArray());
+        serverContext.init(keyManager.getKeyManagers(), null, null);
+        SSLEngine serverEngine = serverContext.createSSLEngine();
+        serverEngine.setUseClientMode(false);
+        serverEngine.setEnabledProtocols(new String[] { "TLSv1.2" });
+
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, new TrustManager[] { new TrustingTrustManager() }, null);
+        SSLEngine clientEngine = clientContext.createSSLEngine("localhost", 5671);
+        clientEngine.setUseClientMode(true);
+        clientEngine.setEnabledProtocols(new String[] { "TLSv1.2" });
+        clientEngine.beginHandshake();
+
+        _clientNetwork = new RecordingSender();
+        _serverNetwork = new RecordingSender();
+        _clientApplication = new RecordingReceiver();
+        _serverApplication = new RecordingReceiver();
+
+        SSLStatus clientStatus = new SSLStatus();
+        SSLStatus serverStatus = new SSLStatus();
+        _clientSender = new SSLBufferingSender(clientEngine, _clientNetwork, clientStatus);
+        _clientReceiver = new SSLReceiver(clientEngine, _clientApplication, clientStatus);
+        _serverSender = new SSLBufferingSender(serverEngine, _serverNetwork, serverStatus);
+        _serverReceiver = new SSLReceiver(serverEngine, _serverApplication, serverStatus);
+    }
+
+    public void testSmallSendsAreWrappedIntoOneRecordOnFlush() throws Exception
+    {
+        handshake();
+
+        byte[] expected = new byte[0];
+        for (int i = 0; i < 100; i++)
+        {
+            byte[] message = ("message-" + i).getBytes("UTF-8");
+            _clientSender.send(ByteBuffer.wrap(message));
+            expected = concat(expected, message);
+        }
+        assertTrue("Nothing should be written before flush", _clientNetwork.getData().isEmpty());
+
+        _clientSender.flush();
+
+        List<byte[]> written = _clientNetwork.getData();
+        assertEquals("Small sends should be wrapped into a single record", 1, written.size());
+        assertEquals("Unexpected record count", 1, countRecords(written.get(0)));
+
+        deliver(_clientNetwork, _serverReceiver, Integer.MAX_VALUE);
+        assertTrue(Arrays.equals(expected, _serverApplication.getData()));
+    }
+
+    public void testRecordsSplitAcrossReadsAreReassembled() throws Exception
+    {
+        handshake();
+
+        byte[] expected = new byte[100000];
+        for (int i = 0; i < expected.length; i++)
+        {
+            expected[i] = (byte) i;
+        }
+        _serverSender.send(ByteBuffer.wrap(expected));
+        _serverSender.flush();
+
+        deliver(_serverNetwork, _clientReceiver, 7);
+
+        assertTrue(Arrays.equals(expected, _clientApplication.getData()));
+    }
+
+    public void testDataSentDuringHandshakeIsDelivered() throws Exception
+    {
+        byte[] expected = "early".getBytes("UTF-8");
+        _clientSender.send(ByteBuffer.wrap(expected));
+        _clientSender.flush();
+
+        handshake();
+
+        assertTrue(Arrays.equals(expected, _serverApplication.getData()));
+    }
+
+    private void handshake()
+    {
+        _clientSender.flush();
+        int rounds = 0;
+        while (!_clientNetwork.getData().isEmpty() || !_serverNetwork.getData().isEmpty())
+        {
+            assertTrue("Handshake did not complete", rounds++ < 20);
+            deliver(_clientNetwork, _serverReceiver, 100);
+            _serverSender.flush();
+            deliver(_serverNetwork, _clientReceiver, 100);
+            _clientSender.flush();
+        }
+    }
+
+    private void deliver(final RecordingSender network, final SSLReceiver receiver, final int chunkSize)
+    {
+        for (byte[] data : network.getData())
+        {
+            for (int offset = 0; offset < data.length; offset += chunkSize)
+            {
+                int length = Math.min(chunkSize, data.length - offset);
+                receiver.received(ByteBuffer.wrap(Arrays.copyOfRange(data, offset, offset + length)));
+            }
+        }
+        network.getData().clear();
+    }
+
+    private int countRecords(final byte[] data)
+    {
+        int count = 0;
+        int offset = 0;
+        while (offset < data.length)
+        {
+            offset += 5 + (((data[offset + 3] & 0xff) << 8) | (data[offset + 4] & 0xff));
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second)
+    {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static KeyStore loadKeyStore(final String path) throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = new FileInputStream(path))
+        {
+            keyStore.load(in, STORE_PASSWORD.toCharArray());
+        }
+        return keyStore;
+    }
+
+    /**
+     * Accepts the broker certificate without validation, as the sender and receiver are under test rather than the
+     * trust configuration.
+     */
+    private static class TrustingTrustManager implements X509TrustManager
+    {
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+        {
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+        {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers()
+        {
+            return new X509Certificate[0];
+        }
+    }
+
+    private static class RecordingSender implements Sender<ByteBuffer>
+    {
+        private final List<byte[]> _data = new ArrayList<>();
+
+        @Override
+        public void setIdleTimeout(final int i)
+        {
+        }
+
+        @Override
+        public void send(final ByteBuffer msg)
+        {
+            byte[] data = new byte[msg.remaining()];
+            msg.get(data);
+            _data.add(data);
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        public List<byte[]> getData()
+        {
+            return _data;
+        }
+    }
+
+    private static class RecordingReceiver implements Receiver<ByteBuffer>
+    {
+        private final ByteArrayOutputStream _data = new ByteArrayOutputStream();
+
+        @Override
+        public void received(final ByteBuffer msg)
+        {
+            byte[] data = new byte[msg.remaining()];
+            msg.get(data);
+            _data.write(data, 0, data.length);
+        }
+
+        @Override
+        public void exception(final Throwable t)
+        {
+            throw new RuntimeException(t);
+        }
+
+        @Override
+        public void closed()
+        {
+        }
+
+        public byte[] getData()
+        {
+            return _data.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.vm;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.protocol.ProtocolEngine;
+import org.apache.qpid.protocol.ProtocolEngineFactory;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.NetworkTransportConfiguration;
+import org.apache.qpid.transport.Receiver;
+import org.apache.qpid.transport.Sender;
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.network.NetworkConnection;
+
+public class VmNetworkTransportTest extends QpidTestCase
+{
+    private static final int PORT = 45672;
+    private static final long TIMEOUT = 5000L;
+
+    private VmNetworkTransport _acceptor;
+    private VmNetworkTransport _client;
+    private TestProtocolEngine _engine;
+    private RecordingReceiver _clientReceiver;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _engine = new TestProtocolEngine();
+        _acceptor = new VmNetworkTransport();
+        _acceptor.accept(new TestConfiguration(PORT), new ProtocolEngineFactory()
+        {
+            @Override
+            public ProtocolEngine newProtocolEngine(final SocketAddress remoteSocketAddress)
+            {
+                return _engine;
+            }
+        }, null);
+        _client = new VmNetworkTransport();
+        _clientReceiver = new RecordingReceiver();
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _client.close();
+            _acceptor.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testBytesDeliveredOnFlush() throws Exception
+    {
+        NetworkConnection connection = _client.connect(createSettings(PORT), _clientReceiver, null);
+        assertNotNull("Engine was not given a connection", _engine.getNetworkConnection());
+
+        connection.getSender().send(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        Thread.sleep(100);
+        assertEquals("Bytes should not be delivered before flush", 0, _engine.getReceived().size());
+
+        connection.getSender().flush();
+        _engine.awaitReceived(1);
+        assertEquals(3, _engine.getReceived().get(0).remaining());
+
+        Sender<ByteBuffer> brokerSender = _engine.getSender();
+        brokerSender.send(ByteBuffer.wrap(new byte[]{4, 5}));
+        brokerSender.flush();
+        _clientReceiver.awaitReceived(1);
+        assertEquals(4, _clientReceiver.getReceived().get(0).get(0));
+    }
+
+    public void testBytesDeliveredByFlushingThread() throws Exception
+    {
+        NetworkConnection connection = _client.connect(createSettings(PORT), _clientReceiver, null);
+
+        connection.getSender().send(ByteBuffer.wrap(new byte[]{1}));
+        connection.getSender().flush();
+
+        assertEquals("Bytes should be delivered before flush returns", 1, _engine.getReceived().size());
+        assertSame("Bytes should be delivered by the flushing thread",
+                   Thread.currentThread(), _engine.getReceivingThread());
+    }
+
+    public void testReplyToReplyIsNotDeliveredReentrantly() throws Exception
+    {
+        _engine.setReplying(true);
+        final RecordingReceiver replyingClient = new RecordingReceiver()
+        {
+            private boolean _receiving;
+            private boolean _replied;
+
+            @Override
+            public void received(final ByteBuffer msg)
+            {
+                assertFalse("Receiver should not be re-entered", _receiving);
+                _receiving = true;
+                try
+                {
+                    super.received(msg);
+                    if (!_replied)
+                    {
+                        _replied = true;
+                        Sender<ByteBuffer> sender = _client.getConnection().getSender();
+                        sender.send(msg.duplicate());
+                        sender.flush();
+                    }
+                }
+                finally
+                {
+                    _receiving = false;
+                }
+            }
+        };
+        _client.connect(createSettings(PORT), replyingClient, null);
+
+        final Sender<ByteBuffer> sender = _client.getConnection().getSender();
+        sender.send(ByteBuffer.wrap(new byte[]{1}));
+        sender.flush();
+
+        replyingClient.awaitReceived(2);
+        _engine.awaitReceived(2);
+    }
+
+    public void testReplySentByReceiverIsDelivered() throws Exception
+    {
+        _engine.setReplying(true);
+        NetworkConnection connection = _client.connect(createSettings(PORT), _clientReceiver, null);
+
+        connection.getSender().send(ByteBuffer.wrap(new byte[]{7}));
+        connection.getSender().flush();
+
+        _engine.awaitReceived(1);
+        _clientReceiver.awaitReceived(1);
+        assertEquals(7, _clientReceiver.getReceived().get(0).get(0));
+    }
+
+    public void testBytesDeliveredInOrder() throws Exception
+    {
+        _engine.setReplying(true);
+        NetworkConnection connection = _client.connect(createSettings(PORT), _clientReceiver, null);
+
+        final int count = 1000;
+        for (int i = 0; i < count; i++)
+        {
+            connection.getSender().send(ByteBuffer.wrap(new byte[]{(byte) i}));
+            connection.getSender().flush();
+        }
+
+        _clientReceiver.awaitReceived(count);
+        for (int i = 0; i < count; i++)
+        {
+            assertEquals("Unexpected byte at " + i, (byte) i, _clientReceiver.getReceived().get(i).get(0));
+        }
+    }
+
+    public void testSentBufferIsCopied() throws Exception
+    {
+        NetworkConnection connection = _client.connect(createSettings(PORT), _clientReceiver, null);
+
+        ByteBuffer buf = ByteBuffer.wrap(new byte[]{1});
+        connection.getSender().send(buf);
+        buf.put(0, (byte) 2);
+        connection.getSender().flush();
+
+        _engine.awaitReceived(1);
+        assertEquals(1, _engine.getReceived().get(0).get(0));
+    }
+
+    public void testCloseNotifiesBothEnds() throws Exception
+    {
+        NetworkConnection connection = _client.connect(createSettings(PORT), _clientReceiver, null);
+        connection.getSender().send(ByteBuffer.wrap(new byte[]{1}));
+
+        connection.close();
+
+        assertTrue("Engine was not notified of close", _engine.awaitClosed());
+        assertTrue("Client was not notified of close", _clientReceiver.awaitClosed());
+        assertEquals("Pending bytes should be delivered before close", 1, _engine.getReceived().size());
+
+        try
+        {
+            connection.getSender().send(ByteBuffer.wrap(new byte[]{1}));
+            fail("Send after close should fail");
+        }
+        catch (SenderClosedException e)
+        {
+            // pass
+        }
+    }
+
+    public void testConnectToUnknownPort() throws Exception
+    {
+        try
+        {
+            _client.connect(createSettings(PORT + 1), _clientReceiver, null);
+            fail("Connection to a port with no acceptor should fail");
+        }
+        catch (TransportException e)
+        {
+            // pass
+        }
+    }
+
+    public void testAcceptOnPortInUse() throws Exception
+    {
+        VmNetworkTransport other = new VmNetworkTransport();
+        try
+        {
+            other.accept(new TestConfiguration(PORT), null, null);
+            fail("Accepting on a port already in use should fail");
+        }
+        catch (TransportException e)
+        {
+            // pass
+        }
+
+        _acceptor.close();
+        other.accept(new TestConfiguration(PORT), null, null);
+        assertEquals(PORT, other.getAcceptingPort());
+        other.close();
+    }
+
+    private ConnectionSettings createSettings(final int port)
+    {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setProtocol("vm");
+        settings.setPort(port);
+        return settings;
+    }
+
+    private static class RecordingReceiver implements Receiver<ByteBuffer>
+    {
+        private final List<ByteBuffer> _received = new ArrayList<ByteBuffer>();
+        private final CountDownLatch _closed = new CountDownLatch(1);
+        private volatile Thread _receivingThread;
+
+        @Override
+        public void received(final ByteBuffer msg)
+        {
+            _receivingThread = Thread.currentThread();
+            synchronized (_received)
+            {
+                _received.add(msg);
+                _received.notifyAll();
+            }
+        }
+
+        @Override
+        public void exception(final Throwable t)
+        {
+        }
+
+        @Override
+        public void closed()
+        {
+            _closed.countDown();
+        }
+
+        List<ByteBuffer> getReceived()
+        {
+            synchronized (_received)
+            {
+                return new ArrayList<ByteBuffer>(_received);
+            }
+        }
+
+        void awaitReceived(final int count) throws InterruptedException
+        {
+            final long deadline = System.currentTimeMillis() + TIMEOUT;
+            synchronized (_received)
+            {
+                long remaining;
+                while (_received.size() < count && (remaining = deadline - System.currentTimeMillis()) > 0)
+                {
+                    _received.wait(remaining);
+                }
+                assertEquals("Unexpected number of buffers received", count, _received.size());
+            }
+        }
+
+        boolean awaitClosed() throws InterruptedException
+        {
+            return _closed.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        Thread getReceivingThread()
+        {
+            return _receivingThread;
+        }
+    }
+
+    private static class TestProtocolEngine extends RecordingReceiver implements ProtocolEngine
+    {
+        private NetworkConnection _networkConnection;
+        private Sender<ByteBuffer> _sender;
+        private boolean _replying;
+
+        @Override
+        public void received(final ByteBuffer msg)
+        {
+            super.received(msg);
+            if (_replying)
+            {
+                _sender.send(msg.duplicate());
+                _sender.flush();
+            }
+        }
+
+        @Override
+        public void setNetworkConnection(final NetworkConnection network, final Sender<ByteBuffer> sender)
+        {
+            _networkConnection = network;
+            _sender = sender;
+        }
+
+        NetworkConnection getNetworkConnection()
+        {
+            return _networkConnection;
+        }
+
+        Sender<ByteBuffer> getSender()
+        {
+            return _sender;
+        }
+
+        void setReplying(final boolean replying)
+        {
+            _replying = replying;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress()
+        {
+            return _networkConnection.getRemoteAddress();
+        }
+
+        @Override
+        public SocketAddress getLocalAddress()
+        {
+            return _networkConnection.getLocalAddress();
+        }
+
+        @Override
+        public long getWrittenBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getReadBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public void writerIdle()
+        {
+        }
+
+        @Override
+        public void readerIdle()
+        {
+        }
+
+        @Override
+        public long getLastReadTime()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getLastWriteTime()
+        {
+            return 0;
+        }
+    }
+
+    private static class TestConfiguration implements NetworkTransportConfiguration
+    {
+        private final int _port;
+
+        private TestConfiguration(final int port)
+        {
+            _port = port;
+        }
+
+        @Override
+        public boolean getTcpNoDelay()
+        {
+            return true;
+        }
+
+        @Override
+        public int getReceiveBufferSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public int getSendBufferSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public InetSocketAddress getAddress()
+        {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), _port);
+        }
+
+        @Override
+        public boolean needClientAuth()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean wantClientAuth()
+        {
+            return false;
+        }
+
+        @Override
+        public Collection<String> getEnabledCipherSuites()
+        {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<String> getDisabledCipherSuites()
+        {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+var jsonObject = {
+    _tests:[]
+};
+
+var duration = 30000;
+var queueName = "direct://amq.direct//testQueue?durable='false'";
+
+// all consumers share a single session and so contend for the session's credit
+var numbersOfConsumers = [1, 4, 16];
+
+for(i=0; i < numbersOfConsumers.length ; i++)
+{
+    var numberOfConsumers = numbersOfConsumers[i];
+    var test = {
+      "_name": numberOfConsumers,
+      "_queues":[
+        {
+          "_name": queueName
+        }
+      ],
+      "_clients":[
+        {
+          "_name": "producingClient",
+          "_connections":[
+            {
+              "_name": "connection1",
+              "_factory": "connectionfactory",
+              "_sessions": [
+                {
+                  "_sessionName": "session1",
+                  "_acknowledgeMode": 1,
+                  "_producers": [
+                    {
+                      "_name": "Producer1",
+                      "_destinationName": queueName,
+                      "_deliveryMode": 1,
+                      "_maximumDuration": duration
+                    }
+                  ]
+                }
+              ]
+            }
+          ]
+        },
+        {
+          "_name": "consumingClient",
+          "_connections":[
+            {
+              "_name": "connection1",
+              "_factory": "connectionfactory",
+              "_sessions": [
+                {
+                  "_sessionName": "session1",
+                  "_acknowledgeMode": 1,
+                  "_consumers": QPID.times(numberOfConsumers,
+                    {
+                      "_name": "Consumer-__INDEX",
+                      "_destinationName": queueName,
+                      "_maximumDuration": duration
+                    },
+                    "__INDEX")
+                }
+              ]
+            }
+          ]
+        }
+      ]
+    };
+
+    jsonObject._tests= jsonObject._tests.concat(test);
+}
+
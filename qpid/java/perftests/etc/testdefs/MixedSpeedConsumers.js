@@ -0,0 +1,118 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+var jsonObject = {
+    _tests:[]
+};
+
+var duration = 30000;
+var queueName = "direct://amq.direct//testQueue?durable='false'";
+
+// fast consumers auto-acknowledge; slow consumers commit a transaction after every message
+var messageSizes = [256, 1024, 65536];
+var numberOfFastConsumers = 4;
+var numberOfSlowConsumers = 4;
+
+for(i=0; i < messageSizes.length ; i++)
+{
+    var messageSize = messageSizes[i];
+    var test = {
+      "_name": messageSize,
+      "_queues":[
+        {
+          "_name": queueName
+        }
+      ],
+      "_clients":[
+        {
+          "_name": "producingClient",
+          "_connections":[
+            {
+              "_name": "connection1",
+              "_factory": "connectionfactory",
+              "_sessions": [
+                {
+                  "_sessionName": "session1",
+                  "_acknowledgeMode": 1,
+                  "_producers": [
+                    {
+                      "_name": "Producer1",
+                      "_destinationName": queueName,
+                      "_deliveryMode": 1,
+                      "_messageSize": messageSize,
+                      "_maximumDuration": duration
+                    }
+                  ]
+                }
+              ]
+            }
+          ]
+        },
+        {
+          "_name": "fastConsumingClient",
+          "_connections": QPID.times(numberOfFastConsumers,
+            {
+              "_name": "connection__INDEX",
+              "_factory": "connectionfactory",
+              "_sessions": [
+                {
+                  "_sessionName": "session1",
+                  "_acknowledgeMode": 1,
+                  "_consumers": [
+                    {
+                      "_name": "FastConsumer__INDEX",
+                      "_destinationName": queueName,
+                      "_maximumDuration": duration
+                    }
+                  ]
+                }
+              ]
+            },
+            "__INDEX")
+        },
+        {
+          "_name": "slowConsumingClient",
+          "_connections": QPID.times(numberOfSlowConsumers,
+            {
+              "_name": "connection__INDEX",
+              "_factory": "connectionfactory",
+              "_sessions": [
+                {
+                  "_sessionName": "session1",
+                  "_acknowledgeMode": 0,
+                  "_consumers": [
+                    {
+                      "_name": "SlowConsumer__INDEX",
+                      "_destinationName": queueName,
+                      "_batchSize": 1,
+                      "_maximumDuration": duration
+                    }
+                  ]
+                }
+              ]
+            },
+            "__INDEX")
+        }
+      ]
+    };
+
+    jsonObject._tests= jsonObject._tests.concat(test);
+}
+
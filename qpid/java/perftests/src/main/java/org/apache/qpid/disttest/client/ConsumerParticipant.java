@@ -20,9 +20,7 @@
 package org.apache.qpid.disttest.client;
 
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
@@ -37,6 +35,7 @@ import org.apache.qpid.disttest.DistributedTestException;
 import org.apache.qpid.disttest.jms.ClientJmsDelegate;
 import org.apache.qpid.disttest.message.CreateConsumerCommand;
 import org.apache.qpid.disttest.message.ParticipantResult;
+import org.apache.qpid.disttest.results.aggregation.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,7 +54,7 @@ public class ConsumerParticipant implements Participant
     private long _startTime;
 
     private volatile Exception _asyncMessageListenerException;
-    private List<Long> _messageLatencies;
+    private LatencyHistogram _latencyHistogram;
 
     public ConsumerParticipant(final ClientJmsDelegate delegate, final CreateConsumerCommand command)
     {
@@ -64,7 +63,7 @@ public class ConsumerParticipant implements Participant
         _resultFactory = new ParticipantResultFactory();
         if (command.isEvaluateLatency())
         {
-            _messageLatencies = new ArrayList<Long>();
+            _latencyHistogram = new LatencyHistogram();
         }
     }
 
@@ -120,7 +119,7 @@ public class ConsumerParticipant implements Participant
                 numberOfMessagesReceived,
                 payloadSize,
                 totalPayloadSize,
-                start, end, _messageLatencies);
+                start, end, _latencyHistogram);
 
         return result;
     }
@@ -160,17 +159,7 @@ public class ConsumerParticipant implements Participant
 
             if (_command.isEvaluateLatency())
             {
-                long mesageTimestamp;
-                try
-                {
-                    mesageTimestamp = message.getJMSTimestamp();
-                }
-                catch (JMSException e)
-                {
-                    throw new DistributedTestException("Cannot get message timestamp!", e);
-                }
-                long latency = System.currentTimeMillis() - mesageTimestamp;
-                _messageLatencies.add(latency);
+                recordLatency(message);
             }
 
             if (!batchEnabled || batchComplete)
@@ -213,6 +202,30 @@ public class ConsumerParticipant implements Participant
     }
 
 
+    private void recordLatency(Message message)
+    {
+        long sendTimeMicros;
+        try
+        {
+            if (message.propertyExists(MessageProvider.SEND_TIME_MICROS))
+            {
+                sendTimeMicros = message.getLongProperty(MessageProvider.SEND_TIME_MICROS);
+            }
+            else
+            {
+                sendTimeMicros = message.getJMSTimestamp() * 1000L;
+            }
+        }
+        catch (JMSException e)
+        {
+            throw new DistributedTestException("Cannot get message timestamp!", e);
+        }
+        long latency = MicrosecondClock.currentTimeMicros() - sendTimeMicros;
+
+        // latency between hosts can appear negative if their clocks differ
+        _latencyHistogram.recordValue(Math.max(0, latency));
+    }
+
     /**
      * Intended to be called from a {@link MessageListener}. Updates {@link #_asyncRunHasFinished} if
      * no more messages should be processed, causing {@link #doIt(String)} to exit.
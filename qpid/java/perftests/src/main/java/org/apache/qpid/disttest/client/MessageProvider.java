@@ -46,6 +46,9 @@ public class MessageProvider
 
     public static final String PRIORITY = "priority";
 
+    /** The time in microseconds at which the message was sent, or was intended to be sent if sending at a fixed rate */
+    public static final String SEND_TIME_MICROS = "qpidDisttestSendTimeMicros";
+
     public static final String[] STANDARD_JMS_PROPERTIES = { "correlationID", DELIVERY_MODE,
             "expiration", "messageID", PRIORITY, "redelivered", "replyTo", "timestamp", "type", TTL };
 
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.disttest.client;
+
+/**
+ * A wall clock with microsecond resolution, used to time message latency.  The clock is anchored to
+ * {@link System#currentTimeMillis()} when the class is loaded and advanced by {@link System#nanoTime()}, so its
+ * readings are only as comparable between hosts as their millisecond clocks.
+ */
+public final class MicrosecondClock
+{
+    private static final long BASE_MILLIS = System.currentTimeMillis();
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private MicrosecondClock()
+    {
+    }
+
+    public static long currentTimeMicros()
+    {
+        return BASE_MILLIS * 1000L + (System.nanoTime() - BASE_NANOS) / 1000L;
+    }
+}
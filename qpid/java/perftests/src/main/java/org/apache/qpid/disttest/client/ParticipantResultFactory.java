@@ -18,7 +18,6 @@
  */
 package org.apache.qpid.disttest.client;
 
-import java.util.Collection;
 import java.util.Date;
 
 import org.apache.qpid.disttest.message.ConsumerParticipantResult;
@@ -27,6 +26,7 @@ import org.apache.qpid.disttest.message.CreateParticpantCommand;
 import org.apache.qpid.disttest.message.CreateProducerCommand;
 import org.apache.qpid.disttest.message.ParticipantResult;
 import org.apache.qpid.disttest.message.ProducerParticipantResult;
+import org.apache.qpid.disttest.results.aggregation.LatencyHistogram;
 import org.apache.qpid.disttest.results.aggregation.SeriesStatistics;
 
 public class ParticipantResultFactory
@@ -41,10 +41,9 @@ public class ParticipantResultFactory
 
     public ConsumerParticipantResult createForConsumer(String participantName, String clientRegisteredName,
             CreateConsumerCommand command, int acknowledgeMode, int numberOfMessagesReceived, int payloadSize,
-            long totalPayloadReceived, Date start, Date end, Collection<Long> messageLatencies)
+            long totalPayloadReceived, Date start, Date end, LatencyHistogram latencyHistogram)
     {
         ConsumerParticipantResult consumerParticipantResult = new ConsumerParticipantResult();
-        consumerParticipantResult.setMessageLatencies(messageLatencies);
 
         setTestProperties(consumerParticipantResult, command, participantName, clientRegisteredName, acknowledgeMode);
         setTestResultProperties(consumerParticipantResult, numberOfMessagesReceived, payloadSize, totalPayloadReceived, start, end);
@@ -58,11 +57,18 @@ public class ParticipantResultFactory
         consumerParticipantResult.setTotalNumberOfConsumers(1);
         consumerParticipantResult.setTotalNumberOfProducers(0);
 
-        SeriesStatistics statistics = new SeriesStatistics(messageLatencies);
+        SeriesStatistics statistics = new SeriesStatistics(latencyHistogram);
         consumerParticipantResult.setAverageLatency(statistics.getAverage());
         consumerParticipantResult.setMinLatency(statistics.getMinimum());
         consumerParticipantResult.setMaxLatency(statistics.getMaximum());
         consumerParticipantResult.setLatencyStandardDeviation(statistics.getStandardDeviation());
+        consumerParticipantResult.setLatencyPercentiles(statistics);
+
+        if (latencyHistogram != null)
+        {
+            latencyHistogram.compact();
+            consumerParticipantResult.setLatencyHistogram(latencyHistogram);
+        }
         return consumerParticipantResult;
     }
 
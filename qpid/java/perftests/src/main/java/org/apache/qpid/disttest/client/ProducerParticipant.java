@@ -24,6 +24,7 @@ import java.util.NavigableSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.jms.Message;
 
@@ -86,10 +87,16 @@ public class ProducerParticipant implements Participant
 
         _limiter = ExecutorWithLimitsFactory.createExecutorWithLimit(startTime, requiredDuration);
 
+        // at a target rate each message has an intended send time, from which its latency is measured, so that
+        // latency includes any time the message spent waiting for the producer to catch up
+        final boolean openLoop = _command.getRate() > 0;
+        final double sendIntervalMicros = openLoop ? 1000000d / _command.getRate() : 0;
+        final long startTimeMicros = MicrosecondClock.currentTimeMicros();
+
         if (LOGGER.isInfoEnabled())
         {
-            LOGGER.info("Producer {} about to send messages. Duration limit: {} ms, Message limit: {}",
-                    new Object[]{getName(), requiredDuration, numberOfMessages});
+            LOGGER.info("Producer {} about to send messages. Duration limit: {} ms, Message limit: {}, Rate: {} msg/s",
+                    new Object[]{getName(), requiredDuration, numberOfMessages, _command.getRate()});
         }
 
         while (true)
@@ -100,6 +107,17 @@ public class ProducerParticipant implements Participant
                 break;
             }
 
+            final long intendedSendTimeMicros;
+            if (openLoop)
+            {
+                intendedSendTimeMicros = startTimeMicros + (long) (numberOfMessagesSent * sendIntervalMicros);
+                waitUntil(intendedSendTimeMicros);
+            }
+            else
+            {
+                intendedSendTimeMicros = 0;
+            }
+
             try
             {
                 lastPublishedMessage = _limiter.execute(new Callable<Message>()
@@ -107,6 +125,10 @@ public class ProducerParticipant implements Participant
                     @Override
                     public Message call() throws Exception
                     {
+                        if (openLoop)
+                        {
+                            return _jmsDelegate.sendNextMessage(_command, intendedSendTimeMicros);
+                        }
                         return _jmsDelegate.sendNextMessage(_command);
                     }
                 });
@@ -139,7 +161,10 @@ public class ProducerParticipant implements Participant
                 }
                 _jmsDelegate.commitIfNecessary(_command.getSessionName());
 
-                doSleepForInterval();
+                if (!openLoop)
+                {
+                    doSleepForInterval();
+                }
             }
         }
 
@@ -197,6 +222,16 @@ public class ProducerParticipant implements Participant
         }
     }
 
+    private void waitUntil(long timeMicros)
+    {
+        long remainingMicros;
+        while ((remainingMicros = timeMicros - MicrosecondClock.currentTimeMicros()) > 0
+               && !Thread.currentThread().isInterrupted())
+        {
+            LockSupport.parkNanos(remainingMicros * 1000L);
+        }
+    }
+
     private void doSleep(long sleepTime)
     {
         try
@@ -37,6 +37,7 @@ public class ProducerConfig extends ParticipantConfig
     private int _priority;
     private long _timeToLive;
     private long _interval;
+    private double _rate;
     private long _startDelay;
     private String _messageProviderName;
 
@@ -48,6 +49,7 @@ public class ProducerConfig extends ParticipantConfig
         _priority = Message.DEFAULT_PRIORITY;
         _timeToLive = Message.DEFAULT_TIME_TO_LIVE;
         _interval = 0;
+        _rate = 0;
         _startDelay = 0;
         _messageProviderName = null;
     }
@@ -92,6 +94,7 @@ public class ProducerConfig extends ParticipantConfig
         command.setPriority(_priority);
         command.setTimeToLive(_timeToLive);
         command.setInterval(_interval);
+        command.setRate(_rate);
         command.setStartDelay(_startDelay);
         command.setMessageProviderName(_messageProviderName);
 
@@ -26,6 +26,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.qpid.disttest.controller.CommandForClient;
+import org.apache.qpid.disttest.message.Command;
+import org.apache.qpid.disttest.message.CreateConsumerCommand;
+import org.apache.qpid.disttest.message.CreateProducerCommand;
 
 public class TestConfig
 {
@@ -86,6 +89,29 @@ public class TestConfig
             commandsForClients.addAll(client.createCommands());
         }
 
+        // producers need only stamp their messages with the send time if a consumer evaluates latency
+        boolean evaluateLatency = false;
+        for (CommandForClient commandForClient : commandsForClients)
+        {
+            Command command = commandForClient.getCommand();
+            if (command instanceof CreateConsumerCommand && ((CreateConsumerCommand) command).isEvaluateLatency())
+            {
+                evaluateLatency = true;
+                break;
+            }
+        }
+        if (evaluateLatency)
+        {
+            for (CommandForClient commandForClient : commandsForClients)
+            {
+                Command command = commandForClient.getCommand();
+                if (command instanceof CreateProducerCommand)
+                {
+                    ((CreateProducerCommand) command).setEvaluateLatency(true);
+                }
+            }
+        }
+
         return Collections.unmodifiableList(commandsForClients);
     }
 
@@ -47,6 +47,7 @@ import org.apache.qpid.disttest.DistributedTestConstants;
 import org.apache.qpid.disttest.DistributedTestException;
 import org.apache.qpid.disttest.client.Client;
 import org.apache.qpid.disttest.client.MessageProvider;
+import org.apache.qpid.disttest.client.MicrosecondClock;
 import org.apache.qpid.disttest.message.Command;
 import org.apache.qpid.disttest.message.CreateConnectionCommand;
 import org.apache.qpid.disttest.message.CreateConsumerCommand;
@@ -425,6 +426,15 @@ public class ClientJmsDelegate
     }
 
     public Message sendNextMessage(final CreateProducerCommand command)
+    {
+        return sendNextMessage(command, 0);
+    }
+
+    /**
+     * @param sendTimeMicros the send time to stamp on the message, or zero to stamp the time it is sent; messages
+     * are only stamped if the producer's consumers evaluate latency
+     */
+    public Message sendNextMessage(final CreateProducerCommand command, final long sendTimeMicros)
     {
         Message sentMessage = null;
         MessageProvider messageProvider = _testMessageProviders.get(command.getMessageProviderName());
@@ -453,6 +463,11 @@ public class ClientJmsDelegate
             {
                 ttl = sentMessage.getLongProperty(MessageProvider.TTL);
             }
+            if (command.isEvaluateLatency())
+            {
+                sentMessage.setLongProperty(MessageProvider.SEND_TIME_MICROS,
+                                            sendTimeMicros > 0 ? sendTimeMicros : MicrosecondClock.currentTimeMicros());
+            }
             producer.send(sentMessage, deliveryMode, priority, ttl);
         }
         catch (final JMSException jmse)
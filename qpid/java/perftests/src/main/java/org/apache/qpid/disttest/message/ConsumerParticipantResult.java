@@ -25,7 +25,8 @@ import static org.apache.qpid.disttest.message.ParticipantAttribute.IS_SELECTOR;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.IS_SYNCHRONOUS_CONSUMER;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.IS_TOPIC;
 
-import java.util.Collection;
+import org.apache.qpid.disttest.results.aggregation.LatencyHistogram;
+import org.apache.qpid.disttest.results.aggregation.SeriesStatistics;
 
 public class ConsumerParticipantResult extends ParticipantResult
 {
@@ -36,11 +37,16 @@ public class ConsumerParticipantResult extends ParticipantResult
     private boolean _noLocal;
     private boolean _synchronousConsumer;
 
-    private Collection<Long> _messageLatencies;
     private long _minLatency;
     private long _maxLatency;
     private double _averageLatency;
     private double _latencyStandardDeviation;
+    private LatencyHistogram _latencyHistogram;
+    private double _latency50thPercentile;
+    private double _latency90thPercentile;
+    private double _latency99thPercentile;
+    private double _latency999thPercentile;
+    private double _latency9999thPercentile;
 
     public ConsumerParticipantResult()
     {
@@ -124,16 +130,6 @@ public class ConsumerParticipantResult extends ParticipantResult
         return _topic;
     }
 
-    public Collection<Long> getMessageLatencies()
-    {
-        return _messageLatencies;
-    }
-
-    public void setMessageLatencies(Collection<Long> messageLatencies)
-    {
-        _messageLatencies = messageLatencies;
-    }
-
     @Override
     @OutputAttribute(attribute=ParticipantAttribute.MIN_LATENCY)
     public long getMinLatency()
@@ -182,4 +178,86 @@ public class ConsumerParticipantResult extends ParticipantResult
         _latencyStandardDeviation = latencyStandardDeviation;
     }
 
+    /**
+     * @return the latencies of the messages in microseconds, or null if latency was not evaluated
+     */
+    public LatencyHistogram getLatencyHistogram()
+    {
+        return _latencyHistogram;
+    }
+
+    public void setLatencyHistogram(LatencyHistogram latencyHistogram)
+    {
+        _latencyHistogram = latencyHistogram;
+    }
+
+    public void setLatencyPercentiles(SeriesStatistics statistics)
+    {
+        _latency50thPercentile = statistics.getPercentile(50);
+        _latency90thPercentile = statistics.getPercentile(90);
+        _latency99thPercentile = statistics.getPercentile(99);
+        _latency999thPercentile = statistics.getPercentile(99.9);
+        _latency9999thPercentile = statistics.getPercentile(99.99);
+    }
+
+    @Override
+    @OutputAttribute(attribute=ParticipantAttribute.LATENCY_50TH_PERCENTILE)
+    public double getLatency50thPercentile()
+    {
+        return _latency50thPercentile;
+    }
+
+    public void setLatency50thPercentile(double latency50thPercentile)
+    {
+        _latency50thPercentile = latency50thPercentile;
+    }
+
+    @Override
+    @OutputAttribute(attribute=ParticipantAttribute.LATENCY_90TH_PERCENTILE)
+    public double getLatency90thPercentile()
+    {
+        return _latency90thPercentile;
+    }
+
+    public void setLatency90thPercentile(double latency90thPercentile)
+    {
+        _latency90thPercentile = latency90thPercentile;
+    }
+
+    @Override
+    @OutputAttribute(attribute=ParticipantAttribute.LATENCY_99TH_PERCENTILE)
+    public double getLatency99thPercentile()
+    {
+        return _latency99thPercentile;
+    }
+
+    public void setLatency99thPercentile(double latency99thPercentile)
+    {
+        _latency99thPercentile = latency99thPercentile;
+    }
+
+    @Override
+    @OutputAttribute(attribute=ParticipantAttribute.LATENCY_999TH_PERCENTILE)
+    public double getLatency999thPercentile()
+    {
+        return _latency999thPercentile;
+    }
+
+    public void setLatency999thPercentile(double latency999thPercentile)
+    {
+        _latency999thPercentile = latency999thPercentile;
+    }
+
+    @Override
+    @OutputAttribute(attribute=ParticipantAttribute.LATENCY_9999TH_PERCENTILE)
+    public double getLatency9999thPercentile()
+    {
+        return _latency9999thPercentile;
+    }
+
+    public void setLatency9999thPercentile(double latency9999thPercentile)
+    {
+        _latency9999thPercentile = latency9999thPercentile;
+    }
+
 }
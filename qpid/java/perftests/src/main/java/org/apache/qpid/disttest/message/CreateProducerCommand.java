@@ -26,8 +26,10 @@ public class CreateProducerCommand extends CreateParticpantCommand
     private int _priority;
     private long _timeToLive;
     private long _interval;
+    private double _rate;
     private long _startDelay;
     private String _messageProviderName;
+    private boolean _evaluateLatency;
 
     public CreateProducerCommand()
     {
@@ -84,6 +86,19 @@ public class CreateProducerCommand extends CreateParticpantCommand
         this._interval = interval;
     }
 
+    /**
+     * @return the target rate in messages per second, or zero to send each message as soon as the last was sent
+     */
+    public double getRate()
+    {
+        return _rate;
+    }
+
+    public void setRate(double rate)
+    {
+        this._rate = rate;
+    }
+
     public long getStartDelay()
     {
         return _startDelay;
@@ -103,4 +118,17 @@ public class CreateProducerCommand extends CreateParticpantCommand
     {
         this._messageProviderName = messageProviderName;
     }
+
+    /**
+     * @return true if each message is stamped with its send time for the consumers evaluating latency
+     */
+    public boolean isEvaluateLatency()
+    {
+        return _evaluateLatency;
+    }
+
+    public void setEvaluateLatency(boolean evaluateLatency)
+    {
+        _evaluateLatency = evaluateLatency;
+    }
 }
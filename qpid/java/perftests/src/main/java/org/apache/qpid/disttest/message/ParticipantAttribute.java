@@ -61,7 +61,12 @@ public enum ParticipantAttribute
     MIN_LATENCY("minLatency"),
     MAX_LATENCY("maxLatency"),
     LATENCY_STANDARD_DEVIATION("latencyStandardDeviation"),
-    MESSAGE_THROUGHPUT("throughputMessagesPerS")
+    MESSAGE_THROUGHPUT("throughputMessagesPerS"),
+    LATENCY_50TH_PERCENTILE("latency50thPercentile"),
+    LATENCY_90TH_PERCENTILE("latency90thPercentile"),
+    LATENCY_99TH_PERCENTILE("latency99thPercentile"),
+    LATENCY_999TH_PERCENTILE("latency999thPercentile"),
+    LATENCY_9999TH_PERCENTILE("latency9999thPercentile")
     ;
 
     private String _displayName;
@@ -305,6 +305,36 @@ public class ParticipantResult extends Response
         return 0;
     }
 
+    @OutputAttribute(attribute = ParticipantAttribute.LATENCY_50TH_PERCENTILE)
+    public double getLatency50thPercentile()
+    {
+        return 0;
+    }
+
+    @OutputAttribute(attribute = ParticipantAttribute.LATENCY_90TH_PERCENTILE)
+    public double getLatency90thPercentile()
+    {
+        return 0;
+    }
+
+    @OutputAttribute(attribute = ParticipantAttribute.LATENCY_99TH_PERCENTILE)
+    public double getLatency99thPercentile()
+    {
+        return 0;
+    }
+
+    @OutputAttribute(attribute = ParticipantAttribute.LATENCY_999TH_PERCENTILE)
+    public double getLatency999thPercentile()
+    {
+        return 0;
+    }
+
+    @OutputAttribute(attribute = ParticipantAttribute.LATENCY_9999TH_PERCENTILE)
+    public double getLatency9999thPercentile()
+    {
+        return 0;
+    }
+
     public int getPriority()
     {
         return 0;
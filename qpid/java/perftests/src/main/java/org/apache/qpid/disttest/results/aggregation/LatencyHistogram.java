@@ -0,0 +1,227 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.disttest.results.aggregation;
+
+/**
+ * A fixed size histogram of non-negative latency values with a bounded relative error, in the style of
+ * HdrHistogram.  Values are held in buckets of doubling width, each split into {@value #SUB_BUCKET_COUNT}
+ * linear sub-buckets, so a recorded value is reported to within one part in {@value #SUB_BUCKET_HALF_COUNT}
+ * (three significant decimal digits) however large it is.  The minimum, maximum, mean and standard deviation are
+ * kept exactly.
+ * <p>
+ * The counts are sent between client and controller in sparse form: call {@link #compact()} before the histogram
+ * is serialised.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 10;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final int SUB_BUCKET_COUNT = SUB_BUCKET_HALF_COUNT << 1;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_HALF_COUNT_MAGNITUDE - 1;
+    private static final int COUNTS_LENGTH = (BUCKET_COUNT + 1) * SUB_BUCKET_HALF_COUNT;
+
+    private transient long[] _counts;
+    private int[] _recordedIndices;
+    private long[] _recordedCounts;
+
+    private long _totalCount;
+    private long _minimum = Long.MAX_VALUE;
+    private long _maximum;
+    private double _sum;
+    private double _sumOfSquares;
+
+    public void recordValue(long value)
+    {
+        if (value < 0)
+        {
+            throw new IllegalArgumentException("Cannot record negative value " + value);
+        }
+        counts()[countsIndex(value)]++;
+        _totalCount++;
+        _minimum = Math.min(_minimum, value);
+        _maximum = Math.max(_maximum, value);
+        _sum += value;
+        _sumOfSquares += (double) value * (double) value;
+    }
+
+    public void add(LatencyHistogram other)
+    {
+        if (other == null || other._totalCount == 0)
+        {
+            return;
+        }
+        long[] counts = counts();
+        long[] otherCounts = other.counts();
+        for (int i = 0; i < COUNTS_LENGTH; i++)
+        {
+            counts[i] += otherCounts[i];
+        }
+        _totalCount += other._totalCount;
+        _minimum = Math.min(_minimum, other._minimum);
+        _maximum = Math.max(_maximum, other._maximum);
+        _sum += other._sum;
+        _sumOfSquares += other._sumOfSquares;
+    }
+
+    /**
+     * @param percentile a percentile between 0 and 100
+     * @return the largest value which {@code percentile} percent of the recorded values do not exceed, to within
+     *         the precision of the histogram
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if (_totalCount == 0)
+        {
+            return 0;
+        }
+        double requested = Math.min(Math.max(percentile, 0.0), 100.0);
+        long countAtPercentile = Math.max(1, (long) Math.ceil((requested / 100.0) * _totalCount));
+        long[] counts = counts();
+        long runningCount = 0;
+        for (int i = 0; i < COUNTS_LENGTH; i++)
+        {
+            runningCount += counts[i];
+            if (runningCount >= countAtPercentile)
+            {
+                return Math.min(Math.max(highestEquivalentValue(i), _minimum), _maximum);
+            }
+        }
+        return _maximum;
+    }
+
+    public long getTotalCount()
+    {
+        return _totalCount;
+    }
+
+    public long getMinimum()
+    {
+        return _totalCount == 0 ? 0 : _minimum;
+    }
+
+    public long getMaximum()
+    {
+        return _maximum;
+    }
+
+    public double getMean()
+    {
+        return _totalCount == 0 ? 0 : _sum / _totalCount;
+    }
+
+    /**
+     * @return the sample standard deviation of the recorded values
+     */
+    public double getStandardDeviation()
+    {
+        if (_totalCount == 0)
+        {
+            return 0;
+        }
+        double mean = getMean();
+        double sumOfSquaredDifferences = Math.max(0, _sumOfSquares - _totalCount * mean * mean);
+        long size = _totalCount == 1 ? 1 : _totalCount - 1;
+        return Math.sqrt(sumOfSquaredDifferences / size);
+    }
+
+    /**
+     * Replaces the full array of counts with the sparse representation which is serialised.
+     */
+    public void compact()
+    {
+        if (_counts != null)
+        {
+            int recorded = 0;
+            for (long count : _counts)
+            {
+                if (count != 0)
+                {
+                    recorded++;
+                }
+            }
+            _recordedIndices = new int[recorded];
+            _recordedCounts = new long[recorded];
+            int j = 0;
+            for (int i = 0; i < COUNTS_LENGTH; i++)
+            {
+                if (_counts[i] != 0)
+                {
+                    _recordedIndices[j] = i;
+                    _recordedCounts[j] = _counts[i];
+                    j++;
+                }
+            }
+            _counts = null;
+        }
+    }
+
+    private long[] counts()
+    {
+        if (_counts == null)
+        {
+            _counts = new long[COUNTS_LENGTH];
+            if (_recordedIndices != null)
+            {
+                for (int i = 0; i < _recordedIndices.length; i++)
+                {
+                    _counts[_recordedIndices[i]] = _recordedCounts[i];
+                }
+                _recordedIndices = null;
+                _recordedCounts = null;
+            }
+        }
+        return _counts;
+    }
+
+    static int countsIndex(long value)
+    {
+        int bucketIndex = 64 - SUB_BUCKET_HALF_COUNT_MAGNITUDE - 1 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+    }
+
+    static long lowestEquivalentValue(int index)
+    {
+        int bucketIndex = (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        long subBucketIndex = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucketIndex < 0)
+        {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        return subBucketIndex << bucketIndex;
+    }
+
+    static long highestEquivalentValue(int index)
+    {
+        int bucketIndex = Math.max(0, (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1);
+        return lowestEquivalentValue(index) + (1L << bucketIndex) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LatencyHistogram [totalCount=" + _totalCount
+                + ", minimum=" + getMinimum()
+                + ", maximum=" + _maximum + "]";
+    }
+}
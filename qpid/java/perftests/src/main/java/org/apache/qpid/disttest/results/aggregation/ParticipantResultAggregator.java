@@ -66,7 +66,7 @@ public class ParticipantResultAggregator
             if (result instanceof ConsumerParticipantResult)
             {
                 ConsumerParticipantResult consumerParticipantResult = (ConsumerParticipantResult)result;
-                _latencyStatistics.addMessageLatencies(consumerParticipantResult.getMessageLatencies());
+                _latencyStatistics.addLatencyHistogram(consumerParticipantResult.getLatencyHistogram());
                 _latencyStatistics.aggregate();
             }
         }
@@ -82,6 +82,7 @@ public class ParticipantResultAggregator
             consumerParticipantResult.setMinLatency(_latencyStatistics.getMinimum());
             consumerParticipantResult.setMaxLatency(_latencyStatistics.getMaximum());
             consumerParticipantResult.setLatencyStandardDeviation(_latencyStatistics.getStandardDeviation());
+            consumerParticipantResult.setLatencyPercentiles(_latencyStatistics);
             aggregatedResult = consumerParticipantResult;
         }
         else
@@ -21,15 +21,20 @@
 package org.apache.qpid.disttest.results.aggregation;
 
 import java.util.Collection;
-import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Latency statistics for a series of messages.  The series is held as a {@link LatencyHistogram} of microseconds;
+ * the statistics are reported in milliseconds.
+ */
 public class SeriesStatistics
 {
+    private static final double MICROSECONDS_PER_MILLISECOND = 1000.0;
+
     private long _minValue;
     private long _maxValue;
     private double _mean;
     private double _standardDeviation;
-    private Collection<Long> _series = new CopyOnWriteArrayList<Long>();
+    private LatencyHistogram _histogram = new LatencyHistogram();
 
     public SeriesStatistics()
     {
@@ -41,52 +46,47 @@ public class SeriesStatistics
         setMessageLatencies(messageLatencies);
     }
 
+    public SeriesStatistics(LatencyHistogram latencyHistogram)
+    {
+        addLatencyHistogram(latencyHistogram);
+        aggregate();
+    }
+
+    /**
+     * @param messageLatencies latencies in milliseconds
+     */
     public void addMessageLatencies(Collection<Long> messageLatencies)
     {
         if (messageLatencies != null)
         {
-            _series.addAll(messageLatencies);
+            for (Long latency : messageLatencies)
+            {
+                _histogram.recordValue(Math.max(0, latency) * 1000);
+            }
         }
     }
 
+    /**
+     * @param latencyHistogram latencies in microseconds
+     */
+    public void addLatencyHistogram(LatencyHistogram latencyHistogram)
+    {
+        _histogram.add(latencyHistogram);
+    }
+
     public void setMessageLatencies(Collection<Long> messageLatencies)
     {
-        _series = messageLatencies;
+        _histogram = new LatencyHistogram();
+        addMessageLatencies(messageLatencies);
         aggregate();
     }
 
     public void aggregate()
     {
-        if (_series != null && _series.size() > 0)
-        {
-            long minLatency = Long.MAX_VALUE;
-            long maxLatency = Long.MIN_VALUE;
-            long totalLatency = 0;
-            for (Long latency : _series)
-            {
-                totalLatency += latency;
-                minLatency = Math.min(minLatency, latency);
-                maxLatency = Math.max(maxLatency, latency);
-            }
-            _mean = ((double) totalLatency) / (double) _series.size();
-            _minValue = minLatency;
-            _maxValue = maxLatency;
-            double sum = 0;
-            for (Long latency : _series)
-            {
-                double diff = latency - _mean;
-                sum += diff * diff;
-            }
-            long size = _series.size() == 1 ? 1: _series.size() - 1;
-            _standardDeviation = Math.sqrt(sum / (double) size);
-        }
-        else
-        {
-            _mean = 0;
-            _minValue = 0;
-            _maxValue = 0;
-            _standardDeviation = 0;
-        }
+        _mean = _histogram.getMean() / MICROSECONDS_PER_MILLISECOND;
+        _minValue = _histogram.getMinimum() / 1000;
+        _maxValue = _histogram.getMaximum() / 1000;
+        _standardDeviation = _histogram.getStandardDeviation() / MICROSECONDS_PER_MILLISECOND;
     }
 
     public long getMinimum()
@@ -108,4 +108,17 @@ public class SeriesStatistics
     {
         return _standardDeviation;
     }
+
+    /**
+     * @return the latency in milliseconds, to microsecond precision, at the given percentile
+     */
+    public double getPercentile(double percentile)
+    {
+        return _histogram.getValueAtPercentile(percentile) / MICROSECONDS_PER_MILLISECOND;
+    }
+
+    public LatencyHistogram getLatencyHistogram()
+    {
+        return _histogram;
+    }
 }
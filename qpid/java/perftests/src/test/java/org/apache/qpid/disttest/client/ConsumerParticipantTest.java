@@ -29,8 +29,6 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Collection;
-
 import javax.jms.Message;
 import javax.jms.Session;
 
@@ -39,6 +37,7 @@ import org.apache.qpid.disttest.jms.ClientJmsDelegate;
 import org.apache.qpid.disttest.message.ConsumerParticipantResult;
 import org.apache.qpid.disttest.message.CreateConsumerCommand;
 import org.apache.qpid.disttest.message.ParticipantResult;
+import org.apache.qpid.disttest.results.aggregation.LatencyHistogram;
 import org.apache.qpid.test.utils.QpidTestCase;
 import org.mockito.InOrder;
 
@@ -195,8 +194,8 @@ public class ConsumerParticipantTest extends QpidTestCase
         _inOrder.verify(_delegate).calculatePayloadSizeFrom(_mockMessage);
         _inOrder.verify(_delegate).commitOrAcknowledgeMessageIfNecessary(SESSION_NAME1, _mockMessage);
         assertTrue("Unexpected consuemr results", result instanceof ConsumerParticipantResult);
-        Collection<Long> latencies = ((ConsumerParticipantResult)result).getMessageLatencies();
+        LatencyHistogram latencies = ((ConsumerParticipantResult)result).getLatencyHistogram();
         assertNotNull("Message latency is not cllected", latencies);
-        assertEquals("Unexpected message latency results", 1,  latencies.size());
+        assertEquals("Unexpected message latency results", 1,  latencies.getTotalCount());
     }
 }
@@ -27,6 +27,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.qpid.disttest.controller.CommandForClient;
+import org.apache.qpid.disttest.message.CreateConsumerCommand;
+import org.apache.qpid.disttest.message.CreateProducerCommand;
 import org.apache.qpid.disttest.message.NoOpCommand;
 import org.apache.qpid.test.utils.QpidTestCase;
 
@@ -55,6 +57,27 @@ public class TestConfigTest extends QpidTestCase
         assertCommandForClient(commandsForClients, 2, CLIENT2, NoOpCommand.class);
     }
 
+    public void testProducersEvaluateLatencyWhenAConsumerDoes()
+    {
+        CreateProducerCommand producerCommand = new CreateProducerCommand();
+        CreateConsumerCommand consumerCommand = new CreateConsumerCommand();
+        consumerCommand.setEvaluateLatency(true);
+        TestConfig config = createTestConfigWithCommands(producerCommand, consumerCommand);
+
+        config.createCommands();
+        assertTrue("Producer should stamp messages for latency", producerCommand.isEvaluateLatency());
+    }
+
+    public void testProducersDoNotEvaluateLatencyWhenNoConsumerDoes()
+    {
+        CreateProducerCommand producerCommand = new CreateProducerCommand();
+        CreateConsumerCommand consumerCommand = new CreateConsumerCommand();
+        TestConfig config = createTestConfigWithCommands(producerCommand, consumerCommand);
+
+        config.createCommands();
+        assertFalse("Producer should not stamp messages for latency", producerCommand.isEvaluateLatency());
+    }
+
     public void testGetClientNames()
     {
         TestConfig config = createTestConfigWithTwoClients();
@@ -98,6 +121,22 @@ public class TestConfigTest extends QpidTestCase
         return clientConfig;
     }
 
+    private TestConfig createTestConfigWithCommands(CreateProducerCommand producerCommand,
+                                                    CreateConsumerCommand consumerCommand)
+    {
+        ClientConfig producerClient = mock(ClientConfig.class);
+        List<CommandForClient> producerCommands = new ArrayList<CommandForClient>();
+        producerCommands.add(new CommandForClient(CLIENT1, producerCommand));
+        when(producerClient.createCommands()).thenReturn(producerCommands);
+
+        ClientConfig consumerClient = mock(ClientConfig.class);
+        List<CommandForClient> consumerCommands = new ArrayList<CommandForClient>();
+        consumerCommands.add(new CommandForClient(CLIENT2, consumerCommand));
+        when(consumerClient.createCommands()).thenReturn(consumerCommands);
+
+        return new TestConfig(TEST1, new ClientConfig[] { producerClient, consumerClient }, EMPTY_QUEUES_ARRAY);
+    }
+
     private TestConfig createTestConfigWithTwoClients()
     {
         ClientConfig clientConfig1 = mock(ClientConfig.class);
@@ -32,6 +32,11 @@ import static org.apache.qpid.disttest.message.ParticipantAttribute.IS_SELECTOR;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.IS_SYNCHRONOUS_CONSUMER;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.IS_TOPIC;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.ITERATION_NUMBER;
+import static org.apache.qpid.disttest.message.ParticipantAttribute.LATENCY_50TH_PERCENTILE;
+import static org.apache.qpid.disttest.message.ParticipantAttribute.LATENCY_90TH_PERCENTILE;
+import static org.apache.qpid.disttest.message.ParticipantAttribute.LATENCY_999TH_PERCENTILE;
+import static org.apache.qpid.disttest.message.ParticipantAttribute.LATENCY_9999TH_PERCENTILE;
+import static org.apache.qpid.disttest.message.ParticipantAttribute.LATENCY_99TH_PERCENTILE;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.LATENCY_STANDARD_DEVIATION;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.MAXIMUM_DURATION;
 import static org.apache.qpid.disttest.message.ParticipantAttribute.MAX_LATENCY;
@@ -125,6 +130,11 @@ public class ResultsTestFixture
         participantAttributes.put(AVERAGE_LATENCY, 4.6f);
         participantAttributes.put(LATENCY_STANDARD_DEVIATION, 2.0f);
         participantAttributes.put(MESSAGE_THROUGHPUT, 2);
+        participantAttributes.put(LATENCY_50TH_PERCENTILE, 5.0d);
+        participantAttributes.put(LATENCY_90TH_PERCENTILE, 9.0d);
+        participantAttributes.put(LATENCY_99TH_PERCENTILE, 9.125d);
+        participantAttributes.put(LATENCY_999TH_PERCENTILE, 9.5d);
+        participantAttributes.put(LATENCY_9999TH_PERCENTILE, 9.75d);
         return participantAttributes;
     }
 
@@ -0,0 +1,127 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.disttest.results.aggregation;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class LatencyHistogramTest extends QpidTestCase
+{
+    public void testEmptyHistogram()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("Unexpected count", 0, histogram.getTotalCount());
+        assertEquals("Unexpected min", 0, histogram.getMinimum());
+        assertEquals("Unexpected max", 0, histogram.getMaximum());
+        assertEquals("Unexpected percentile", 0, histogram.getValueAtPercentile(99));
+        assertEquals("Unexpected mean", 0.0, histogram.getMean(), 0.0);
+    }
+
+    public void testSmallValuesAreExact()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.recordValue(i);
+        }
+        assertEquals("Unexpected count", 100, histogram.getTotalCount());
+        assertEquals("Unexpected 50th percentile", 50, histogram.getValueAtPercentile(50));
+        assertEquals("Unexpected 90th percentile", 90, histogram.getValueAtPercentile(90));
+        assertEquals("Unexpected 99th percentile", 99, histogram.getValueAtPercentile(99));
+        assertEquals("Unexpected 100th percentile", 100, histogram.getValueAtPercentile(100));
+        assertEquals("Unexpected mean", 50.5, histogram.getMean(), 0.001);
+    }
+
+    public void testLargeValuesWithinRelativeError()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = { 12345L, 987654L, 3600000000L, Long.MAX_VALUE / 2 };
+        for (long value : values)
+        {
+            LatencyHistogram single = new LatencyHistogram();
+            single.recordValue(1);
+            single.recordValue(value);
+            long reported = single.getValueAtPercentile(100);
+            assertEquals("Unexpected maximum", value, reported);
+
+            histogram.recordValue(value);
+            histogram.recordValue(value + 1);
+        }
+
+        for (int i = 0; i < values.length; i++)
+        {
+            double percentile = (2.0 * i + 1) * 100.0 / (2.0 * values.length);
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue("Value " + reported + " not within precision of " + values[i],
+                       Math.abs(reported - values[i]) <= values[i] / 1000);
+        }
+    }
+
+    public void testAddAndCompact()
+    {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++)
+        {
+            first.recordValue(1000);
+            second.recordValue(2000);
+        }
+        second.recordValue(1000000);
+        first.compact();
+        second.compact();
+
+        LatencyHistogram total = new LatencyHistogram();
+        total.add(first);
+        total.add(second);
+
+        assertEquals("Unexpected count", 2001, total.getTotalCount());
+        assertEquals("Unexpected min", 1000, total.getMinimum());
+        assertEquals("Unexpected max", 1000000, total.getMaximum());
+        assertEquals("Unexpected 50th percentile", 1000, total.getValueAtPercentile(49.9));
+        assertEquals("Unexpected 90th percentile", 2000, total.getValueAtPercentile(90));
+        assertEquals("Unexpected 99.99th percentile", 1000000, total.getValueAtPercentile(99.99));
+        assertEquals("Compacted histogram changed", 1001, second.getTotalCount());
+        assertEquals("Compacted histogram changed", 2000, second.getValueAtPercentile(99));
+    }
+
+    public void testStandardDeviation()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (Long value : SeriesStatisticsTest.SERIES)
+        {
+            histogram.recordValue(value);
+        }
+        assertEquals("Unexpected mean", 5.0, histogram.getMean(), 0.01);
+        assertEquals("Unexpected standard deviation", 2.0, histogram.getStandardDeviation(), 0.01);
+    }
+
+    public void testNegativeValueRejected()
+    {
+        try
+        {
+            new LatencyHistogram().recordValue(-1);
+            fail("Exception not thrown");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+    }
+}
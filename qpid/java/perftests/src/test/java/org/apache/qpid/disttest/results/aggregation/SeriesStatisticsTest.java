@@ -38,6 +38,23 @@ public class SeriesStatisticsTest extends QpidTestCase
         assertEquals("Unexpected min", 2, results.getMinimum());
         assertEquals("Unexpected max", 9, results.getMaximum());
         assertEquals("Unexpected standard deviation", 2.0, results.getStandardDeviation(), 0.01);
+        assertEquals("Unexpected 50th percentile", 5.0, results.getPercentile(50), 0.01);
+        assertEquals("Unexpected 99th percentile", 9.0, results.getPercentile(99), 0.001);
+    }
+
+    public void testAggregateHistogram()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (Long latency : SERIES)
+        {
+            histogram.recordValue(latency * 1000 + 500);
+        }
+
+        SeriesStatistics results = new SeriesStatistics(histogram);
+        assertEquals("Unexpected average", 5.5, results.getAverage(), 0.01);
+        assertEquals("Unexpected min", 2, results.getMinimum());
+        assertEquals("Unexpected max", 9, results.getMaximum());
+        assertEquals("Unexpected 90th percentile", 9.5, results.getPercentile(90), 0.001);
     }
 
 }
@@ -140,7 +140,8 @@ public class TestResultAggregatorTest extends QpidTestCase
         {
             if (participantResult instanceof ConsumerParticipantResult)
             {
-                ((ConsumerParticipantResult)participantResult).setMessageLatencies(SeriesStatisticsTest.SERIES);
+                ((ConsumerParticipantResult)participantResult).setLatencyHistogram(
+                        new SeriesStatistics(SeriesStatisticsTest.SERIES).getLatencyHistogram());
                 break;
             }
         }
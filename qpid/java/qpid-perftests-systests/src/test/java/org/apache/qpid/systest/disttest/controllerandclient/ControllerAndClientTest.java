@@ -23,7 +23,6 @@ import static org.apache.qpid.systest.disttest.SystemTestConstants.COMMAND_RESPO
 import static org.apache.qpid.systest.disttest.SystemTestConstants.REGISTRATION_TIMEOUT;
 import static org.apache.qpid.systest.disttest.SystemTestConstants.TEST_RESULT_TIMEOUT;
 
-import java.util.Collection;
 import java.util.List;
 
 import javax.jms.Message;
@@ -45,6 +44,7 @@ import org.apache.qpid.disttest.message.ConsumerParticipantResult;
 import org.apache.qpid.disttest.message.ParticipantResult;
 import org.apache.qpid.disttest.message.ProducerParticipantResult;
 import org.apache.qpid.disttest.results.aggregation.ITestResult;
+import org.apache.qpid.disttest.results.aggregation.LatencyHistogram;
 import org.apache.qpid.systest.disttest.DistributedTestSystemTestBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,9 +84,9 @@ public class ControllerAndClientTest extends DistributedTestSystemTestBase
             }
         }
         assertNotNull("Consumer results not recived", result);
-        Collection<Long> latencies = result.getMessageLatencies();
+        LatencyHistogram latencies = result.getLatencyHistogram();
         assertNotNull("Latency results are not collected", latencies);
-        assertEquals("Unexpected latency results", 1, latencies.size());
+        assertEquals("Unexpected latency results", 1, latencies.getTotalCount());
     }
 
     public void testProducerClient() throws Exception
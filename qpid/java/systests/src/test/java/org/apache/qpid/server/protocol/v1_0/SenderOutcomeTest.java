@@ -0,0 +1,166 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *
+ */
+package org.apache.qpid.server.protocol.v1_0;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Queue;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import org.apache.qpid.amqp_1_0.client.Connection;
+import org.apache.qpid.amqp_1_0.client.Message;
+import org.apache.qpid.amqp_1_0.client.OutcomeFuture;
+import org.apache.qpid.amqp_1_0.client.Sender;
+import org.apache.qpid.amqp_1_0.client.Session;
+import org.apache.qpid.amqp_1_0.type.Binary;
+import org.apache.qpid.amqp_1_0.type.Outcome;
+import org.apache.qpid.amqp_1_0.type.messaging.Accepted;
+import org.apache.qpid.server.model.Protocol;
+import org.apache.qpid.test.utils.QpidBrokerTestCase;
+import org.apache.qpid.test.utils.TestBrokerConfiguration;
+
+/**
+ * Tests the outcomes reported to the AMQP 1.0 client {@link Sender} for settled and pre-settled messages.
+ */
+public class SenderOutcomeTest extends QpidBrokerTestCase
+{
+    private Queue _queue;
+    private Connection _connection;
+    private Sender _sender;
+    private final AtomicInteger _outcomeCount = new AtomicInteger();
+    private final Sender.OutcomeAction _countingAction = new Sender.OutcomeAction()
+    {
+        @Override
+        public void onOutcome(final Binary deliveryTag, final Outcome outcome)
+        {
+            _outcomeCount.incrementAndGet();
+        }
+    };
+
+    @Override
+    public void setUp() throws Exception
+    {
+        enableAmqp10();
+        super.setUp();
+
+        _queue = getTestQueue();
+        javax.jms.Connection jmsConnection = getConnection();
+        jmsConnection.createSession(false, javax.jms.Session.AUTO_ACKNOWLEDGE).createConsumer(_queue).close();
+        jmsConnection.close();
+
+        _connection = new Connection("localhost", getPort(), GUEST_USERNAME, GUEST_PASSWORD,
+                                     TestBrokerConfiguration.ENTRY_NAME_VIRTUAL_HOST);
+        Session session = _connection.createSession();
+        _sender = session.createSender(getTestQueueName());
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            if (_connection != null)
+            {
+                _connection.close();
+            }
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testOutcomeActionCalledForUnsettledSend() throws Exception
+    {
+        _sender.send(new Message("unsettled"), _countingAction);
+        _sender.close();
+
+        assertEquals("Unexpected number of outcomes", 1, _outcomeCount.get());
+        assertEquals("Unexpected number of messages on queue", 1, drainQueue(_queue));
+    }
+
+    public void testOutcomeActionNotCalledForPreSettledSend() throws Exception
+    {
+        Message message = new Message("pre-settled");
+        message.setSettled(true);
+
+        _sender.send(message, _countingAction);
+        _sender.close();
+
+        assertEquals("Outcome action should not be called for a pre-settled message", 0, _outcomeCount.get());
+        assertEquals("Unexpected number of messages on queue", 1, drainQueue(_queue));
+    }
+
+    public void testAsyncSendOfPreSettledMessageCompletesWithoutOutcomeAction() throws Exception
+    {
+        Message message = new Message("pre-settled");
+        message.setSettled(true);
+
+        OutcomeFuture future = _sender.sendAsync(message, null, _countingAction);
+
+        assertTrue("Future of a pre-settled message should be complete once sent", future.isDone());
+        assertTrue("Unexpected outcome " + future.get(), future.get() instanceof Accepted);
+        assertEquals("Outcome action should not be called for a pre-settled message", 0, _outcomeCount.get());
+        assertEquals("Pre-settled message should not be in flight", 0, _sender.getInFlightCount());
+
+        _sender.close();
+        assertEquals("Unexpected number of messages on queue", 1, drainQueue(_queue));
+    }
+
+    public void testAsyncSendsCompleteWithOutcomes() throws Exception
+    {
+        List<OutcomeFuture> futures = new ArrayList<OutcomeFuture>();
+        for (int i = 0; i < 10; i++)
+        {
+            futures.add(_sender.sendAsync(new Message("message " + i), null, _countingAction));
+        }
+
+        for (OutcomeFuture future : futures)
+        {
+            assertTrue("Unexpected outcome", future.get(10, TimeUnit.SECONDS) instanceof Accepted);
+        }
+        assertEquals("Unexpected number of outcomes", 10, _outcomeCount.get());
+        assertEquals("Messages still in flight", 0, _sender.getInFlightCount());
+
+        _sender.close();
+        assertEquals("Unexpected number of messages on queue", 10, drainQueue(_queue));
+    }
+
+    private void enableAmqp10() throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> protocols = new ArrayList<String>();
+        String configured = System.getProperty(TEST_AMQP_PORT_PROTOCOLS_PROPERTY);
+        if (configured != null)
+        {
+            protocols.addAll(mapper.readValue(configured, List.class));
+        }
+        if (!protocols.contains(Protocol.AMQP_1_0.name()))
+        {
+            protocols.add(Protocol.AMQP_1_0.name());
+        }
+        setSystemProperty(TEST_AMQP_PORT_PROTOCOLS_PROPERTY, mapper.writeValueAsString(protocols));
+    }
+}
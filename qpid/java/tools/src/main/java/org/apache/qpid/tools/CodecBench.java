@@ -0,0 +1,175 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.apache.qpid.transport.DeliveryProperties;
+import org.apache.qpid.transport.Header;
+import org.apache.qpid.transport.MessageAcceptMode;
+import org.apache.qpid.transport.MessageAcquireMode;
+import org.apache.qpid.transport.MessageDeliveryMode;
+import org.apache.qpid.transport.MessageProperties;
+import org.apache.qpid.transport.MessageTransfer;
+import org.apache.qpid.transport.Sender;
+import org.apache.qpid.transport.network.Disassembler;
+
+/**
+ * CodecBench
+ *
+ * Encodes and frames 0-10 message transfers through a {@link Disassembler} into a sender that discards the bytes,
+ * reporting the encoding rate and the number of bytes allocated per transfer once the encoder has warmed up.
+ * Exits with a non-zero status if the steady state allocates.
+ */
+public class CodecBench
+{
+    private static final String USAGE = "codec-bench [-c <count>] [-s <body size>] [-f <max frame size>]";
+
+    public static void main(String[] args)
+    {
+        long count = 1000000;
+        int size = 1024;
+        int maxFrame = 4096;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-c".equals(args[i]) && i + 1 < args.length)
+            {
+                count = Long.parseLong(args[++i]);
+            }
+            else if ("-s".equals(args[i]) && i + 1 < args.length)
+            {
+                size = Integer.parseInt(args[++i]);
+            }
+            else if ("-f".equals(args[i]) && i + 1 < args.length)
+            {
+                maxFrame = Integer.parseInt(args[++i]);
+            }
+            else
+            {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+
+        final DiscardingSender sender = new DiscardingSender();
+        final Disassembler disassembler = new Disassembler(sender, maxFrame);
+        final MessageTransfer transfer = createTransfer(size);
+
+        // warm up: lets the encoder buffer reach its final size and the JIT compile the encoding path
+        for (long i = 0; i < Math.min(count, 100000); i++)
+        {
+            disassembler.send(transfer);
+        }
+
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final boolean allocationMeasured = threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported();
+
+        final long bytesBefore = allocatedBytes(threadMXBean, threadId, allocationMeasured);
+        final long start = System.nanoTime();
+        for (long i = 0; i < count; i++)
+        {
+            disassembler.send(transfer);
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long bytesAfter = allocatedBytes(threadMXBean, threadId, allocationMeasured);
+
+        System.out.println(String.format("%d transfers of %d byte bodies, %d bytes written", count, size,
+                                         sender.getBytesWritten()));
+        System.out.println(String.format("%.1f ns per transfer, %.0f transfers/s", (double) elapsed / count,
+                                         count * 1e9 / elapsed));
+
+        if (allocationMeasured)
+        {
+            final double allocatedPerTransfer = (double) (bytesAfter - bytesBefore) / count;
+            System.out.println(String.format("%.3f bytes allocated per transfer", allocatedPerTransfer));
+            if (allocatedPerTransfer >= 1.0)
+            {
+                System.err.println("Steady state encoding allocates");
+                System.exit(1);
+            }
+        }
+        else
+        {
+            System.out.println("Thread allocation measurement is not supported by this JVM");
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean threadMXBean, long threadId, boolean allocationMeasured)
+    {
+        return allocationMeasured ? ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadId) : 0L;
+    }
+
+    private static MessageTransfer createTransfer(int size)
+    {
+        DeliveryProperties deliveryProperties = new DeliveryProperties();
+        deliveryProperties.setRoutingKey("codec-bench");
+        deliveryProperties.setDeliveryMode(MessageDeliveryMode.NON_PERSISTENT);
+        deliveryProperties.setTimestamp(System.currentTimeMillis());
+
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setMessageId(UUID.randomUUID());
+        messageProperties.setContentType("application/octet-stream");
+
+        return new MessageTransfer("amq.direct",
+                                   MessageAcceptMode.NONE,
+                                   MessageAcquireMode.PRE_ACQUIRED,
+                                   new Header(deliveryProperties, messageProperties),
+                                   ByteBuffer.allocate(size));
+    }
+
+    private static final class DiscardingSender implements Sender<ByteBuffer>
+    {
+        private long _bytesWritten;
+
+        @Override
+        public void setIdleTimeout(final int i)
+        {
+        }
+
+        @Override
+        public void send(final ByteBuffer msg)
+        {
+            _bytesWritten += msg.remaining();
+            msg.position(msg.limit());
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        long getBytesWritten()
+        {
+            return _bytesWritten;
+        }
+    }
+}